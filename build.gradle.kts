@@ -53,6 +53,21 @@ val genSrcDir = file("src/gen")
 
 java.sourceSets {
     getByName("main").java.srcDirs(genSrcDir)
+    create("jmh") {
+        compileClasspath += getByName("main").output
+        runtimeClasspath += getByName("main").output
+    }
+}
+
+configurations {
+    "jmhCompile" { extendsFrom(configurations.compile) }
+    "jmhImplementation" { extendsFrom(configurations.implementation) }
+    "jmhRuntime" { extendsFrom(configurations.runtime) }
+}
+
+dependencies {
+    "jmhCompile"("org.openjdk.jmh:jmh-core:1.21")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.21")
 }
 
 idea {
@@ -101,3 +116,15 @@ task<JavaExec>("prelude") {
     args = listOf(preludeOutputDir)
     dependsOn("copyPrelude")
 }
+
+
+// Benchmarks
+
+task<JavaExec>("jmh") {
+    description = "Runs JMH benchmarks, e.g. gradle jmh -PjmhArgs=NormalizationBenchmark"
+    group = "Verification"
+    main = "org.openjdk.jmh.Main"
+    classpath = java.sourceSets["jmh"].runtimeClasspath
+    workingDir = projectDir
+    args = (project.findProperty("jmhArgs")?.toString()?.split(" ") ?: emptyList()) + listOf("-rf", "json", "-rff", "$buildDir/jmh-result.json")
+}
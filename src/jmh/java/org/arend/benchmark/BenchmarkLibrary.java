@@ -0,0 +1,175 @@
+package org.arend.benchmark;
+
+import org.arend.core.definition.Definition;
+import org.arend.error.GeneralError;
+import org.arend.error.ListErrorReporter;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.library.FileSourceLibrary;
+import org.arend.library.LibraryManager;
+import org.arend.module.ModulePath;
+import org.arend.naming.reference.Referable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.scope.Scope;
+import org.arend.prelude.Prelude;
+import org.arend.prelude.PreludeFileLibrary;
+import org.arend.term.group.ChildGroup;
+import org.arend.term.prettyprint.PrettyPrinterConfig;
+import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Loads the prelude and libraries of generated modules which are used by benchmarks.
+ * Modules are written to a temporary directory which is deleted by {@link #close}.
+ */
+public class BenchmarkLibrary implements AutoCloseable {
+  private final TypecheckerState myTypecheckerState = new SimpleTypecheckerState();
+  private final ListErrorReporter myErrorReporter = new ListErrorReporter();
+  private final LibraryManager myLibraryManager = new LibraryManager(name -> null, new InstanceProviderSet(), myErrorReporter, myErrorReporter);
+  private final Path myDirectory;
+  private FileSourceLibrary myLibrary;
+
+  public BenchmarkLibrary() throws IOException {
+    myDirectory = Files.createTempDirectory("arend-benchmark");
+    PreludeFileLibrary preludeLibrary = new PreludeFileLibrary(null, myTypecheckerState);
+    if (!myLibraryManager.loadLibrary(preludeLibrary)) {
+      throw new IllegalStateException("Cannot load the prelude");
+    }
+    new Prelude.PreludeTypechecking(new InstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE).typecheckLibrary(preludeLibrary);
+  }
+
+  public TypecheckerState getTypecheckerState() {
+    return myTypecheckerState;
+  }
+
+  public LibraryManager getLibraryManager() {
+    return myLibraryManager;
+  }
+
+  public FileSourceLibrary getLibrary() {
+    return myLibrary;
+  }
+
+  public TypecheckingOrderingListener createTypechecking() {
+    return new TypecheckingOrderingListener(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, myErrorReporter, PositionComparator.INSTANCE);
+  }
+
+  /**
+   * Writes modules to the source directory and loads them without typechecking.
+   *
+   * @param modules names and texts of modules.
+   */
+  public FileSourceLibrary load(Map<String, String> modules) throws IOException {
+    Path sourceDir = myDirectory.resolve("src");
+    Set<ModulePath> modulePaths = new LinkedHashSet<>();
+    for (Map.Entry<String, String> entry : modules.entrySet()) {
+      ModulePath modulePath = ModulePath.fromString(entry.getKey());
+      Path file = FileUtils.sourceFile(sourceDir, modulePath);
+      Files.createDirectories(file.getParent());
+      Files.write(file, entry.getValue().getBytes(StandardCharsets.UTF_8));
+      modulePaths.add(modulePath);
+    }
+
+    if (myLibrary != null) {
+      myLibraryManager.unloadLibrary(myLibrary);
+    }
+    myLibrary = new FileSourceLibrary("benchmark", sourceDir, null, modulePaths, true, Collections.emptyList(), myTypecheckerState);
+    if (!myLibraryManager.loadLibrary(myLibrary)) {
+      throw new IllegalStateException("Cannot load modules");
+    }
+    checkErrors();
+    return myLibrary;
+  }
+
+  /**
+   * Loads and typechecks modules.
+   */
+  public FileSourceLibrary typecheck(Map<String, String> modules) throws IOException {
+    load(modules);
+    createTypechecking().typecheckLibrary(myLibrary);
+    checkErrors();
+    return myLibrary;
+  }
+
+  /**
+   * Loads and typechecks a single module named {@code Main}.
+   */
+  public ChildGroup typecheck(String text) throws IOException {
+    typecheck(Collections.singletonMap("Main", text));
+    return myLibrary.getModuleGroup(ModulePath.fromString("Main"));
+  }
+
+  public Definition getDefinition(ChildGroup group, String path) {
+    Referable referable = Scope.Utils.resolveName(group.getGroupScope(), Arrays.asList(path.split("\\.")));
+    Definition definition = referable instanceof TCReferable ? myTypecheckerState.getTypechecked((TCReferable) referable) : null;
+    if (definition == null) {
+      throw new IllegalArgumentException("Cannot find definition " + path);
+    }
+    return definition;
+  }
+
+  public void checkErrors() {
+    if (!myErrorReporter.getErrorList().isEmpty()) {
+      StringBuilder builder = new StringBuilder();
+      for (GeneralError error : myErrorReporter.getErrorList()) {
+        builder.append(error.getDoc(PrettyPrinterConfig.DEFAULT)).append('\n');
+      }
+      throw new IllegalStateException(builder.toString());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try (Stream<Path> paths = Files.walk(myDirectory)) {
+      List<Path> list = new ArrayList<>();
+      paths.forEach(list::add);
+      Collections.reverse(list);
+      for (Path path : list) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  /**
+   * Generates a module with {@code size} definitions which refer to definitions of the previous module.
+   */
+  public static String syntheticModule(int index, int size) {
+    StringBuilder builder = new StringBuilder();
+    if (index > 0) {
+      builder.append("\\import M").append(index - 1).append("\n\n");
+    }
+    for (int i = 0; i < size; i++) {
+      String name = "d" + index + "_" + i;
+      builder.append("\\data T").append(name).append(" (A : \\Type) | leaf").append(name).append(" A | node").append(name).append(" (T").append(name).append(" A) (T").append(name).append(" A)\n\n");
+      builder.append("\\func size").append(name).append(" {A : \\Type} (t : T").append(name).append(" A) : Nat \\elim t\n");
+      builder.append("  | leaf").append(name).append(" _ => 1\n");
+      builder.append("  | node").append(name).append(" l r => size").append(name).append(" l Nat.+ size").append(name).append(" r\n\n");
+      builder.append("\\func f").append(name).append(" (n : Nat) : Nat\n");
+      builder.append("  | 0 => ").append(index > 0 ? "f" + "d" + (index - 1) + "_" + i + " 3" : "0").append("\n");
+      builder.append("  | suc n => suc (f").append(name).append(" n)\n\n");
+      builder.append("\\func p").append(name).append(" : f").append(name).append(" 2 = ").append(2 + 3 * index).append(" => path (\\lam _ => ").append(2 + 3 * index).append(")\n\n");
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Generates a library of {@code modules} modules with {@code size} definitions each.
+   */
+  public static Map<String, String> syntheticLibrary(int modules, int size) {
+    Map<String, String> result = new LinkedHashMap<>();
+    for (int i = 0; i < modules; i++) {
+      result.put("M" + i, syntheticModule(i, size));
+    }
+    return result;
+  }
+}
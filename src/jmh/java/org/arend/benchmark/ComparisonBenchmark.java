@@ -0,0 +1,67 @@
+package org.arend.benchmark;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.expr.visitor.CompareVisitor;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.implicitargs.equations.DummyEquations;
+import org.arend.typechecking.implicitargs.equations.Equations;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CompareVisitor} on large equal terms and on terms that are equal only after normalization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparisonBenchmark {
+  @Param({"12"})
+  public int n;
+
+  private BenchmarkLibrary myLibrary;
+  private Expression myTree1;
+  private Expression myTree2;
+  private Expression myFibCall;
+  private Expression myFibValue;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    myLibrary = new BenchmarkLibrary();
+    ChildGroup group = myLibrary.typecheck(NormalizationBenchmark.TEXT);
+    // Trees are normalized separately, so they do not share subterms
+    myTree1 = call(group, "full", n).normalize(NormalizeVisitor.Mode.NF);
+    myTree2 = call(group, "full", n).normalize(NormalizeVisitor.Mode.NF);
+    myFibCall = call(group, "fib", n);
+    myFibValue = myFibCall.normalize(NormalizeVisitor.Mode.NF);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    myLibrary.close();
+  }
+
+  private Expression call(ChildGroup group, String name, int arg) {
+    FunctionDefinition definition = (FunctionDefinition) myLibrary.getDefinition(group, name);
+    return definition.getDefCall(Sort.STD, Collections.singletonList(new SmallIntegerExpression(arg)));
+  }
+
+  @Benchmark
+  public boolean compareTrees() {
+    return CompareVisitor.compare(DummyEquations.getInstance(), Equations.CMP.EQ, myTree1, myTree2, null);
+  }
+
+  @Benchmark
+  public boolean compareWithNormalization() {
+    return CompareVisitor.compare(DummyEquations.getInstance(), Equations.CMP.EQ, myFibCall, myFibValue, null);
+  }
+}
@@ -0,0 +1,66 @@
+package org.arend.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures typechecking of definitions with many implicit arguments and universe levels.
+ * Most of the time is spent in {@link org.arend.typechecking.implicitargs.equations.TwoStageEquations#solve},
+ * which cannot be measured separately since equations are produced by the typechecker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EquationSolvingBenchmark {
+  @Param({"20"})
+  public int definitions;
+
+  @Param({"10"})
+  public int depth;
+
+  private BenchmarkLibrary myLibrary;
+  private String myText;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    myLibrary = new BenchmarkLibrary();
+    myText = generate(definitions, depth);
+  }
+
+  @Setup(Level.Invocation)
+  public void load() throws IOException {
+    myLibrary.load(Collections.singletonMap("Main", myText));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    myLibrary.close();
+  }
+
+  static String generate(int definitions, int depth) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("\\func id {A : \\Type} (a : A) => a\n\n");
+    builder.append("\\func pair {A B : \\Type} (a : A) (b : B) => (a, b)\n\n");
+    builder.append("\\func const {A B : \\Type} (a : A) (b : B) => a\n\n");
+    for (int i = 0; i < definitions; i++) {
+      String expr = String.valueOf(i);
+      for (int j = 0; j < depth; j++) {
+        expr = j % 2 == 0 ? "id (pair (" + expr + ") (\\lam (x : Nat) => x))" : "const (id (" + expr + ")) (id (path (\\lam _ => " + j + ")))";
+      }
+      builder.append("\\func f").append(i).append(" => ").append(expr).append("\n\n");
+    }
+    return builder.toString();
+  }
+
+  @Benchmark
+  public void typecheck() {
+    myLibrary.createTypechecking().typecheckLibrary(myLibrary.getLibrary());
+    myLibrary.checkErrors();
+  }
+}
@@ -0,0 +1,106 @@
+package org.arend.benchmark;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.expr.visitor.WHNFCache;
+import org.arend.core.sort.Sort;
+import org.arend.term.group.ChildGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NormalizeVisitor} on arithmetic and on functions defined by pattern matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizationBenchmark {
+  static final String TEXT =
+    "\\func fib (n : Nat) : Nat\n" +
+    "  | 0 => 0\n" +
+    "  | suc 0 => 1\n" +
+    "  | suc (suc n) => fib n Nat.+ fib (suc n)\n\n" +
+    "\\func sumTo (n : Nat) : Nat\n" +
+    "  | 0 => 0\n" +
+    "  | suc n => suc n Nat.* suc n Nat.+ sumTo n\n\n" +
+    "\\data Tree | leaf | node Tree Tree\n\n" +
+    "\\func full (n : Nat) : Tree\n" +
+    "  | 0 => leaf\n" +
+    "  | suc n => node (full n) (full n)\n\n" +
+    "\\func size (t : Tree) : Nat\n" +
+    "  | leaf => 1\n" +
+    "  | node l r => size l Nat.+ size r\n\n" +
+    "\\func sizeOfFull (n : Nat) => size (full n)";
+
+  @Param({"12"})
+  public int n;
+
+  @Param({"false", "true"})
+  public boolean useClosures;
+
+  @Param({"0"})
+  public int whnfCacheCapacity;
+
+  private BenchmarkLibrary myLibrary;
+  private Expression myFib;
+  private Expression mySumTo;
+  private Expression myFull;
+  private Expression mySizeOfFull;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    myLibrary = new BenchmarkLibrary();
+    ChildGroup group = myLibrary.typecheck(TEXT);
+    myFib = call(group, "fib", n);
+    mySumTo = call(group, "sumTo", n * 10);
+    myFull = call(group, "full", n);
+    mySizeOfFull = call(group, "sizeOfFull", n);
+    NormalizeVisitor.INSTANCE.setUsingClosures(useClosures);
+    NormalizeVisitor.INSTANCE.setWHNFCache(whnfCacheCapacity > 0 ? new WHNFCache(whnfCacheCapacity) : null);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    NormalizeVisitor.INSTANCE.setUsingClosures(false);
+    NormalizeVisitor.INSTANCE.setWHNFCache(null);
+    myLibrary.close();
+  }
+
+  private Expression call(ChildGroup group, String name, int arg) {
+    FunctionDefinition definition = (FunctionDefinition) myLibrary.getDefinition(group, name);
+    return definition.getDefCall(Sort.STD, Collections.singletonList(new SmallIntegerExpression(arg)));
+  }
+
+  @Benchmark
+  public Expression fibNF() {
+    return myFib.normalize(NormalizeVisitor.Mode.NF);
+  }
+
+  @Benchmark
+  public Expression sumToNF() {
+    return mySumTo.normalize(NormalizeVisitor.Mode.NF);
+  }
+
+  @Benchmark
+  public Expression fullWHNF() {
+    return myFull.normalize(NormalizeVisitor.Mode.WHNF);
+  }
+
+  @Benchmark
+  public Expression fullNF() {
+    return myFull.normalize(NormalizeVisitor.Mode.NF);
+  }
+
+  @Benchmark
+  public Expression sizeOfFullNF() {
+    return mySizeOfFull.normalize(NormalizeVisitor.Mode.NF);
+  }
+}
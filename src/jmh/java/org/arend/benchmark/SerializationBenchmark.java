@@ -0,0 +1,84 @@
+package org.arend.benchmark;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.arend.error.DummyErrorReporter;
+import org.arend.library.FileSourceLibrary;
+import org.arend.module.ModulePath;
+import org.arend.module.scopeprovider.ModuleScopeProvider;
+import org.arend.module.serialization.DeserializationException;
+import org.arend.module.serialization.ModuleDeserialization;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.module.serialization.ModuleSerialization;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ModuleSerialization} and {@link ModuleDeserialization} of a typechecked module.
+ * Deserialized definitions are removed from the typechecker state after every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+  private static final ModulePath MODULE_PATH = ModulePath.fromString("M0");
+
+  @Param({"50"})
+  public int size;
+
+  @Param({"false", "true"})
+  public boolean lazyBodies;
+
+  private BenchmarkLibrary myLibrary;
+  private ChildGroup myGroup;
+  private byte[] myBytes;
+  private ModuleScopeProvider myModuleScopeProvider;
+  private ChildGroup myDeserializedGroup;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    myLibrary = new BenchmarkLibrary();
+    FileSourceLibrary library = myLibrary.typecheck(Collections.singletonMap(MODULE_PATH.toString(), BenchmarkLibrary.syntheticModule(0, size)));
+    myGroup = library.getModuleGroup(MODULE_PATH);
+    myBytes = serialize().toByteArray();
+    myModuleScopeProvider = myLibrary.getLibraryManager().getAvailableModuleScopeProvider(library);
+  }
+
+  @TearDown(Level.Invocation)
+  public void unload() {
+    if (myDeserializedGroup != null) {
+      myLibrary.getLibrary().unloadGroup(myDeserializedGroup);
+      myDeserializedGroup = null;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    myLibrary.close();
+  }
+
+  private ModuleProtos.Module serialize() {
+    return new ModuleSerialization(myLibrary.getTypecheckerState(), DummyErrorReporter.INSTANCE, lazyBodies).writeModule(myGroup, MODULE_PATH, IdReferableConverter.INSTANCE);
+  }
+
+  @Benchmark
+  public byte[] write() {
+    return serialize().toByteArray();
+  }
+
+  @Benchmark
+  public ChildGroup read() throws InvalidProtocolBufferException, DeserializationException {
+    ModuleDeserialization deserialization = new ModuleDeserialization(ModuleProtos.Module.parseFrom(myBytes), myLibrary.getTypecheckerState(), IdReferableConverter.INSTANCE);
+    myDeserializedGroup = deserialization.readGroup(MODULE_PATH);
+    deserialization.readModule(myModuleScopeProvider, DummyDependencyListener.INSTANCE, true);
+    return myDeserializedGroup;
+  }
+}
@@ -0,0 +1,68 @@
+package org.arend.benchmark;
+
+import org.arend.core.context.binding.TypedBinding;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.ReferenceExpression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.core.subst.SubstVisitor;
+import org.arend.term.group.ChildGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.arend.core.expr.ExpressionFactory.Nat;
+
+/**
+ * Measures {@link SubstVisitor} on a large term with many occurrences of the substituted variable and on a closed term.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubstitutionBenchmark {
+  private static final String TEXT =
+    "\\data Tree | leaf Nat | node Tree Tree\n\n" +
+    "\\func full (x n : Nat) : Tree\n" +
+    "  | x, 0 => leaf x\n" +
+    "  | x, suc n => node (full x n) (full x n)";
+
+  @Param({"12"})
+  public int n;
+
+  private BenchmarkLibrary myLibrary;
+  private TypedBinding myBinding;
+  private Expression myOpenTree;
+  private Expression myClosedTree;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    myLibrary = new BenchmarkLibrary();
+    ChildGroup group = myLibrary.typecheck(TEXT);
+    FunctionDefinition full = (FunctionDefinition) myLibrary.getDefinition(group, "full");
+    myBinding = new TypedBinding("x", Nat());
+    myOpenTree = full.getDefCall(Sort.STD, Arrays.asList(new ReferenceExpression(myBinding), new SmallIntegerExpression(n))).normalize(NormalizeVisitor.Mode.NF);
+    myClosedTree = full.getDefCall(Sort.STD, Arrays.asList(new SmallIntegerExpression(0), new SmallIntegerExpression(n))).normalize(NormalizeVisitor.Mode.NF);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    myLibrary.close();
+  }
+
+  @Benchmark
+  public Expression substOpen() {
+    return myOpenTree.subst(myBinding, new SmallIntegerExpression(7));
+  }
+
+  @Benchmark
+  public Expression substClosed() {
+    return myClosedTree.subst(myBinding, new SmallIntegerExpression(7));
+  }
+}
@@ -0,0 +1,86 @@
+package org.arend.benchmark;
+
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.prelude.Prelude;
+import org.arend.prelude.PreludeLibrary;
+import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end typechecking of the prelude and of generated libraries.
+ * Modules are parsed and resolved before invocations, so only typechecking is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypecheckingBenchmark {
+  @State(Scope.Benchmark)
+  public static class PreludeState {
+    BenchmarkLibrary library;
+    TypecheckerState typecheckerState;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      library = new BenchmarkLibrary();
+    }
+
+    // The prelude is parsed only once, so its definitions are typechecked again in a new state
+    @Setup(Level.Invocation)
+    public void reset() {
+      typecheckerState = new SimpleTypecheckerState();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      library.close();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class LibraryState {
+    @Param({"10"})
+    public int modules;
+
+    @Param({"20"})
+    public int size;
+
+    BenchmarkLibrary library;
+    Map<String, String> text;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      library = new BenchmarkLibrary();
+      text = BenchmarkLibrary.syntheticLibrary(modules, size);
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws IOException {
+      library.load(text);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      library.close();
+    }
+  }
+
+  @Benchmark
+  public boolean prelude(PreludeState state) {
+    return new Prelude.PreludeTypechecking(new InstanceProviderSet(), state.typecheckerState, ConcreteReferableProvider.INSTANCE).typecheckModules(Collections.singletonList(PreludeLibrary.getPreludeGroup()));
+  }
+
+  @Benchmark
+  public void syntheticLibrary(LibraryState state) {
+    state.library.createTypechecking().typecheckLibrary(state.library.getLibrary());
+    state.library.checkErrors();
+  }
+}
@@ -0,0 +1,38 @@
+package org.arend.core.context.param;
+
+/**
+ * A snapshot of a chain of {@link DependentLink}s.
+ * It gives constant time access to the length of the chain, which is linear in {@link DependentLink.Helper}.
+ *
+ * The snapshot is not updated if the chain is modified after it was created.
+ */
+public class Telescope {
+  private static final Telescope EMPTY = new Telescope(EmptyDependentLink.getInstance(), 0);
+
+  private final DependentLink myFirst;
+  private final int mySize;
+
+  private Telescope(DependentLink first, int size) {
+    myFirst = first;
+    mySize = size;
+  }
+
+  public static Telescope of(DependentLink first) {
+    return first == EmptyDependentLink.getInstance() ? EMPTY : new Telescope(first, DependentLink.Helper.size(first));
+  }
+
+  public static Telescope empty() {
+    return EMPTY;
+  }
+
+  /**
+   * @return the first link of the chain.
+   */
+  public DependentLink getFirst() {
+    return myFirst;
+  }
+
+  public int size() {
+    return mySize;
+  }
+}
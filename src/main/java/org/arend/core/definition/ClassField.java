@@ -42,6 +42,7 @@ public class ClassField extends Definition {
 
   public void setType(PiExpression type) {
     myType = type;
+    invalidateTelescope();
   }
 
   public PiExpression getType(Sort sortArgument) {
@@ -27,6 +27,7 @@ public class Constructor extends Definition implements Function {
   private Body myConditions;
   private List<ClauseBase> myClauses;
   private int myNumberOfIntervalParameters;
+  private int myIndex = -1;
   private List<Integer> myParametersTypecheckingOrder;
   private List<Boolean> myGoodThisParameters = Collections.emptyList();
   private List<TypeClassParameterKind> myTypeClassParameters = Collections.emptyList();
@@ -72,6 +73,18 @@ public class Constructor extends Definition implements Function {
   public void setParameters(DependentLink parameters) {
     assert parameters != null;
     myParameters = parameters;
+    invalidateTelescope();
+  }
+
+  /**
+   * @return the position of this constructor in {@link DataDefinition#getConstructors} or -1 if it was not added to its data type.
+   */
+  public int getIndex() {
+    return myIndex;
+  }
+
+  void setIndex(int index) {
+    myIndex = index;
   }
 
   public int getNumberOfIntervalParameters() {
@@ -90,6 +103,13 @@ public class Constructor extends Definition implements Function {
     return myDataType.status().headerIsOK() ? (myPatterns == null ? myDataType.getParameters() : myPatterns.getFirstBinding()) : EmptyDependentLink.getInstance();
   }
 
+  /**
+   * @return the length of {@link #getDataTypeParameters}.
+   */
+  public int getNumberOfDataTypeParameters() {
+    return !myDataType.status().headerIsOK() ? 0 : myPatterns == null ? myDataType.getTelescope().size() : DependentLink.Helper.size(myPatterns.getFirstBinding());
+  }
+
   public List<Expression> matchDataTypeArguments(List<Expression> arguments) {
     assert myDataType.status().headerIsOK();
     if (myPatterns == null) {
@@ -162,7 +182,7 @@ public class Constructor extends Definition implements Function {
       return super.isGoodParameter(index);
     }
 
-    int dataTypeParams = DependentLink.Helper.size(myDataType.getParameters());
+    int dataTypeParams = myDataType.getTelescope().size();
     return index < dataTypeParams ? myDataType.isGoodParameter(index) : super.isGoodParameter(index - dataTypeParams);
   }
 
@@ -178,7 +198,7 @@ public class Constructor extends Definition implements Function {
 
   @Override
   public TypeClassParameterKind getTypeClassParameterKind(int index) {
-    int dataTypeParams = DependentLink.Helper.size(myDataType.getParameters());
+    int dataTypeParams = myDataType.getTelescope().size();
     return index < dataTypeParams ? (myPatterns == null ? myDataType.getTypeClassParameterKind(index) : TypeClassParameterKind.NO) : super.getTypeClassParameterKind(index - dataTypeParams);
   }
 
@@ -193,31 +213,31 @@ public class Constructor extends Definition implements Function {
       return null;
     }
 
-    LevelSubstitution polySubst = sortArgument.toLevelSubstitution();
-    DataCallExpression resultType = getDataTypeExpression(sortArgument);
-    DependentLink parameters = getDataTypeParameters();
-    ExprSubstitution substitution = new ExprSubstitution();
-    List<DependentLink> paramList = null;
-    if (parameters.hasNext()) {
-      parameters = DependentLink.Helper.subst(parameters, substitution, polySubst);
-      for (DependentLink link = parameters; link.hasNext(); link = link.getNext()) {
-        link.setExplicit(false);
+    return (DataCallExpression) getSignatureCache().get(sortArgument, myParameters, getDataTypeParameters(), sort -> {
+      LevelSubstitution polySubst = sort.toLevelSubstitution();
+      DataCallExpression resultType = getDataTypeExpression(sort);
+      DependentLink parameters = getDataTypeParameters();
+      ExprSubstitution substitution = new ExprSubstitution();
+      List<DependentLink> paramList = new ArrayList<>();
+      if (parameters.hasNext()) {
+        parameters = DependentLink.Helper.subst(parameters, substitution, polySubst);
+        for (DependentLink link = parameters; link.hasNext(); link = link.getNext()) {
+          link.setExplicit(false);
+        }
+        paramList.addAll(DependentLink.Helper.toList(parameters));
       }
-      paramList = DependentLink.Helper.toList(parameters);
-      params.addAll(paramList);
-    }
-    DependentLink conParams = DependentLink.Helper.subst(myParameters, substitution, polySubst);
-    if (paramList != null && !paramList.isEmpty()) {
-      paramList.get(paramList.size() - 1).setNext(conParams);
-    }
-    params.addAll(DependentLink.Helper.toList(conParams));
-    resultType = resultType.subst(new SubstVisitor(substitution, polySubst));
-    return resultType;
+      DependentLink conParams = DependentLink.Helper.subst(myParameters, substitution, polySubst);
+      if (!paramList.isEmpty()) {
+        paramList.get(paramList.size() - 1).setNext(conParams);
+      }
+      paramList.addAll(DependentLink.Helper.toList(conParams));
+      return new SignatureCache.Signature(paramList, resultType.subst(new SubstVisitor(substitution, polySubst)));
+    }).getTypeWithParams(params);
   }
 
   @Override
   public Expression getDefCall(Sort sortArgument, List<Expression> args) {
-    int dataTypeArgsNumber = DependentLink.Helper.size(getDataTypeParameters());
+    int dataTypeArgsNumber = getNumberOfDataTypeParameters();
     List<Expression> dataTypeArgs = new ArrayList<>(dataTypeArgsNumber);
     dataTypeArgs.addAll(args.subList(0, dataTypeArgsNumber));
     return ConCallExpression.make(this, sortArgument, dataTypeArgs, args.subList(dataTypeArgsNumber, args.size()));
@@ -69,6 +69,7 @@ public class DataDefinition extends Definition {
 
   public void setParameters(DependentLink parameters) {
     myParameters = parameters;
+    invalidateTelescope();
   }
 
   public List<Constructor> getConstructors() {
@@ -94,6 +95,7 @@ public class DataDefinition extends Definition {
   }
 
   public void addConstructor(Constructor constructor) {
+    constructor.setIndex(myConstructors.size());
     myConstructors.add(constructor);
   }
 
@@ -158,10 +160,11 @@ public class DataDefinition extends Definition {
       return null;
     }
 
-    ExprSubstitution subst = new ExprSubstitution();
-    LevelSubstitution polySubst = sortArgument.toLevelSubstitution();
-    params.addAll(DependentLink.Helper.toList(DependentLink.Helper.subst(myParameters, subst, polySubst)));
-    return new UniverseExpression(mySort.subst(polySubst));
+    return getSignatureCache().get(sortArgument, myParameters, mySort, sort -> {
+      LevelSubstitution polySubst = sort.toLevelSubstitution();
+      List<DependentLink> parameters = DependentLink.Helper.toList(DependentLink.Helper.subst(myParameters, new ExprSubstitution(), polySubst));
+      return new SignatureCache.Signature(parameters, new UniverseExpression(mySort.subst(polySubst)));
+    }).getTypeWithParams(params);
   }
 
   @Override
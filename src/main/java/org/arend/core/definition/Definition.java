@@ -3,6 +3,7 @@ package org.arend.core.definition;
 import org.arend.core.context.binding.Variable;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.context.param.EmptyDependentLink;
+import org.arend.core.context.param.Telescope;
 import org.arend.core.expr.Expression;
 import org.arend.core.expr.visitor.CompareVisitor;
 import org.arend.core.sort.Sort;
@@ -18,6 +19,8 @@ public abstract class Definition implements Variable {
   private TCReferable myReferable;
   private TypeCheckingStatus myStatus;
   private boolean myHasUniverses;
+  private final SignatureCache mySignatureCache = new SignatureCache();
+  private volatile Telescope myTelescope;
 
   public Definition(TCReferable referable, TypeCheckingStatus status) {
     myReferable = referable;
@@ -37,6 +40,19 @@ public abstract class Definition implements Variable {
     return EmptyDependentLink.getInstance();
   }
 
+  /**
+   * @return a snapshot of {@link #getParameters}; it is recomputed when the parameters are set or the status changes.
+   */
+  public Telescope getTelescope() {
+    DependentLink parameters = getParameters();
+    Telescope telescope = myTelescope;
+    if (telescope == null || telescope.getFirst() != parameters) {
+      telescope = Telescope.of(parameters);
+      myTelescope = telescope;
+    }
+    return telescope;
+  }
+
   public abstract Expression getTypeWithParams(List<? super DependentLink> params, Sort sortArgument);
 
   public abstract Expression getDefCall(Sort sortArgument, List<Expression> args);
@@ -159,6 +175,19 @@ public abstract class Definition implements Variable {
 
   public void setStatus(TypeCheckingStatus status) {
     myStatus = status;
+    mySignatureCache.clear();
+    myTelescope = null;
+  }
+
+  /**
+   * Should be invoked when the parameters are set since they may share the first link with the old ones.
+   */
+  protected void invalidateTelescope() {
+    myTelescope = null;
+  }
+
+  SignatureCache getSignatureCache() {
+    return mySignatureCache;
   }
 
   @Override
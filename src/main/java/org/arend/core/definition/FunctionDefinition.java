@@ -13,12 +13,14 @@ import org.arend.naming.reference.TCReferable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class FunctionDefinition extends Definition implements Function {
   private DependentLink myParameters;
   private Expression myResultType;
   private Expression myResultTypeLevel;
   private Body myBody;
+  private volatile Supplier<? extends Body> myBodyLoader;
   private List<Integer> myParametersTypecheckingOrder;
   private boolean myLemma;
   private List<Boolean> myGoodThisParameters = Collections.emptyList();
@@ -33,15 +35,36 @@ public class FunctionDefinition extends Definition implements Function {
 
   @Override
   public Body getBody() {
-    return myLemma ? null : myBody;
+    return myLemma ? null : getActualBody();
   }
 
   public Body getActualBody() {
+    if (myBodyLoader != null) {
+      loadBody();
+    }
     return myBody;
   }
 
+  private synchronized void loadBody() {
+    Supplier<? extends Body> loader = myBodyLoader;
+    if (loader != null) {
+      myBody = loader.get();
+      myBodyLoader = null;
+    }
+  }
+
   public void setBody(Body body) {
     myBody = body;
+    myBodyLoader = null;
+  }
+
+  /**
+   * Sets a function that computes the body when it is requested for the first time.
+   * It is used to deserialize bodies lazily.
+   */
+  public void setBodyLoader(Supplier<? extends Body> loader) {
+    myBody = null;
+    myBodyLoader = loader;
   }
 
   public boolean isLemma() {
@@ -59,6 +82,7 @@ public class FunctionDefinition extends Definition implements Function {
 
   public void setParameters(DependentLink parameters) {
     myParameters = parameters;
+    invalidateTelescope();
   }
 
   public Expression getResultType() {
@@ -139,10 +163,12 @@ public class FunctionDefinition extends Definition implements Function {
     if (!status().headerIsOK()) {
       return null;
     }
-    ExprSubstitution subst = new ExprSubstitution();
-    LevelSubstitution polySubst = sortArgument.toLevelSubstitution();
-    params.addAll(DependentLink.Helper.toList(DependentLink.Helper.subst(myParameters, subst, polySubst)));
-    return myResultType.subst(subst, polySubst);
+    return getSignatureCache().get(sortArgument, myParameters, myResultType, sort -> {
+      ExprSubstitution subst = new ExprSubstitution();
+      LevelSubstitution polySubst = sort.toLevelSubstitution();
+      List<DependentLink> parameters = DependentLink.Helper.toList(DependentLink.Helper.subst(myParameters, subst, polySubst));
+      return new SignatureCache.Signature(parameters, myResultType.subst(subst, polySubst));
+    }).getTypeWithParams(params);
   }
 
   @Override
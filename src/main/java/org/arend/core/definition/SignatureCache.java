@@ -0,0 +1,119 @@
+package org.arend.core.definition;
+
+import org.arend.core.context.binding.LevelVariable;
+import org.arend.core.context.binding.inference.InferenceLevelVariable;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.expr.Expression;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Memoizes signatures of a definition instantiated with sort arguments that do not contain inference variables.
+ * Instantiated signatures are shared between callers of {@link Definition#getTypeWithParams}, so they must not be modified.
+ * Cached signatures are dropped when the parameters or the result type of the definition are replaced and when its status changes.
+ */
+class SignatureCache {
+  private static final int MAX_SIZE = 8;
+
+  private Object myParameters;
+  private Object myResultType;
+  private Map<Key, Signature> mySignatures = Collections.emptyMap();
+
+  static class Signature {
+    private final List<DependentLink> myParameters;
+    private final Expression myType;
+
+    Signature(List<DependentLink> parameters, Expression type) {
+      myParameters = parameters;
+      myType = type;
+    }
+
+    Expression getTypeWithParams(List<? super DependentLink> params) {
+      params.addAll(myParameters);
+      return myType;
+    }
+  }
+
+  private static class Key {
+    private final LevelVariable myPVar;
+    private final int myPConstant;
+    private final int myPMaxConstant;
+    private final LevelVariable myHVar;
+    private final int myHConstant;
+    private final int myHMaxConstant;
+
+    Key(Level pLevel, Level hLevel) {
+      myPVar = pLevel.getVar();
+      myPConstant = pLevel.getConstant();
+      myPMaxConstant = pLevel.getMaxConstant();
+      myHVar = hLevel.getVar();
+      myHConstant = hLevel.getConstant();
+      myHMaxConstant = hLevel.getMaxConstant();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return myPVar == key.myPVar && myPConstant == key.myPConstant && myPMaxConstant == key.myPMaxConstant && myHVar == key.myHVar && myHConstant == key.myHConstant && myHMaxConstant == key.myHMaxConstant;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myPVar, myPConstant, myPMaxConstant, myHVar, myHConstant, myHMaxConstant);
+    }
+  }
+
+  /**
+   * @param sortArgument  the sort argument of the signature.
+   * @param parameters    the current parameters of the definition; cached signatures are dropped if they were computed for other parameters.
+   * @param resultType    the current result type of the definition.
+   * @param instantiate   computes the signature for a given sort argument.
+   */
+  Signature get(Sort sortArgument, Object parameters, Object resultType, Function<Sort, Signature> instantiate) {
+    if (sortArgument.getPLevel().getVar() instanceof InferenceLevelVariable || sortArgument.getHLevel().getVar() instanceof InferenceLevelVariable) {
+      return instantiate.apply(sortArgument);
+    }
+
+    Key key = new Key(sortArgument.getPLevel(), sortArgument.getHLevel());
+    synchronized (this) {
+      if (myParameters != parameters || myResultType != resultType) {
+        clear();
+        myParameters = parameters;
+        myResultType = resultType;
+      }
+      Signature signature = mySignatures.get(key);
+      if (signature != null) {
+        return signature;
+      }
+    }
+
+    Signature signature = instantiate.apply(sortArgument);
+    synchronized (this) {
+      if (myParameters == parameters && myResultType == resultType) {
+        if (mySignatures.isEmpty()) {
+          mySignatures = new LinkedHashMap<Key, Signature>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Signature> eldest) {
+              return size() > MAX_SIZE;
+            }
+          };
+        }
+        mySignatures.put(key, signature);
+      }
+    }
+    return signature;
+  }
+
+  synchronized void clear() {
+    if (!mySignatures.isEmpty()) {
+      mySignatures = Collections.emptyMap();
+    }
+    myParameters = null;
+    myResultType = null;
+  }
+}
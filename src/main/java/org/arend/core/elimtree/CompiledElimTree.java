@@ -0,0 +1,138 @@
+package org.arend.core.elimtree;
+
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.Constructor;
+
+import java.util.Map;
+
+/**
+ * An evaluation-oriented form of an {@link ElimTree}.
+ * The bindings of a node are stored in an array, and the children of a branch are stored in an array indexed by {@link Constructor#getIndex}.
+ * If the constructors of a branch cannot be indexed (for example, if they belong to different data types), lookups fall back to the original tree.
+ *
+ * It is built lazily by {@link ElimTree#getCompiled}, so the original tree must not be modified afterwards.
+ */
+public final class CompiledElimTree {
+  private static final DependentLink[] NO_BINDINGS = new DependentLink[0];
+  private static final Constructor[] NO_CONSTRUCTORS = new Constructor[0];
+  private static final CompiledElimTree[] NO_CHILDREN = new CompiledElimTree[0];
+
+  private final ElimTree myElimTree;
+  private final DependentLink[] myBindings;
+  private final Constructor[] myConstructors;
+  private final CompiledElimTree[] myChildren;
+  private final boolean myIndexed;
+  private final CompiledElimTree myTupleChild;
+  private final CompiledElimTree myDefaultChild;
+
+  CompiledElimTree(ElimTree elimTree) {
+    myElimTree = elimTree;
+
+    DependentLink parameters = elimTree.getParameters();
+    int size = DependentLink.Helper.size(parameters);
+    if (size == 0) {
+      myBindings = NO_BINDINGS;
+    } else {
+      myBindings = new DependentLink[size];
+      for (int i = 0; i < size; i++, parameters = parameters.getNext()) {
+        myBindings[i] = parameters;
+      }
+    }
+
+    if (!(elimTree instanceof BranchElimTree)) {
+      myConstructors = NO_CONSTRUCTORS;
+      myChildren = NO_CHILDREN;
+      myIndexed = true;
+      myTupleChild = null;
+      myDefaultChild = null;
+      return;
+    }
+
+    BranchElimTree branch = (BranchElimTree) elimTree;
+    ElimTree tupleChild = branch.getTupleChild();
+    myTupleChild = tupleChild == null ? null : tupleChild.getCompiled();
+    ElimTree defaultChild = branch.getChild(null);
+    myDefaultChild = defaultChild == null ? null : defaultChild.getCompiled();
+
+    int length = 0;
+    boolean indexed = true;
+    for (Map.Entry<Constructor, ElimTree> entry : branch.getChildren()) {
+      Constructor constructor = entry.getKey();
+      if (constructor == null || constructor instanceof BranchElimTree.TupleConstructor) {
+        continue;
+      }
+      int index = constructor.getIndex();
+      if (index < 0) {
+        indexed = false;
+        break;
+      }
+      length = Math.max(length, index + 1);
+    }
+
+    if (length == 0 || !indexed) {
+      myConstructors = NO_CONSTRUCTORS;
+      myChildren = NO_CHILDREN;
+      myIndexed = length == 0 && indexed;
+      return;
+    }
+
+    myConstructors = new Constructor[length];
+    myChildren = new CompiledElimTree[length];
+    for (Map.Entry<Constructor, ElimTree> entry : branch.getChildren()) {
+      Constructor constructor = entry.getKey();
+      if (constructor == null || constructor instanceof BranchElimTree.TupleConstructor) {
+        continue;
+      }
+      int index = constructor.getIndex();
+      if (myConstructors[index] != null) {
+        indexed = false;
+        break;
+      }
+      myConstructors[index] = constructor;
+      myChildren[index] = entry.getValue().getCompiled();
+    }
+    myIndexed = indexed;
+  }
+
+  public ElimTree getElimTree() {
+    return myElimTree;
+  }
+
+  /**
+   * @return the parameters of the node; the array must not be modified.
+   */
+  public DependentLink[] getBindings() {
+    return myBindings;
+  }
+
+  public boolean isLeaf() {
+    return myElimTree instanceof LeafElimTree;
+  }
+
+  /**
+   * Behaves as {@link BranchElimTree#getChild} for non-null constructors.
+   */
+  public CompiledElimTree getChild(Constructor constructor) {
+    if (myIndexed) {
+      int index = constructor.getIndex();
+      return index >= 0 && index < myConstructors.length && myConstructors[index] == constructor ? myChildren[index] : null;
+    }
+
+    ElimTree child = ((BranchElimTree) myElimTree).getChild(constructor);
+    return child == null ? null : child.getCompiled();
+  }
+
+  /**
+   * Behaves as {@link BranchElimTree#getTupleChild}.
+   */
+  public CompiledElimTree getTupleChild() {
+    return myTupleChild;
+  }
+
+  /**
+   * @return the child that does not match on the argument.
+   */
+  public CompiledElimTree getDefaultChild() {
+    return myDefaultChild;
+  }
+}
@@ -9,6 +9,7 @@ import java.util.List;
 
 public abstract class ElimTree implements Body {
   private final DependentLink myParameters;
+  private volatile CompiledElimTree myCompiled;
 
   ElimTree(DependentLink parameters) {
     myParameters = parameters;
@@ -18,6 +19,18 @@ public abstract class ElimTree implements Body {
     return myParameters;
   }
 
+  /**
+   * @return the compiled form of this tree; it is built on the first call.
+   */
+  public CompiledElimTree getCompiled() {
+    CompiledElimTree compiled = myCompiled;
+    if (compiled == null) {
+      compiled = new CompiledElimTree(this);
+      myCompiled = compiled;
+    }
+    return compiled;
+  }
+
   @Override
   public boolean equals(Object obj) {
     return obj instanceof ElimTree && CompareVisitor.compare(DummyEquations.getInstance(), this, (ElimTree) obj, null);
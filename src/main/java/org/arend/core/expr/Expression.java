@@ -27,8 +27,38 @@ import java.util.List;
 import java.util.Set;
 
 public abstract class Expression implements ExpectedType {
+  private int myStructuralHash;
+  private int myVariableMask;
+
   public abstract <P, R> R accept(ExpressionVisitor<? super P, ? extends R> visitor, P params);
 
+  /**
+   * @return a hash computed by {@link StructuralHashVisitor}; it is cached in the node.
+   */
+  public int getStructuralHash() {
+    int hash = myStructuralHash;
+    if (hash == 0) {
+      hash = StructuralHashVisitor.hash(this);
+      if (hash == 0) {
+        hash = 1;
+      }
+      myStructuralHash = hash;
+    }
+    return hash;
+  }
+
+  /**
+   * @return a mask computed by {@link VariableMaskVisitor}; it is cached in the node.
+   */
+  public int getVariableMask() {
+    int mask = myVariableMask;
+    if (mask == 0) {
+      mask = accept(VariableMaskVisitor.INSTANCE, null) | VariableMaskVisitor.COMPUTED;
+      myVariableMask = mask;
+    }
+    return mask;
+  }
+
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
@@ -0,0 +1,217 @@
+package org.arend.core.expr;
+
+import org.arend.core.context.binding.inference.InferenceLevelVariable;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+/**
+ * A table of canonical instances of closed expressions.
+ * An expression can be interned if it is an integer, a universe, or a call of a function, a data type or a constructor
+ * whose arguments are canonical instances themselves, so equal expressions are built bottom-up from the same instances.
+ * Hence, arguments are compared by identity and each canonical instance is found in constant time by its structural hash,
+ * which is cached in the node (see {@link Expression#getStructuralHash}).
+ *
+ * The table keeps weak references, so canonical instances are garbage collected when they are not used anymore.
+ * The table is thread-safe.
+ */
+public class ExpressionInterner {
+  private static volatile ExpressionInterner INSTANCE;
+
+  private final ReferenceQueue<Expression> myQueue = new ReferenceQueue<>();
+  private Entry[] myTable = new Entry[64];
+  private int mySize;
+  private long myHits;
+
+  private static class Entry extends WeakReference<Expression> {
+    final int hash;
+    Entry next;
+
+    Entry(Expression expression, int hash, Entry next, ReferenceQueue<Expression> queue) {
+      super(expression, queue);
+      this.hash = hash;
+      this.next = next;
+    }
+  }
+
+  /**
+   * @return the interner used by the deserialization or null if interning is disabled.
+   */
+  public static ExpressionInterner getInstance() {
+    return INSTANCE;
+  }
+
+  public static void setInstance(ExpressionInterner interner) {
+    INSTANCE = interner;
+  }
+
+  /**
+   * @return the canonical instance of {@code expr} or {@code expr} itself if it cannot be interned.
+   */
+  public <T extends Expression> T intern(T expr) {
+    if (!isInternable(expr, true)) {
+      return expr;
+    }
+    int hash = expr.getStructuralHash();
+
+    synchronized (this) {
+      expungeStaleEntries();
+      int index = indexFor(hash, myTable.length);
+      for (Entry entry = myTable[index]; entry != null; entry = entry.next) {
+        Expression canonical = entry.get();
+        if (entry.hash == hash && canonical != null && shallowEquals(canonical, expr)) {
+          myHits++;
+          @SuppressWarnings("unchecked") T result = (T) canonical;
+          return result;
+        }
+      }
+
+      myTable[index] = new Entry(expr, hash, myTable[index], myQueue);
+      if (++mySize > myTable.length * 3 / 4) {
+        resize();
+      }
+      return expr;
+    }
+  }
+
+  /**
+   * @return true if {@code expr} is a canonical instance.
+   */
+  public boolean isCanonical(Expression expr) {
+    if (!isInternable(expr, false)) {
+      return false;
+    }
+    int hash = expr.getStructuralHash();
+
+    synchronized (this) {
+      for (Entry entry = myTable[indexFor(hash, myTable.length)]; entry != null; entry = entry.next) {
+        if (entry.get() == expr) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  public synchronized int size() {
+    expungeStaleEntries();
+    return mySize;
+  }
+
+  /**
+   * @return the number of expressions that were replaced with existing canonical instances.
+   */
+  public synchronized long getHits() {
+    return myHits;
+  }
+
+  private static int indexFor(int hash, int length) {
+    return (hash ^ (hash >>> 16)) & (length - 1);
+  }
+
+  private void resize() {
+    Entry[] newTable = new Entry[myTable.length * 2];
+    for (Entry entry : myTable) {
+      while (entry != null) {
+        Entry next = entry.next;
+        int index = indexFor(entry.hash, newTable.length);
+        entry.next = newTable[index];
+        newTable[index] = entry;
+        entry = next;
+      }
+    }
+    myTable = newTable;
+  }
+
+  private void expungeStaleEntries() {
+    for (Object ref; (ref = myQueue.poll()) != null; ) {
+      Entry stale = (Entry) ref;
+      int index = indexFor(stale.hash, myTable.length);
+      Entry prev = null;
+      for (Entry entry = myTable[index]; entry != null; prev = entry, entry = entry.next) {
+        if (entry == stale) {
+          if (prev == null) {
+            myTable[index] = entry.next;
+          } else {
+            prev.next = entry.next;
+          }
+          mySize--;
+          break;
+        }
+      }
+    }
+  }
+
+  // Arguments must be canonical, so they are compared by identity
+
+  private boolean isInternable(Expression expr, boolean checkArguments) {
+    if (expr instanceof IntegerExpression) {
+      return true;
+    }
+    if (expr instanceof UniverseExpression) {
+      return isClosed(((UniverseExpression) expr).getSort());
+    }
+    if (!(expr instanceof FunCallExpression || expr instanceof DataCallExpression || expr instanceof ConCallExpression)) {
+      return false;
+    }
+
+    DefCallExpression defCall = (DefCallExpression) expr;
+    return isClosed(defCall.getSortArgument()) &&
+      (!checkArguments || (!(defCall instanceof ConCallExpression) || areCanonical(((ConCallExpression) defCall).getDataTypeArguments())) && areCanonical(defCall.getDefCallArguments()));
+  }
+
+  private boolean areCanonical(List<? extends Expression> args) {
+    for (Expression arg : args) {
+      if (!isCanonical(arg)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isClosed(Sort sort) {
+    return !(sort.getPLevel().getVar() instanceof InferenceLevelVariable) && !(sort.getHLevel().getVar() instanceof InferenceLevelVariable);
+  }
+
+  private static boolean equals(Level level1, Level level2) {
+    return level1.getVar() == level2.getVar() && level1.getConstant() == level2.getConstant() && level1.getMaxConstant() == level2.getMaxConstant();
+  }
+
+  private static boolean equals(Sort sort1, Sort sort2) {
+    return equals(sort1.getPLevel(), sort2.getPLevel()) && equals(sort1.getHLevel(), sort2.getHLevel());
+  }
+
+  private static boolean identicalArguments(List<? extends Expression> args1, List<? extends Expression> args2) {
+    if (args1.size() != args2.size()) {
+      return false;
+    }
+    for (int i = 0; i < args1.size(); i++) {
+      if (args1.get(i) != args2.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean shallowEquals(Expression expr1, Expression expr2) {
+    if (expr1.getClass() != expr2.getClass()) {
+      return false;
+    }
+    if (expr1 instanceof IntegerExpression) {
+      return ((IntegerExpression) expr1).isEqual((IntegerExpression) expr2);
+    }
+    if (expr1 instanceof UniverseExpression) {
+      return equals(((UniverseExpression) expr1).getSort(), ((UniverseExpression) expr2).getSort());
+    }
+
+    DefCallExpression defCall1 = (DefCallExpression) expr1;
+    DefCallExpression defCall2 = (DefCallExpression) expr2;
+    return defCall1.getDefinition() == defCall2.getDefinition() &&
+      equals(defCall1.getSortArgument(), defCall2.getSortArgument()) &&
+      (!(defCall1 instanceof ConCallExpression) || identicalArguments(((ConCallExpression) defCall1).getDataTypeArguments(), ((ConCallExpression) defCall2).getDataTypeArguments())) &&
+      identicalArguments(defCall1.getDefCallArguments(), defCall2.getDefCallArguments());
+  }
+}
@@ -35,6 +35,11 @@ public abstract class IntegerExpression extends Expression {
 
   public abstract IntegerExpression minus(int x);
 
+  /**
+   * Subtracts a natural number which is not greater than this one.
+   */
+  public abstract IntegerExpression subtract(IntegerExpression expr);
+
   public abstract IntegerExpression div(IntegerExpression expr);
 
   public abstract IntegerExpression mod(IntegerExpression expr);
@@ -121,6 +121,12 @@ public class SmallIntegerExpression extends IntegerExpression {
     return new SmallIntegerExpression(myInteger - x);
   }
 
+  @Override
+  public IntegerExpression subtract(IntegerExpression expr) {
+    assert compare(expr) >= 0;
+    return new SmallIntegerExpression(myInteger - expr.getSmallInteger());
+  }
+
   @Override
   public IntegerExpression div(IntegerExpression expr) {
     if (expr.isZero()) {
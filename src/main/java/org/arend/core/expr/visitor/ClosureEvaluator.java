@@ -0,0 +1,220 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.expr.*;
+import org.arend.core.expr.let.LetClause;
+import org.arend.core.subst.ExprSubstitution;
+import org.arend.core.subst.LevelSubstitution;
+import org.arend.core.subst.SubstVisitor;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.ComputationInterruptedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reduces expressions in an environment instead of substituting arguments into bodies at every beta step.
+ * Arguments are bound to closures which are evaluated on demand and at most once.
+ * An expression is substituted only when it cannot be reduced further, so a body is copied at most once.
+ * Expressions that are not lambdas, applications, variables or let expressions are normalized by {@link NormalizeVisitor}.
+ */
+class ClosureEvaluator {
+  private final NormalizeVisitor myNormalizer;
+
+  ClosureEvaluator(NormalizeVisitor normalizer) {
+    myNormalizer = normalizer;
+  }
+
+  private static class Environment {
+    private final Binding myBinding;
+    private final Closure myValue;
+    private final Environment myNext;
+    private final ExprSubstitution mySubstitution;
+    private final LevelSubstitution myLevelSubstitution;
+
+    private Environment(Binding binding, Closure value, Environment next, ExprSubstitution substitution, LevelSubstitution levelSubstitution) {
+      myBinding = binding;
+      myValue = value;
+      myNext = next;
+      mySubstitution = substitution;
+      myLevelSubstitution = levelSubstitution;
+    }
+
+    Environment(ExprSubstitution substitution, LevelSubstitution levelSubstitution) {
+      this(null, null, null, substitution, levelSubstitution);
+    }
+
+    Environment extend(Binding binding, Closure value) {
+      return new Environment(binding, value, this, mySubstitution, myLevelSubstitution);
+    }
+
+    boolean isEmpty() {
+      return myBinding == null && mySubstitution.isEmpty() && myLevelSubstitution.isEmpty();
+    }
+
+    Closure lookup(Binding binding) {
+      for (Environment env = this; env.myBinding != null; env = env.myNext) {
+        if (env.myBinding == binding) {
+          return env.myValue;
+        }
+      }
+      Expression value = mySubstitution.get(binding);
+      return value == null ? null : new Closure(value, EMPTY);
+    }
+  }
+
+  private static final Environment EMPTY = new Environment(new ExprSubstitution(), LevelSubstitution.EMPTY);
+
+  private static class Closure {
+    private final Expression myExpression;
+    private final Environment myEnvironment;
+    private Expression mySubstituted;
+    private Expression myWHNF;
+
+    Closure(Expression expression, Environment environment) {
+      myExpression = expression;
+      myEnvironment = environment;
+    }
+
+    Expression substitute() {
+      if (mySubstituted == null) {
+        mySubstituted = ClosureEvaluator.substitute(myExpression, myEnvironment);
+      }
+      return mySubstituted;
+    }
+  }
+
+  private static class EnvironmentSubstVisitor extends SubstVisitor {
+    private final Environment myEnvironment;
+
+    EnvironmentSubstVisitor(Environment environment) {
+      super(new ExprSubstitution(), environment.myLevelSubstitution);
+      myEnvironment = environment;
+    }
+
+    // Variables from the environment are not in the substitution
+    @Override
+    protected boolean isUnaffected(Expression expr) {
+      return false;
+    }
+
+    @Override
+    public Expression visitReference(ReferenceExpression expr, Void params) {
+      Expression result = getExprSubstitution().get(expr.getBinding());
+      if (result != null) {
+        return result;
+      }
+      Closure closure = myEnvironment.lookup(expr.getBinding());
+      return closure == null ? expr : closure.substitute();
+    }
+
+    @Override
+    public Expression visitInferenceReference(InferenceReferenceExpression expr, Void params) {
+      if (expr.getSubstExpression() == null) {
+        expr.getVariable().getBounds().removeIf(binding -> myEnvironment.lookup(binding) != null);
+      }
+      return super.visitInferenceReference(expr, params);
+    }
+  }
+
+  private static Expression substitute(Expression expr, Environment environment) {
+    return environment.isEmpty() ? expr : expr.accept(new EnvironmentSubstVisitor(environment), null);
+  }
+
+  Expression evaluate(Expression expr, NormalizeVisitor.Mode mode) {
+    return evaluate(expr, EMPTY, mode);
+  }
+
+  Expression evaluate(Expression expr, ExprSubstitution substitution, LevelSubstitution levelSubstitution, NormalizeVisitor.Mode mode) {
+    return evaluate(expr, new Environment(substitution, levelSubstitution), mode);
+  }
+
+  private Expression whnf(Closure closure) {
+    if (closure.myWHNF == null) {
+      closure.myWHNF = evaluate(closure.myExpression, closure.myEnvironment, NormalizeVisitor.Mode.WHNF);
+    }
+    return closure.myWHNF;
+  }
+
+  private Expression evaluate(Expression expr, Environment env, NormalizeVisitor.Mode mode) {
+    // The top of the stack is the first argument
+    Deque<Closure> stack = new ArrayDeque<>();
+    while (true) {
+      if (expr instanceof AppExpression) {
+        stack.push(new Closure(((AppExpression) expr).getArgument(), env));
+        expr = ((AppExpression) expr).getFunction();
+        continue;
+      }
+
+      if (expr instanceof LamExpression && !stack.isEmpty()) {
+        if (TypecheckingOrderingListener.CANCELLATION_INDICATOR.isCanceled()) {
+          throw new ComputationInterruptedException();
+        }
+
+        LamExpression lam = (LamExpression) expr;
+        SingleDependentLink link = lam.getParameters();
+        for (; link.hasNext() && !stack.isEmpty(); link = link.getNext()) {
+          env = env.extend(link, stack.pop());
+        }
+        if (!link.hasNext()) {
+          expr = lam.getBody();
+          continue;
+        }
+        expr = new LamExpression(lam.getResultSort(), link, lam.getBody());
+      }
+
+      if (expr instanceof ReferenceExpression) {
+        Closure closure = env.lookup(((ReferenceExpression) expr).getBinding());
+        if (closure != null) {
+          if (stack.isEmpty()) {
+            Expression result = whnf(closure);
+            return mode == NormalizeVisitor.Mode.WHNF ? result : result.accept(myNormalizer, mode);
+          }
+          if (closure.myWHNF != null) {
+            expr = closure.myWHNF;
+            env = EMPTY;
+          } else {
+            expr = closure.myExpression;
+            env = closure.myEnvironment;
+          }
+          continue;
+        }
+      }
+
+      if (expr instanceof LetExpression) {
+        for (LetClause clause : ((LetExpression) expr).getClauses()) {
+          env = env.extend(clause, new Closure(clause.getExpression(), env));
+        }
+        expr = ((LetExpression) expr).getExpression();
+        continue;
+      }
+
+      if (expr instanceof InferenceReferenceExpression && ((InferenceReferenceExpression) expr).getSubstExpression() != null) {
+        expr = ((InferenceReferenceExpression) expr).getSubstExpression();
+        continue;
+      }
+
+      Expression head = substitute(expr, env);
+      if (stack.isEmpty()) {
+        return head.accept(myNormalizer, mode);
+      }
+
+      head = head.accept(myNormalizer, NormalizeVisitor.Mode.WHNF);
+      if (head.isInstance(LamExpression.class)) {
+        expr = head.cast(LamExpression.class);
+        env = EMPTY;
+        continue;
+      }
+
+      if (mode == NormalizeVisitor.Mode.NF) {
+        head = head.accept(myNormalizer, mode);
+      }
+      while (!stack.isEmpty()) {
+        Expression arg = stack.pop().substitute();
+        head = AppExpression.make(head, mode == NormalizeVisitor.Mode.WHNF ? arg : arg.accept(myNormalizer, mode));
+      }
+      return head;
+    }
+  }
+}
@@ -12,6 +12,7 @@ import org.arend.core.elimtree.LeafElimTree;
 import org.arend.core.expr.*;
 import org.arend.core.expr.type.Type;
 import org.arend.core.expr.type.TypeExpression;
+import org.arend.core.sort.Level;
 import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.prelude.Prelude;
@@ -21,9 +22,13 @@ import org.arend.typechecking.implicitargs.equations.DummyEquations;
 import org.arend.typechecking.implicitargs.equations.Equations;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 @SuppressWarnings("BooleanMethodIsAlwaysInverted")
 public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
+  private static final LongAdder SYNTACTIC_CHECKS = new LongAdder();
+  private static final LongAdder SYNTACTIC_MATCHES = new LongAdder();
+
   private final Map<Binding, Binding> mySubstitution;
   private final Equations myEquations;
   private final Concrete.SourceNode mySourceNode;
@@ -37,14 +42,45 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     myCMP = cmp;
   }
 
+  /**
+   * Compares expressions; if they coincide syntactically, they are not normalized.
+   * The syntactic check is done only once here rather than in every recursive comparison since the latter would revisit the same subexpressions.
+   */
   public static boolean compare(Equations equations, Equations.CMP cmp, Expression expr1, Expression expr2, Concrete.SourceNode sourceNode) {
-    return new CompareVisitor(equations, cmp, sourceNode).compare(expr1, expr2);
+    CompareVisitor visitor = new CompareVisitor(equations, cmp, sourceNode);
+    expr1 = expr1.getCanonicalExpression();
+    expr2 = expr2.getCanonicalExpression();
+    SYNTACTIC_CHECKS.increment();
+    if (visitor.syntacticCompare(expr1, expr2)) {
+      SYNTACTIC_MATCHES.increment();
+      return true;
+    }
+    return visitor.compare(expr1, expr2);
   }
 
   public static boolean compare(Equations equations, ElimTree tree1, ElimTree tree2, Concrete.SourceNode sourceNode) {
     return new CompareVisitor(equations, Equations.CMP.EQ, sourceNode).compare(tree1, tree2);
   }
 
+  /**
+   * @return the number of comparisons that were checked for syntactic equality before the full comparison.
+   */
+  public static long getSyntacticChecks() {
+    return SYNTACTIC_CHECKS.sum();
+  }
+
+  /**
+   * @return the number of comparisons that were resolved by the syntactic check.
+   */
+  public static long getSyntacticMatches() {
+    return SYNTACTIC_MATCHES.sum();
+  }
+
+  public static void resetSyntacticStatistics() {
+    SYNTACTIC_CHECKS.reset();
+    SYNTACTIC_MATCHES.reset();
+  }
+
   private Boolean compare(ElimTree elimTree1, ElimTree elimTree2) {
     if (elimTree1 == elimTree2) {
       return true;
@@ -215,6 +251,118 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     return myNormalCompare && normalizedCompare(expr1.normalize(NormalizeVisitor.Mode.WHNF), expr2.normalize(NormalizeVisitor.Mode.WHNF));
   }
 
+  private static boolean syntacticCompare(Level level1, Level level2) {
+    return level1.getVar() == level2.getVar() && level1.getConstant() == level2.getConstant() && level1.getMaxConstant() == level2.getMaxConstant();
+  }
+
+  private static boolean syntacticCompare(Sort sort1, Sort sort2) {
+    return syntacticCompare(sort1.getPLevel(), sort2.getPLevel()) && syntacticCompare(sort1.getHLevel(), sort2.getHLevel());
+  }
+
+  private boolean syntacticCompare(List<? extends Expression> list1, List<? extends Expression> list2) {
+    if (list1.size() != list2.size()) {
+      return false;
+    }
+    for (int i = 0; i < list1.size(); i++) {
+      if (!syntacticCompare(list1.get(i), list2.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean syntacticCompare(DependentLink link1, DependentLink link2, List<Binding> bound) {
+    for (; link1.hasNext() && link2.hasNext(); link1 = link1.getNext(), link2 = link2.getNext()) {
+      if (link1.isExplicit() != link2.isExplicit() || !syntacticCompare(link1.getType().getExpr(), link2.getType().getExpr())) {
+        return false;
+      }
+      mySubstitution.put(link2, link1);
+      bound.add(link2);
+    }
+    return !link1.hasNext() && !link2.hasNext();
+  }
+
+  /**
+   * Checks if expressions coincide up to renaming of bound variables without normalizing them and without solving inference variables.
+   */
+  private boolean syntacticCompare(Expression expr1, Expression expr2) {
+    if (expr1 == expr2) {
+      return true;
+    }
+    if (expr1 instanceof IntegerExpression) {
+      return expr2 instanceof IntegerExpression && ((IntegerExpression) expr1).isEqual((IntegerExpression) expr2);
+    }
+    // Cached hashes of subexpressions are comparable only if no variables are bound by the check
+    if (expr1.getClass() != expr2.getClass() || mySubstitution.isEmpty() && expr1.getStructuralHash() != expr2.getStructuralHash()) {
+      return false;
+    }
+
+    if (expr1 instanceof AppExpression) {
+      return syntacticCompare(((AppExpression) expr1).getFunction(), ((AppExpression) expr2).getFunction()) && syntacticCompare(((AppExpression) expr1).getArgument(), ((AppExpression) expr2).getArgument());
+    }
+    if (expr1 instanceof DefCallExpression) {
+      DefCallExpression defCall1 = (DefCallExpression) expr1;
+      DefCallExpression defCall2 = (DefCallExpression) expr2;
+      if (defCall1.getDefinition() != defCall2.getDefinition() || !syntacticCompare(defCall1.getSortArgument(), defCall2.getSortArgument())) {
+        return false;
+      }
+      if (defCall1 instanceof ClassCallExpression) {
+        Map<ClassField, Expression> implemented1 = ((ClassCallExpression) defCall1).getImplementedHere();
+        Map<ClassField, Expression> implemented2 = ((ClassCallExpression) defCall2).getImplementedHere();
+        if (implemented1.size() != implemented2.size()) {
+          return false;
+        }
+        for (Map.Entry<ClassField, Expression> entry : implemented1.entrySet()) {
+          Expression impl2 = implemented2.get(entry.getKey());
+          if (impl2 == null || !syntacticCompare(entry.getValue(), impl2)) {
+            return false;
+          }
+        }
+      }
+      if (defCall1 instanceof ConCallExpression && !syntacticCompare(((ConCallExpression) defCall1).getDataTypeArguments(), ((ConCallExpression) defCall2).getDataTypeArguments())) {
+        return false;
+      }
+      return syntacticCompare(defCall1.getDefCallArguments(), defCall2.getDefCallArguments());
+    }
+    if (expr1 instanceof ReferenceExpression) {
+      Binding binding2 = ((ReferenceExpression) expr2).getBinding();
+      Binding subst2 = mySubstitution.get(binding2);
+      return (subst2 != null ? subst2 : binding2) == ((ReferenceExpression) expr1).getBinding();
+    }
+    if (expr1 instanceof InferenceReferenceExpression) {
+      return ((InferenceReferenceExpression) expr1).getSubstExpression() == null && ((InferenceReferenceExpression) expr1).getVariable() == ((InferenceReferenceExpression) expr2).getVariable();
+    }
+    if (expr1 instanceof UniverseExpression) {
+      return syntacticCompare(((UniverseExpression) expr1).getSort(), ((UniverseExpression) expr2).getSort());
+    }
+    if (expr1 instanceof TupleExpression) {
+      return syntacticCompare(((TupleExpression) expr1).getFields(), ((TupleExpression) expr2).getFields()) && syntacticCompare(((TupleExpression) expr1).getSigmaType(), ((TupleExpression) expr2).getSigmaType());
+    }
+    if (expr1 instanceof ProjExpression) {
+      return ((ProjExpression) expr1).getField() == ((ProjExpression) expr2).getField() && syntacticCompare(((ProjExpression) expr1).getExpression(), ((ProjExpression) expr2).getExpression());
+    }
+    if (expr1 instanceof NewExpression) {
+      return syntacticCompare(((NewExpression) expr1).getExpression(), ((NewExpression) expr2).getExpression());
+    }
+    if (!(expr1 instanceof LamExpression || expr1 instanceof PiExpression || expr1 instanceof SigmaExpression)) {
+      return false;
+    }
+
+    List<Binding> bound = new ArrayList<>();
+    boolean ok;
+    if (expr1 instanceof LamExpression) {
+      ok = syntacticCompare(((LamExpression) expr1).getParameters(), ((LamExpression) expr2).getParameters(), bound) && syntacticCompare(((LamExpression) expr1).getBody(), ((LamExpression) expr2).getBody());
+    } else if (expr1 instanceof PiExpression) {
+      ok = syntacticCompare(((PiExpression) expr1).getParameters(), ((PiExpression) expr2).getParameters(), bound) && syntacticCompare(((PiExpression) expr1).getCodomain(), ((PiExpression) expr2).getCodomain());
+    } else {
+      ok = syntacticCompare(((SigmaExpression) expr1).getParameters(), ((SigmaExpression) expr2).getParameters(), bound);
+    }
+    for (Binding binding : bound) {
+      mySubstitution.remove(binding);
+    }
+    return ok;
+  }
+
   private Boolean compareUnit(ClassCallExpression type1, Expression expr2, boolean correctOrder) {
     Expression type2 = expr2.getType();
     type2 = type2 == null ? null : type2.normalize(NormalizeVisitor.Mode.WHNF);
@@ -331,6 +479,9 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     if (!compareDef(expr1, defCall2, correctOrder)) {
       return false;
     }
+    if (expr1.getDefinition() == Prelude.SUC) {
+      return compareOffsets(expr1, defCall2, correctOrder);
+    }
     for (int i = 0; i < expr1.getDefCallArguments().size(); i++) {
       if (correctOrder ? !compare(expr1.getDefCallArguments().get(i), defCall2.getDefCallArguments().get(i)) : !compare(defCall2.getDefCallArguments().get(i), expr1.getDefCallArguments().get(i))) {
         return false;
@@ -339,6 +490,22 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     return true;
   }
 
+  /**
+   * Compares suc^k (x + m) with suc^k' (y + m') by cancelling the common offset at once rather than one constructor at a time.
+   */
+  private Boolean compareOffsets(Expression expr1, Expression expr2, boolean correctOrder) {
+    IntegerExpression offset1 = NormalizeVisitor.getOffset(expr1);
+    IntegerExpression offset2 = NormalizeVisitor.getOffset(expr2);
+    while (offset1 != null && offset2 != null) {
+      IntegerExpression offset = NormalizeVisitor.min(offset1, offset2);
+      expr1 = NormalizeVisitor.dropOffset(expr1, offset);
+      expr2 = NormalizeVisitor.dropOffset(expr2, offset);
+      offset1 = NormalizeVisitor.getOffset(expr1);
+      offset2 = NormalizeVisitor.getOffset(expr2);
+    }
+    return correctOrder ? compare(expr1, expr2) : compare(expr2, expr1);
+  }
+
   @Override
   public Boolean visitDefCall(DefCallExpression expr1, Expression expr2) {
     if (expr1 instanceof ConCallExpression && expr2.isInstance(IntegerExpression.class)) {
@@ -795,6 +962,17 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     if (constructor2 == Prelude.ZERO) {
       return true;
     }
-    return compare(expr.pred(), conCall2.getDefCallArguments().get(0));
+
+    // k = suc (x + m) if and only if k - 1 - m = x
+    IntegerExpression pred = expr.pred();
+    Expression arg2 = conCall2.getDefCallArguments().get(0);
+    FunCallExpression funCall2 = arg2.checkedCast(FunCallExpression.class);
+    if (funCall2 != null && funCall2.getDefinition() == Prelude.PLUS) {
+      IntegerExpression offset = funCall2.getDefCallArguments().get(1).checkedCast(IntegerExpression.class);
+      if (offset != null) {
+        return pred.compare(offset) >= 0 && compare(pred.subtract(offset), funCall2.getDefCallArguments().get(0));
+      }
+    }
+    return compare(pred, arg2);
   }
 }
@@ -35,6 +35,10 @@ public class ElimBindingVisitor extends BaseExpressionVisitor<Void, Expression>
   }
 
   private Expression findBindings(Expression expression, boolean normalize) {
+    if (VariableMaskVisitor.isClosed(expression)) {
+      myFoundVariable = null;
+      return expression;
+    }
     myFoundVariable = expression.accept(myVisitor, null);
     if (myFoundVariable == null) {
       return expression;
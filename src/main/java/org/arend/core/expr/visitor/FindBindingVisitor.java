@@ -4,6 +4,7 @@ import org.arend.core.context.binding.Variable;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.definition.ClassField;
 import org.arend.core.definition.Constructor;
+import org.arend.core.definition.Definition;
 import org.arend.core.elimtree.BranchElimTree;
 import org.arend.core.elimtree.ElimTree;
 import org.arend.core.elimtree.LeafElimTree;
@@ -15,9 +16,27 @@ import java.util.Set;
 
 public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
   private final Set<? extends Variable> myBindings;
+  private final int myMask;
 
   public FindBindingVisitor(Set<? extends Variable> binding) {
     myBindings = binding;
+    myMask = getMask(binding);
+  }
+
+  // Calls of definitions other than fields are not reflected in variable masks, so they disable pruning
+  private static int getMask(Set<? extends Variable> bindings) {
+    int mask = 0;
+    for (Variable binding : bindings) {
+      if (binding instanceof Definition && !(binding instanceof ClassField)) {
+        return -1;
+      }
+      mask |= VariableMaskVisitor.getMask(binding);
+    }
+    return mask;
+  }
+
+  private boolean isUnaffected(Expression expr) {
+    return !VariableMaskVisitor.mayContain(expr, myMask);
   }
 
   Set<? extends Variable> getBindings() {
@@ -26,6 +45,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitApp(AppExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     Variable result = expr.getFunction().accept(this, null);
     if (result != null) {
       return result;
@@ -35,6 +57,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitDefCall(DefCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     for (Expression arg : expr.getDefCallArguments()) {
       Variable result = arg.accept(this, null);
       if (result != null) {
@@ -46,6 +71,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitConCall(ConCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     for (Expression arg : expr.getDataTypeArguments()) {
       Variable result = arg.accept(this, null);
       if (result != null) {
@@ -78,12 +106,18 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitLam(LamExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     Variable result = visitDependentLink(expr.getParameters());
     return result != null ? result : expr.getBody().accept(this, null);
   }
 
   @Override
   public Variable visitPi(PiExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     Variable result = visitDependentLink(expr.getParameters());
     return result != null ? result : expr.getCodomain().accept(this, null);
   }
@@ -100,6 +134,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitTuple(TupleExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     for (Expression field : expr.getFields()) {
       Variable result = field.accept(this, null);
       if (result != null) {
@@ -111,11 +148,17 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitSigma(SigmaExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     return visitDependentLink(expr.getParameters());
   }
 
   @Override
   public Variable visitProj(ProjExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     return expr.getExpression().accept(this, null);
   }
 
@@ -137,6 +180,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitLet(LetExpression letExpression, Void params) {
+    if (isUnaffected(letExpression)) {
+      return null;
+    }
     for (LetClause clause : letExpression.getClauses()) {
       Variable result = clause.getExpression().accept(this, null);
       if (result != null) {
@@ -197,6 +243,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitOfType(OfTypeExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return null;
+    }
     Variable result = expr.getExpression().accept(this, null);
     return result != null ? result : expr.getTypeOf().accept(this, null);
   }
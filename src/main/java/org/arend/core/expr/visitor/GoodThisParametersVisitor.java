@@ -73,7 +73,7 @@ public class GoodThisParametersVisitor extends VoidExpressionVisitor<Void> {
         int toSkip = entry.getKey() == null ? 1 :
           entry.getKey() instanceof BranchElimTree.TupleConstructor
             ? ((BranchElimTree.TupleConstructor) entry.getKey()).getLength()
-            : DependentLink.Helper.size(entry.getKey().getParameters());
+            : entry.getKey().getTelescope().size();
         checkElimTree(entry.getValue(), index, skip + toSkip);
       }
     }
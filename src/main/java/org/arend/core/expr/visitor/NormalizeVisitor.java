@@ -8,6 +8,7 @@ import org.arend.core.definition.*;
 import org.arend.core.elimtree.*;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
+import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.core.subst.LevelSubstitution;
 import org.arend.core.subst.SubstVisitor;
@@ -23,13 +24,59 @@ import static org.arend.core.expr.ExpressionFactory.*;
 public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mode, Expression>  {
   public enum Mode { WHNF, NF, RNF }
 
+  private static final IntegerExpression ONE = new SmallIntegerExpression(1);
   public static final NormalizeVisitor INSTANCE = new NormalizeVisitor();
 
+  private final ThreadLocal<WHNFCache> myWHNFCache = new ThreadLocal<>();
+  private final ClosureEvaluator myClosureEvaluator = new ClosureEvaluator(this);
+  private volatile boolean myUseClosures;
+
   private NormalizeVisitor() {
   }
 
+  /**
+   * @return the cache used on the current thread or null if caching is disabled.
+   */
+  public WHNFCache getWHNFCache() {
+    return myWHNFCache.get();
+  }
+
+  /**
+   * Enables caching of weak head normal forms of closed function calls on the current thread.
+   * Typechecking sessions install their cache with this method (see {@link org.arend.typechecking.order.listener.TypecheckingOrderingListener#setWHNFCache}).
+   *
+   * @param cache the cache or null to disable caching.
+   * @return the previous cache.
+   */
+  public WHNFCache setWHNFCache(WHNFCache cache) {
+    WHNFCache prev = myWHNFCache.get();
+    if (cache == null) {
+      myWHNFCache.remove();
+    } else {
+      myWHNFCache.set(cache);
+    }
+    return prev;
+  }
+
+  public boolean isUsingClosures() {
+    return myUseClosures;
+  }
+
+  /**
+   * Switches between the substitution-based reduction and {@link ClosureEvaluator}.
+   * The latter binds arguments of beta redexes and clauses in an environment and substitutes each body at most once.
+   * It is used only in modes WHNF and NF.
+   */
+  public void setUsingClosures(boolean useClosures) {
+    myUseClosures = useClosures;
+  }
+
   @Override
   public Expression visitApp(AppExpression expr, Mode mode) {
+    if (myUseClosures && mode != Mode.RNF) {
+      return myClosureEvaluator.evaluate(expr, mode);
+    }
+
     List<Expression> args = new ArrayList<>();
     Expression function = expr;
     while (function.isInstance(AppExpression.class)) {
@@ -122,9 +169,12 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
         return arg1.accept(this, mode);
       }
 
-      if (mode != Mode.WHNF) {
-        arg1 = arg1.accept(this, mode);
+      // x + k evaluates to suc (x + (k - 1)), so we do not need to build a chain of k constructors to get a weak head normal form
+      if (mode == Mode.WHNF) {
+        return Suc(intExpr2.isOne() ? arg1 : makePlus(expr.getSortArgument(), arg1, intExpr2.pred()));
       }
+
+      arg1 = arg1.accept(this, mode);
       for (int i = 0; intExpr2.compare(i) > 0; i++) {
         arg1 = Suc(arg1);
       }
@@ -144,6 +194,46 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     return result;
   }
 
+  private static Expression makePlus(Sort sortArgument, Expression arg1, IntegerExpression arg2) {
+    List<Expression> args = new ArrayList<>(2);
+    args.add(arg1);
+    args.add(arg2);
+    return new FunCallExpression(Prelude.PLUS, sortArgument, args);
+  }
+
+  /**
+   * @return 1 if the expression is suc x, k if it is x + k for some literal k > 0, and null otherwise.
+   */
+  static IntegerExpression getOffset(Expression expr) {
+    ConCallExpression conCall = expr.checkedCast(ConCallExpression.class);
+    if (conCall != null) {
+      return conCall.getDefinition() == Prelude.SUC ? ONE : null;
+    }
+    FunCallExpression funCall = expr.checkedCast(FunCallExpression.class);
+    if (funCall == null || funCall.getDefinition() != Prelude.PLUS) {
+      return null;
+    }
+    IntegerExpression intExpr = funCall.getDefCallArguments().get(1).checkedCast(IntegerExpression.class);
+    return intExpr == null || intExpr.isZero() ? null : intExpr;
+  }
+
+  /**
+   * Subtracts a number which is not greater than {@link #getOffset} from the expression.
+   */
+  static Expression dropOffset(Expression expr, IntegerExpression offset) {
+    ConCallExpression conCall = expr.checkedCast(ConCallExpression.class);
+    if (conCall != null) {
+      return conCall.getDefCallArguments().get(0);
+    }
+    FunCallExpression funCall = expr.cast(FunCallExpression.class);
+    IntegerExpression intExpr = funCall.getDefCallArguments().get(1).cast(IntegerExpression.class);
+    return intExpr.isEqual(offset) ? funCall.getDefCallArguments().get(0) : makePlus(funCall.getSortArgument(), funCall.getDefCallArguments().get(0), intExpr.subtract(offset));
+  }
+
+  static IntegerExpression min(IntegerExpression expr1, IntegerExpression expr2) {
+    return expr1.compare(expr2) <= 0 ? expr1 : expr2;
+  }
+
   private Expression normalizeMinus(DefCallExpression expr, Mode mode) {
     List<? extends Expression> defCallArgs = expr.getDefCallArguments();
     Expression arg1 = defCallArgs.get(0).accept(this, Mode.WHNF);
@@ -160,15 +250,16 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
         return mode == Mode.WHNF ? Neg(arg2) : Neg(arg2.accept(this, mode));
       }
 
-      ConCallExpression conCall2 = arg2.checkedCast(ConCallExpression.class);
-      while (!intExpr1.isZero() && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-        intExpr1 = intExpr1.pred();
-        arg2 = conCall2.getDefCallArguments().get(0);
-        conCall2 = arg2.checkedCast(ConCallExpression.class);
+      IntegerExpression offset2 = getOffset(arg2);
+      while (!intExpr1.isZero() && offset2 != null) {
+        IntegerExpression offset = min(intExpr1, offset2);
+        intExpr1 = intExpr1.subtract(offset);
+        arg2 = dropOffset(arg2, offset);
+        offset2 = getOffset(arg2);
       }
 
-      if (conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-        return Neg(conCall2);
+      if (offset2 != null) {
+        return Neg(arg2);
       }
 
       List<Expression> newDefCallArgs = new ArrayList<>(2);
@@ -188,14 +279,16 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     arg2 = arg2.accept(this, Mode.WHNF);
     if (arg2.isInstance(IntegerExpression.class)) {
       IntegerExpression intExpr2 = arg2.cast(IntegerExpression.class);
-      while (!intExpr2.isZero() && conCall1 != null && conCall1.getDefinition() == Prelude.SUC) {
-        intExpr2 = intExpr2.pred();
-        arg1 = conCall1.getDefCallArguments().get(0);
-        conCall1 = arg1.checkedCast(ConCallExpression.class);
+      IntegerExpression offset1 = getOffset(arg1);
+      while (!intExpr2.isZero() && offset1 != null) {
+        IntegerExpression offset = min(intExpr2, offset1);
+        intExpr2 = intExpr2.subtract(offset);
+        arg1 = dropOffset(arg1, offset);
+        offset1 = getOffset(arg1);
       }
 
-      if (conCall1 != null && conCall1.getDefinition() == Prelude.SUC) {
-        return Pos(conCall1);
+      if (offset1 != null) {
+        return Pos(arg1);
       }
 
       List<Expression> newDefCallArgs = new ArrayList<>(2);
@@ -204,12 +297,14 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
       return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
     }
 
-    ConCallExpression conCall2 = arg2.checkedCast(ConCallExpression.class);
-    while (conCall1 != null && conCall1.getDefinition() == Prelude.SUC && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-      arg1 = conCall1.getDefCallArguments().get(0);
-      conCall1 = arg1.checkedCast(ConCallExpression.class);
-      arg2 = conCall2.getDefCallArguments().get(0);
-      conCall2 = arg2.checkedCast(ConCallExpression.class);
+    IntegerExpression offset1 = getOffset(arg1);
+    IntegerExpression offset2 = getOffset(arg2);
+    while (offset1 != null && offset2 != null) {
+      IntegerExpression offset = min(offset1, offset2);
+      arg1 = dropOffset(arg1, offset);
+      offset1 = getOffset(arg1);
+      arg2 = dropOffset(arg2, offset);
+      offset2 = getOffset(arg2);
     }
 
     List<Expression> newDefCallArgs = new ArrayList<>(2);
@@ -384,17 +479,25 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
       return applyDefCall(expr, mode);
     }
 
-    Expression result = eval(elimTree, defCallArgs, getDataTypeArgumentsSubstitution(expr), levelSubstitution);
+    ExprSubstitution substitution = getDataTypeArgumentsSubstitution(expr);
+    LeafElimTree leaf = findLeaf(elimTree, defCallArgs, substitution);
 
     if (TypecheckingOrderingListener.CANCELLATION_INDICATOR.isCanceled()) {
       throw new ComputationInterruptedException();
     }
 
-    return result == null ? applyDefCall(expr, mode) : result.accept(this, mode);
+    return leaf == null ? applyDefCall(expr, mode) : evalLeaf(leaf, substitution, levelSubstitution, mode);
   }
 
-  private Stack<Expression> makeStack(List<? extends Expression> arguments) {
-    Stack<Expression> stack = new Stack<>();
+  private Expression evalLeaf(LeafElimTree leaf, ExprSubstitution substitution, LevelSubstitution levelSubstitution, Mode mode) {
+    if (myUseClosures && mode != Mode.RNF) {
+      return myClosureEvaluator.evaluate(leaf.getExpression(), substitution, levelSubstitution, mode);
+    }
+    return leaf.getExpression().subst(substitution, levelSubstitution).accept(this, mode);
+  }
+
+  private Deque<Expression> makeStack(List<? extends Expression> arguments) {
+    Deque<Expression> stack = new ArrayDeque<>(arguments.size() * 2);
     for (int i = arguments.size() - 1; i >= 0; i--) {
       stack.push(arguments.get(i));
     }
@@ -402,39 +505,46 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
   }
 
   public Expression eval(ElimTree elimTree, List<? extends Expression> arguments, ExprSubstitution substitution, LevelSubstitution levelSubstitution) {
-    Stack<Expression> stack = makeStack(arguments);
+    LeafElimTree leaf = findLeaf(elimTree, arguments, substitution);
+    return leaf == null ? null : leaf.getExpression().subst(substitution, levelSubstitution);
+  }
+
+  private LeafElimTree findLeaf(ElimTree elimTree, List<? extends Expression> arguments, ExprSubstitution substitution) {
+    Deque<Expression> stack = makeStack(arguments);
+    CompiledElimTree tree = elimTree.getCompiled();
 
     while (true) {
-      for (DependentLink link = elimTree.getParameters(); link.hasNext(); link = link.getNext()) {
-        substitution.add(link, stack.pop());
+      for (DependentLink binding : tree.getBindings()) {
+        substitution.add(binding, stack.pop());
       }
-      if (elimTree instanceof LeafElimTree) {
-        return ((LeafElimTree) elimTree).getExpression().subst(substitution, levelSubstitution);
+      if (tree.isLeaf()) {
+        return (LeafElimTree) tree.getElimTree();
       }
 
-      elimTree = updateStack(stack, elimTree);
-      if (elimTree == null) {
+      tree = updateStack(stack, tree);
+      if (tree == null) {
         return null;
       }
     }
   }
 
   public boolean doesEvaluate(ElimTree elimTree, List<? extends Expression> arguments, boolean might) {
-    Stack<Expression> stack = makeStack(arguments);
+    Deque<Expression> stack = makeStack(arguments);
+    CompiledElimTree tree = elimTree.getCompiled();
 
     while (true) {
-      for (DependentLink link = elimTree.getParameters(); link.hasNext(); link = link.getNext()) {
+      for (int i = tree.getBindings().length; i > 0; i--) {
         if (stack.isEmpty()) {
           return true;
         }
         stack.pop();
       }
-      if (elimTree instanceof LeafElimTree || stack.isEmpty()) {
+      if (tree.isLeaf() || stack.isEmpty()) {
         return true;
       }
 
-      elimTree = updateStack(stack, elimTree);
-      if (elimTree == null) {
+      tree = updateStack(stack, tree);
+      if (tree == null) {
         if (!might) {
           return false;
         }
@@ -444,7 +554,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     }
   }
 
-  private ElimTree updateStack(Stack<Expression> stack, ElimTree elimTree) {
+  private CompiledElimTree updateStack(Deque<Expression> stack, CompiledElimTree elimTree) {
     Expression argument = stack.peek().accept(this, Mode.WHNF);
     ConCallExpression conCall = argument.checkedCast(ConCallExpression.class);
     Constructor constructor = conCall == null ? null : conCall.getDefinition();
@@ -455,7 +565,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
       }
     }
     boolean isPatternMatching = constructor != null || argument.isInstance(TupleExpression.class) || argument.isInstance(NewExpression.class);
-    elimTree = constructor == null && isPatternMatching ? ((BranchElimTree) elimTree).getTupleChild() : ((BranchElimTree) elimTree).getChild(constructor);
+    elimTree = constructor != null ? elimTree.getChild(constructor) : isPatternMatching ? elimTree.getTupleChild() : elimTree.getDefaultChild();
     if (elimTree == null) {
       return null;
     }
@@ -528,6 +638,20 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     }
 
     if (expr.getDefinition() instanceof Function) {
+      WHNFCache cache = mode == Mode.WHNF && expr instanceof FunCallExpression ? myWHNFCache.get() : null;
+      if (cache != null && WHNFCache.isComplete(((FunCallExpression) expr).getDefinition())) {
+        WHNFCache.Key key = cache.makeKey((FunCallExpression) expr);
+        if (key != null) {
+          Expression result = cache.get(key);
+          if (result == null) {
+            result = visitDefCall(expr, expr.getSortArgument().toLevelSubstitution(), mode);
+            if (WHNFCache.isCacheable(result)) {
+              cache.put(key, result);
+            }
+          }
+          return result;
+        }
+      }
       return visitDefCall(expr, expr.getSortArgument().toLevelSubstitution(), mode);
     }
 
@@ -672,9 +796,10 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
 
   @Override
   public Expression visitCase(CaseExpression expr, Mode mode) {
-    Expression result = eval(expr.getElimTree(), expr.getArguments(), new ExprSubstitution(), LevelSubstitution.EMPTY);
-    if (result != null) {
-      return result.accept(this, mode);
+    ExprSubstitution leafSubstitution = new ExprSubstitution();
+    LeafElimTree leaf = findLeaf(expr.getElimTree(), expr.getArguments(), leafSubstitution);
+    if (leaf != null) {
+      return evalLeaf(leaf, leafSubstitution, LevelSubstitution.EMPTY, mode);
     }
     if (mode == Mode.WHNF) {
       return expr;
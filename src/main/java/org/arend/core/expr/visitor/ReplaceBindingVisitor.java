@@ -40,6 +40,11 @@ public class ReplaceBindingVisitor extends SubstVisitor {
     return false;
   }
 
+  @Override
+  protected boolean isUnaffected(Expression expr) {
+    return !VariableMaskVisitor.mayContain(expr, VariableMaskVisitor.getMask(myBinding) | getExprSubstitution().getVariableMask());
+  }
+
   @Override
   public Expression visitReference(ReferenceExpression expr, Void params) {
     if (expr.getBinding() == myBinding) {
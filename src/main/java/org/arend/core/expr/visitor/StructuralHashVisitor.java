@@ -0,0 +1,187 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.expr.*;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes hashes that do not depend on names of bound variables and solutions of inference variables.
+ * References to variables bound inside the expression are hashed by their de Bruijn indices, and free variables are hashed by identity.
+ * Only immutable parts of expressions are hashed, so hashes can be cached in nodes (see {@link Expression#getStructuralHash}).
+ * Syntactically equal expressions have equal hashes.
+ *
+ * Since de Bruijn indices do not depend on the context, the cached hash of a subexpression is reused if it does not refer to variables bound outside of it.
+ */
+public class StructuralHashVisitor implements ExpressionVisitor<Void, Integer> {
+  private final Map<Binding, Integer> myBound = new HashMap<>();
+  private int myBoundMask;
+
+  private StructuralHashVisitor() {
+  }
+
+  /**
+   * Computes the hash of an expression; use {@link Expression#getStructuralHash} to get the cached value.
+   */
+  public static int hash(Expression expr) {
+    return expr.accept(new StructuralHashVisitor(), null);
+  }
+
+  private int hashExpr(Expression expr) {
+    return myBound.isEmpty() || !VariableMaskVisitor.mayContain(expr, myBoundMask) ? expr.getStructuralHash() : expr.accept(this, null);
+  }
+
+  private static int hash(Level level) {
+    return 31 * (31 * (level.getVar() == null ? 0 : System.identityHashCode(level.getVar())) + level.getConstant()) + level.getMaxConstant();
+  }
+
+  private static int hash(Sort sort) {
+    return 31 * hash(sort.getPLevel()) + hash(sort.getHLevel());
+  }
+
+  private int hashArguments(int hash, List<? extends Expression> args) {
+    for (Expression arg : args) {
+      hash = 31 * hash + hashExpr(arg);
+    }
+    return hash;
+  }
+
+  private int hashDefCall(DefCallExpression expr, int hash) {
+    hash = 31 * (31 * hash + expr.getDefinition().hashCode()) + hash(expr.getSortArgument());
+    return hashArguments(hash, expr.getDefCallArguments());
+  }
+
+  /**
+   * Hashes the types of parameters and binds them; they should be unbound with {@link #unbind}.
+   */
+  private int bind(int hash, DependentLink link) {
+    for (; link.hasNext(); link = link.getNext()) {
+      hash = 31 * (31 * hash + (link.isExplicit() ? 1 : 0)) + hashExpr(link.getTypeExpr());
+      myBound.put(link, myBound.size());
+      myBoundMask |= VariableMaskVisitor.getMask(link);
+    }
+    return hash;
+  }
+
+  private void unbind(DependentLink link) {
+    for (; link.hasNext(); link = link.getNext()) {
+      myBound.remove(link);
+    }
+    myBoundMask = VariableMaskVisitor.getMask(myBound.keySet());
+  }
+
+  @Override
+  public Integer visitApp(AppExpression expr, Void params) {
+    return 31 * (31 + hashExpr(expr.getFunction())) + hashExpr(expr.getArgument());
+  }
+
+  @Override
+  public Integer visitFunCall(FunCallExpression expr, Void params) {
+    return hashDefCall(expr, 2);
+  }
+
+  @Override
+  public Integer visitConCall(ConCallExpression expr, Void params) {
+    return hashDefCall(expr, hashArguments(3, expr.getDataTypeArguments()));
+  }
+
+  @Override
+  public Integer visitDataCall(DataCallExpression expr, Void params) {
+    return hashDefCall(expr, 4);
+  }
+
+  @Override
+  public Integer visitFieldCall(FieldCallExpression expr, Void params) {
+    return 31 * (31 * (31 * 5 + expr.getDefinition().hashCode()) + hash(expr.getSortArgument())) + hashExpr(expr.getArgument());
+  }
+
+  @Override
+  public Integer visitClassCall(ClassCallExpression expr, Void params) {
+    // Implementations are not hashed since they can be modified
+    return 31 * (31 * 6 + expr.getDefinition().hashCode()) + hash(expr.getSortArgument());
+  }
+
+  @Override
+  public Integer visitReference(ReferenceExpression expr, Void params) {
+    Integer level = myBound.get(expr.getBinding());
+    return level != null ? 31 * 7 + myBound.size() - level : System.identityHashCode(expr.getBinding());
+  }
+
+  @Override
+  public Integer visitInferenceReference(InferenceReferenceExpression expr, Void params) {
+    return 31 * 8 + System.identityHashCode(expr.getVariable());
+  }
+
+  @Override
+  public Integer visitLam(LamExpression expr, Void params) {
+    int hash = bind(9, expr.getParameters());
+    hash = 31 * hash + hashExpr(expr.getBody());
+    unbind(expr.getParameters());
+    return hash;
+  }
+
+  @Override
+  public Integer visitPi(PiExpression expr, Void params) {
+    int hash = bind(10, expr.getParameters());
+    hash = 31 * hash + hashExpr(expr.getCodomain());
+    unbind(expr.getParameters());
+    return hash;
+  }
+
+  @Override
+  public Integer visitSigma(SigmaExpression expr, Void params) {
+    int hash = bind(11, expr.getParameters());
+    unbind(expr.getParameters());
+    return hash;
+  }
+
+  @Override
+  public Integer visitUniverse(UniverseExpression expr, Void params) {
+    return 31 * 12 + hash(expr.getSort());
+  }
+
+  @Override
+  public Integer visitError(ErrorExpression expr, Void params) {
+    return 13;
+  }
+
+  @Override
+  public Integer visitTuple(TupleExpression expr, Void params) {
+    return hashArguments(31 * 14 + hashExpr(expr.getSigmaType()), expr.getFields());
+  }
+
+  @Override
+  public Integer visitProj(ProjExpression expr, Void params) {
+    return 31 * (31 * 15 + expr.getField()) + hashExpr(expr.getExpression());
+  }
+
+  @Override
+  public Integer visitNew(NewExpression expr, Void params) {
+    return 31 * 16 + hashExpr(expr.getExpression());
+  }
+
+  @Override
+  public Integer visitLet(LetExpression expr, Void params) {
+    return 17;
+  }
+
+  @Override
+  public Integer visitCase(CaseExpression expr, Void params) {
+    return 18;
+  }
+
+  @Override
+  public Integer visitOfType(OfTypeExpression expr, Void params) {
+    return 19;
+  }
+
+  @Override
+  public Integer visitInteger(IntegerExpression expr, Void params) {
+    return 31 * 20 + (expr instanceof SmallIntegerExpression ? ((SmallIntegerExpression) expr).getInteger() : expr.getBigInteger().intValue());
+  }
+}
@@ -0,0 +1,248 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Variable;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.expr.*;
+import org.arend.core.expr.let.LetClause;
+import org.arend.core.expr.type.Type;
+import org.arend.core.sort.Sort;
+
+import java.util.*;
+
+/**
+ * Computes masks of variables that may occur freely in expressions.
+ * A mask is a Bloom filter of free bindings and fields of field calls together with the flag {@link #LEVELS}, which is set if the expression contains level variables.
+ * If the bit of a variable is not set in the mask of an expression, then the variable does not occur in it freely.
+ *
+ * Masks are cached in nodes (see {@link Expression#getVariableMask}).
+ * Expressions that can be modified, that is, class calls and inference references, as well as case expressions are marked with {@link #UNKNOWN}.
+ */
+public class VariableMaskVisitor implements ExpressionVisitor<Void, Integer> {
+  public static final VariableMaskVisitor INSTANCE = new VariableMaskVisitor();
+
+  private static final int VARIABLE_BITS = 29;
+  public static final int VARIABLES = (1 << VARIABLE_BITS) - 1;
+  public static final int LEVELS = 1 << VARIABLE_BITS;
+  public static final int UNKNOWN = 1 << (VARIABLE_BITS + 1);
+  public static final int COMPUTED = 1 << (VARIABLE_BITS + 2);
+
+  private VariableMaskVisitor() {
+  }
+
+  public static int getMask(Variable variable) {
+    int hash = System.identityHashCode(variable) * 0x9E3779B9;
+    return 1 << ((hash >>> 1) % VARIABLE_BITS);
+  }
+
+  public static int getMask(Collection<? extends Variable> variables) {
+    int mask = 0;
+    for (Variable variable : variables) {
+      mask |= getMask(variable);
+    }
+    return mask;
+  }
+
+  /**
+   * @return false if {@code expr} does not contain variables from {@code mask}.
+   */
+  public static boolean mayContain(Expression expr, int mask) {
+    int exprMask = expr.getVariableMask();
+    return (exprMask & UNKNOWN) != 0 || (exprMask & mask) != 0;
+  }
+
+  /**
+   * @return true if {@code expr} does not have free variables.
+   */
+  public static boolean isClosed(Expression expr) {
+    return (expr.getVariableMask() & (VARIABLES | UNKNOWN)) == 0;
+  }
+
+  private static int getMask(Sort sort) {
+    return sort.getPLevel().isClosed() && sort.getHLevel().isClosed() ? 0 : LEVELS;
+  }
+
+  private static int getMask(DependentLink link) {
+    int mask = 0;
+    for (; link.hasNext(); link = link.getNext()) {
+      link = link.getNextTyped(null);
+      Type type = link.getType();
+      mask |= type.getExpr().getVariableMask();
+      if (!(type instanceof Expression)) {
+        mask |= getMask(type.getSortOfType());
+      }
+    }
+    return mask;
+  }
+
+  private static List<Variable> getBindings(DependentLink link) {
+    List<Variable> result = new ArrayList<>();
+    for (; link.hasNext(); link = link.getNext()) {
+      result.add(link);
+    }
+    return result;
+  }
+
+  private static class ReferenceCollector extends VoidExpressionVisitor<Void> {
+    private final Set<? extends Variable> myBound;
+    private int myMask;
+
+    ReferenceCollector(Set<? extends Variable> bound) {
+      myBound = bound;
+    }
+
+    @Override
+    public Void visitReference(ReferenceExpression expr, Void params) {
+      if (!myBound.contains(expr.getBinding())) {
+        myMask |= getMask(expr.getBinding());
+      }
+      return null;
+    }
+
+    @Override
+    public Void visitFieldCall(FieldCallExpression expr, Void params) {
+      myMask |= getMask(expr.getDefinition());
+      return super.visitFieldCall(expr, params);
+    }
+  }
+
+  /**
+   * Removes bits of bound variables from the mask of expressions in their scope.
+   * If some of these bits are shared with other variables, the scope is traversed to find them.
+   */
+  private static int removeBound(int mask, Collection<? extends Variable> bound, List<Expression> scope) {
+    int boundMask = getMask(bound);
+    if ((mask & boundMask) == 0) {
+      return mask;
+    }
+
+    ReferenceCollector collector = new ReferenceCollector(new HashSet<>(bound));
+    for (Expression expr : scope) {
+      if ((expr.getVariableMask() & boundMask) != 0) {
+        expr.accept(collector, null);
+      }
+    }
+    return mask & ~boundMask | collector.myMask & boundMask;
+  }
+
+  private static List<Expression> getTypes(DependentLink link) {
+    List<Expression> result = new ArrayList<>();
+    for (; link.hasNext(); link = link.getNext()) {
+      link = link.getNextTyped(null);
+      result.add(link.getTypeExpr());
+    }
+    return result;
+  }
+
+  private static int visitArguments(int mask, List<? extends Expression> args) {
+    for (Expression arg : args) {
+      mask |= arg.getVariableMask();
+    }
+    return mask;
+  }
+
+  @Override
+  public Integer visitApp(AppExpression expr, Void params) {
+    return expr.getFunction().getVariableMask() | expr.getArgument().getVariableMask();
+  }
+
+  @Override
+  public Integer visitFunCall(FunCallExpression expr, Void params) {
+    return visitArguments(getMask(expr.getSortArgument()), expr.getDefCallArguments());
+  }
+
+  @Override
+  public Integer visitConCall(ConCallExpression expr, Void params) {
+    return visitArguments(visitArguments(getMask(expr.getSortArgument()), expr.getDataTypeArguments()), expr.getDefCallArguments());
+  }
+
+  @Override
+  public Integer visitDataCall(DataCallExpression expr, Void params) {
+    return visitArguments(getMask(expr.getSortArgument()), expr.getDefCallArguments());
+  }
+
+  @Override
+  public Integer visitFieldCall(FieldCallExpression expr, Void params) {
+    return getMask(expr.getDefinition()) | getMask(expr.getSortArgument()) | expr.getArgument().getVariableMask();
+  }
+
+  @Override
+  public Integer visitClassCall(ClassCallExpression expr, Void params) {
+    // Implementations can be modified
+    return UNKNOWN;
+  }
+
+  @Override
+  public Integer visitReference(ReferenceExpression expr, Void params) {
+    return getMask(expr.getBinding());
+  }
+
+  @Override
+  public Integer visitInferenceReference(InferenceReferenceExpression expr, Void params) {
+    return UNKNOWN;
+  }
+
+  @Override
+  public Integer visitLam(LamExpression expr, Void params) {
+    return getMask(expr.getResultSort()) | getMask(expr.getParameters()) | removeBound(expr.getBody().getVariableMask(), getBindings(expr.getParameters()), Collections.singletonList(expr.getBody()));
+  }
+
+  @Override
+  public Integer visitPi(PiExpression expr, Void params) {
+    return getMask(expr.getResultSort()) | getMask(expr.getParameters()) | removeBound(expr.getCodomain().getVariableMask(), getBindings(expr.getParameters()), Collections.singletonList(expr.getCodomain()));
+  }
+
+  @Override
+  public Integer visitSigma(SigmaExpression expr, Void params) {
+    return getMask(expr.getSort()) | removeBound(getMask(expr.getParameters()), getBindings(expr.getParameters()), getTypes(expr.getParameters()));
+  }
+
+  @Override
+  public Integer visitUniverse(UniverseExpression expr, Void params) {
+    return getMask(expr.getSort());
+  }
+
+  @Override
+  public Integer visitError(ErrorExpression expr, Void params) {
+    return expr.getExpression() == null ? 0 : expr.getExpression().getVariableMask();
+  }
+
+  @Override
+  public Integer visitTuple(TupleExpression expr, Void params) {
+    return visitArguments(expr.getSigmaType().getVariableMask(), expr.getFields());
+  }
+
+  @Override
+  public Integer visitProj(ProjExpression expr, Void params) {
+    return expr.getExpression().getVariableMask();
+  }
+
+  @Override
+  public Integer visitNew(NewExpression expr, Void params) {
+    return expr.getExpression().getVariableMask();
+  }
+
+  @Override
+  public Integer visitLet(LetExpression expr, Void params) {
+    List<Expression> scope = new ArrayList<>(expr.getClauses().size() + 1);
+    for (LetClause clause : expr.getClauses()) {
+      scope.add(clause.getExpression());
+    }
+    scope.add(expr.getExpression());
+    return removeBound(visitArguments(0, scope), expr.getClauses(), scope);
+  }
+
+  @Override
+  public Integer visitCase(CaseExpression expr, Void params) {
+    return UNKNOWN;
+  }
+
+  @Override
+  public Integer visitOfType(OfTypeExpression expr, Void params) {
+    return expr.getExpression().getVariableMask() | expr.getTypeOf().getVariableMask();
+  }
+
+  @Override
+  public Integer visitInteger(IntegerExpression expr, Void params) {
+    return 0;
+  }
+}
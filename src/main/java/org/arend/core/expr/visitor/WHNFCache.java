@@ -0,0 +1,265 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.inference.InferenceLevelVariable;
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.*;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+
+import java.util.*;
+
+/**
+ * A bounded cache of weak head normal forms of closed function calls.
+ * A function call is cached only if its arguments are built from definition calls, universes and integer literals,
+ * so it does not contain variables, binders, and inference variables.
+ * When the cache is full, the least recently used entry is evicted.
+ *
+ * Calls of functions that are not typechecked yet are not cached, and neither are results that may be stuck on such functions,
+ * since they would become stale as soon as the functions get their bodies.
+ *
+ * The cache is thread-safe.
+ * It should be invalidated whenever the body of a cached definition or of a definition it depends on changes.
+ */
+public class WHNFCache {
+  private static final int MAX_KEY_SIZE = 256;
+
+  private final int myCapacity;
+  private final LinkedHashMap<Key, Expression> myCache;
+  private long myHits;
+  private long myMisses;
+
+  public WHNFCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive");
+    }
+    myCapacity = capacity;
+    myCache = new LinkedHashMap<Key, Expression>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Expression> eldest) {
+        return size() > myCapacity;
+      }
+    };
+  }
+
+  public static class Key {
+    private final FunCallExpression myExpression;
+    private final int myHashCode;
+
+    private Key(FunCallExpression expression, int hashCode) {
+      myExpression = expression;
+      myHashCode = hashCode;
+    }
+
+    public FunCallExpression getExpression() {
+      return myExpression;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || o instanceof Key && myHashCode == ((Key) o).myHashCode && WHNFCache.equals(myExpression, ((Key) o).myExpression);
+    }
+
+    @Override
+    public int hashCode() {
+      return myHashCode;
+    }
+  }
+
+  /**
+   * @return a key for {@code expr} or null if it cannot be cached.
+   */
+  public Key makeKey(FunCallExpression expr) {
+    int[] size = new int[] { 0 };
+    Integer hashCode = hash(expr, size);
+    return hashCode == null ? null : new Key(expr, hashCode);
+  }
+
+  /**
+   * @return true if calls of {@code function} can be cached, that is, it is typechecked without errors and has a body.
+   */
+  public static boolean isComplete(FunctionDefinition function) {
+    return function.getBody() != null && function.status() == Definition.TypeCheckingStatus.NO_ERRORS;
+  }
+
+  /**
+   * A weak head normal form can be cached if its head is not an elimination,
+   * since an elimination may be stuck on a function that is not typechecked yet.
+   */
+  public static boolean isCacheable(Expression whnf) {
+    return !(whnf instanceof FunCallExpression || whnf instanceof CaseExpression || whnf instanceof AppExpression || whnf instanceof FieldCallExpression);
+  }
+
+  public synchronized Expression get(Key key) {
+    Expression result = myCache.get(key);
+    if (result == null) {
+      myMisses++;
+    } else {
+      myHits++;
+    }
+    return result;
+  }
+
+  public synchronized void put(Key key, Expression whnf) {
+    myCache.put(key, whnf);
+  }
+
+  /**
+   * Removes all entries that refer to the given definitions.
+   */
+  public synchronized void invalidate(Collection<? extends Definition> definitions) {
+    if (definitions.isEmpty() || myCache.isEmpty()) {
+      return;
+    }
+    Set<Definition> definitionSet = new HashSet<>(definitions);
+    myCache.keySet().removeIf(key -> refersTo(key.myExpression, definitionSet));
+  }
+
+  public synchronized void clear() {
+    myCache.clear();
+  }
+
+  public synchronized int size() {
+    return myCache.size();
+  }
+
+  public int getCapacity() {
+    return myCapacity;
+  }
+
+  public synchronized long getHits() {
+    return myHits;
+  }
+
+  public synchronized long getMisses() {
+    return myMisses;
+  }
+
+  public synchronized void resetStatistics() {
+    myHits = 0;
+    myMisses = 0;
+  }
+
+  // We use instanceof instead of isInstance since solved inference variables cannot be cached
+  private static Integer hash(Expression expr, int[] size) {
+    if (++size[0] > MAX_KEY_SIZE) {
+      return null;
+    }
+
+    if (expr instanceof IntegerExpression) {
+      return expr instanceof SmallIntegerExpression ? ((SmallIntegerExpression) expr).getInteger() : ((IntegerExpression) expr).getBigInteger().intValue();
+    }
+    if (expr instanceof UniverseExpression) {
+      return hash(((UniverseExpression) expr).getSort());
+    }
+    if (!(expr instanceof DefCallExpression) || expr instanceof ClassCallExpression) {
+      return null;
+    }
+
+    DefCallExpression defCall = (DefCallExpression) expr;
+    Integer result = hash(defCall.getSortArgument());
+    if (result == null) {
+      return null;
+    }
+    result = 31 * result + defCall.getDefinition().hashCode();
+    if (defCall instanceof ConCallExpression) {
+      for (Expression arg : ((ConCallExpression) defCall).getDataTypeArguments()) {
+        Integer argHash = hash(arg, size);
+        if (argHash == null) {
+          return null;
+        }
+        result = 31 * result + argHash;
+      }
+    }
+    for (Expression arg : defCall.getDefCallArguments()) {
+      Integer argHash = hash(arg, size);
+      if (argHash == null) {
+        return null;
+      }
+      result = 31 * result + argHash;
+    }
+    return result;
+  }
+
+  private static Integer hash(Sort sort) {
+    Integer pHash = hash(sort.getPLevel());
+    Integer hHash = hash(sort.getHLevel());
+    return pHash == null || hHash == null ? null : 31 * pHash + hHash;
+  }
+
+  private static Integer hash(Level level) {
+    if (level.getVar() instanceof InferenceLevelVariable) {
+      return null;
+    }
+    return Objects.hash(level.getVar(), level.getConstant(), level.getMaxConstant());
+  }
+
+  private static boolean equals(Level level1, Level level2) {
+    return level1.getVar() == level2.getVar() && level1.getConstant() == level2.getConstant() && level1.getMaxConstant() == level2.getMaxConstant();
+  }
+
+  private static boolean equals(Sort sort1, Sort sort2) {
+    return equals(sort1.getPLevel(), sort2.getPLevel()) && equals(sort1.getHLevel(), sort2.getHLevel());
+  }
+
+  private static boolean equals(List<? extends Expression> list1, List<? extends Expression> list2) {
+    if (list1.size() != list2.size()) {
+      return false;
+    }
+    for (int i = 0; i < list1.size(); i++) {
+      if (!equals(list1.get(i), list2.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // This function assumes that both expressions are valid keys
+  private static boolean equals(Expression expr1, Expression expr2) {
+    if (expr1 == expr2) {
+      return true;
+    }
+    if (expr1 instanceof IntegerExpression) {
+      return expr2 instanceof IntegerExpression && ((IntegerExpression) expr1).isEqual((IntegerExpression) expr2);
+    }
+    if (expr1 instanceof UniverseExpression) {
+      return expr2 instanceof UniverseExpression && equals(((UniverseExpression) expr1).getSort(), ((UniverseExpression) expr2).getSort());
+    }
+
+    if (!(expr1 instanceof DefCallExpression && expr2 instanceof DefCallExpression) || expr1.getClass() != expr2.getClass()) {
+      return false;
+    }
+    DefCallExpression defCall1 = (DefCallExpression) expr1;
+    DefCallExpression defCall2 = (DefCallExpression) expr2;
+    if (defCall1.getDefinition() != defCall2.getDefinition() || !equals(defCall1.getSortArgument(), defCall2.getSortArgument())) {
+      return false;
+    }
+    if (defCall1 instanceof ConCallExpression && !equals(((ConCallExpression) defCall1).getDataTypeArguments(), ((ConCallExpression) defCall2).getDataTypeArguments())) {
+      return false;
+    }
+    return equals(defCall1.getDefCallArguments(), defCall2.getDefCallArguments());
+  }
+
+  private static boolean refersTo(Expression expr, Set<Definition> definitions) {
+    if (!(expr instanceof DefCallExpression)) {
+      return false;
+    }
+    DefCallExpression defCall = (DefCallExpression) expr;
+    if (definitions.contains(defCall.getDefinition())) {
+      return true;
+    }
+    if (defCall instanceof ConCallExpression) {
+      for (Expression arg : ((ConCallExpression) defCall).getDataTypeArguments()) {
+        if (refersTo(arg, definitions)) {
+          return true;
+        }
+      }
+    }
+    for (Expression arg : defCall.getDefCallArguments()) {
+      if (refersTo(arg, definitions)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
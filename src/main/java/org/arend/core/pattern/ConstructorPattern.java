@@ -70,7 +70,7 @@ public class ConstructorPattern implements Pattern {
 
   public int getLength() {
     return myExpression instanceof ConCallExpression
-      ? DependentLink.Helper.size(((ConCallExpression) myExpression).getDefinition().getParameters())
+      ? ((ConCallExpression) myExpression).getDefinition().getTelescope().size()
       : myExpression instanceof SigmaExpression
         ? DependentLink.Helper.size(((SigmaExpression) myExpression).getParameters())
         : ((ClassCallExpression) myExpression).getDefinition().getNumberOfNotImplementedFields();
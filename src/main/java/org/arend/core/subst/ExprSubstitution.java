@@ -2,6 +2,7 @@ package org.arend.core.subst;
 
 import org.arend.core.context.binding.Variable;
 import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.VariableMaskVisitor;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -10,6 +11,7 @@ import java.util.Set;
 
 public class ExprSubstitution {
   private Map<Variable, Expression> mySubstExprs;
+  private int myVariableMask;
 
   public ExprSubstitution() {
     mySubstExprs = Collections.emptyMap();
@@ -17,6 +19,7 @@ public class ExprSubstitution {
 
   public ExprSubstitution(ExprSubstitution substitution) {
     mySubstExprs = substitution.mySubstExprs.isEmpty() ? Collections.emptyMap() : new HashMap<>(substitution.mySubstExprs);
+    myVariableMask = substitution.myVariableMask;
   }
 
   public ExprSubstitution(Variable from, Expression to) {
@@ -36,6 +39,14 @@ public class ExprSubstitution {
     return mySubstExprs.isEmpty();
   }
 
+  /**
+   * @return a mask of keys computed by {@link VariableMaskVisitor#getMask(Variable)}.
+   *         Removed keys are not excluded, so the mask may contain bits of variables that are not substituted anymore.
+   */
+  public int getVariableMask() {
+    return myVariableMask;
+  }
+
   public Expression get(Variable binding)  {
     return mySubstExprs.get(binding);
   }
@@ -44,6 +55,7 @@ public class ExprSubstitution {
     if (!mySubstExprs.isEmpty()) {
       mySubstExprs.clear();
     }
+    myVariableMask = 0;
   }
 
   public void remove(Variable variable) {
@@ -57,6 +69,7 @@ public class ExprSubstitution {
       mySubstExprs = new HashMap<>();
     }
     mySubstExprs.put(binding, expression);
+    myVariableMask |= VariableMaskVisitor.getMask(binding);
   }
 
   public void addSubst(Variable binding, Expression expression) {
@@ -68,6 +81,7 @@ public class ExprSubstitution {
       }
     }
     mySubstExprs.put(binding, expression);
+    myVariableMask |= VariableMaskVisitor.getMask(binding);
   }
 
   public void addAll(ExprSubstitution substitution) {
@@ -76,6 +90,7 @@ public class ExprSubstitution {
         mySubstExprs = new HashMap<>();
       }
       mySubstExprs.putAll(substitution.mySubstExprs);
+      myVariableMask |= substitution.myVariableMask;
     }
   }
 
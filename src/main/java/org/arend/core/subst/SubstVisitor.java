@@ -10,6 +10,7 @@ import org.arend.core.elimtree.LeafElimTree;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
 import org.arend.core.expr.visitor.BaseExpressionVisitor;
+import org.arend.core.expr.visitor.VariableMaskVisitor;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -37,13 +38,34 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
     return myExprSubstitution.isEmpty() && myLevelSubstitution.isEmpty();
   }
 
+  /**
+   * Checks if {@code expr} does not contain substituted variables, so it can be returned as is.
+   * An empty visitor copies expressions, so nothing is skipped in this case.
+   */
+  protected boolean isUnaffected(Expression expr) {
+    if (isEmpty()) {
+      return false;
+    }
+    int mask = myExprSubstitution.getVariableMask();
+    if (!myLevelSubstitution.isEmpty()) {
+      mask |= VariableMaskVisitor.LEVELS;
+    }
+    return !VariableMaskVisitor.mayContain(expr, mask);
+  }
+
   @Override
   public Expression visitApp(AppExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return AppExpression.make(expr.getFunction().accept(this, null), expr.getArgument().accept(this, null));
   }
 
   @Override
   public Expression visitDefCall(DefCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     List<Expression> args = new ArrayList<>(expr.getDefCallArguments().size());
     for (Expression arg : expr.getDefCallArguments()) {
       args.add(arg.accept(this, null));
@@ -58,6 +80,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitConCall(ConCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     List<Expression> dataTypeArgs = new ArrayList<>(expr.getDataTypeArguments().size());
     for (Expression parameter : expr.getDataTypeArguments()) {
       dataTypeArgs.add(parameter.accept(this, null));
@@ -82,6 +107,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitFieldCall(FieldCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     Expression result = myExprSubstitution.get(expr.getDefinition());
     if (result != null) {
       return AppExpression.make(result, expr.getArgument().accept(this, null));
@@ -115,6 +143,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public LamExpression visitLam(LamExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     SingleDependentLink parameters = DependentLink.Helper.subst(expr.getParameters(), this);
     LamExpression result = new LamExpression(expr.getResultSort().subst(myLevelSubstitution), parameters, expr.getBody().accept(this, null));
     DependentLink.Helper.freeSubsts(expr.getParameters(), myExprSubstitution);
@@ -123,6 +154,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public PiExpression visitPi(PiExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     SingleDependentLink parameters = DependentLink.Helper.subst(expr.getParameters(), this);
     PiExpression result = new PiExpression(expr.getResultSort().subst(myLevelSubstitution), parameters, expr.getCodomain().accept(this, null));
     DependentLink.Helper.freeSubsts(expr.getParameters(), myExprSubstitution);
@@ -131,6 +165,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public SigmaExpression visitSigma(SigmaExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     SigmaExpression result = new SigmaExpression(expr.getSort().subst(myLevelSubstitution), DependentLink.Helper.subst(expr.getParameters(), this));
     DependentLink.Helper.freeSubsts(expr.getParameters(), myExprSubstitution);
     return result;
@@ -143,11 +180,17 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitError(ErrorExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return expr.getExpression() == null ? expr : new ErrorExpression(expr.getExpression().accept(this, null), expr.getError());
   }
 
   @Override
   public TupleExpression visitTuple(TupleExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     List<Expression> fields = new ArrayList<>(expr.getFields().size());
     for (Expression field : expr.getFields()) {
       fields.add(field.accept(this, null));
@@ -157,6 +200,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitProj(ProjExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return ProjExpression.make(expr.getExpression().accept(this, null), expr.getField());
   }
 
@@ -167,6 +213,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public LetExpression visitLet(LetExpression letExpression, Void params) {
+    if (isUnaffected(letExpression)) {
+      return letExpression;
+    }
     List<LetClause> clauses = new ArrayList<>(letExpression.getClauses().size());
     for (LetClause clause : letExpression.getClauses()) {
       LetClause newClause = new LetClause(clause.getName(), clause.getPattern(), clause.getExpression().accept(this, null));
@@ -209,6 +258,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitOfType(OfTypeExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return new OfTypeExpression(expr.getExpression().accept(this, null), expr.getTypeOf().accept(this, null));
   }
 
@@ -2,9 +2,14 @@ package org.arend.frontend;
 
 import org.apache.commons.cli.*;
 import org.arend.core.definition.Definition;
+import org.arend.core.expr.ExpressionInterner;
+import org.arend.core.expr.visitor.CompareVisitor;
+import org.arend.core.expr.visitor.WHNFCache;
 import org.arend.error.Error;
+import org.arend.error.ErrorReporter;
 import org.arend.error.GeneralError;
 import org.arend.error.ListErrorReporter;
+import org.arend.frontend.parser.DefinitionHeaders;
 import org.arend.library.*;
 import org.arend.library.error.LibraryError;
 import org.arend.module.ModulePath;
@@ -12,45 +17,79 @@ import org.arend.module.error.ExceptionError;
 import org.arend.naming.reference.GlobalReferable;
 import org.arend.naming.reference.LocatedReferable;
 import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.naming.scope.CachingScope;
+import org.arend.prelude.Prelude;
 import org.arend.prelude.PreludeResourceLibrary;
-import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.source.Source;
+import org.arend.term.group.Group;
+import org.arend.typechecking.ConcurrentTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.instance.provider.InstanceResolutionCache;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.listener.ParallelTypecheckingScheduler;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.CachePolicy;
 import org.arend.util.FileUtils;
+import org.arend.util.HashUtils;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public abstract class BaseCliFrontend {
+  private static final String DEFAULT_LIBRARY_NAME = "\\default";
+
+  // Output
+  private PrintStream myOut = System.out;
+  private PrintStream myErr = System.err;
+
   // Typechecking
-  private final TypecheckerState myTypecheckerState = new SimpleTypecheckerState();
+  private final TypecheckerState myTypecheckerState = new ConcurrentTypecheckerState();
   private final ListErrorReporter myErrorReporter = new ListErrorReporter();
   private final Map<ModulePath, Error.Level> myModuleResults = new LinkedHashMap<>();
+  private int myErrorCount;
 
   // Libraries
-  private final FileLibraryResolver myLibraryResolver = new FileLibraryResolver(new ArrayList<>(), myTypecheckerState, System.err::println);
+  private final FileLibraryResolver myLibraryResolver = new FileLibraryResolver(new ArrayList<>(), myTypecheckerState, error -> myErr.println(error));
   private final LibraryManager myLibraryManager = new MyLibraryManager();
+  private final List<Library> myRequestedLibraries = new ArrayList<>();
+  private final Map<Library, Long> myLoadingTimes = new HashMap<>();
+  private final Map<Library, LoadedContent> myLoadedContents = new HashMap<>();
+
+  // Dependencies and caches are kept between runs
+  private final DependencyCollector myDependencyCollector = new DependencyCollector(myTypecheckerState, myLibraryManager.getInstanceProviderSet());
+  private WHNFCache myWHNFCache;
+  private ExpressionInterner myExpressionInterner;
 
   private class MyLibraryManager extends LibraryManager {
     MyLibraryManager() {
-      super(myLibraryResolver, new InstanceProviderSet(), myErrorReporter, System.err::println);
+      super(myLibraryResolver, new InstanceProviderSet(), myErrorReporter, error -> myErr.println(error));
     }
 
     @Override
     protected void beforeLibraryLoading(Library library) {
-      System.out.println("[INFO] Loading library " + library.getName());
+      myLoadingTimes.put(library, System.currentTimeMillis());
+      myOut.println("[INFO] Loading library " + library.getName());
     }
 
     @Override
     protected void afterLibraryLoading(Library library, boolean successful) {
+      if (successful && library instanceof FileSourceLibrary) {
+        myLoadedContents.put(library, new LoadedContent((FileSourceLibrary) library, myLoadingTimes.get(library)));
+      }
       flushErrors();
-      System.err.flush();
-      System.out.println("[INFO] " + (successful ? "Loaded " : "Failed loading ") + "library " + library.getName());
+      myErr.flush();
+      myOut.println("[INFO] " + (successful ? "Loaded " : "Failed loading ") + "library " + library.getName());
     }
   }
 
@@ -62,20 +101,69 @@ public abstract class BaseCliFrontend {
     return myTypecheckerState;
   }
 
+  /**
+   * @return the number of modules with errors, requested libraries that failed to load, and invalid options in the last run.
+   */
+  public int getErrorCount() {
+    return myErrorCount;
+  }
+
+  /**
+   * Sets streams to which the output of the following runs is printed.
+   */
+  public void setOutput(PrintStream out, PrintStream err) {
+    myOut = out;
+    myErr = err;
+  }
+
 
   private class MyTypechecking extends TypecheckingOrderingListener {
-    MyTypechecking() {
-      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, myErrorReporter, PositionComparator.INSTANCE);
+    private final PersistingScheduler myPersistingScheduler;
+
+    MyTypechecking(PersistingScheduler persistingScheduler, WHNFCache whnfCache) {
+      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, myErrorReporter, myDependencyCollector, PositionComparator.INSTANCE);
+      myPersistingScheduler = persistingScheduler;
+      setWHNFCache(whnfCache);
     }
 
     @Override
     public void typecheckingBodyFinished(TCReferable referable, Definition definition) {
       flushErrors();
+      if (myPersistingScheduler != null) {
+        myPersistingScheduler.typecheckingFinished(referable);
+      }
     }
 
     @Override
     public void typecheckingUnitFinished(TCReferable referable, Definition definition) {
       flushErrors();
+      if (myPersistingScheduler != null) {
+        myPersistingScheduler.typecheckingFinished(referable);
+      }
+    }
+
+    @Override
+    public TypecheckingOrderingListener fork(ErrorReporter errorReporter, DependencyListener dependencyListener) {
+      return myPersistingScheduler == null ? super.fork(errorReporter, dependencyListener) : new MyTypecheckingWorker(this, errorReporter, dependencyListener);
+    }
+  }
+
+  private static class MyTypecheckingWorker extends TypecheckingOrderingListener {
+    private final PersistingScheduler myPersistingScheduler;
+
+    MyTypecheckingWorker(MyTypechecking parent, ErrorReporter errorReporter, DependencyListener dependencyListener) {
+      super(parent, errorReporter, dependencyListener);
+      myPersistingScheduler = parent.myPersistingScheduler;
+    }
+
+    @Override
+    public void typecheckingBodyFinished(TCReferable referable, Definition definition) {
+      myPersistingScheduler.typecheckingFinished(referable);
+    }
+
+    @Override
+    public void typecheckingUnitFinished(TCReferable referable, Definition definition) {
+      myPersistingScheduler.typecheckingFinished(referable);
     }
   }
 
@@ -88,17 +176,28 @@ public abstract class BaseCliFrontend {
       cmdOptions.addOption(Option.builder("s").longOpt("source").hasArg().argName("srcdir").desc("project source directory").build());
       cmdOptions.addOption(Option.builder("o").longOpt("output").hasArg().argName("outdir").desc("project output directory").build());
       cmdOptions.addOption(Option.builder().longOpt("recompile").desc("recompile files").build());
+      cmdOptions.addOption(Option.builder().longOpt("mmap").desc("map uncompressed binary files into memory instead of reading them").build());
+      cmdOptions.addOption(Option.builder().longOpt("release-concrete").desc("drop parsed definitions after they are typechecked and parse them again when needed").build());
+      cmdOptions.addOption(Option.builder().longOpt("scope-cache").hasArg().argName("size").desc("cache at most this number of module scopes and at most this number of namespaces in every scope").build());
+      cmdOptions.addOption(Option.builder().longOpt("intern").desc("share equal closed subterms of loaded binary files").build());
+      cmdOptions.addOption(Option.builder().longOpt("whnf-cache").hasArg().argName("size").desc("cache weak head normal forms of at most this number of closed function calls").build());
+      cmdOptions.addOption(Option.builder("v").longOpt("verbose").desc("print statistics of caches after typechecking").build());
+      cmdOptions.addOption(Option.builder("j").longOpt("jobs").hasArg().argName("N").desc("number of threads used for parsing and typechecking").build());
       addCommandOptions(cmdOptions);
       CommandLine cmdLine = new DefaultParser().parse(cmdOptions, args);
 
       if (cmdLine.hasOption("h")) {
-        new HelpFormatter().printHelp("arend [FILES]", cmdOptions);
+        HelpFormatter formatter = new HelpFormatter();
+        PrintWriter writer = new PrintWriter(myOut);
+        formatter.printHelp(writer, formatter.getWidth(), "arend [FILES]", null, cmdOptions, formatter.getLeftPadding(), formatter.getDescPadding(), null);
+        writer.flush();
         return null;
       } else {
         return cmdLine;
       }
     } catch (ParseException e) {
-      System.err.println(e.getMessage());
+      myErr.println(e.getMessage());
+      myErrorCount++;
       return null;
     }
   }
@@ -106,24 +205,113 @@ public abstract class BaseCliFrontend {
   protected void addCommandOptions(Options cmdOptions) {}
 
   public CommandLine run(String[] args) {
+    return run(FileUtils.getCurrentDirectory(), args);
+  }
+
+  /**
+   * Runs the frontend again with the same state.
+   * Libraries stay loaded between runs unless they or libraries they depend on were modified (see {@link #unloadModifiedLibraries}).
+   * Modified libraries are loaded again, so only modified modules and modules that depend on them are typechecked.
+   *
+   * @param workingDirectory  the directory relative to which paths in {@code args} are resolved.
+   */
+  public CommandLine run(Path workingDirectory, String[] args) {
+    myErrorCount = 0;
     CommandLine cmdLine = parseArgs(args);
     if (cmdLine == null) {
+      myErrorCount++;
       return null;
     }
 
-    if (!myLibraryManager.loadLibrary(new PreludeResourceLibrary(myTypecheckerState))) {
+    unloadModifiedLibraries(cmdLine.hasOption("recompile"));
+
+    int jobs = 1;
+    String jobsStr = cmdLine.getOptionValue("j");
+    if (jobsStr != null) {
+      try {
+        jobs = Integer.parseInt(jobsStr);
+      } catch (NumberFormatException e) {
+        jobs = 0;
+      }
+      if (jobs < 1) {
+        myErr.println("[ERROR] The number of jobs must be a positive integer: " + jobsStr);
+        myErrorCount++;
+        return null;
+      }
+    }
+    myLibraryManager.setParsingJobs(jobs);
+
+    CachePolicy scopeCachePolicy = CachePolicy.UNBOUNDED;
+    String scopeCacheStr = cmdLine.getOptionValue("scope-cache");
+    if (scopeCacheStr != null) {
+      int size;
+      try {
+        size = Integer.parseInt(scopeCacheStr);
+      } catch (NumberFormatException e) {
+        size = 0;
+      }
+      if (size < 1) {
+        myErr.println("[ERROR] The size of the cache must be a positive integer: " + scopeCacheStr);
+        myErrorCount++;
+        return null;
+      }
+      scopeCachePolicy = CachePolicy.lru(size);
+    }
+    myLibraryManager.setScopeCachePolicy(scopeCachePolicy);
+    CachingScope.setNamespaceCachePolicy(scopeCachePolicy);
+
+    WHNFCache whnfCache = null;
+    String whnfCacheStr = cmdLine.getOptionValue("whnf-cache");
+    if (whnfCacheStr != null) {
+      int size;
+      try {
+        size = Integer.parseInt(whnfCacheStr);
+      } catch (NumberFormatException e) {
+        size = 0;
+      }
+      if (size < 1) {
+        myErr.println("[ERROR] The size of the cache must be a positive integer: " + whnfCacheStr);
+        return null;
+      }
+      whnfCache = myWHNFCache != null && myWHNFCache.getCapacity() == size ? myWHNFCache : new WHNFCache(size);
+      whnfCache.resetStatistics();
+    }
+    myWHNFCache = whnfCache;
+    myDependencyCollector.setWHNFCache(whnfCache);
+
+    ExpressionInterner interner = null;
+    if (cmdLine.hasOption("intern")) {
+      if (myExpressionInterner == null) {
+        myExpressionInterner = new ExpressionInterner();
+      }
+      interner = myExpressionInterner;
+    }
+    ExpressionInterner.setInstance(interner);
+
+    if (myLibraryManager.getRegisteredLibrary(Prelude.LIBRARY_NAME) == null && !myLibraryManager.loadLibrary(new PreludeResourceLibrary(myTypecheckerState))) {
+      myErrorCount++;
       return null;
     }
 
+    boolean verbose = cmdLine.hasOption("v");
+    InstanceResolutionCache instanceResolutionCache = myLibraryManager.getInstanceProviderSet().getResolutionCache();
+    instanceResolutionCache.resetStatistics();
+    CompareVisitor.resetSyntacticStatistics();
+
+    boolean mapBinaries = cmdLine.hasOption("mmap");
+    myLibraryResolver.setLibraryFlag(SourceLibrary.Flag.MAP_BINARIES, mapBinaries);
+    boolean releaseConcrete = cmdLine.hasOption("release-concrete");
+    myLibraryResolver.setLibraryFlag(SourceLibrary.Flag.RELEASE_CONCRETE, releaseConcrete);
+
     // Get library directories
     String[] libDirStrings = cmdLine.getOptionValues("L");
     if (libDirStrings != null) {
       for (String libDirString : libDirStrings) {
-        Path libDir = Paths.get(libDirString);
+        Path libDir = workingDirectory.resolve(libDirString);
         if (Files.isDirectory(libDir)) {
           myLibraryResolver.addLibraryDirectory(libDir);
         } else {
-          System.err.println("[ERROR] " + libDir + " is not a directory");
+          myErr.println("[ERROR] " + libDir + " is not a directory");
         }
       }
     }
@@ -136,17 +324,17 @@ public abstract class BaseCliFrontend {
         if (FileUtils.isLibraryName(libString)) {
           libraryDependencies.add(new LibraryDependency(libString));
         } else {
-          System.err.println(LibraryError.illegalName(libString));
+          myErr.println(LibraryError.illegalName(libString));
         }
       }
     }
 
     // Get source and output directories
     String sourceDirStr = cmdLine.getOptionValue("s");
-    Path sourceDir = sourceDirStr == null ? FileUtils.getCurrentDirectory() : Paths.get(sourceDirStr);
+    Path sourceDir = sourceDirStr == null ? workingDirectory : workingDirectory.resolve(sourceDirStr);
 
     String binaryDirStr = cmdLine.getOptionValue("o");
-    Path outDir = binaryDirStr != null ? Paths.get(binaryDirStr) : sourceDir.resolve(".bin");
+    Path outDir = binaryDirStr != null ? workingDirectory.resolve(binaryDirStr) : sourceDir.resolve(".bin");
 
     // Collect modules and libraries for which typechecking was requested
     Collection<String> argFiles = cmdLine.getArgList();
@@ -155,7 +343,7 @@ public abstract class BaseCliFrontend {
     if (argFiles.isEmpty()) {
       if (sourceDirStr != null) {
         requestedModules = new LinkedHashSet<>();
-        FileUtils.getModules(sourceDir, FileUtils.EXTENSION, requestedModules);
+        FileUtils.getModules(sourceDir, FileUtils.EXTENSION, requestedModules, myErr);
       } else {
         requestedModules = Collections.emptySet();
       }
@@ -164,8 +352,8 @@ public abstract class BaseCliFrontend {
       for (String fileName : argFiles) {
         boolean isPath = fileName.contains(FileSystems.getDefault().getSeparator());
         Path path = Paths.get(fileName);
-        if (fileName.endsWith(FileUtils.LIBRARY_CONFIG_FILE) || isPath && Files.isDirectory(path)) {
-          UnmodifiableSourceLibrary library = myLibraryResolver.registerLibrary(path.toAbsolutePath());
+        if (fileName.endsWith(FileUtils.LIBRARY_CONFIG_FILE) || isPath && Files.isDirectory(workingDirectory.resolve(path))) {
+          UnmodifiableSourceLibrary library = myLibraryResolver.registerLibrary(workingDirectory.resolve(path).toAbsolutePath());
           if (library != null) {
             requestedLibraries.add(library);
           }
@@ -177,7 +365,7 @@ public abstract class BaseCliFrontend {
             modulePath = FileUtils.modulePath(fileName);
           }
           if (modulePath == null) {
-            FileUtils.printIllegalModuleName(fileName);
+            FileUtils.printIllegalModuleName(fileName, myErr);
           } else {
             requestedModules.add(modulePath);
           }
@@ -188,66 +376,302 @@ public abstract class BaseCliFrontend {
       try {
         Files.createDirectories(outDir);
       } catch (IOException e) {
-        e.printStackTrace();
+        e.printStackTrace(myErr);
         outDir = null;
       }
-      requestedLibraries.add(new FileSourceLibrary("\\default", sourceDir, outDir, requestedModules, argFiles.isEmpty(), libraryDependencies, myTypecheckerState));
+      requestedLibraries.add(new FileSourceLibrary(DEFAULT_LIBRARY_NAME, sourceDir, outDir, requestedModules, argFiles.isEmpty(), libraryDependencies, myTypecheckerState));
     }
 
     // Load and typecheck libraries
     if (requestedLibraries.isEmpty()) {
-      System.out.println("Nothing to load");
+      myOut.println("Nothing to load");
       return cmdLine;
     }
 
     boolean recompile = cmdLine.hasOption("recompile");
-    for (UnmodifiableSourceLibrary library : requestedLibraries) {
-      myModuleResults.clear();
-      if (recompile) {
-        library.addFlag(SourceLibrary.Flag.RECOMPILE);
+    List<PersistingScheduler> persistingSchedulers = new ArrayList<>();
+    try {
+      for (UnmodifiableSourceLibrary library : requestedLibraries) {
+        myModuleResults.clear();
+        // Requested libraries can be registered by previous runs, so their flags are updated
+        setFlag(library, SourceLibrary.Flag.MAP_BINARIES, mapBinaries);
+        setFlag(library, SourceLibrary.Flag.RELEASE_CONCRETE, releaseConcrete);
+        setFlag(library, SourceLibrary.Flag.RECOMPILE, recompile);
+        myRequestedLibraries.add(library);
+        if (!myLibraryManager.loadLibrary(library)) {
+          myErrorCount++;
+          continue;
+        }
+
+        if (!library.needsTypechecking()) {
+          continue;
+        }
+
+        myOut.println("--- Typechecking " + library.getName() + " ---");
+        Collection<? extends ModulePath> modules = library.getUpdatedModules();
+        // Modules are persisted in the background as soon as they are typechecked
+        PersistingScheduler persistingScheduler = library.supportsPersisting() ? new PersistingScheduler(library, modules, IdReferableConverter.INSTANCE, myErr::println, jobs) : null;
+        if (persistingScheduler != null) {
+          persistingSchedulers.add(persistingScheduler);
+        }
+        // Binary sources of deferred modules are loaded instead of typechecking them if the interfaces of their dependencies did not change
+        Consumer<ModulePath> binaryLoaded = persistingScheduler != null ? persistingScheduler::moduleLoaded : module -> {};
+        if (jobs > 1) {
+          library.typecheckUpdatedModules(myLibraryManager, new ParallelTypecheckingScheduler(new MyTypechecking(persistingScheduler, whnfCache), jobs)::typecheckModules, binaryLoaded);
+        } else {
+          library.typecheckUpdatedModules(myLibraryManager, new MyTypechecking(persistingScheduler, whnfCache)::typecheckModules, binaryLoaded);
+        }
+        flushErrors();
+
+        // Output nice per-module typechecking results
+        int numWithErrors = 0;
+        int numWithGoals = 0;
+        for (ModulePath module : modules) {
+          Error.Level result = myModuleResults.get(module);
+          if (result == null && library.getModuleGroup(module) == null) {
+            result = Error.Level.ERROR;
+          }
+          reportTypeCheckResult(module, result);
+          if (result == Error.Level.ERROR) numWithErrors++;
+          if (result == Error.Level.GOAL) numWithGoals++;
+        }
+
+        myErrorCount += numWithErrors;
+        if (numWithErrors > 0) {
+          myOut.println("Number of modules with errors: " + numWithErrors);
+        }
+        if (numWithGoals > 0) {
+          myOut.println("Number of modules with goals: " + numWithGoals);
+        }
+        myOut.println("--- Done ---");
+
+        if (persistingScheduler != null) {
+          library.clearUpdateModules();
+        }
+      }
+
+      // Wait until updated modules are persisted
+      for (PersistingScheduler persistingScheduler : persistingSchedulers) {
+        persistingScheduler.waitAll();
       }
-      if (!myLibraryManager.loadLibrary(library)) {
-        continue;
+    } finally {
+      // If typechecking fails, background threads are released; otherwise, they are already stopped
+      for (PersistingScheduler persistingScheduler : persistingSchedulers) {
+        persistingScheduler.shutdown();
       }
+    }
 
-      if (!library.needsTypechecking()) {
-        continue;
+    if (verbose) {
+      myOut.println("Instance resolution cache: " + instanceResolutionCache.getHits() + " hits, " + instanceResolutionCache.getMisses() + " misses");
+      if (whnfCache != null) {
+        myOut.println("WHNF cache: " + whnfCache.getHits() + " hits, " + whnfCache.getMisses() + " misses, " + whnfCache.size() + " of " + whnfCache.getCapacity() + " entries");
+      }
+      if (interner != null) {
+        myOut.println("Expression interner: " + interner.getHits() + " hits, " + interner.size() + " entries");
       }
+      myOut.println("Syntactic comparison: " + CompareVisitor.getSyntacticMatches() + " of " + CompareVisitor.getSyntacticChecks() + " comparisons");
+    }
 
-      System.out.println("--- Typechecking " + library.getName() + " ---");
-      Collection<? extends ModulePath> modules = library.getUpdatedModules();
-      new MyTypechecking().typecheckLibrary(library);
-      flushErrors();
+    return cmdLine;
+  }
 
-      // Output nice per-module typechecking results
-      int numWithErrors = 0;
-      int numWithGoals = 0;
-      for (ModulePath module : modules) {
-        Error.Level result = myModuleResults.get(module);
-        if (result == null && library.getModuleGroup(module) == null) {
-          result = Error.Level.ERROR;
+  /**
+   * Unloads libraries whose sources were modified after they were loaded, so they are loaded again.
+   * Definitions that depend on definitions of these libraries are reset by the dependency collector,
+   * and libraries containing them are unloaded too since they refer to the old definitions.
+   * Other libraries stay loaded, so their definitions are neither loaded nor typechecked again.
+   *
+   * @param recompile  if true, libraries requested by the previous run are unloaded even if they were not modified.
+   */
+  private void unloadModifiedLibraries(boolean recompile) {
+    Set<Library> unloaded = new LinkedHashSet<>();
+    // The default library is created anew by every run, and libraries that failed to load are loaded again
+    for (Library library : myRequestedLibraries) {
+      if (recompile || library.getName().equals(DEFAULT_LIBRARY_NAME) || !myLibraryManager.isRegistered(library)) {
+        unloaded.add(library);
+      }
+    }
+    myRequestedLibraries.clear();
+    for (Library library : myLibraryManager.getRegisteredLibraries()) {
+      if (library instanceof SourceLibrary && !library.getName().equals(Prelude.LIBRARY_NAME) && isModified((SourceLibrary) library)) {
+        unloaded.add(library);
+      }
+    }
+
+    Deque<Library> toReset = new ArrayDeque<>(unloaded);
+    while (!toReset.isEmpty()) {
+      Library library = toReset.pop();
+      Set<LocatedReferable> affectedModules = Collections.newSetFromMap(new IdentityHashMap<>());
+      // If the library is recompiled, headers of all its definitions are considered changed
+      LoadedContent content = recompile ? null : myLoadedContents.get(library);
+      for (ModulePath module : library.getLoadedModules()) {
+        Group group = library.getModuleGroup(module);
+        if (group != null) {
+          resetGroup(group, content == null ? name -> true : content.getChangedHeaders(module), "", false, affectedModules);
         }
-        reportTypeCheckResult(module, result);
-        if (result == Error.Level.ERROR) numWithErrors++;
-        if (result == Error.Level.GOAL) numWithGoals++;
       }
 
-      if (numWithErrors > 0) {
-        System.out.println("Number of modules with errors: " + numWithErrors);
+      for (Library dependent : myLibraryManager.getRegisteredLibraries()) {
+        if (!unloaded.contains(dependent) && containsModule(dependent, affectedModules)) {
+          unloaded.add(dependent);
+          toReset.push(dependent);
+        }
       }
-      if (numWithGoals > 0) {
-        System.out.println("Number of modules with goals: " + numWithGoals);
+    }
+
+    for (Library library : unloaded) {
+      myLibraryManager.unloadLibrary(library);
+      myLoadingTimes.remove(library);
+      myLoadedContents.remove(library);
+    }
+  }
+
+  private boolean isModified(SourceLibrary library) {
+    LoadedContent content = myLoadedContents.get(library);
+    return content != null && content.isModified(library);
+  }
+
+  /**
+   * The header and the raw sources of a library taken when it was loaded.
+   * A library is modified if the hash of one of the files changed; unlike timestamps, hashes do not change when a file is touched or rewritten with the same content.
+   * A null content means that the file could not be read or was modified during loading, so the library is always considered modified.
+   */
+  private static class LoadedContent {
+    private final FileSourceLibrary myLibrary;
+    private final byte[] myHeaderHash;
+    private final Map<ModulePath, byte[]> myModuleContents = new HashMap<>();
+    private final Map<ModulePath, byte[]> myModuleHashes = new HashMap<>();
+
+    LoadedContent(FileSourceLibrary library, Long loadingTime) {
+      myLibrary = library;
+      myHeaderHash = library instanceof FileLoadableHeaderLibrary ? hash(readFile(((FileLoadableHeaderLibrary) library).getHeaderFile(), loadingTime)) : null;
+      for (ModulePath module : library.getLoadedModules()) {
+        byte[] content = readFile(FileUtils.sourceFile(library.getSourceBasePath(), module), loadingTime);
+        myModuleContents.put(module, content);
+        myModuleHashes.put(module, hash(content));
+      }
+    }
+
+    private boolean isHeaderModified() {
+      return myLibrary instanceof FileLoadableHeaderLibrary && !isSame(myHeaderHash, hash(readFile(((FileLoadableHeaderLibrary) myLibrary).getHeaderFile(), null)));
+    }
+
+    boolean isModified(SourceLibrary library) {
+      if (isHeaderModified()) {
+        return true;
       }
-      System.out.println("--- Done ---");
 
-      // Persist updated modules
-      if (library.supportsPersisting()) {
-        library.persistUpdateModules(System.err::println);
-        library.clearUpdateModules();
+      for (ModulePath module : library.getLoadedModules()) {
+        Source source = library.getRawSource(module);
+        if (source != null && !(myModuleHashes.containsKey(module) && source.isAvailable() && isSame(myModuleHashes.get(module), source.getContentHash()))) {
+          return true;
+        }
       }
+      return false;
     }
 
-    return cmdLine;
+    /**
+     * Compares headers of definitions of a module with the headers they had when the library was loaded (see {@link DefinitionHeaders}).
+     *
+     * @return a predicate on names of definitions relative to the module which returns false if the header of a definition did not change.
+     */
+    Predicate<String> getChangedHeaders(ModulePath module) {
+      byte[] oldContent = myModuleContents.get(module);
+      if (oldContent == null || isHeaderModified()) {
+        return name -> true;
+      }
+      byte[] newContent = readFile(FileUtils.sourceFile(myLibrary.getSourceBasePath(), module), null);
+      if (newContent == null) {
+        return name -> true;
+      }
+      if (Arrays.equals(oldContent, newContent)) {
+        return name -> false;
+      }
+
+      Map<String, byte[]> oldHeaders = DefinitionHeaders.compute(oldContent);
+      Map<String, byte[]> newHeaders = oldHeaders == null ? null : DefinitionHeaders.compute(newContent);
+      if (newHeaders == null) {
+        return name -> true;
+      }
+      return name -> !isSame(oldHeaders.get(name), newHeaders.get(name));
+    }
+
+    private static boolean isSame(byte[] hash1, byte[] hash2) {
+      return hash1 != null && Arrays.equals(hash1, hash2);
+    }
+
+    private static byte[] hash(byte[] content) {
+      return content == null ? null : HashUtils.hash(content);
+    }
+
+    private static byte[] readFile(Path file, Long loadingTime) {
+      try {
+        if (loadingTime != null && Files.getLastModifiedTime(file).toMillis() >= loadingTime) {
+          return null;
+        }
+        return Files.readAllBytes(file);
+      } catch (IOException e) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Resets definitions of a group and definitions that depend on them.
+   * If only the body of a definition changed, definitions that refer to it are reset only if they can unfold it (see {@link DependencyCollector#update(TCReferable, boolean)}).
+   *
+   * @param changedHeaders   a predicate on names of definitions relative to the module which returns true if the header of a definition may have changed.
+   * @param name             the name of the group relative to the module.
+   * @param parentChanged    true if the header of the parent group changed; namespace commands of the parent affect the group, so its header is considered changed too.
+   * @param affectedModules  top-level referables of modules that contain reset definitions.
+   */
+  private void resetGroup(Group group, Predicate<String> changedHeaders, String name, boolean parentChanged, Set<LocatedReferable> affectedModules) {
+    boolean headerChanged = parentChanged || changedHeaders.test(name);
+    // Constructors and fields are reset together with their parents, so their dependents are collected first
+    for (Group.InternalReferable internalReferable : group.getInternalReferables()) {
+      resetDefinition(IdReferableConverter.INSTANCE.toDataLocatedReferable(internalReferable.getReferable()), headerChanged, affectedModules);
+    }
+    resetDefinition(IdReferableConverter.INSTANCE.toDataLocatedReferable(group.getReferable()), headerChanged, affectedModules);
+
+    String prefix = name.isEmpty() ? "" : name + ".";
+    for (Group subgroup : group.getSubgroups()) {
+      resetGroup(subgroup, changedHeaders, prefix + subgroup.getReferable().textRepresentation(), headerChanged, affectedModules);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      resetGroup(subgroup, changedHeaders, prefix + subgroup.getReferable().textRepresentation(), headerChanged, affectedModules);
+    }
+  }
+
+  private void resetDefinition(TCReferable definition, boolean headerChanged, Set<LocatedReferable> affectedModules) {
+    if (definition == null) {
+      return;
+    }
+
+    for (TCReferable affected : myDependencyCollector.update(definition, headerChanged)) {
+      LocatedReferable module = affected;
+      for (LocatedReferable parent = module.getLocatedReferableParent(); parent != null; parent = parent.getLocatedReferableParent()) {
+        module = parent;
+      }
+      affectedModules.add(module);
+    }
+  }
+
+  private static boolean containsModule(Library library, Set<LocatedReferable> modules) {
+    for (ModulePath module : library.getLoadedModules()) {
+      Group group = library.getModuleGroup(module);
+      if (group != null && modules.contains(group.getReferable())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void setFlag(SourceLibrary library, SourceLibrary.Flag flag, boolean value) {
+    if (value) {
+      library.addFlag(flag);
+    } else {
+      library.removeFlag(flag);
+    }
   }
 
   private void flushErrors() {
@@ -259,10 +683,10 @@ public abstract class BaseCliFrontend {
       }
 
       if (error instanceof ExceptionError || error.getAffectedDefinitions().isEmpty()) {
-        System.err.println(error);
-        System.err.flush();
+        myErr.println(error);
+        myErr.flush();
       } else {
-        System.out.println(error);
+        myOut.println(error);
       }
     }
     myErrorReporter.getErrorList().clear();
@@ -279,7 +703,7 @@ public abstract class BaseCliFrontend {
     StringBuilder builder = new StringBuilder();
     builder.append("[").append(resultChar(result)).append("]");
     builder.append(" ").append(modulePath);
-    System.out.println(builder);
+    myOut.println(builder);
   }
 
   private static char resultChar(Error.Level result) {
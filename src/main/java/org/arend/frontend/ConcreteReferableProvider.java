@@ -11,7 +11,7 @@ import javax.annotation.Nullable;
 public class ConcreteReferableProvider implements ConcreteProvider {
   public static final ConcreteProvider INSTANCE = new ConcreteReferableProvider();
 
-  private ConcreteReferableProvider() {}
+  protected ConcreteReferableProvider() {}
 
   @Override
   public Concrete.ReferableDefinition getConcrete(GlobalReferable referable) {
@@ -21,11 +21,9 @@ public class ConcreteReferableProvider implements ConcreteProvider {
   @Nullable
   @Override
   public Concrete.FunctionDefinition getConcreteFunction(GlobalReferable referable) {
-    if (referable instanceof ConcreteLocatedReferable) {
-      Concrete.ReferableDefinition def = ((ConcreteLocatedReferable) referable).getDefinition();
-      if (def instanceof Concrete.FunctionDefinition) {
-        return (Concrete.FunctionDefinition) def;
-      }
+    Concrete.ReferableDefinition def = getConcrete(referable);
+    if (def instanceof Concrete.FunctionDefinition) {
+      return (Concrete.FunctionDefinition) def;
     }
     return null;
   }
@@ -33,11 +31,9 @@ public class ConcreteReferableProvider implements ConcreteProvider {
   @Nullable
   @Override
   public Concrete.FunctionDefinition getConcreteInstance(GlobalReferable referable) {
-    if (referable instanceof ConcreteLocatedReferable) {
-      Concrete.ReferableDefinition def = ((ConcreteLocatedReferable) referable).getDefinition();
-      if (def instanceof Concrete.FunctionDefinition && ((Concrete.FunctionDefinition) def).getKind() == Concrete.FunctionDefinition.Kind.INSTANCE) {
-        return (Concrete.FunctionDefinition) def;
-      }
+    Concrete.ReferableDefinition def = getConcrete(referable);
+    if (def instanceof Concrete.FunctionDefinition && ((Concrete.FunctionDefinition) def).getKind() == Concrete.FunctionDefinition.Kind.INSTANCE) {
+      return (Concrete.FunctionDefinition) def;
     }
     return null;
   }
@@ -45,11 +41,9 @@ public class ConcreteReferableProvider implements ConcreteProvider {
   @Nullable
   @Override
   public Concrete.ClassDefinition getConcreteClass(ClassReferable referable) {
-    if (referable instanceof ConcreteLocatedReferable) {
-      Concrete.ReferableDefinition def = ((ConcreteLocatedReferable) referable).getDefinition();
-      if (def instanceof Concrete.ClassDefinition) {
-        return (Concrete.ClassDefinition) def;
-      }
+    Concrete.ReferableDefinition def = getConcrete(referable);
+    if (def instanceof Concrete.ClassDefinition) {
+      return (Concrete.ClassDefinition) def;
     }
     return null;
   }
@@ -57,12 +51,17 @@ public class ConcreteReferableProvider implements ConcreteProvider {
   @Nullable
   @Override
   public Concrete.DataDefinition getConcreteData(GlobalReferable referable) {
-    if (referable instanceof ConcreteLocatedReferable) {
-      Concrete.ReferableDefinition def = ((ConcreteLocatedReferable) referable).getDefinition();
-      if (def instanceof Concrete.DataDefinition) {
-        return (Concrete.DataDefinition) def;
-      }
+    Concrete.ReferableDefinition def = getConcrete(referable);
+    if (def instanceof Concrete.DataDefinition) {
+      return (Concrete.DataDefinition) def;
     }
     return null;
   }
+
+  @Override
+  public void releaseConcrete(GlobalReferable referable) {
+    if (referable instanceof ConcreteLocatedReferable) {
+      ((ConcreteLocatedReferable) referable).releaseDefinition();
+    }
+  }
 }
@@ -0,0 +1,142 @@
+package org.arend.frontend;
+
+import org.arend.util.FileUtils;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts a {@link DaemonServer} or sends a request to it.
+ *
+ * Usage, where {@code DAEMON} is {@code java -cp <arend jar> org.arend.frontend.DaemonMain}:
+ * <pre>
+ *   DAEMON --serve [OPTIONS]            starts the server
+ *   DAEMON [OPTIONS] [ARGS]             typechecks as {@link ConsoleMain} would with arguments ARGS
+ *   DAEMON [OPTIONS] --reload           unloads libraries cached by the server
+ *   DAEMON [OPTIONS] --stop             stops the server
+ * </pre>
+ * Options are {@code --port N} and {@code --token-file FILE}; by default, {@link DaemonServer#DEFAULT_PORT} and {@link DaemonServer#DEFAULT_TOKEN_FILE} are used.
+ * The client exits with the status sent by the server, which is the number of errors capped at 255.
+ * The server accepts connections only from the local host, and clients authenticate with the token that the server writes to the token file.
+ */
+public class DaemonMain {
+  public static void main(String[] args) {
+    List<String> argList = Arrays.asList(args);
+    int port = DaemonServer.DEFAULT_PORT;
+    Path tokenFile = DaemonServer.DEFAULT_TOKEN_FILE;
+    boolean serve = false;
+    int i = 0;
+    for (; i < argList.size(); i++) {
+      if (argList.get(i).equals("--serve")) {
+        serve = true;
+      } else if (argList.get(i).equals("--port") && i + 1 < argList.size()) {
+        try {
+          port = Integer.parseInt(argList.get(++i));
+        } catch (NumberFormatException e) {
+          System.err.println("[ERROR] Illegal port: " + argList.get(i));
+          System.exit(1);
+        }
+      } else if (argList.get(i).equals("--token-file") && i + 1 < argList.size()) {
+        tokenFile = Paths.get(argList.get(++i));
+      } else {
+        break;
+      }
+    }
+
+    if (serve) {
+      try (ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+        String token = DaemonServer.createTokenFile(tokenFile);
+        try {
+          System.out.println("[INFO] Listening on port " + serverSocket.getLocalPort());
+          new DaemonServer(new ConsoleMain(), token).serve(serverSocket);
+        } finally {
+          Files.deleteIfExists(tokenFile);
+        }
+      } catch (IOException e) {
+        System.err.println("[ERROR] " + e.getLocalizedMessage());
+        System.exit(1);
+      }
+      return;
+    }
+
+    String token;
+    try {
+      token = DaemonServer.readTokenFile(tokenFile);
+    } catch (IOException e) {
+      System.err.println("[ERROR] Cannot read the token of the daemon from " + tokenFile + ": " + e.getLocalizedMessage());
+      System.exit(1);
+      return;
+    }
+
+    int status;
+    try {
+      status = sendRequest(port, token, FileUtils.getCurrentDirectory(), argList.subList(i, argList.size()), System.out);
+    } catch (IOException e) {
+      System.err.println("[ERROR] Cannot connect to the daemon on port " + port + ": " + e.getLocalizedMessage());
+      System.exit(1);
+      return;
+    }
+    if (status < 0) {
+      System.err.println("[ERROR] The daemon did not finish the request");
+      System.exit(1);
+    }
+    System.exit(Math.min(status, 255));
+  }
+
+  /**
+   * Sends a request to the server and prints its response.
+   *
+   * @return the exit status sent by the server or -1 if the response does not contain it.
+   */
+  public static int sendRequest(int port, String token, Path workingDirectory, List<String> args, PrintStream out) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+      writer.write(token);
+      writer.write('\n');
+      writer.write(workingDirectory.toString());
+      writer.write('\n');
+      for (String arg : args) {
+        writer.write(arg);
+        writer.write('\n');
+      }
+      writer.flush();
+      socket.shutdownOutput();
+
+      // The last line of the response is the exit status, so every line is printed when the next one is read
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      String lastLine = null;
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (lastLine != null) {
+          out.println(lastLine);
+        }
+        lastLine = line;
+      }
+
+      int status = getStatus(lastLine);
+      if (status < 0 && lastLine != null) {
+        out.println(lastLine);
+      }
+      out.flush();
+      return status;
+    }
+  }
+
+  private static int getStatus(String line) {
+    if (line == null || !line.startsWith(DaemonServer.STATUS_PREFIX)) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(line.substring(DaemonServer.STATUS_PREFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package org.arend.frontend;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Typechecks libraries on requests of clients, keeping loaded libraries between requests (see {@link BaseCliFrontend#run(Path, String[])}).
+ *
+ * A request is a UTF-8 text; its first line is the token of the server, the second line is the working directory of the client,
+ * and each of the other lines is a command line argument.
+ * The token is stored in a file readable only by the owner (see {@link #createTokenFile}), so only the user who started the server can send requests.
+ * The request ends when the client shuts down its output.
+ * The output of the frontend is sent back followed by a line consisting of {@link #STATUS_PREFIX} and the exit status of the request,
+ * which is the number of errors (see {@link BaseCliFrontend#getErrorCount}).
+ * The connection is closed when the request is processed.
+ * Requests are processed one at a time.
+ *
+ * A request consisting of {@link #STOP_COMMAND} stops the server.
+ * A request consisting of {@link #RELOAD_COMMAND} unloads all libraries except for Prelude, so they are loaded again by the next request.
+ */
+public class DaemonServer {
+  public static final int DEFAULT_PORT = 7591;
+  public static final Path DEFAULT_TOKEN_FILE = Paths.get(System.getProperty("user.home"), ".arend", "daemon-token");
+  public static final String STOP_COMMAND = "--stop";
+  public static final String RELOAD_COMMAND = "--reload";
+  public static final String STATUS_PREFIX = "[STATUS] ";
+
+  private final BaseCliFrontend myFrontend;
+  private final byte[] myToken;
+
+  public DaemonServer(BaseCliFrontend frontend, String token) {
+    myFrontend = frontend;
+    myToken = token.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Generates a random token and writes it to a file which can be read and written only by the owner.
+   *
+   * @return the generated token.
+   */
+  public static String createTokenFile(Path file) throws IOException {
+    byte[] bytes = new byte[32];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder token = new StringBuilder();
+    for (byte b : bytes) {
+      token.append(String.format("%02x", b));
+    }
+
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    // The file is created with restricted permissions, so the token is never readable by others
+    Files.deleteIfExists(file);
+    try {
+      Files.createFile(file, PosixFilePermissions.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+    } catch (UnsupportedOperationException e) {
+      Files.createFile(file);
+      File ioFile = file.toFile();
+      if (!(ioFile.setReadable(false, false) && ioFile.setReadable(true, true) && ioFile.setWritable(false, false) && ioFile.setWritable(true, true))) {
+        Files.delete(file);
+        throw new IOException("Cannot restrict permissions of " + file);
+      }
+    }
+    Files.write(file, token.toString().getBytes(StandardCharsets.UTF_8));
+    return token.toString();
+  }
+
+  public static String readTokenFile(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+  }
+
+  /**
+   * Processes requests until a client stops the server.
+   */
+  public void serve(ServerSocket serverSocket) throws IOException {
+    while (true) {
+      try (Socket socket = serverSocket.accept()) {
+        if (!handle(socket.getInputStream(), socket.getOutputStream())) {
+          return;
+        }
+      } catch (IOException e) {
+        System.err.println("[ERROR] " + e.getLocalizedMessage());
+      }
+    }
+  }
+
+  /**
+   * Processes a request.
+   *
+   * @return false if the server should be stopped, true otherwise.
+   */
+  public boolean handle(InputStream in, OutputStream out) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    PrintStream output = new PrintStream(out, true, StandardCharsets.UTF_8.name());
+    String token = reader.readLine();
+    if (token == null) {
+      return true;
+    }
+    if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), myToken)) {
+      output.println("[ERROR] Authentication failed");
+      output.println(STATUS_PREFIX + 1);
+      return true;
+    }
+
+    String workingDirectory = reader.readLine();
+    if (workingDirectory == null) {
+      output.println(STATUS_PREFIX + 1);
+      return true;
+    }
+    List<String> args = new ArrayList<>();
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      args.add(line);
+    }
+
+    if (args.size() == 1 && args.get(0).equals(STOP_COMMAND)) {
+      output.println("[INFO] Stopped");
+      output.println(STATUS_PREFIX + 0);
+      return false;
+    }
+    if (args.size() == 1 && args.get(0).equals(RELOAD_COMMAND)) {
+      myFrontend.getLibraryManager().unloadExceptPrelude();
+      output.println("[INFO] Unloaded libraries");
+      output.println(STATUS_PREFIX + 0);
+      return true;
+    }
+
+    // The output of the frontend is sent to the client, so it is not mixed with the output of the server
+    myFrontend.setOutput(output, output);
+    int status;
+    try {
+      myFrontend.run(Paths.get(workingDirectory), args.toArray(new String[0]));
+      status = myFrontend.getErrorCount();
+    } catch (Exception e) {
+      e.printStackTrace(output);
+      status = 1;
+    } finally {
+      myFrontend.setOutput(System.out, System.err);
+    }
+    output.println(STATUS_PREFIX + status);
+    return true;
+  }
+}
@@ -5,6 +5,7 @@ import org.arend.error.ErrorReporter;
 import org.arend.library.FileLoadableHeaderLibrary;
 import org.arend.library.Library;
 import org.arend.library.LibraryConfig;
+import org.arend.library.SourceLibrary;
 import org.arend.library.UnmodifiableSourceLibrary;
 import org.arend.library.error.LibraryError;
 import org.arend.library.error.LibraryIOError;
@@ -24,6 +25,7 @@ public class FileLibraryResolver implements LibraryResolver {
   private final TypecheckerState myTypecheckerState;
   private final ErrorReporter myErrorReporter;
   private final Map<String, FileLoadableHeaderLibrary> myLibraries = new HashMap<>();
+  private final Set<SourceLibrary.Flag> myFlags = EnumSet.noneOf(SourceLibrary.Flag.class);
 
   public FileLibraryResolver(List<Path> libDirs, TypecheckerState typecheckerState, ErrorReporter errorReporter) {
     myLibDirs = libDirs;
@@ -49,7 +51,11 @@ public class FileLibraryResolver implements LibraryResolver {
       if (config.getBinariesDir() == null) {
         config.setBinariesDir(headerFile.getParent().resolve(".bin").toString());
       }
-      return new FileLoadableHeaderLibrary(config, headerFile, myTypecheckerState);
+      FileLoadableHeaderLibrary library = new FileLoadableHeaderLibrary(config, headerFile, myTypecheckerState);
+      for (SourceLibrary.Flag flag : myFlags) {
+        library.addFlag(flag);
+      }
+      return library;
     } catch (IOException e) {
       myErrorReporter.report(new LibraryIOError(headerFile.toString(), "Failed to read header file", e.getLocalizedMessage()));
       return null;
@@ -67,8 +73,28 @@ public class FileLibraryResolver implements LibraryResolver {
     return null;
   }
 
+  /**
+   * Adds a flag to every library that will be resolved.
+   */
+  public void addLibraryFlag(SourceLibrary.Flag flag) {
+    myFlags.add(flag);
+  }
+
+  /**
+   * Adds or removes a flag for libraries that will be resolved.
+   */
+  public void setLibraryFlag(SourceLibrary.Flag flag, boolean value) {
+    if (value) {
+      myFlags.add(flag);
+    } else {
+      myFlags.remove(flag);
+    }
+  }
+
   public void addLibraryDirectory(Path libDir) {
-    myLibDirs.add(libDir);
+    if (!myLibDirs.contains(libDir)) {
+      myLibDirs.add(libDir);
+    }
   }
 
   public void addLibraryDirectories(Collection<? extends Path> libDirs) {
@@ -15,19 +15,72 @@ import org.arend.term.group.*;
 import org.arend.util.Pair;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static org.arend.frontend.parser.ArendParser.*;
 
 public class BuildVisitor extends ArendBaseVisitor {
   private final ModulePath myModule;
   private final ErrorReporter myErrorReporter;
+  private final Map<Pair<LocatedReferable, String>, ConcreteLocatedReferable> myReusedReferables = new HashMap<>();
+  private final Map<ConcreteLocatedReferable, Concrete.ReferableDefinition> myDefinitions;
 
   public BuildVisitor(ModulePath module, ErrorReporter errorReporter) {
     myModule = module;
     myErrorReporter = errorReporter;
+    myDefinitions = null;
+  }
+
+  /**
+   * Creates a visitor that reuses given referables instead of creating new ones with the same parent and name.
+   * It is used to reload released concrete definitions (see {@link ConcreteLocatedReferable#releaseDefinition}).
+   * Concrete definitions are not attached to reused referables; they can be obtained with {@link #getDefinitions}.
+   */
+  public BuildVisitor(ModulePath module, ErrorReporter errorReporter, Collection<? extends ConcreteLocatedReferable> reusedReferables) {
+    myModule = module;
+    myErrorReporter = errorReporter;
+    myDefinitions = new HashMap<>();
+    for (ConcreteLocatedReferable referable : reusedReferables) {
+      myReusedReferables.putIfAbsent(getReferableKey(referable), referable);
+    }
+  }
+
+  /**
+   * @return concrete definitions of referables built by a visitor that reuses referables.
+   */
+  public Map<ConcreteLocatedReferable, Concrete.ReferableDefinition> getDefinitions() {
+    return myDefinitions == null ? Collections.emptyMap() : myDefinitions;
+  }
+
+  private void setDefinition(ConcreteLocatedReferable referable, Concrete.ReferableDefinition definition) {
+    if (myDefinitions == null) {
+      referable.setDefinition(definition);
+    } else {
+      myDefinitions.put(referable, definition);
+    }
+  }
+
+  private Concrete.ReferableDefinition getDefinition(ConcreteLocatedReferable referable) {
+    return myDefinitions == null ? referable.getDefinition() : myDefinitions.get(referable);
+  }
+
+  private static Pair<LocatedReferable, String> getReferableKey(LocatedReferable referable) {
+    LocatedReferable parent = referable.getLocatedReferableParent();
+    return new Pair<>(parent instanceof ModuleReferable ? null : parent, referable.textRepresentation());
+  }
+
+  private <T extends ConcreteLocatedReferable> T reuse(T referable) {
+    if (myReusedReferables.isEmpty()) {
+      return referable;
+    }
+
+    ConcreteLocatedReferable reused = myReusedReferables.get(getReferableKey(referable));
+    if (reused == null || reused.getClass() != referable.getClass()) {
+      return referable;
+    }
+    myReusedReferables.remove(getReferableKey(referable));
+    @SuppressWarnings("unchecked") T result = (T) reused;
+    return result;
   }
 
   private String getVar(AtomFieldsAccContext ctx) {
@@ -434,9 +487,9 @@ public class BuildVisitor extends ArendBaseVisitor {
   }
 
   private ConcreteLocatedReferable makeReferable(Position position, String name, Precedence precedence, ChildGroup parent) {
-    return parent instanceof FileGroup
+    return reuse(parent instanceof FileGroup
       ? new ConcreteLocatedReferable(position, name, precedence, myModule)
-      : new ConcreteLocatedReferable(position, name, precedence, (TCReferable) parent.getReferable(), LocatedReferableImpl.Kind.TYPECHECKABLE);
+      : new ConcreteLocatedReferable(position, name, precedence, (TCReferable) parent.getReferable(), LocatedReferableImpl.Kind.TYPECHECKABLE));
   }
 
   private StaticGroup visitDefInstance(DefInstanceContext ctx, ChildGroup parent, TCClassReferable enclosingClass) {
@@ -461,7 +514,7 @@ public class BuildVisitor extends ArendBaseVisitor {
 
     Concrete.FunctionDefinition funcDef = new Concrete.FunctionDefinition(Concrete.FunctionDefinition.Kind.INSTANCE, reference, parameters, returnPair.proj1, returnPair.proj2, body);
     funcDef.enclosingClass = enclosingClass;
-    reference.setDefinition(funcDef);
+    setDefinition(reference, funcDef);
     List<Group> subgroups = new ArrayList<>();
     List<SimpleNamespaceCommand> namespaceCommands = new ArrayList<>();
     StaticGroup resultGroup = new StaticGroup(reference, subgroups, namespaceCommands, parent);
@@ -567,7 +620,7 @@ public class BuildVisitor extends ArendBaseVisitor {
     }
 
     funDef.enclosingClass = enclosingClass;
-    referable.setDefinition(funDef);
+    setDefinition(referable, funDef);
     StaticGroup resultGroup = new StaticGroup(referable, subgroups, namespaceCommands, parent);
     visitWhere(ctx.where(), subgroups, namespaceCommands, resultGroup, enclosingClass);
 
@@ -615,7 +668,7 @@ public class BuildVisitor extends ArendBaseVisitor {
     ConcreteLocatedReferable referable = makeReferable(tokenPosition(ctx.start), ctx.ID().getText(), visitPrecedence(ctx.precedence()), parent);
     Concrete.DataDefinition dataDefinition = new Concrete.DataDefinition(referable, visitTeles(ctx.tele()), eliminatedReferences, ctx.TRUNCATED() != null, universe, new ArrayList<>());
     dataDefinition.enclosingClass = enclosingClass;
-    referable.setDefinition(dataDefinition);
+    setDefinition(referable, dataDefinition);
     visitDataBody(dataBodyCtx, dataDefinition, constructors);
 
     List<Group> subgroups = new ArrayList<>();
@@ -634,7 +687,7 @@ public class BuildVisitor extends ArendBaseVisitor {
   private List<TCReferable> collectUsedDefinitions(List<Group> groups, List<TCReferable> usedDefinitions) {
     for (Group subgroup : groups) {
       if (subgroup.getReferable() instanceof ConcreteLocatedReferable) {
-        Concrete.ReferableDefinition def = ((ConcreteLocatedReferable) subgroup.getReferable()).getDefinition();
+        Concrete.ReferableDefinition def = getDefinition((ConcreteLocatedReferable) subgroup.getReferable());
         if (def instanceof Concrete.FunctionDefinition && ((Concrete.FunctionDefinition) def).getKind().isUse()) {
           if (usedDefinitions == null) {
             usedDefinitions = new ArrayList<>();
@@ -687,9 +740,9 @@ public class BuildVisitor extends ArendBaseVisitor {
           }
         }
 
-        InternalConcreteLocatedReferable reference = new InternalConcreteLocatedReferable(tokenPosition(conCtx.start), conCtx.ID().getText(), visitPrecedence(conCtx.precedence()), true, def.getData(), LocatedReferableImpl.Kind.CONSTRUCTOR);
+        InternalConcreteLocatedReferable reference = reuse(new InternalConcreteLocatedReferable(tokenPosition(conCtx.start), conCtx.ID().getText(), visitPrecedence(conCtx.precedence()), true, def.getData(), LocatedReferableImpl.Kind.CONSTRUCTOR));
         Concrete.Constructor constructor = new Concrete.Constructor(reference, def, visitTeles(conCtx.tele()), visitElim(elimCtx), clauses);
-        reference.setDefinition(constructor);
+        setDefinition(reference, constructor);
         /* TODO[hits]
         ExprContext type = conCtx.expr();
         if (type != null) {
@@ -726,9 +779,9 @@ public class BuildVisitor extends ArendBaseVisitor {
       List<TeleContext> teleCtxs = fieldCtx.tele();
       List<Concrete.TypeParameter> parameters = visitTeles(teleCtxs);
       Pair<Concrete.Expression,Concrete.Expression> returnPair = visitReturnExpr(fieldCtx.returnExpr());
-      ConcreteClassFieldReferable reference = new ConcreteClassFieldReferable(tokenPosition(fieldCtx.start), fieldCtx.ID().getText(), visitPrecedence(fieldCtx.precedence()), true, true, false, parentClass.getData(), LocatedReferableImpl.Kind.FIELD);
+      ConcreteClassFieldReferable reference = reuse(new ConcreteClassFieldReferable(tokenPosition(fieldCtx.start), fieldCtx.ID().getText(), visitPrecedence(fieldCtx.precedence()), true, true, false, parentClass.getData(), LocatedReferableImpl.Kind.FIELD));
       Concrete.ClassField field = new Concrete.ClassField(reference, parentClass, true, (ClassFieldKind) visit(fieldCtx.fieldMod()), parameters, returnPair.proj1, returnPair.proj2);
-      reference.setDefinition(field);
+      setDefinition(reference, field);
       fields.add(field);
     } else if (ctx instanceof ClassImplContext) {
       Concrete.ClassFieldImpl impl = visitClassImpl((ClassImplContext) ctx);
@@ -777,9 +830,9 @@ public class BuildVisitor extends ArendBaseVisitor {
 
     Position position = tokenPosition(ctx.start);
     String name = ctx.ID().getText();
-    ConcreteLocatedReferable reference = parent instanceof FileGroup
+    ConcreteLocatedReferable reference = reuse(parent instanceof FileGroup
         ? new ConcreteLocatedReferable(position, name, Precedence.DEFAULT, myModule)
-        : new ConcreteLocatedReferable(position, name, Precedence.DEFAULT, (TCReferable) parent.getReferable(), GlobalReferable.Kind.OTHER);
+        : new ConcreteLocatedReferable(position, name, Precedence.DEFAULT, (TCReferable) parent.getReferable(), GlobalReferable.Kind.OTHER));
 
     StaticGroup resultGroup = new StaticGroup(reference, staticSubgroups, namespaceCommands, parent);
     visitWhere(where, staticSubgroups, namespaceCommands, resultGroup, enclosingClass);
@@ -814,12 +867,12 @@ public class BuildVisitor extends ArendBaseVisitor {
     }
 
     List<ConcreteClassFieldReferable> fieldReferables1 = new ArrayList<>();
-    reference = parent instanceof FileGroup
+    reference = reuse(parent instanceof FileGroup
       ? new ConcreteClassReferable(pos, name, prec, fieldReferables1, superClasses, parent, myModule)
-      : new ConcreteClassReferable(pos, name, prec, fieldReferables1, superClasses, parent, (TCReferable) parent.getReferable());
+      : new ConcreteClassReferable(pos, name, prec, fieldReferables1, superClasses, parent, (TCReferable) parent.getReferable()));
 
     Concrete.ClassDefinition classDefinition = new Concrete.ClassDefinition(reference, isRecord, new ArrayList<>(superClasses), fields, implementations);
-    reference.setDefinition(classDefinition);
+    setDefinition(reference, classDefinition);
     visitFieldTeles(ctx.fieldTele(), classDefinition, fields);
 
     List<TCReferable> usedDefinitions = null;
@@ -1320,9 +1373,9 @@ public class BuildVisitor extends ArendBaseVisitor {
 
       Concrete.Expression type = visitExpr(exprCtx);
       for (TerminalNode var : vars) {
-        ConcreteClassFieldReferable fieldRef = new ConcreteClassFieldReferable(tokenPosition(var.getSymbol()), var.getText(), Precedence.DEFAULT, false, explicit, true, classDef.getData(), LocatedReferableImpl.Kind.FIELD);
+        ConcreteClassFieldReferable fieldRef = reuse(new ConcreteClassFieldReferable(tokenPosition(var.getSymbol()), var.getText(), Precedence.DEFAULT, false, explicit, true, classDef.getData(), LocatedReferableImpl.Kind.FIELD));
         Concrete.ClassField field = new Concrete.ClassField(fieldRef, classDef, explicit, ClassFieldKind.FIELD, new ArrayList<>(), type, null);
-        fieldRef.setDefinition(field);
+        setDefinition(fieldRef, field);
         fields.add(field);
 
         if (forced) {
@@ -0,0 +1,106 @@
+package org.arend.frontend.parser;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.arend.util.HashUtils;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.arend.frontend.parser.ArendParser.*;
+
+/**
+ * Computes hashes of headers of definitions of a module, so it can be checked if only bodies of definitions were changed.
+ * The header of a definition consists of its tokens except for the body of a function or an instance and nested definitions.
+ * Namespace commands of a {@code \where} block belong to the header of the enclosing definition;
+ * namespace commands of the module are the header of the module, which is mapped to the empty name.
+ * Since whitespaces and comments are not tokens, they do not affect hashes.
+ */
+public class DefinitionHeaders {
+  private DefinitionHeaders() {}
+
+  /**
+   * @return hashes of headers of definitions of the module indexed by their names relative to the module
+   *         (for example, {@code f.g} for a definition {@code g} in the {@code \where} block of {@code f})
+   *         or null if the content has syntax errors.
+   */
+  @Nullable
+  public static Map<String, byte[]> compute(byte[] content) {
+    boolean[] hasErrors = new boolean[] { false };
+    BaseErrorListener errorListener = new BaseErrorListener() {
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
+        hasErrors[0] = true;
+      }
+    };
+
+    ArendLexer lexer = new ArendLexer(new ANTLRInputStream(new String(content, StandardCharsets.UTF_8)));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(errorListener);
+    ArendParser parser = new ArendParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.addErrorListener(errorListener);
+    StatementsContext tree = parser.statements();
+    if (hasErrors[0]) {
+      return null;
+    }
+
+    Map<String, byte[]> result = new HashMap<>();
+    MessageDigest digest = HashUtils.newDigest();
+    List<DefinitionContext> definitions = new ArrayList<>();
+    hashStatements(tree.statement(), digest, definitions);
+    result.put("", digest.digest());
+    for (DefinitionContext definition : definitions) {
+      hashDefinition(definition, "", result);
+    }
+    return result;
+  }
+
+  private static void hashDefinition(DefinitionContext definition, String prefix, Map<String, byte[]> result) {
+    TerminalNode id = definition.getToken(ID, 0);
+    if (id == null) {
+      return;
+    }
+
+    String name = prefix + id.getText();
+    MessageDigest digest = HashUtils.newDigest();
+    List<DefinitionContext> nested = new ArrayList<>();
+    hashTree(definition, digest, nested);
+    result.put(name, digest.digest());
+    for (DefinitionContext subdefinition : nested) {
+      hashDefinition(subdefinition, name + ".", result);
+    }
+  }
+
+  private static void hashTree(ParseTree tree, MessageDigest digest, List<DefinitionContext> nested) {
+    for (int i = 0; i < tree.getChildCount(); i++) {
+      ParseTree child = tree.getChild(i);
+      if (child instanceof TerminalNode) {
+        digest.update(child.getText().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+      } else if (child instanceof WhereContext) {
+        hashStatements(((WhereContext) child).statement(), digest, nested);
+      } else if (child instanceof ClassDefinitionStatContext) {
+        nested.add(((ClassDefinitionStatContext) child).definition());
+      } else if (!(child instanceof FunctionBodyContext || child instanceof InstanceBodyContext)) {
+        hashTree(child, digest, nested);
+      }
+    }
+  }
+
+  private static void hashStatements(List<StatementContext> statements, MessageDigest digest, List<DefinitionContext> definitions) {
+    for (StatementContext statement : statements) {
+      if (statement instanceof StatDefContext) {
+        definitions.add(((StatDefContext) statement).definition());
+      } else {
+        hashTree(statement, digest, definitions);
+      }
+    }
+  }
+}
@@ -16,7 +16,20 @@ import javax.annotation.Nullable;
 
 public class ConcreteLocatedReferable extends LocatedReferableImpl implements SourceInfo, DataContainer {
   private final Position myPosition;
-  private Concrete.ReferableDefinition myDefinition;
+  private volatile Concrete.ReferableDefinition myDefinition;
+  private volatile Reloader myReloader;
+  private TCReferable myReleasedTypecheckable;
+
+  /**
+   * Restores concrete definitions of released referables (see {@link #releaseDefinition}).
+   */
+  public interface Reloader {
+    /**
+     * Sets the concrete definition of {@code referable} and, possibly, of other released referables.
+     * If the definition cannot be restored, it remains null.
+     */
+    void reload(ConcreteLocatedReferable referable);
+  }
 
   public ConcreteLocatedReferable(Position position, @Nonnull String name, Precedence precedence, TCReferable parent, Kind kind) {
     super(precedence, name, parent, kind);
@@ -35,12 +48,28 @@ public class ConcreteLocatedReferable extends LocatedReferableImpl implements So
   }
 
   public Concrete.ReferableDefinition getDefinition() {
-    return myDefinition;
+    Concrete.ReferableDefinition definition = myDefinition;
+    if (definition == null) {
+      Reloader reloader = myReloader;
+      if (reloader != null) {
+        reloader.reload(this);
+        definition = myDefinition;
+      }
+    }
+    return definition;
+  }
+
+  /**
+   * @return true if the concrete definition is available without reloading.
+   */
+  public boolean isDefinitionLoaded() {
+    return myDefinition != null;
   }
 
   @Override
   public TCReferable getTypecheckable() {
-    return myDefinition == null ? null : myDefinition.getRelatedDefinition().getData();
+    Concrete.ReferableDefinition definition = myDefinition;
+    return definition == null ? myReleasedTypecheckable : definition.getRelatedDefinition().getData();
   }
 
   public void setDefinition(Concrete.ReferableDefinition definition) {
@@ -48,6 +77,39 @@ public class ConcreteLocatedReferable extends LocatedReferableImpl implements So
     myDefinition = definition;
   }
 
+  public void setReloader(Reloader reloader) {
+    myReloader = reloader;
+  }
+
+  /**
+   * Drops the concrete definition together with definitions of constructors or fields if it can be reloaded later.
+   */
+  public void releaseDefinition() {
+    Concrete.ReferableDefinition definition = myDefinition;
+    if (myReloader == null || definition == null) {
+      return;
+    }
+
+    if (definition instanceof Concrete.DataDefinition) {
+      for (Concrete.ConstructorClause clause : ((Concrete.DataDefinition) definition).getConstructorClauses()) {
+        for (Concrete.Constructor constructor : clause.getConstructors()) {
+          if (constructor.getData() instanceof ConcreteLocatedReferable) {
+            ((ConcreteLocatedReferable) constructor.getData()).releaseDefinition();
+          }
+        }
+      }
+    } else if (definition instanceof Concrete.ClassDefinition) {
+      for (Concrete.ClassField field : ((Concrete.ClassDefinition) definition).getFields()) {
+        if (field.getData() instanceof ConcreteLocatedReferable) {
+          ((ConcreteLocatedReferable) field.getData()).releaseDefinition();
+        }
+      }
+    }
+
+    myReleasedTypecheckable = definition.getRelatedDefinition().getData();
+    myDefinition = null;
+  }
+
   @Override
   public String moduleTextRepresentation() {
     return myPosition == null ? null : myPosition.moduleTextRepresentation();
@@ -61,6 +123,7 @@ public class ConcreteLocatedReferable extends LocatedReferableImpl implements So
   @Nullable
   @Override
   public ClassReferable getTypeClassReference() {
-    return myDefinition == null ? null : myDefinition.accept(new TypeClassReferenceExtractVisitor(ConcreteReferableProvider.INSTANCE), null);
+    Concrete.ReferableDefinition definition = getDefinition();
+    return definition == null ? null : definition.accept(new TypeClassReferenceExtractVisitor(ConcreteReferableProvider.INSTANCE), null);
   }
 }
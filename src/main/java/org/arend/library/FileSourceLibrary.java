@@ -55,7 +55,10 @@ public class FileSourceLibrary extends UnmodifiableSourceLibrary {
   @Nullable
   @Override
   public BinarySource getBinarySource(ModulePath modulePath) {
-    return myBinaryBasePath == null ? null : new GZIPStreamBinarySource(new FileBinarySource(myBinaryBasePath, modulePath));
+    if (myBinaryBasePath == null) {
+      return null;
+    }
+    return hasFlag(Flag.MAP_BINARIES) ? new MappedFileBinarySource(myBinaryBasePath, modulePath) : new GZIPStreamBinarySource(new FileBinarySource(myBinaryBasePath, modulePath));
   }
 
   @Nullable
@@ -8,6 +8,7 @@ import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.naming.scope.Scope;
 import org.arend.prelude.Prelude;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.util.CachePolicy;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -24,6 +25,8 @@ public class LibraryManager {
   private final Map<Library, Set<Library>> myReverseDependencies = new LinkedHashMap<>();
   private final Set<Library> myLoadingLibraries = new HashSet<>();
   private final Set<Library> myFailedLibraries = new HashSet<>();
+  private int myParsingJobs = 1;
+  private CachePolicy myScopeCachePolicy = CachingModuleScopeProvider.DEFAULT_POLICY;
 
   /**
    * Constructs new {@code LibraryManager}.
@@ -70,7 +73,7 @@ public class LibraryManager {
         }
       }
       return null;
-    });
+    }, myScopeCachePolicy);
   }
 
   public InstanceProviderSet getInstanceProviderSet() {
@@ -85,6 +88,35 @@ public class LibraryManager {
     return myLibraryErrorReporter;
   }
 
+  /**
+   * Gets the number of threads used to parse raw sources.
+   */
+  public int getParsingJobs() {
+    return myParsingJobs;
+  }
+
+  /**
+   * Sets the number of threads used to parse raw sources.
+   * If it is greater than 1, sources are parsed concurrently before they are preloaded (see {@link org.arend.source.SourceLoader#preloadRaw(Collection)}).
+   */
+  public void setParsingJobs(int jobs) {
+    if (jobs < 1) {
+      throw new IllegalArgumentException("The number of jobs must be positive");
+    }
+    myParsingJobs = jobs;
+  }
+
+  public CachePolicy getScopeCachePolicy() {
+    return myScopeCachePolicy;
+  }
+
+  /**
+   * Sets the policy for caches of module scopes returned by {@link #getAvailableModuleScopeProvider}.
+   */
+  public void setScopeCachePolicy(CachePolicy policy) {
+    myScopeCachePolicy = policy;
+  }
+
   /**
    * Checks if a library is registered in this library manager.
    *
@@ -235,6 +267,7 @@ public class LibraryManager {
 
     Set<Library> dependencies = myReverseDependencies.remove(library);
     library.unload();
+    myInstanceProviderSet.invalidateCaches();
 
     if (dependencies == null) {
       return;
@@ -258,6 +291,7 @@ public class LibraryManager {
       library.unload();
     }
     myReverseDependencies.clear();
+    myInstanceProviderSet.invalidateCaches();
   }
 
   /**
@@ -284,5 +318,6 @@ public class LibraryManager {
         it.remove();
       }
     }
+    myInstanceProviderSet.invalidateCaches();
   }
 }
@@ -0,0 +1,213 @@
+package org.arend.library;
+
+import org.arend.error.ErrorReporter;
+import org.arend.module.ModulePath;
+import org.arend.naming.reference.GlobalReferable;
+import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.ReferableConverter;
+import org.arend.term.NamespaceCommand;
+import org.arend.term.group.Group;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persists updated modules of a library on background threads while other modules are being typechecked.
+ * A module is scheduled when all of its definitions are typechecked (see {@link #typecheckingFinished})
+ * and all modules it imports from the same library are scheduled, so that their interface hashes do not change.
+ * It is persisted after these modules, so their interface hashes are computed only once.
+ *
+ * Modules that were not scheduled during typechecking (for example, modules with mutual imports) are persisted by {@link #waitAll},
+ * which must be invoked before the program exits.
+ * Background threads are daemon threads, so they do not keep the program running if {@link #waitAll} is not invoked because of an error;
+ * in this case, {@link #shutdown} should be invoked to release them.
+ */
+public class PersistingScheduler {
+  private final SourceLibrary myLibrary;
+  private final ReferableConverter myReferableConverter;
+  private final ErrorReporter myErrorReporter;
+  private final ExecutorService myExecutor;
+  private final Map<ModulePath, Set<TCReferable>> myRemaining = new LinkedHashMap<>();
+  private final Map<ModulePath, List<ModulePath>> myImports = new HashMap<>();
+  private final Map<ModulePath, List<ModulePath>> myImporters = new HashMap<>();
+  private final Map<ModulePath, CompletableFuture<Boolean>> myFutures = new LinkedHashMap<>();
+
+  /**
+   * @param library             the library whose modules are persisted.
+   * @param modules             modules that should be persisted.
+   * @param referableConverter  a converter that is passed to {@link SourceLibrary#persistModule}.
+   * @param errorReporter       a reporter for errors that occur during persisting; it is invoked from background threads.
+   * @param threads             the number of background threads.
+   */
+  public PersistingScheduler(SourceLibrary library, Collection<? extends ModulePath> modules, ReferableConverter referableConverter, ErrorReporter errorReporter, int threads) {
+    myLibrary = library;
+    myReferableConverter = referableConverter;
+    myErrorReporter = errorReporter;
+    myExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    for (ModulePath module : modules) {
+      Set<TCReferable> definitions = new HashSet<>();
+      Group group = library.getModuleGroup(module);
+      if (group != null) {
+        collectDefinitions(group, definitions);
+      }
+      myRemaining.put(module, definitions);
+    }
+
+    for (ModulePath module : myRemaining.keySet()) {
+      Group group = library.getModuleGroup(module);
+      if (group == null) {
+        continue;
+      }
+      for (NamespaceCommand command : group.getNamespaceCommands()) {
+        if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
+          ModulePath imported = new ModulePath(command.getPath());
+          if (!imported.equals(module) && myRemaining.containsKey(imported)) {
+            myImports.computeIfAbsent(module, k -> new ArrayList<>()).add(imported);
+            myImporters.computeIfAbsent(imported, k -> new ArrayList<>()).add(module);
+          }
+        }
+      }
+    }
+
+    synchronized (this) {
+      for (ModulePath module : myRemaining.keySet()) {
+        scheduleIfReady(module);
+      }
+    }
+  }
+
+  private static void collectDefinitions(Group group, Set<TCReferable> definitions) {
+    LocatedReferable referable = group.getReferable();
+    if (referable instanceof TCReferable && referable.getKind() == GlobalReferable.Kind.TYPECHECKABLE) {
+      definitions.add((TCReferable) referable);
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      collectDefinitions(subgroup, definitions);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      collectDefinitions(subgroup, definitions);
+    }
+  }
+
+  /**
+   * Should be invoked when a definition is typechecked completely, that is, its body is typechecked.
+   * This method is thread-safe.
+   */
+  public void typecheckingFinished(TCReferable referable) {
+    ModulePath module = referable.getLocation();
+    if (module == null) {
+      return;
+    }
+
+    synchronized (this) {
+      Set<TCReferable> remaining = myRemaining.get(module);
+      if (remaining != null && remaining.remove(referable) && remaining.isEmpty()) {
+        scheduleIfReady(module);
+      }
+    }
+  }
+
+  /**
+   * Should be invoked when a module does not have to be persisted since it was loaded from its binary source instead of being typechecked.
+   * This method is thread-safe.
+   */
+  public synchronized void moduleLoaded(ModulePath module) {
+    Set<TCReferable> remaining = myRemaining.get(module);
+    if (remaining == null || myFutures.containsKey(module)) {
+      return;
+    }
+
+    remaining.clear();
+    myFutures.put(module, CompletableFuture.completedFuture(true));
+    for (ModulePath importer : myImporters.getOrDefault(module, Collections.emptyList())) {
+      scheduleIfReady(importer);
+    }
+  }
+
+  private void scheduleIfReady(ModulePath module) {
+    if (myFutures.containsKey(module) || !myRemaining.get(module).isEmpty()) {
+      return;
+    }
+    for (ModulePath imported : myImports.getOrDefault(module, Collections.emptyList())) {
+      if (!myFutures.containsKey(imported)) {
+        return;
+      }
+    }
+
+    schedule(module);
+    for (ModulePath importer : myImporters.getOrDefault(module, Collections.emptyList())) {
+      scheduleIfReady(importer);
+    }
+  }
+
+  private void schedule(ModulePath module) {
+    // Only modules that are already scheduled are awaited, so there are no cycles
+    List<CompletableFuture<Boolean>> dependencies = new ArrayList<>();
+    for (ModulePath imported : myImports.getOrDefault(module, Collections.emptyList())) {
+      CompletableFuture<Boolean> future = myFutures.get(imported);
+      if (future != null) {
+        dependencies.add(future);
+      }
+    }
+
+    myFutures.put(module, CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+      .handleAsync((result, exception) -> myLibrary.persistModule(module, myReferableConverter, myErrorReporter), myExecutor));
+  }
+
+  /**
+   * Persists modules that were not scheduled yet and waits until all modules are persisted.
+   * The scheduler cannot be used after this method is invoked.
+   *
+   * @return true if all modules were persisted successfully, false otherwise.
+   */
+  public boolean waitAll() {
+    List<CompletableFuture<Boolean>> futures;
+    synchronized (this) {
+      for (ModulePath module : myRemaining.keySet()) {
+        if (!myFutures.containsKey(module)) {
+          schedule(module);
+        }
+      }
+      futures = new ArrayList<>(myFutures.values());
+    }
+
+    try {
+      boolean ok = true;
+      for (CompletableFuture<Boolean> future : futures) {
+        if (!future.join()) {
+          ok = false;
+        }
+      }
+      return ok;
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    } finally {
+      myExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Stops background threads without persisting modules that were not scheduled yet.
+   * Modules that are being persisted are finished.
+   * The scheduler cannot be used after this method is invoked.
+   */
+  public void shutdown() {
+    myExecutor.shutdown();
+  }
+}
@@ -2,6 +2,7 @@ package org.arend.library;
 
 import org.arend.error.ErrorReporter;
 import org.arend.module.ModulePath;
+import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.source.BinarySource;
@@ -9,21 +10,34 @@ import org.arend.source.Source;
 import org.arend.source.SourceLoader;
 import org.arend.source.error.PersistingError;
 import org.arend.term.group.ChildGroup;
+import org.arend.term.group.Group;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.typechecking.order.dependency.DummyDependencyListener;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.EnumSet;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Represents a library which can load modules in the binary format (see {@link #getBinarySource})
  * as well as ordinary modules (see {@link #getRawSource}).
  */
 public abstract class SourceLibrary extends BaseLibrary {
-  public enum Flag { RECOMPILE }
+  /**
+   * {@link #RECOMPILE} means that binary sources are not loaded.
+   * {@link #MAP_BINARIES} means that binary sources are mapped into memory, so bodies of functions are not copied until they are requested
+   * (see {@link org.arend.source.MappedFileBinarySource}); it is supported by {@link FileSourceLibrary}.
+   * {@link #RELEASE_CONCRETE} means that concrete definitions of raw sources are dropped after they are typechecked
+   * and restored by parsing the source again when they are needed (see {@link org.arend.source.StreamRawSource}).
+   */
+  public enum Flag { RECOMPILE, MAP_BINARIES, RELEASE_CONCRETE }
   private final EnumSet<Flag> myFlags = EnumSet.noneOf(Flag.class);
+  private final Map<ModulePath, byte[]> myInterfaceHashes = new ConcurrentHashMap<>();
+  private final Set<ModulePath> myDeferredModules = new LinkedHashSet<>();
 
   /**
    * Creates a new {@code SourceLibrary}
@@ -48,6 +62,13 @@ public abstract class SourceLibrary extends BaseLibrary {
     myFlags.remove(flag);
   }
 
+  /**
+   * Checks if a flag is set.
+   */
+  public boolean hasFlag(Flag flag) {
+    return myFlags.contains(flag);
+  }
+
   /**
    * Gets the raw source (that is, the source containing not typechecked data) for a given module path.
    *
@@ -129,6 +150,121 @@ public abstract class SourceLibrary extends BaseLibrary {
     return DummyDependencyListener.INSTANCE;
   }
 
+  /**
+   * Gets the interface hash of a module, that is, the hash of its definitions and instances without bodies of lemmas.
+   * Binary sources store interface hashes of their dependencies, so they are reused only if these dependencies did not change.
+   *
+   * @param modulePath  the path to the module.
+   *
+   * @return the interface hash of the module or null if it was not loaded from a binary source or persisted yet.
+   */
+  @Nullable
+  public byte[] getInterfaceHash(ModulePath modulePath) {
+    return myInterfaceHashes.get(modulePath);
+  }
+
+  /**
+   * Sets the interface hash of a module.
+   *
+   * @param modulePath  the path to the module.
+   * @param hash        the interface hash of the module or null if it is unknown.
+   */
+  public void setInterfaceHash(ModulePath modulePath, @Nullable byte[] hash) {
+    if (hash == null) {
+      myInterfaceHashes.remove(modulePath);
+    } else {
+      myInterfaceHashes.put(modulePath, hash);
+    }
+  }
+
+  /**
+   * Gets modules whose binary sources were not loaded since some modules they depend on have to be typechecked first.
+   * These modules are loaded from raw sources, but {@link #typecheckUpdatedModules} loads their binary sources
+   * if the interfaces of these dependencies do not change.
+   *
+   * @return the collection of deferred modules.
+   */
+  @Nonnull
+  public Collection<? extends ModulePath> getDeferredModules() {
+    return myDeferredModules;
+  }
+
+  /**
+   * Typechecks updated modules of this library (see {@link #getUpdatedModules}).
+   * Deferred modules (see {@link #getDeferredModules}) are typechecked after other modules;
+   * before that, their binary sources are loaded if the interfaces of modules they depend on did not change.
+   *
+   * @param libraryManager  the library manager which loaded this library.
+   * @param typechecker     typechecks given modules and returns false if typechecking was interrupted.
+   * @param binaryLoaded    is invoked on every deferred module that was loaded from its binary source.
+   *
+   * @return false if typechecking was interrupted, true otherwise.
+   */
+  public boolean typecheckUpdatedModules(LibraryManager libraryManager, Predicate<Collection<? extends Group>> typechecker, Consumer<ModulePath> binaryLoaded) {
+    Set<ModulePath> typechecked = new HashSet<>();
+    while (true) {
+      List<Group> groups = new ArrayList<>();
+      for (ModulePath module : getUpdatedModules()) {
+        if (!myDeferredModules.contains(module) && typechecked.add(module)) {
+          Group group = getModuleGroup(module);
+          if (group != null) {
+            groups.add(group);
+          }
+          // The interface of the module is computed again after it is typechecked
+          myInterfaceHashes.remove(module);
+        }
+      }
+      if (!groups.isEmpty() && !typechecker.test(groups)) {
+        return false;
+      }
+      if (myDeferredModules.isEmpty()) {
+        return true;
+      }
+
+      // Deferred modules can be typechecked as dependencies of other modules; such modules cannot be replaced with binary ones
+      ReferableConverter referableConverter = getReferableConverter();
+      List<ModulePath> deferred = new ArrayList<>();
+      for (ModulePath module : myDeferredModules) {
+        Group group = getModuleGroup(module);
+        if (group != null && referableConverter != null && !hasTypecheckedDefinitions(group, referableConverter)) {
+          deferred.add(module);
+        }
+      }
+      myDeferredModules.clear();
+
+      SourceLoader sourceLoader = new SourceLoader(this, libraryManager);
+      for (ModulePath module : sourceLoader.loadDeferredBinaries(deferred)) {
+        binaryLoaded.accept(module);
+      }
+      myDeferredModules.addAll(sourceLoader.getDeferredModules());
+    }
+  }
+
+  private boolean hasTypecheckedDefinitions(Group group, ReferableConverter referableConverter) {
+    TCReferable referable = referableConverter.toDataLocatedReferable(group.getReferable());
+    if (referable != null && getTypecheckerState().getTypechecked(referable) != null) {
+      return true;
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      if (hasTypecheckedDefinitions(subgroup, referableConverter)) {
+        return true;
+      }
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      if (hasTypecheckedDefinitions(subgroup, referableConverter)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void unload() {
+    super.unload();
+    myInterfaceHashes.clear();
+    myDeferredModules.clear();
+  }
+
   @Override
   public boolean load(LibraryManager libraryManager) {
     if (isLoaded()) {
@@ -150,9 +286,11 @@ public abstract class SourceLibrary extends BaseLibrary {
 
     SourceLoader sourceLoader = new SourceLoader(this, libraryManager);
     if (hasRawSources()) {
-      for (ModulePath module : header.modules) {
-        sourceLoader.preloadRaw(module);
+      // Only raw sources of modules that have to be typechecked are parsed
+      if (!myFlags.contains(Flag.RECOMPILE)) {
+        sourceLoader.loadBinariesBeforeRaw(header.modules);
       }
+      sourceLoader.preloadRaw(header.modules);
       sourceLoader.loadRawSources();
     }
 
@@ -160,6 +298,7 @@ public abstract class SourceLibrary extends BaseLibrary {
       for (ModulePath module : header.modules) {
         sourceLoader.loadBinary(module);
       }
+      myDeferredModules.addAll(sourceLoader.getDeferredModules());
     }
 
     return super.load(libraryManager);
@@ -3,20 +3,31 @@ package org.arend.module.scopeprovider;
 import org.arend.module.ModulePath;
 import org.arend.naming.scope.CachingScope;
 import org.arend.naming.scope.Scope;
+import org.arend.util.BoundedCache;
+import org.arend.util.CachePolicy;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * Caches scopes of modules according to a {@link CachePolicy}.
+ * An evicted scope is requested from the underlying provider again.
+ */
 public class CachingModuleScopeProvider implements ModuleScopeProvider {
+  public static final CachePolicy DEFAULT_POLICY = CachePolicy.UNBOUNDED;
+
   private final ModuleScopeProvider myModuleScopeProvider;
-  private final Map<ModulePath, Scope> myScopes = new HashMap<>();
+  private final BoundedCache<ModulePath, Scope> myScopes;
 
   private final static Scope NULL_SCOPE = new Scope() {};
 
-  public CachingModuleScopeProvider(ModuleScopeProvider moduleScopeProvider) {
+  public CachingModuleScopeProvider(ModuleScopeProvider moduleScopeProvider, CachePolicy policy) {
     myModuleScopeProvider = moduleScopeProvider;
+    myScopes = policy.makeCache();
+  }
+
+  public CachingModuleScopeProvider(ModuleScopeProvider moduleScopeProvider) {
+    this(moduleScopeProvider, DEFAULT_POLICY);
   }
 
   public void reset(ModulePath modulePath) {
@@ -45,4 +56,37 @@ public class CachingModuleScopeProvider implements ModuleScopeProvider {
     myScopes.put(module, scope == null ? NULL_SCOPE : scope);
     return scope;
   }
+
+  /**
+   * @return the number of cached modules.
+   */
+  public int size() {
+    return myScopes.size();
+  }
+
+  /**
+   * @return the number of cached modules and the footprint of their scopes (see {@link CachingScope#getFootprint()}).
+   */
+  public int getFootprint() {
+    int result = 0;
+    for (Scope scope : myScopes.values()) {
+      result++;
+      if (scope instanceof CachingScope) {
+        result += ((CachingScope) scope).getFootprint();
+      }
+    }
+    return result;
+  }
+
+  public long getHits() {
+    return myScopes.getHits();
+  }
+
+  public long getMisses() {
+    return myScopes.getMisses();
+  }
+
+  public void resetStatistics() {
+    myScopes.resetStatistics();
+  }
 }
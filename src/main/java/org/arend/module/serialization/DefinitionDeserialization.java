@@ -1,5 +1,7 @@
 package org.arend.module.serialization;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import org.arend.core.context.LinkList;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.definition.*;
@@ -19,19 +21,36 @@ import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.util.Pair;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.util.*;
 
 public class DefinitionDeserialization {
   private final CallTargetProvider myCallTargetProvider;
+  private final SharedExpressionCache mySharedExpressions;
   private final DependencyListener myDependencyListener;
-
-  public DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener) {
+  private final boolean myLazyBodies;
+
+  /**
+   * @param sharedExpressions  shared subterms of the module or null if the module has version 0.
+   * @param lazyBodies         if true, bodies of functions that were stored as byte strings are parsed and deserialized when they are requested for the first time.
+   *                           Their dependencies are stored separately, so they are reported to {@code dependencyListener} immediately.
+   */
+  DefinitionDeserialization(CallTargetProvider callTargetProvider, SharedExpressionCache sharedExpressions, DependencyListener dependencyListener, boolean lazyBodies) {
     myCallTargetProvider = callTargetProvider;
+    mySharedExpressions = sharedExpressions;
     myDependencyListener = dependencyListener;
+    myLazyBodies = lazyBodies;
+  }
+
+  /**
+   * Creates a deserializer of standalone definitions (see {@link DefinitionSerialization#DefinitionSerialization(CallTargetIndexProvider)}).
+   */
+  public DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener) {
+    this(callTargetProvider, new SharedExpressionCache(Collections.emptyList()), dependencyListener, false);
   }
 
   public void fillInDefinition(DefinitionProtos.Definition defProto, Definition def, boolean typecheckDefinitionsWithErrors) throws DeserializationException {
-    final ExpressionDeserialization defDeserializer = new ExpressionDeserialization(myCallTargetProvider, myDependencyListener, def.getReferable());
+    final ExpressionDeserialization defDeserializer = new ExpressionDeserialization(myCallTargetProvider, mySharedExpressions, myDependencyListener, def.getReferable());
 
     switch (defProto.getDefinitionDataCase()) {
       case CLASS:
@@ -326,6 +345,24 @@ public class DefinitionDeserialization {
     }
   }
 
+  private DefinitionProtos.Body parseBody(ByteString bytes) throws DeserializationException {
+    try {
+      CodedInputStream input = bytes.newCodedInput();
+      input.setRecursionLimit(Integer.MAX_VALUE);
+      return DefinitionProtos.Body.parseFrom(input);
+    } catch (IOException e) {
+      throw new DeserializationException(e.getMessage());
+    }
+  }
+
+  private Body readLazyBody(ExpressionDeserialization defDeserializer, ByteString bytes, TCReferable referable) {
+    try {
+      return readBody(defDeserializer, parseBody(bytes));
+    } catch (DeserializationException e) {
+      throw new IllegalStateException("Cannot deserialize the body of '" + referable.textRepresentation() + "': " + e.getMessage(), e);
+    }
+  }
+
   private Patterns readPatterns(ExpressionDeserialization defDeserializer, List<DefinitionProtos.Definition.Pattern> protos, LinkList list) throws DeserializationException {
     List<Pattern> patterns = new ArrayList<>(protos.size());
     for (DefinitionProtos.Definition.Pattern proto : protos) {
@@ -392,6 +429,19 @@ public class DefinitionDeserialization {
     functionDef.setVisibleParameter(functionProto.getVisibleParameter());
     if (functionProto.hasBody()) {
       functionDef.setBody(readBody(defDeserializer, functionProto.getBody()));
+    } else if (!functionProto.getLazyBody().isEmpty()) {
+      ByteString bytes = functionProto.getLazyBody();
+      if (myLazyBodies) {
+        // The body is parsed only when it is requested, so its dependencies are reported now
+        for (Integer index : functionProto.getLazyBodyDependencyList()) {
+          myDependencyListener.dependsOn(functionDef.getReferable(), false, myCallTargetProvider.getCallTarget(index, Definition.class).getReferable());
+        }
+        // defDeserializer is not used after this point, so it can be used later to read the body
+        defDeserializer.setDependenciesReported();
+        functionDef.setBodyLoader(() -> readLazyBody(defDeserializer, bytes, functionDef.getReferable()));
+      } else {
+        functionDef.setBody(readBody(defDeserializer, parseBody(bytes)));
+      }
     }
     // setTypeClassReference(functionDef.getReferable(), functionDef.getParameters(), functionDef.getResultType());
   }
@@ -19,14 +19,37 @@ import org.arend.util.Pair;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class DefinitionSerialization {
   private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private final SharedExpressionTable mySharedExpressions;
+  private final boolean myLazyBodies;
+  private final Map<FunctionDefinition, ExpressionSerialization> myLemmaBodies;  // null if bodies of lemmas are written with their definitions
+
+  /**
+   * @param sharedExpressions  the table of subterms shared by definitions of the module.
+   * @param lazyBodies         if true, bodies of functions are stored as byte strings, so they can be deserialized lazily.
+   * @param deferLemmaBodies   if true, bodies of lemmas are not written by {@link #writeDefinition}, they should be written by {@link #writeLemmaBody}.
+   */
+  DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider, SharedExpressionTable sharedExpressions, boolean lazyBodies, boolean deferLemmaBodies) {
+    myCallTargetIndexProvider = callTargetIndexProvider;
+    mySharedExpressions = sharedExpressions;
+    myLazyBodies = lazyBodies;
+    myLemmaBodies = deferLemmaBodies ? new HashMap<>() : null;
+  }
+
+  DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider, SharedExpressionTable sharedExpressions, boolean lazyBodies) {
+    this(callTargetIndexProvider, sharedExpressions, lazyBodies, false);
+  }
 
+  /**
+   * Creates a serializer of standalone definitions, which do not refer to shared subterms.
+   */
   public DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider) {
-    myCallTargetIndexProvider = callTargetIndexProvider;
+    this(callTargetIndexProvider, SharedExpressionTable.inline(), false);
   }
 
   DefinitionProtos.Definition writeDefinition(Definition definition) {
@@ -59,7 +82,7 @@ public class DefinitionSerialization {
     out.setHasTypeClassReference(definition.getReferable().getTypeClassReference() != null);
     out.setHasUniverses(definition.hasUniverses());
 
-    final ExpressionSerialization defSerializer = new ExpressionSerialization(myCallTargetIndexProvider);
+    final ExpressionSerialization defSerializer = new ExpressionSerialization(myCallTargetIndexProvider, mySharedExpressions);
 
     if (definition instanceof ClassDefinition) {
       // type cannot possibly have errors
@@ -305,12 +328,41 @@ public class DefinitionSerialization {
     builder.setIsLemma(definition.isLemma());
     builder.setVisibleParameter(definition.getVisibleParameter());
     if (definition.status().bodyIsOK() && definition.getActualBody() != null) {
-      builder.setBody(writeBody(defSerializer, definition.getActualBody()));
+      if (myLemmaBodies != null && definition.isLemma()) {
+        myLemmaBodies.put(definition, defSerializer);
+      } else {
+        writeFunctionBody(defSerializer, definition, builder);
+      }
     }
 
     return builder.build();
   }
 
+  /**
+   * Writes the body of a lemma that was omitted by {@link #writeDefinition}.
+   * Subterms of the body are not shared, so it does not affect the rest of the module.
+   */
+  void writeLemmaBody(FunctionDefinition definition, DefinitionProtos.Definition.FunctionData.Builder builder) {
+    ExpressionSerialization defSerializer = myLemmaBodies == null ? null : myLemmaBodies.remove(definition);
+    if (defSerializer != null) {
+      defSerializer.disableSharing();
+      writeFunctionBody(defSerializer, definition, builder);
+    }
+  }
+
+  private void writeFunctionBody(ExpressionSerialization defSerializer, FunctionDefinition definition, DefinitionProtos.Definition.FunctionData.Builder builder) {
+    if (myLazyBodies) {
+      // Dependencies of the body are stored separately, so that they can be reported before the body is deserialized
+      defSerializer.startCollectingDependencies();
+      builder.setLazyBody(writeBody(defSerializer, definition.getActualBody()).toByteString());
+      for (Definition dependency : defSerializer.stopCollectingDependencies()) {
+        builder.addLazyBodyDependency(myCallTargetIndexProvider.getDefIndex(dependency));
+      }
+    } else {
+      builder.setBody(writeBody(defSerializer, definition.getActualBody()));
+    }
+  }
+
   private DefinitionProtos.Body writeBody(ExpressionSerialization defSerializer, @Nonnull Body body) {
     DefinitionProtos.Body.Builder bodyBuilder = DefinitionProtos.Body.newBuilder();
     if (body instanceof IntervalElim) {
@@ -19,21 +19,29 @@ import org.arend.naming.reference.TCReferable;
 import org.arend.typechecking.order.dependency.DependencyListener;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 class ExpressionDeserialization {
   private final CallTargetProvider myCallTargetProvider;
+  private final SharedExpressionCache mySharedExpressions;
   private final List<Binding> myBindings = new ArrayList<>();  // de Bruijn indices
 
   private final DependencyListener myDependencyListener;
   private final TCReferable myDefinition;
+  private final ExpressionInterner myInterner = ExpressionInterner.getInstance();
   private boolean myHeader = true;
+  private boolean myDependenciesReported;
 
-  ExpressionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, TCReferable definition) {
+  // The state of the shared subterm which is being deserialized
+  private int myMinBinding = Integer.MAX_VALUE;
+  private Set<TCReferable> myDependencies;
+
+  /**
+   * @param sharedExpressions  shared subterms of the module or null if the module has version 0 (see {@link ModuleSerialization#VERSION}).
+   */
+  ExpressionDeserialization(CallTargetProvider callTargetProvider, SharedExpressionCache sharedExpressions, DependencyListener dependencyListener, TCReferable definition) {
     myCallTargetProvider = callTargetProvider;
+    mySharedExpressions = sharedExpressions;
     myDependencyListener = dependencyListener;
     myDefinition = definition;
   }
@@ -42,6 +50,27 @@ class ExpressionDeserialization {
     myHeader = isHeader;
   }
 
+  /**
+   * Stops reporting dependencies to the dependency listener.
+   * It is used when dependencies of the rest of the definition were already reported.
+   */
+  void setDependenciesReported() {
+    myDependenciesReported = true;
+  }
+
+  private <T extends Expression> T intern(T expr) {
+    return myInterner == null ? expr : myInterner.intern(expr);
+  }
+
+  private void dependsOn(TCReferable referable) {
+    if (!myDependenciesReported) {
+      myDependencyListener.dependsOn(myDefinition, myHeader, referable);
+    }
+    if (myDependencies != null) {
+      myDependencies.add(referable);
+    }
+  }
+
   // Bindings
 
   private RollbackBindings checkpointBindings() {
@@ -76,10 +105,12 @@ class ExpressionDeserialization {
     if (index == 0) {
       return null;
     } else {
-      Variable binding = myBindings.get(index - 1);
+      int position = mySharedExpressions == null ? index - 1 : myBindings.size() - index;
+      Variable binding = position >= 0 && position < myBindings.size() ? myBindings.get(position) : null;
       if (binding == null) {
         throw new DeserializationException("Trying to read a reference to an unregistered binding");
       }
+      myMinBinding = Math.min(myMinBinding, position);
       return binding;
     }
   }
@@ -229,6 +260,8 @@ class ExpressionDeserialization {
         return readSmallInteger(proto.getSmallInteger());
       case BIG_INTEGER:
         return readBigInteger(proto.getBigInteger());
+      case SHARED:
+        return readShared(proto.getShared());
       default:
         throw new DeserializationException("Unknown Expression kind: " + proto.getKindCase());
     }
@@ -249,21 +282,21 @@ class ExpressionDeserialization {
 
   private FunCallExpression readFunCall(ExpressionProtos.Expression.FunCall proto) throws DeserializationException {
     FunctionDefinition functionDefinition = myCallTargetProvider.getCallTarget(proto.getFunRef(), FunctionDefinition.class);
-    myDependencyListener.dependsOn(myDefinition, myHeader, functionDefinition.getReferable());
-    return new FunCallExpression(functionDefinition, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())), readExprList(proto.getArgumentList()));
+    dependsOn(functionDefinition.getReferable());
+    return intern(new FunCallExpression(functionDefinition, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())), readExprList(proto.getArgumentList())));
   }
 
   private Expression readConCall(ExpressionProtos.Expression.ConCall proto) throws DeserializationException {
     Constructor constructor = myCallTargetProvider.getCallTarget(proto.getConstructorRef(), Constructor.class);
-    myDependencyListener.dependsOn(myDefinition, myHeader, constructor.getDataType().getReferable());
-    return ConCallExpression.make(constructor, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())),
-        readExprList(proto.getDatatypeArgumentList()), readExprList(proto.getArgumentList()));
+    dependsOn(constructor.getDataType().getReferable());
+    return intern(ConCallExpression.make(constructor, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())),
+        readExprList(proto.getDatatypeArgumentList()), readExprList(proto.getArgumentList())));
   }
 
   private DataCallExpression readDataCall(ExpressionProtos.Expression.DataCall proto) throws DeserializationException {
     DataDefinition dataDefinition = myCallTargetProvider.getCallTarget(proto.getDataRef(), DataDefinition.class);
-    myDependencyListener.dependsOn(myDefinition, myHeader, dataDefinition.getReferable());
-    return new DataCallExpression(dataDefinition, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())), readExprList(proto.getArgumentList()));
+    dependsOn(dataDefinition.getReferable());
+    return intern(new DataCallExpression(dataDefinition, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())), readExprList(proto.getArgumentList())));
   }
 
   private ClassCallExpression readClassCall(ExpressionProtos.Expression.ClassCall proto) throws DeserializationException {
@@ -273,7 +306,7 @@ class ExpressionDeserialization {
     }
 
     ClassDefinition classDefinition = myCallTargetProvider.getCallTarget(proto.getClassRef(), ClassDefinition.class);
-    myDependencyListener.dependsOn(myDefinition, myHeader, classDefinition.getReferable());
+    dependsOn(classDefinition.getReferable());
     return new ClassCallExpression(classDefinition, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())), fieldSet, readSort(proto.getSort()), proto.getHasUniverses());
   }
 
@@ -290,7 +323,7 @@ class ExpressionDeserialization {
   }
 
   private UniverseExpression readUniverse(ExpressionProtos.Expression.Universe proto) throws DeserializationException {
-    return new UniverseExpression(readSort(proto.getSort()));
+    return intern(new UniverseExpression(readSort(proto.getSort())));
   }
 
   private ErrorExpression readError(ExpressionProtos.Expression.Error proto) throws DeserializationException {
@@ -370,15 +403,52 @@ class ExpressionDeserialization {
 
   private Expression readFieldCall(ExpressionProtos.Expression.FieldCall proto) throws DeserializationException {
     ClassField classField = myCallTargetProvider.getCallTarget(proto.getFieldRef(), ClassField.class);
-    myDependencyListener.dependsOn(myDefinition, myHeader, classField.getParentClass().getReferable());
+    dependsOn(classField.getParentClass().getReferable());
     return FieldCallExpression.make(classField, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())), readExpr(proto.getExpression()));
   }
 
   private SmallIntegerExpression readSmallInteger(ExpressionProtos.Expression.SmallInteger proto) {
-    return new SmallIntegerExpression(proto.getValue());
+    return intern(new SmallIntegerExpression(proto.getValue()));
   }
 
   private BigIntegerExpression readBigInteger(ExpressionProtos.Expression.BigInteger proto) {
-    return new BigIntegerExpression(new BigInteger(proto.getValue().toByteArray()));
+    return intern(new BigIntegerExpression(new BigInteger(proto.getValue().toByteArray())));
+  }
+
+  private Expression readShared(ExpressionProtos.Expression.Shared proto) throws DeserializationException {
+    if (mySharedExpressions == null) {
+      throw new DeserializationException("Shared expressions are not supported in this version");
+    }
+
+    int index = proto.getIndex();
+    SharedExpressionCache.Entry entry = mySharedExpressions.get(index);
+    if (entry != null) {
+      for (TCReferable dependency : entry.dependencies) {
+        dependsOn(dependency);
+      }
+      return entry.expression;
+    }
+
+    int minBinding = myMinBinding;
+    Set<TCReferable> dependencies = myDependencies;
+    int size = myBindings.size();
+    myMinBinding = Integer.MAX_VALUE;
+    myDependencies = new LinkedHashSet<>();
+    // Bindings of a shared subterm are not visible outside of it
+    RollbackBindings rollback = checkpointBindings();
+    try {
+      Expression result = readExpr(mySharedExpressions.getProto(index));
+      if (myMinBinding >= size) {
+        mySharedExpressions.put(index, result, new ArrayList<>(myDependencies));
+      }
+      return result;
+    } finally {
+      rollback.close();
+      myMinBinding = Math.min(minBinding, myMinBinding);
+      if (dependencies != null) {
+        dependencies.addAll(myDependencies);
+      }
+      myDependencies = dependencies;
+    }
   }
 }
@@ -7,6 +7,7 @@ import org.arend.core.context.param.DependentLink;
 import org.arend.core.context.param.TypedDependentLink;
 import org.arend.core.definition.ClassField;
 import org.arend.core.definition.Constructor;
+import org.arend.core.definition.Definition;
 import org.arend.core.elimtree.BranchElimTree;
 import org.arend.core.elimtree.ElimTree;
 import org.arend.core.elimtree.LeafElimTree;
@@ -20,18 +21,47 @@ import org.arend.core.sort.Level;
 import org.arend.core.sort.Sort;
 import org.arend.error.Error;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProtos.Expression> {
   private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private SharedExpressionTable mySharedExpressions;
   private final List<Binding> myBindings = new ArrayList<>();  // de Bruijn indices
   private final Map<Binding, Integer> myBindingsMap = new HashMap<>();
+  private Set<Definition> myDependencies;
 
-  ExpressionSerialization(CallTargetIndexProvider callTargetIndexProvider) {
+  ExpressionSerialization(CallTargetIndexProvider callTargetIndexProvider, SharedExpressionTable sharedExpressions) {
     myCallTargetIndexProvider = callTargetIndexProvider;
+    mySharedExpressions = sharedExpressions;
+  }
+
+  /**
+   * Starts collecting definitions that are reported as dependencies when written expressions are deserialized.
+   */
+  void startCollectingDependencies() {
+    myDependencies = new LinkedHashSet<>();
+  }
+
+  /**
+   * @return definitions that were collected since {@link #startCollectingDependencies} was invoked.
+   */
+  Set<Definition> stopCollectingDependencies() {
+    Set<Definition> dependencies = myDependencies;
+    myDependencies = null;
+    return dependencies;
+  }
+
+  /**
+   * Expressions written after this method is invoked are not shared.
+   */
+  void disableSharing() {
+    mySharedExpressions = SharedExpressionTable.inline();
+  }
+
+  private void dependsOn(Definition definition) {
+    if (myDependencies != null) {
+      myDependencies.add(definition);
+    }
   }
 
 
@@ -50,9 +80,13 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
 
     @Override
     public void close() {
-      for (int i = myBindings.size() - 1; i >= myTargetSize; i--) {
-        myBindingsMap.remove(myBindings.remove(i));
-      }
+      checkpoint(myTargetSize);
+    }
+  }
+
+  private void checkpoint(int targetSize) {
+    for (int i = myBindings.size() - 1; i >= targetSize; i--) {
+      myBindingsMap.remove(myBindings.remove(i));
     }
   }
 
@@ -78,7 +112,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
       return 0;
     } else {
       Integer ref = myBindingsMap.get(binding);
-      return ref + 1;  // zero is reserved for null
+      return myBindings.size() - ref;  // zero is reserved for null
     }
   }
 
@@ -160,7 +194,19 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   // Types, Expressions and ElimTrees
 
   ExpressionProtos.Expression writeExpr(Expression expr) {
-    return expr.accept(this, null);
+    if (mySharedExpressions.isCounting()) {
+      mySharedExpressions.count(expr);
+      return ExpressionProtos.Expression.getDefaultInstance();
+    }
+
+    int size = myBindings.size();
+    ExpressionProtos.Expression result = expr.accept(this, null);
+    ExpressionProtos.Expression shared = mySharedExpressions.share(expr, result);
+    if (shared != result) {
+      // Bindings of a shared subterm are not registered when it is deserialized
+      checkpoint(size);
+    }
+    return shared;
   }
 
   ExpressionProtos.ElimTree writeElimTree(ElimTree elimTree) {
@@ -169,7 +215,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
 
     if (elimTree instanceof LeafElimTree) {
       ExpressionProtos.ElimTree.Leaf.Builder leafBuilder = ExpressionProtos.ElimTree.Leaf.newBuilder();
-      leafBuilder.setExpr(((LeafElimTree) elimTree).getExpression().accept(this, null));
+      leafBuilder.setExpr(writeExpr(((LeafElimTree) elimTree).getExpression()));
       builder.setLeaf(leafBuilder);
     } else {
       BranchElimTree branchElimTree = (BranchElimTree) elimTree;
@@ -198,8 +244,8 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitApp(AppExpression expr, Void params) {
     ExpressionProtos.Expression.App.Builder builder = ExpressionProtos.Expression.App.newBuilder();
-    builder.setFunction(expr.getFunction().accept(this, null));
-    builder.setArgument(expr.getArgument().accept(this, null));
+    builder.setFunction(writeExpr(expr.getFunction()));
+    builder.setArgument(writeExpr(expr.getArgument()));
     return ExpressionProtos.Expression.newBuilder().setApp(builder).build();
   }
 
@@ -207,10 +253,11 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitFunCall(FunCallExpression expr, Void params) {
     ExpressionProtos.Expression.FunCall.Builder builder = ExpressionProtos.Expression.FunCall.newBuilder();
     builder.setFunRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
+    dependsOn(expr.getDefinition());
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return ExpressionProtos.Expression.newBuilder().setFunCall(builder).build();
   }
@@ -219,13 +266,14 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitConCall(ConCallExpression expr, Void params) {
     ExpressionProtos.Expression.ConCall.Builder builder = ExpressionProtos.Expression.ConCall.newBuilder();
     builder.setConstructorRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
+    dependsOn(expr.getDefinition().getDataType());
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDataTypeArguments()) {
-      builder.addDatatypeArgument(arg.accept(this, null));
+      builder.addDatatypeArgument(writeExpr(arg));
     }
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return ExpressionProtos.Expression.newBuilder().setConCall(builder).build();
   }
@@ -234,10 +282,11 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitDataCall(DataCallExpression expr, Void params) {
     ExpressionProtos.Expression.DataCall.Builder builder = ExpressionProtos.Expression.DataCall.newBuilder();
     builder.setDataRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
+    dependsOn(expr.getDefinition());
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return ExpressionProtos.Expression.newBuilder().setDataCall(builder).build();
   }
@@ -245,6 +294,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   private ExpressionProtos.Expression.ClassCall writeClassCall(ClassCallExpression expr) {
     ExpressionProtos.Expression.ClassCall.Builder builder = ExpressionProtos.Expression.ClassCall.newBuilder();
     builder.setClassRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
+    dependsOn(expr.getDefinition());
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Map.Entry<ClassField, Expression> entry : expr.getImplementedHere().entrySet()) {
@@ -277,7 +327,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     ExpressionProtos.Expression.Lam.Builder builder = ExpressionProtos.Expression.Lam.newBuilder();
     builder.setResultSort(writeSort(expr.getResultSort()));
     builder.setParam(writeSingleParameter(expr.getParameters()));
-    builder.setBody(expr.getBody().accept(this, null));
+    builder.setBody(writeExpr(expr.getBody()));
     return ExpressionProtos.Expression.newBuilder().setLam(builder).build();
   }
 
@@ -286,7 +336,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     ExpressionProtos.Expression.Pi.Builder builder = ExpressionProtos.Expression.Pi.newBuilder();
     builder.setResultSort(LevelProtos.Sort.newBuilder(writeSort(expr.getResultSort())));
     builder.setParam(writeSingleParameter(expr.getParameters()));
-    builder.setCodomain(expr.getCodomain().accept(this, null));
+    builder.setCodomain(writeExpr(expr.getCodomain()));
     return ExpressionProtos.Expression.newBuilder().setPi(builder).build();
   }
 
@@ -301,7 +351,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitError(ErrorExpression expr, Void params) {
     ExpressionProtos.Expression.Error.Builder builder = ExpressionProtos.Expression.Error.newBuilder();
     if (expr.getExpression() != null && expr.getError() != null && expr.getError().level == Error.Level.GOAL) {
-      builder.setExpression(expr.getExpression().accept(this, null));
+      builder.setExpression(writeExpr(expr.getExpression()));
     }
     return ExpressionProtos.Expression.newBuilder().setError(builder).build();
   }
@@ -310,7 +360,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitTuple(TupleExpression expr, Void params) {
     ExpressionProtos.Expression.Tuple.Builder builder = ExpressionProtos.Expression.Tuple.newBuilder();
     for (Expression field : expr.getFields()) {
-      builder.addField(field.accept(this, null));
+      builder.addField(writeExpr(field));
     }
     builder.setType(writeSigma(expr.getSigmaType()));
     return ExpressionProtos.Expression.newBuilder().setTuple(builder).build();
@@ -332,7 +382,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitProj(ProjExpression expr, Void params) {
     ExpressionProtos.Expression.Proj.Builder builder = ExpressionProtos.Expression.Proj.newBuilder();
-    builder.setExpression(expr.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(expr.getExpression()));
     builder.setField(expr.getField());
     return ExpressionProtos.Expression.newBuilder().setProj(builder).build();
   }
@@ -355,7 +405,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
         .setExpression(writeExpr(letClause.getExpression())));
       registerBinding(letClause);
     }
-    builder.setExpression(letExpression.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(letExpression.getExpression()));
     return ExpressionProtos.Expression.newBuilder().setLet(builder).build();
   }
 
@@ -418,9 +468,10 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitFieldCall(FieldCallExpression expr, Void params) {
     ExpressionProtos.Expression.FieldCall.Builder builder = ExpressionProtos.Expression.FieldCall.newBuilder();
     builder.setFieldRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
+    dependsOn(expr.getDefinition().getParentClass());
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
-    builder.setExpression(expr.getArgument().accept(this, null));
+    builder.setExpression(writeExpr(expr.getArgument()));
     return ExpressionProtos.Expression.newBuilder().setFieldCall(builder).build();
   }
 }
@@ -33,6 +33,10 @@ public class ModuleDeserialization {
   }
 
   public void readModule(ModuleScopeProvider moduleScopeProvider, DependencyListener dependencyListener, boolean typecheckDefinitionsWithErrors) throws DeserializationException {
+    if (myModuleProto.getVersion() > ModuleSerialization.VERSION) {
+      throw new DeserializationException("Unsupported version of the binary format: " + myModuleProto.getVersion());
+    }
+
     for (ModuleProtos.ModuleCallTargets moduleCallTargets : myModuleProto.getModuleCallTargetsList()) {
       ModulePath module = new ModulePath(moduleCallTargets.getNameList());
       Scope scope = moduleScopeProvider.forModule(module);
@@ -45,7 +49,8 @@ public class ModuleDeserialization {
       }
     }
 
-    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, dependencyListener);
+    SharedExpressionCache sharedExpressions = myModuleProto.getVersion() >= 1 ? new SharedExpressionCache(myModuleProto.getSharedExpressionList()) : null;
+    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, sharedExpressions, dependencyListener, true);
     for (Pair<DefinitionProtos.Definition, Definition> pair : myDefinitions) {
       defDeserialization.fillInDefinition(pair.proj1, pair.proj2, typecheckDefinitionsWithErrors);
     }
@@ -3,6 +3,8 @@ package org.arend.module.serialization;
 import org.arend.core.definition.ClassField;
 import org.arend.core.definition.Constructor;
 import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.error.DummyErrorReporter;
 import org.arend.error.ErrorReporter;
 import org.arend.module.ModulePath;
 import org.arend.naming.reference.LocatedReferable;
@@ -12,32 +14,107 @@ import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.source.error.LocationError;
 import org.arend.term.group.Group;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.util.HashUtils;
 import org.arend.util.LongName;
+import org.arend.util.Pair;
 
+import javax.annotation.Nullable;
 import java.util.*;
 
 public class ModuleSerialization {
+  /**
+   * The version of the binary format.
+   * Modules of version 0 do not have shared subterms and refer to bindings by their absolute indices.
+   * In version 1, repeated large subterms are stored in a table (see {@link SharedExpressionTable}) and bindings are referred to by de Bruijn indices.
+   */
+  public static final int VERSION = 1;
+
   private final TypecheckerState myState;
   private final ErrorReporter myErrorReporter;
   private final SimpleCallTargetIndexProvider myCallTargetIndexProvider = new SimpleCallTargetIndexProvider();
-  private final DefinitionSerialization myDefinitionSerialization = new DefinitionSerialization(myCallTargetIndexProvider);
+  private final SharedExpressionTable mySharedExpressions = new SharedExpressionTable();
+  private final DefinitionSerialization myDefinitionSerialization;
+  private final boolean myWriteLemmaBodies;
   private final Set<Integer> myCurrentDefinitions = new HashSet<>();
+  private final List<Pair<FunctionDefinition, ModuleProtos.Group.Builder>> myLemmas = new ArrayList<>();
   private boolean myComplete;
+  private ModuleProtos.Module myInterface;
+
+  /**
+   * @param lazyBodies  if true, bodies of functions are stored as byte strings, so they can be deserialized lazily
+   *                    (see {@link org.arend.core.definition.FunctionDefinition#setBodyLoader}).
+   */
+  public ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter, boolean lazyBodies) {
+    this(state, errorReporter, lazyBodies, true);
+  }
 
-  public ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter) {
+  private ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter, boolean lazyBodies, boolean writeLemmaBodies) {
     myState = state;
     myErrorReporter = errorReporter;
+    myDefinitionSerialization = new DefinitionSerialization(myCallTargetIndexProvider, mySharedExpressions, lazyBodies, true);
+    myWriteLemmaBodies = writeLemmaBodies;
+  }
+
+  public ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter) {
+    this(state, errorReporter, false);
+  }
+
+  /**
+   * Computes the interface hash of a module as it is written by binary sources, that is, with lazy bodies.
+   *
+   * @return the interface hash or null if the module cannot be serialized.
+   * @see #getInterfaceHash()
+   */
+  @Nullable
+  public static byte[] getInterfaceHash(TypecheckerState state, Group group, ModulePath modulePath, ReferableConverter referableConverter) {
+    ModuleSerialization serialization = new ModuleSerialization(state, DummyErrorReporter.INSTANCE, true, false);
+    serialization.writeModule(group, modulePath, referableConverter);
+    return serialization.getInterfaceHash();
+  }
+
+  /**
+   * Gets the interface hash of the module written by {@link #writeModule}, that is, the hash of its definitions and instances without bodies of lemmas.
+   * Bodies of lemmas do not evaluate, so changing them does not invalidate dependent modules.
+   * They are written after the rest of the module and do not share subterms with it, so the hash is computed from the same serialized module.
+   *
+   * @return the interface hash or null if the module was not written.
+   */
+  @Nullable
+  public byte[] getInterfaceHash() {
+    return myInterface == null ? null : HashUtils.hash(myInterface.toByteArray());
   }
 
   public ModuleProtos.Module writeModule(Group group, ModulePath modulePath, ReferableConverter referableConverter) {
     ModuleProtos.Module.Builder out = ModuleProtos.Module.newBuilder();
+    out.setVersion(VERSION);
+
+    // The first pass counts repeated subterms (see SharedExpressionTable)
+    writeGroup(group, referableConverter, ModuleProtos.Group.newBuilder());
+    myLemmas.clear();
+    mySharedExpressions.startSharing();
 
     // Serialize the group structure first in order to populate the call target tree
     myComplete = true;
-    out.setGroup(writeGroup(group, referableConverter));
+    writeGroup(group, referableConverter, out.getGroupBuilder());
     out.setComplete(myComplete);
+    out.addAllSharedExpression(mySharedExpressions.getExpressions());
+    if (!writeCallTargets(out, modulePath)) {
+      return null;
+    }
+    myInterface = out.build();
+    if (!myWriteLemmaBodies || myLemmas.isEmpty()) {
+      return myInterface;
+    }
+
+    // Bodies of lemmas may add new call targets
+    for (Pair<FunctionDefinition, ModuleProtos.Group.Builder> lemma : myLemmas) {
+      myDefinitionSerialization.writeLemmaBody(lemma.proj1, lemma.proj2.getDefinitionBuilder().getFunctionBuilder());
+    }
+    out.clearModuleCallTargets();
+    return writeCallTargets(out, modulePath) ? out.build() : null;
+  }
 
-    // Now write the call target tree
+  private boolean writeCallTargets(ModuleProtos.Module.Builder out, ModulePath modulePath) {
     Map<ModulePath, Map<String, CallTargetTree>> moduleCallTargets = new HashMap<>();
     for (Map.Entry<Definition, Integer> entry : myCallTargetIndexProvider.getCallTargets()) {
       if (myCurrentDefinitions.contains(entry.getValue())) {
@@ -49,7 +126,7 @@ public class ModuleSerialization {
       ModulePath targetModulePath = LocatedReferable.Helper.getLocation(targetReferable, longName);
       if (targetModulePath == null || longName.isEmpty()) {
         myErrorReporter.report(LocationError.definition(targetReferable, modulePath));
-        return null;
+        return false;
       }
 
       Map<String, CallTargetTree> map = moduleCallTargets.computeIfAbsent(targetModulePath, k -> new HashMap<>());
@@ -69,13 +146,10 @@ public class ModuleSerialization {
       }
       out.addModuleCallTargets(builder.build());
     }
-
-    return out.build();
+    return true;
   }
 
-  private ModuleProtos.Group writeGroup(Group group, ReferableConverter referableConverter) {
-    ModuleProtos.Group.Builder builder = ModuleProtos.Group.newBuilder();
-
+  private void writeGroup(Group group, ReferableConverter referableConverter, ModuleProtos.Group.Builder builder) {
     // Write referable
     LocatedReferable referable = group.getReferable();
     DefinitionProtos.Referable.Builder refBuilder = DefinitionProtos.Referable.newBuilder();
@@ -89,6 +163,9 @@ public class ModuleSerialization {
       int index = myCallTargetIndexProvider.getDefIndex(typechecked);
       refBuilder.setIndex(index);
       myCurrentDefinitions.add(index);
+      if (typechecked instanceof FunctionDefinition && ((FunctionDefinition) typechecked).isLemma()) {
+        myLemmas.add(new Pair<>((FunctionDefinition) typechecked, builder));
+      }
     }
     if (tcReferable != null && (typechecked == null || typechecked.status() != Definition.TypeCheckingStatus.NO_ERRORS)) {
       myComplete = false;
@@ -97,10 +174,10 @@ public class ModuleSerialization {
 
     // Write subgroups
     for (Group subgroup : group.getSubgroups()) {
-      builder.addSubgroup(writeGroup(subgroup, referableConverter));
+      writeGroup(subgroup, referableConverter, builder.addSubgroupBuilder());
     }
     for (Group subgroup : group.getDynamicSubgroups()) {
-      builder.addDynamicSubgroup(writeGroup(subgroup, referableConverter));
+      writeGroup(subgroup, referableConverter, builder.addDynamicSubgroupBuilder());
     }
     for (Group.InternalReferable internalReferable : group.getInternalReferables()) {
       if (!internalReferable.isVisible()) {
@@ -110,8 +187,6 @@ public class ModuleSerialization {
         }
       }
     }
-
-    return builder.build();
   }
 
   private class CallTargetTree {
@@ -0,0 +1,54 @@
+package org.arend.module.serialization;
+
+import org.arend.core.expr.Expression;
+import org.arend.naming.reference.TCReferable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Subterms of a module that are shared by its definitions (see {@link SharedExpressionTable}).
+ * A closed subterm is deserialized once and the same expression is used for all of its occurrences.
+ * Other subterms are deserialized at every occurrence since they refer to different bindings.
+ *
+ * The cache is thread-safe since bodies of functions can be deserialized lazily on different threads.
+ */
+class SharedExpressionCache {
+  private final List<ExpressionProtos.Expression> myProtos;
+  private final Entry[] myEntries;
+
+  static class Entry {
+    final Expression expression;
+    final Collection<? extends TCReferable> dependencies;
+
+    Entry(Expression expression, Collection<? extends TCReferable> dependencies) {
+      this.expression = expression;
+      this.dependencies = dependencies;
+    }
+  }
+
+  SharedExpressionCache(List<ExpressionProtos.Expression> protos) {
+    myProtos = protos;
+    myEntries = new Entry[protos.size()];
+  }
+
+  ExpressionProtos.Expression getProto(int index) throws DeserializationException {
+    if (index < 0 || index >= myProtos.size()) {
+      throw new DeserializationException("Trying to read a reference to a missing shared expression");
+    }
+    return myProtos.get(index);
+  }
+
+  synchronized Entry get(int index) {
+    return index >= 0 && index < myEntries.length ? myEntries[index] : null;
+  }
+
+  /**
+   * Stores a deserialized closed subterm.
+   *
+   * @param dependencies  definitions the subterm refers to; they are reported as dependencies of every definition that uses it.
+   */
+  synchronized void put(int index, Expression expression, Collection<? extends TCReferable> dependencies) {
+    myEntries[index] = new Entry(expression, dependencies);
+  }
+}
@@ -0,0 +1,165 @@
+package org.arend.module.serialization;
+
+import org.arend.core.expr.*;
+import org.arend.core.expr.visitor.VoidExpressionVisitor;
+
+import java.util.*;
+
+/**
+ * Subterms of a module that are written once and referred to by {@link ExpressionProtos.Expression.Shared}.
+ * Since references to bindings are relative (see {@link ModuleSerialization#VERSION}), equal subterms have equal serialized forms wherever they occur.
+ *
+ * A module is written in two passes.
+ * The first pass does not serialize expressions, it only counts occurrences of subterms by their structural hashes (see {@link Expression#getStructuralHash}).
+ * In the second pass, large subterms whose hashes occur at least twice are put in the table.
+ * Hashes of subterms which refer to different free variables differ, so such subterms are not shared even if their serialized forms coincide.
+ */
+class SharedExpressionTable {
+  /**
+   * Subterms smaller than this are written inline since a reference is not much shorter.
+   */
+  static final int MIN_SIZE = 32;
+
+  private final Map<ExpressionProtos.Expression, Integer> myIndices = new HashMap<>();
+  private final List<ExpressionProtos.Expression> myExpressions = new ArrayList<>();
+  private final Map<Integer, Integer> myCounts = new HashMap<>();
+  private final OccurrenceCounter myCounter = new OccurrenceCounter();
+  private boolean myCounting = true;
+
+  /**
+   * Creates a table which does not share anything.
+   */
+  static SharedExpressionTable inline() {
+    SharedExpressionTable table = new SharedExpressionTable();
+    table.startSharing();
+    return table;
+  }
+
+  /**
+   * @return true if occurrences are counted, that is, expressions should be passed to {@link #count} instead of being serialized.
+   */
+  boolean isCounting() {
+    return myCounting;
+  }
+
+  /**
+   * Counts occurrences of {@code expr} and its subterms in the first pass.
+   */
+  void count(Expression expr) {
+    expr.accept(myCounter, null);
+  }
+
+  /**
+   * Finishes the first pass.
+   */
+  void startSharing() {
+    myCounting = false;
+  }
+
+  /**
+   * @param expr   an expression written in the second pass.
+   * @param proto  the serialized form of {@code expr}.
+   * @return a reference to {@code proto} if it should be shared, {@code proto} itself otherwise.
+   */
+  ExpressionProtos.Expression share(Expression expr, ExpressionProtos.Expression proto) {
+    Integer count = myCounts.get(expr.getStructuralHash());
+    if (count == null || count < 2 || proto.getSerializedSize() < MIN_SIZE) {
+      return proto;
+    }
+
+    int index = myIndices.computeIfAbsent(proto, k -> {
+      myExpressions.add(k);
+      return myExpressions.size() - 1;
+    });
+    return ExpressionProtos.Expression.newBuilder().setShared(ExpressionProtos.Expression.Shared.newBuilder().setIndex(index)).build();
+  }
+
+  List<ExpressionProtos.Expression> getExpressions() {
+    return myExpressions;
+  }
+
+  /**
+   * Counts subterms that are written by {@link ExpressionSerialization#writeExpr}.
+   * Subterms of a repeated subterm are counted only once since they are written only in its table entry.
+   */
+  private class OccurrenceCounter extends VoidExpressionVisitor<Void> {
+    private boolean isFirst(Expression expr) {
+      return myCounts.merge(expr.getStructuralHash(), 1, Integer::sum) == 1;
+    }
+
+    @Override
+    public Void visitApp(AppExpression expr, Void params) {
+      return isFirst(expr) ? super.visitApp(expr, params) : null;
+    }
+
+    @Override
+    public Void visitFunCall(FunCallExpression expr, Void params) {
+      return isFirst(expr) ? super.visitFunCall(expr, params) : null;
+    }
+
+    @Override
+    public Void visitConCall(ConCallExpression expr, Void params) {
+      return isFirst(expr) ? super.visitConCall(expr, params) : null;
+    }
+
+    @Override
+    public Void visitDataCall(DataCallExpression expr, Void params) {
+      return isFirst(expr) ? super.visitDataCall(expr, params) : null;
+    }
+
+    @Override
+    public Void visitFieldCall(FieldCallExpression expr, Void params) {
+      return isFirst(expr) ? super.visitFieldCall(expr, params) : null;
+    }
+
+    @Override
+    public Void visitClassCall(ClassCallExpression expr, Void params) {
+      return isFirst(expr) ? super.visitClassCall(expr, params) : null;
+    }
+
+    @Override
+    public Void visitLam(LamExpression expr, Void params) {
+      return isFirst(expr) ? super.visitLam(expr, params) : null;
+    }
+
+    @Override
+    public Void visitPi(PiExpression expr, Void params) {
+      return isFirst(expr) ? super.visitPi(expr, params) : null;
+    }
+
+    @Override
+    public Void visitSigma(SigmaExpression expr, Void params) {
+      return isFirst(expr) ? super.visitSigma(expr, params) : null;
+    }
+
+    @Override
+    public Void visitError(ErrorExpression expr, Void params) {
+      return isFirst(expr) ? super.visitError(expr, params) : null;
+    }
+
+    @Override
+    public Void visitTuple(TupleExpression expr, Void params) {
+      return isFirst(expr) ? super.visitTuple(expr, params) : null;
+    }
+
+    @Override
+    public Void visitProj(ProjExpression expr, Void params) {
+      return isFirst(expr) ? super.visitProj(expr, params) : null;
+    }
+
+    @Override
+    public Void visitNew(NewExpression expr, Void params) {
+      return isFirst(expr) ? super.visitNew(expr, params) : null;
+    }
+
+    @Override
+    public Void visitLet(LetExpression expr, Void params) {
+      return isFirst(expr) ? super.visitLet(expr, params) : null;
+    }
+
+    @Override
+    public Void visitCase(CaseExpression expr, Void params) {
+      return isFirst(expr) ? super.visitCase(expr, params) : null;
+    }
+  }
+}
@@ -2,18 +2,25 @@ package org.arend.naming.scope;
 
 import org.arend.naming.reference.ModuleReferable;
 import org.arend.naming.reference.Referable;
+import org.arend.util.BoundedCache;
+import org.arend.util.CachePolicy;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 
+/**
+ * Caches elements and namespaces of a scope.
+ * Elements are copied from the underlying scope when they are requested for the first time,
+ * so namespaces that are used only to resolve their own namespaces do not materialize their elements.
+ * Namespaces are kept according to {@link #getNamespaceCachePolicy()}.
+ */
 public class CachingScope implements Scope {
-  private final Map<String, Referable> myElements = new LinkedHashMap<>();
-  private final Map<String, Scope> myNamespaces = new HashMap<>();
-  private final Map<String, Scope> myOnlyInternalNamespaces = new HashMap<>();
+  private static volatile CachePolicy NAMESPACE_CACHE_POLICY = CachePolicy.UNBOUNDED;
+
+  private volatile Map<String, Referable> myElements;
+  private final BoundedCache<String, Scope> myNamespaces;
+  private final BoundedCache<String, Scope> myOnlyInternalNamespaces;
   private final Scope myScope;
   private final static Scope EMPTY_SCOPE = new Scope() {};
   private final boolean myWithModules;
@@ -21,12 +28,9 @@ public class CachingScope implements Scope {
   private CachingScope(Scope scope, boolean withModules) {
     myScope = scope;
     myWithModules = withModules;
-    scope.find(ref -> {
-      if (withModules || !(ref instanceof ModuleReferable)) {
-        myElements.putIfAbsent(ref instanceof ModuleReferable ? ((ModuleReferable) ref).path.getLastName() : ref.textRepresentation(), ref);
-      }
-      return false;
-    });
+    CachePolicy policy = NAMESPACE_CACHE_POLICY;
+    myNamespaces = policy.makeCache();
+    myOnlyInternalNamespaces = policy.makeCache();
   }
 
   public static Scope make(Scope scope) {
@@ -37,22 +41,88 @@ public class CachingScope implements Scope {
     return scope instanceof CachingScope || scope instanceof ImportedScope ? scope : new CachingScope(scope, true);
   }
 
+  public static CachePolicy getNamespaceCachePolicy() {
+    return NAMESPACE_CACHE_POLICY;
+  }
+
+  /**
+   * Sets the policy for namespaces cached by scopes that are created after this call.
+   */
+  public static void setNamespaceCachePolicy(CachePolicy policy) {
+    NAMESPACE_CACHE_POLICY = policy;
+  }
+
+  private Map<String, Referable> getElementMap() {
+    Map<String, Referable> elements = myElements;
+    if (elements != null) {
+      return elements;
+    }
+
+    synchronized (this) {
+      if (myElements == null) {
+        Map<String, Referable> newElements = new LinkedHashMap<>();
+        myScope.find(ref -> {
+          if (myWithModules || !(ref instanceof ModuleReferable)) {
+            newElements.putIfAbsent(ref instanceof ModuleReferable ? ((ModuleReferable) ref).path.getLastName() : ref.textRepresentation(), ref);
+          }
+          return false;
+        });
+        myElements = newElements;
+      }
+      return myElements;
+    }
+  }
+
+  /**
+   * @return true if elements of the underlying scope were copied.
+   */
+  public boolean isMaterialized() {
+    return myElements != null;
+  }
+
+  /**
+   * Estimates the memory used by this scope.
+   *
+   * @return the number of cached elements and namespaces of this scope and of its cached namespaces.
+   */
+  public int getFootprint() {
+    return getFootprint(Collections.newSetFromMap(new IdentityHashMap<>()));
+  }
+
+  private int getFootprint(Set<CachingScope> visited) {
+    if (!visited.add(this)) {
+      return 0;
+    }
+
+    Map<String, Referable> elements = myElements;
+    int result = elements == null ? 0 : elements.size();
+    for (BoundedCache<String, Scope> namespaces : Arrays.asList(myNamespaces, myOnlyInternalNamespaces)) {
+      for (Scope namespace : namespaces.values()) {
+        result++;
+        if (namespace instanceof CachingScope) {
+          result += ((CachingScope) namespace).getFootprint(visited);
+        }
+      }
+    }
+    return result;
+  }
+
   @Nonnull
   @Override
   public Collection<? extends Referable> getElements() {
-    return myElements.values();
+    return getElementMap().values();
   }
 
   @Nullable
   @Override
   public Referable resolveName(String name) {
-    return myElements.get(name);
+    return getElementMap().get(name);
   }
 
   @Nullable
   @Override
   public Scope resolveNamespace(String name, boolean onlyInternal) {
-    Map<String, Scope> namespaces = onlyInternal ? myOnlyInternalNamespaces : myNamespaces;
+    BoundedCache<String, Scope> namespaces = onlyInternal ? myOnlyInternalNamespaces : myNamespaces;
     Scope namespace = namespaces.get(name);
     if (namespace == null) {
       namespace = myScope.resolveNamespace(name, onlyInternal);
@@ -6,12 +6,13 @@ import org.arend.util.FileUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class FileBinarySource extends StreamBinarySource {
   private final Path myFile;
@@ -28,6 +29,10 @@ public class FileBinarySource extends StreamBinarySource {
     myModulePath = modulePath;
   }
 
+  protected Path getFile() {
+    return myFile;
+  }
+
   @Nonnull
   @Override
   public ModulePath getModulePath() {
@@ -40,11 +45,97 @@ public class FileBinarySource extends StreamBinarySource {
     return Files.newInputStream(myFile);
   }
 
+  /**
+   * The module is written to a temporary file which replaces the binary file when the stream is closed,
+   * so the binary file is never partially written.
+   * If nothing was written or writing failed, the binary file is not changed.
+   * The temporary file is created with default permissions, and it gets the permissions of the binary file if the latter exists.
+   */
   @Nullable
   @Override
   protected OutputStream getOutputStream() throws IOException {
     Files.createDirectories(myFile.getParent());
-    return Files.newOutputStream(myFile, StandardOpenOption.CREATE);
+    Path tempFile;
+    OutputStream tempStream;
+    while (true) {
+      tempFile = myFile.resolveSibling(myFile.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+      try {
+        tempStream = Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        break;
+      } catch (FileAlreadyExistsException ignored) {
+      }
+    }
+    copyPermissions(myFile, tempFile);
+
+    Path finalTempFile = tempFile;
+    return new FilterOutputStream(tempStream) {
+      private boolean myWritten;
+      private boolean myFailed;
+      private boolean myClosed;
+
+      @Override
+      public void write(int b) throws IOException {
+        try {
+          out.write(b);
+          myWritten = true;
+        } catch (IOException e) {
+          myFailed = true;
+          throw e;
+        }
+      }
+
+      @Override
+      public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+        try {
+          out.write(b, off, len);
+          myWritten = true;
+        } catch (IOException e) {
+          myFailed = true;
+          throw e;
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (myClosed) {
+          return;
+        }
+        myClosed = true;
+
+        try {
+          super.close();
+        } catch (IOException e) {
+          Files.deleteIfExists(finalTempFile);
+          throw e;
+        }
+        if (!myWritten || myFailed) {
+          Files.deleteIfExists(finalTempFile);
+          return;
+        }
+
+        try {
+          try {
+            Files.move(finalTempFile, myFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          } catch (AtomicMoveNotSupportedException e) {
+            Files.move(finalTempFile, myFile, StandardCopyOption.REPLACE_EXISTING);
+          }
+        } catch (IOException e) {
+          Files.deleteIfExists(finalTempFile);
+          throw e;
+        }
+      }
+    };
+  }
+
+  private static void copyPermissions(Path from, Path to) {
+    PosixFileAttributeView view = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+    if (view == null || !Files.exists(from)) {
+      return;
+    }
+    try {
+      view.setPermissions(Files.getPosixFilePermissions(from));
+    } catch (IOException | UnsupportedOperationException ignored) {
+    }
   }
 
   @Override
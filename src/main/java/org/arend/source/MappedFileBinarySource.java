@@ -0,0 +1,60 @@
+package org.arend.source;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import org.arend.module.ModulePath;
+import org.arend.module.serialization.ModuleProtos;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A binary source which maps a file into memory instead of reading it.
+ * Bodies of functions refer to the mapped file, so they are neither copied nor parsed until they are requested for the first time.
+ *
+ * Files persisted by {@link GZIPStreamBinarySource} can also be loaded, but they are decompressed into memory.
+ * The mapped file is never modified; it is replaced with a new file when the source is persisted (see {@link FileBinarySource#getOutputStream}).
+ */
+public class MappedFileBinarySource extends FileBinarySource {
+  private static final int GZIP_MAGIC = 0x8b1f;
+
+  /**
+   * Creates a new {@code MappedFileBinarySource} from a path to the base directory and a path to the source.
+   *
+   * @param basePath    a path to the base directory.
+   * @param modulePath  a path to the source.
+   */
+  public MappedFileBinarySource(Path basePath, ModulePath modulePath) {
+    super(basePath, modulePath);
+  }
+
+  @Nullable
+  @Override
+  protected ModuleProtos.Module readModule() throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.remaining() >= 2 && (buffer.get(0) & 0xff | (buffer.get(1) & 0xff) << 8) == GZIP_MAGIC) {
+      try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(getFile()))) {
+        CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
+        codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+        return ModuleProtos.Module.parseFrom(codedInputStream);
+      }
+    }
+
+    // Byte strings, including bodies of functions, refer to the mapped buffer instead of copying it
+    CodedInputStream codedInputStream = UnsafeByteOperations.unsafeWrap(buffer).newCodedInput();
+    codedInputStream.enableAliasing(true);
+    codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+    return ModuleProtos.Module.parseFrom(codedInputStream);
+  }
+}
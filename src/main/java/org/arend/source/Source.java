@@ -46,6 +46,17 @@ public interface Source {
    */
   long getTimeStamp();
 
+  /**
+   * Gets the hash of the content of this source.
+   * If it is available, it is used instead of the timestamp to check if a binary source is up to date.
+   *
+   * @return the hash of the content that was loaded (or the current content if the source was not loaded) or null if it is not available.
+   */
+  @Nullable
+  default byte[] getContentHash() {
+    return null;
+  }
+
   /**
    * Checks if the source is available for loading.
    *
@@ -9,9 +9,11 @@ import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Contains all necessary information for source loading.
@@ -23,6 +25,12 @@ public final class SourceLoader {
   private final Map<ModulePath, SourceType> myLoadedModules = new HashMap<>();
   private final Map<ModulePath, BinarySource> myLoadingBinaryModules = new HashMap<>();
   private final Map<ModulePath, Source> myLoadingRawModules = new HashMap<>();
+  private final Map<ModulePath, Source> myRawSources = new HashMap<>();
+  private final Map<ModulePath, StreamRawSource> myParsedRawSources = new HashMap<>();
+  private final Set<ModulePath> myDeferredModules = new LinkedHashSet<>();
+  private final Set<ModulePath> myInvalidBinaries = new HashSet<>();
+  private boolean myDependenciesTypechecked;
+  private boolean myLoadingBeforeRaw;
   private ModuleScopeProvider myModuleScopeProvider;
 
   private enum SourceType { RAW, BINARY, BINARY_FAIL }
@@ -67,14 +75,18 @@ public final class SourceLoader {
    * @return true if a binary source is available or if the raw source was successfully loaded, false otherwise.
    */
   public boolean preloadRaw(ModulePath modulePath) {
-    if (myLoadedModules.containsKey(modulePath)) {
+    SourceType sourceType = myLoadedModules.get(modulePath);
+    if (sourceType == SourceType.RAW || sourceType == SourceType.BINARY) {
       return true;
     }
     if (myLoadingRawModules.containsKey(modulePath)) {
       return true;
     }
 
-    Source rawSource = myLibrary.getRawSource(modulePath);
+    Source rawSource = myParsedRawSources.remove(modulePath);
+    if (rawSource == null) {
+      rawSource = myLibrary.getRawSource(modulePath);
+    }
     boolean rawSourceIsAvailable = rawSource != null && rawSource.isAvailable();
 
     if (!rawSourceIsAvailable) {
@@ -84,6 +96,7 @@ public final class SourceLoader {
 
     myLoadedModules.put(modulePath, SourceType.RAW);
     myLoadingRawModules.put(modulePath, rawSource);
+    myRawSources.put(modulePath, rawSource);
     if (!rawSource.preload(this)) {
       myLoadingRawModules.remove(modulePath);
       return false;
@@ -92,6 +105,77 @@ public final class SourceLoader {
     return true;
   }
 
+  /**
+   * Loads the structure of sources of given modules and their dependencies.
+   * If {@link LibraryManager#getParsingJobs} is greater than 1, sources of these modules and of modules they import are parsed concurrently first.
+   * Then they are preloaded one by one as in {@link #preloadRaw(ModulePath)}, so errors are reported in the same order.
+   *
+   * @param modules modules to load.
+   */
+  public void preloadRaw(Collection<? extends ModulePath> modules) {
+    int jobs = myLibraryManager.getParsingJobs();
+    if (jobs > 1) {
+      parseRawSources(modules, jobs);
+    }
+    for (ModulePath module : modules) {
+      preloadRaw(module);
+    }
+  }
+
+  private void parseRawSources(Collection<? extends ModulePath> modules, int jobs) {
+    // Imports are known only after a module is parsed, so the import closure is parsed level by level
+    List<StreamRawSource> sources = collectRawSources(modules);
+    if (sources.isEmpty()) {
+      return;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(jobs);
+    try {
+      while (!sources.isEmpty()) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(sources.size());
+        for (StreamRawSource source : sources) {
+          futures.add(CompletableFuture.runAsync(source::parse, pool));
+        }
+        try {
+          CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw e;
+        }
+
+        List<ModulePath> imports = new ArrayList<>();
+        for (StreamRawSource source : sources) {
+          imports.addAll(source.getImports());
+        }
+        sources = collectRawSources(imports);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private List<StreamRawSource> collectRawSources(Collection<? extends ModulePath> modules) {
+    List<StreamRawSource> result = new ArrayList<>();
+    for (ModulePath module : modules) {
+      SourceType sourceType = myLoadedModules.get(module);
+      if (sourceType == SourceType.RAW || sourceType == SourceType.BINARY || myParsedRawSources.containsKey(module) || !myLibrary.containsModule(module)) {
+        continue;
+      }
+      Source rawSource = myLibrary.getRawSource(module);
+      if (rawSource instanceof StreamRawSource && rawSource.isAvailable()) {
+        myParsedRawSources.put(module, (StreamRawSource) rawSource);
+        result.add((StreamRawSource) rawSource);
+      }
+    }
+    return result;
+  }
+
   /**
    * Loads raw sources that were preloaded.
    */
@@ -107,6 +191,36 @@ public final class SourceLoader {
     }
   }
 
+  /**
+   * Loads binary sources of modules that do not have to be typechecked, so their raw sources are not parsed.
+   * A binary source is loaded only if it is complete and up to date and binary sources of all modules it depends on are loaded too.
+   * Other modules should be loaded from their raw sources (see {@link #preloadRaw(Collection)}) and then from their binary sources as usual,
+   * so their binary sources are still used if they are partial or if they are deferred (see {@link #getDeferredModules}).
+   *
+   * @param modules  modules to load.
+   */
+  public void loadBinariesBeforeRaw(Collection<? extends ModulePath> modules) {
+    myLoadingBeforeRaw = true;
+    try {
+      for (ModulePath module : modules) {
+        loadBinary(module);
+      }
+      for (ModulePath module : new ArrayList<>(myLoadingBinaryModules.keySet())) {
+        fillInBinary(module);
+      }
+    } finally {
+      myLoadingBeforeRaw = false;
+    }
+    myLoadedModules.values().removeIf(sourceType -> sourceType == SourceType.BINARY_FAIL);
+  }
+
+  /**
+   * Checks if binary sources are loaded by {@link #loadBinariesBeforeRaw}, that is, groups of modules are read from binary sources.
+   */
+  boolean isLoadingBeforeRaw() {
+    return myLoadingBeforeRaw;
+  }
+
   /**
    * Loads a binary source.
    *
@@ -145,7 +259,7 @@ public final class SourceLoader {
     if (sourceType == SourceType.BINARY || sourceType == SourceType.BINARY_FAIL) {
       return sourceType == SourceType.BINARY;
     }
-    if (myLibrary.hasRawSources() && sourceType != SourceType.RAW) {
+    if (myLibrary.hasRawSources() && sourceType != SourceType.RAW && !myLoadingBeforeRaw || myInvalidBinaries.contains(modulePath)) {
       return false;
     }
     if (myLoadingBinaryModules.containsKey(modulePath)) {
@@ -157,9 +271,10 @@ public final class SourceLoader {
       return false;
     }
 
+    // If the raw source has a content hash, it is compared with the hash stored in the binary source when the latter is preloaded
     if (myLibrary.hasRawSources()) {
-      Source rawSource = myLibrary.getRawSource(modulePath);
-      if (rawSource != null && rawSource.isAvailable() && binarySource.getTimeStamp() < rawSource.getTimeStamp()) {
+      Source rawSource = getRawSource(modulePath);
+      if (rawSource != null && rawSource.isAvailable() && rawSource.getContentHash() == null && binarySource.getTimeStamp() < rawSource.getTimeStamp()) {
         return false;
       }
     }
@@ -174,4 +289,86 @@ public final class SourceLoader {
 
     return true;
   }
+
+  /**
+   * Gets modules whose binary sources were not loaded since some modules they depend on have to be typechecked first.
+   */
+  public Set<ModulePath> getDeferredModules() {
+    return myDeferredModules;
+  }
+
+  void deferBinary(ModulePath modulePath) {
+    if (myLibrary.hasRawSources() && !myLoadingBeforeRaw) {
+      myDeferredModules.add(modulePath);
+    }
+  }
+
+  /**
+   * Marks a binary source that cannot be read, so it is not loaded again after the raw source is loaded.
+   */
+  void invalidateBinary(ModulePath modulePath) {
+    myInvalidBinaries.add(modulePath);
+  }
+
+  /**
+   * Checks if a module of the library is typechecked from its raw source.
+   * This is the case if it is not loaded from a binary source and binary sources of other modules were deferred until it is typechecked
+   * (see {@link #loadDeferredBinaries}).
+   */
+  boolean isTypecheckedFromSource(ModulePath modulePath) {
+    return myDependenciesTypechecked && !myLoadedModules.containsKey(modulePath);
+  }
+
+  /**
+   * Loads binary sources of modules that were deferred (see {@link #getDeferredModules}) by a previous loader.
+   * Modules of the library which are not deferred should be typechecked before this method is invoked.
+   * A binary source is loaded only if the interfaces of modules it depends on did not change.
+   * If some of these modules are deferred and their binary sources cannot be loaded, the module is deferred again.
+   *
+   * @param modules  deferred modules whose raw sources are loaded and definitions are not typechecked.
+   * @return modules that were loaded.
+   */
+  public List<ModulePath> loadDeferredBinaries(Collection<? extends ModulePath> modules) {
+    myDependenciesTypechecked = true;
+    for (ModulePath module : modules) {
+      myLoadedModules.put(module, SourceType.RAW);
+    }
+
+    List<ModulePath> result = new ArrayList<>();
+    for (ModulePath module : modules) {
+      if (loadBinary(module)) {
+        result.add(module);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the raw source that was preloaded, so its content hash is the hash of the loaded content.
+   */
+  private Source getRawSource(ModulePath modulePath) {
+    Source rawSource = myRawSources.get(modulePath);
+    return rawSource != null ? rawSource : myLibrary.getRawSource(modulePath);
+  }
+
+  /**
+   * Checks if a binary source was persisted from the current version of the raw source.
+   * Content hashes are compared if both of them are available; otherwise, timestamps are compared.
+   *
+   * @param binarySource  a binary source.
+   * @param sourceHash    the hash of the raw source stored in the binary source or null if it is not available.
+   * @return true if the binary source is up to date, false otherwise.
+   */
+  boolean isUpToDate(BinarySource binarySource, @Nullable byte[] sourceHash) {
+    Source rawSource = getRawSource(binarySource.getModulePath());
+    if (rawSource == null || !rawSource.isAvailable()) {
+      return true;
+    }
+
+    byte[] contentHash = rawSource.getContentHash();
+    if (contentHash != null && sourceHash != null) {
+      return Arrays.equals(contentHash, sourceHash);
+    }
+    return binarySource.getTimeStamp() >= rawSource.getTimeStamp();
+  }
 }
@@ -1,5 +1,6 @@
 package org.arend.source;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
 import org.arend.error.ErrorReporter;
 import org.arend.library.SourceLibrary;
@@ -23,6 +24,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 /**
  * Represents a source that loads a binary module from an {@link InputStream} and persists it to an {@link OutputStream}.
@@ -50,36 +52,84 @@ public abstract class StreamBinarySource implements BinarySource {
   @Nullable
   protected abstract OutputStream getOutputStream() throws IOException;
 
+  /**
+   * Reads the module from the input stream.
+   *
+   * @return the module or null if some error occurred.
+   */
+  @Nullable
+  protected ModuleProtos.Module readModule() throws IOException {
+    try (InputStream inputStream = getInputStream()) {
+      if (inputStream == null) {
+        return null;
+      }
+
+      CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
+      codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+      return ModuleProtos.Module.parseFrom(codedInputStream);
+    }
+  }
+
+  /**
+   * Checks if bodies of functions are persisted separately, so that they are deserialized only when they are requested.
+   *
+   * @return true if bodies of functions should be deserialized lazily, false otherwise.
+   */
+  protected boolean isLazy() {
+    return true;
+  }
+
   @Override
   public boolean preload(SourceLoader sourceLoader) {
     SourceLibrary library = sourceLoader.getLibrary();
     ModulePath modulePath = getModulePath();
     ChildGroup group = null;
-    try (InputStream inputStream = getInputStream()) {
-      if (inputStream == null) {
+    try {
+      ModuleProtos.Module moduleProto = readModule();
+      if (moduleProto == null) {
         return false;
       }
 
-      CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
-      codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
-      ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(codedInputStream);
+      // If binary sources are loaded before raw sources, partial modules are loaded after definitions with errors are parsed
       boolean isComplete = moduleProto.getComplete();
-      if (!isComplete && !library.hasRawSources()) {
-        sourceLoader.getLibraryErrorReporter().report(new PartialModuleError(modulePath));
+      if (!isComplete && (!library.hasRawSources() || sourceLoader.isLoadingBeforeRaw())) {
+        if (!library.hasRawSources()) {
+          sourceLoader.getLibraryErrorReporter().report(new PartialModuleError(modulePath));
+        }
         return false;
       }
 
+      if (library.hasRawSources() && !sourceLoader.isUpToDate(this, toHash(moduleProto.getSourceHash()))) {
+        return false;
+      }
+
+      ReferableConverter referableConverter = sourceLoader.getReferableConverter();
+      library.setInterfaceHash(modulePath, toHash(moduleProto.getInterfaceHash()));
       for (ModuleProtos.ModuleCallTargets moduleCallTargets : moduleProto.getModuleCallTargetsList()) {
         ModulePath module = new ModulePath(moduleCallTargets.getNameList());
-        if (library.containsModule(module) && !sourceLoader.preloadBinary(module)) {
+        if (!library.containsModule(module)) {
+          continue;
+        }
+
+        boolean ok;
+        if (sourceLoader.preloadBinary(module)) {
+          ok = checkInterfaceHash(moduleCallTargets, library.getInterfaceHash(module));
+        } else if (sourceLoader.isTypecheckedFromSource(module)) {
+          ok = checkInterfaceHash(moduleCallTargets, getInterfaceHash(module, library, referableConverter));
+        } else {
+          // The dependency will be typechecked from its raw source; if its interface does not change, this module can be loaded after that
+          sourceLoader.deferBinary(modulePath);
+          ok = false;
+        }
+        if (!ok) {
+          library.setInterfaceHash(modulePath, null);
           return false;
         }
       }
 
-      ReferableConverter referableConverter = sourceLoader.getReferableConverter();
       myModuleDeserialization = new ModuleDeserialization(moduleProto, library.getTypecheckerState(), referableConverter);
 
-      if (referableConverter == null) {
+      if (referableConverter == null || sourceLoader.isLoadingBeforeRaw()) {
         group = myModuleDeserialization.readGroup(modulePath);
         library.onGroupLoaded(modulePath, group, false);
       } else {
@@ -94,11 +144,25 @@ public abstract class StreamBinarySource implements BinarySource {
 
       return true;
     } catch (IOException | DeserializationException e) {
+      library.setInterfaceHash(modulePath, null);
       loadingFailed(sourceLoader, modulePath, group, e);
       return false;
     }
   }
 
+  private static byte[] toHash(ByteString hash) {
+    return hash.isEmpty() ? null : hash.toByteArray();
+  }
+
+  /**
+   * Checks that the interface of a dependency did not change since this module was persisted.
+   * If the interface hash of the dependency was not stored, we assume that it did not change.
+   */
+  private static boolean checkInterfaceHash(ModuleProtos.ModuleCallTargets moduleCallTargets, byte[] actual) {
+    byte[] expected = toHash(moduleCallTargets.getInterfaceHash());
+    return expected == null || Arrays.equals(expected, actual);
+  }
+
   @Override
   public LoadResult load(SourceLoader sourceLoader) {
     SourceLibrary library = sourceLoader.getLibrary();
@@ -127,7 +191,8 @@ public abstract class StreamBinarySource implements BinarySource {
 
   private void loadingFailed(SourceLoader sourceLoader, ModulePath modulePath, Group group, Exception e) {
     sourceLoader.getLibraryErrorReporter().report(new DeserializationError(modulePath, e));
-    if (!sourceLoader.getLibrary().hasRawSources()) {
+    sourceLoader.invalidateBinary(modulePath);
+    if (!sourceLoader.getLibrary().hasRawSources() || sourceLoader.isLoadingBeforeRaw()) {
       sourceLoader.getLibrary().onGroupLoaded(modulePath, null, false);
     }
     if (group != null) {
@@ -144,22 +209,70 @@ public abstract class StreamBinarySource implements BinarySource {
       return false;
     }
 
-    try (OutputStream outputStream = getOutputStream()) {
-      if (outputStream == null) {
-        errorReporter.report(new PersistingError(currentModulePath));
-        return false;
-      }
-
-      ModuleProtos.Module module = new ModuleSerialization(library.getTypecheckerState(), errorReporter).writeModule(group, currentModulePath, referableConverter);
+    try {
+      // The module is serialized before the output stream is opened, so that the old binary is kept if serialization fails
+      ModuleSerialization serialization = new ModuleSerialization(library.getTypecheckerState(), errorReporter, isLazy());
+      ModuleProtos.Module module = serialization.writeModule(group, currentModulePath, referableConverter);
       if (module == null) {
         return false;
       }
+      module = addHashes(module, serialization.getInterfaceHash(), library, referableConverter);
 
-      module.writeTo(outputStream);
+      try (OutputStream outputStream = getOutputStream()) {
+        if (outputStream == null) {
+          errorReporter.report(new PersistingError(currentModulePath));
+          return false;
+        }
+        module.writeTo(outputStream);
+      }
       return true;
     } catch (Exception e) {
       errorReporter.report(new ExceptionError(e, currentModulePath, false));
       return false;
     }
   }
+
+  private ModuleProtos.Module addHashes(ModuleProtos.Module module, byte[] interfaceHash, SourceLibrary library, ReferableConverter referableConverter) {
+    ModulePath currentModulePath = getModulePath();
+    ModuleProtos.Module.Builder builder = module.toBuilder();
+    if (interfaceHash != null) {
+      builder.setInterfaceHash(ByteString.copyFrom(interfaceHash));
+    }
+
+    Source rawSource = library.getRawSource(currentModulePath);
+    byte[] sourceHash = rawSource == null ? null : rawSource.getContentHash();
+    if (sourceHash != null) {
+      builder.setSourceHash(ByteString.copyFrom(sourceHash));
+    }
+
+    for (int i = 0; i < builder.getModuleCallTargetsCount(); i++) {
+      ModulePath dependency = new ModulePath(builder.getModuleCallTargets(i).getNameList());
+      byte[] hash = library.containsModule(dependency) ? getInterfaceHash(dependency, library, referableConverter) : null;
+      if (hash != null) {
+        builder.setModuleCallTargets(i, builder.getModuleCallTargets(i).toBuilder().setInterfaceHash(ByteString.copyFrom(hash)));
+      }
+    }
+
+    library.setInterfaceHash(currentModulePath, interfaceHash);
+    return builder.build();
+  }
+
+  /**
+   * Gets the interface hash of a dependency.
+   * If it was not persisted yet, its interface is serialized in order to compute the hash.
+   */
+  private static byte[] getInterfaceHash(ModulePath module, SourceLibrary library, ReferableConverter referableConverter) {
+    byte[] hash = library.getInterfaceHash(module);
+    if (hash != null) {
+      return hash;
+    }
+
+    Group group = library.getModuleGroup(module);
+    if (group == null) {
+      return null;
+    }
+    hash = ModuleSerialization.getInterfaceHash(library.getTypecheckerState(), group, module, referableConverter);
+    library.setInterfaceHash(module, hash);
+    return hash;
+  }
 }
@@ -3,28 +3,48 @@ package org.arend.source;
 import org.antlr.v4.runtime.*;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
+import org.arend.error.DummyErrorReporter;
 import org.arend.error.ErrorReporter;
+import org.arend.error.ListErrorReporter;
 import org.arend.frontend.ConcreteReferableProvider;
 import org.arend.frontend.parser.*;
+import org.arend.frontend.reference.ConcreteLocatedReferable;
 import org.arend.library.SourceLibrary;
 import org.arend.module.ModulePath;
 import org.arend.module.error.ExceptionError;
+import org.arend.module.scopeprovider.ModuleScopeProvider;
+import org.arend.naming.reference.GlobalReferable;
+import org.arend.naming.reference.LocatedReferable;
 import org.arend.naming.resolving.visitor.DefinitionResolveNameVisitor;
 import org.arend.naming.scope.CachingScope;
 import org.arend.naming.scope.ScopeFactory;
 import org.arend.term.NamespaceCommand;
+import org.arend.term.concrete.Concrete;
 import org.arend.term.group.FileGroup;
+import org.arend.term.group.Group;
+import org.arend.typechecking.typecheckable.provider.ConcreteProvider;
+import org.arend.util.HashUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
 
 /**
  * Represents a source that loads a raw module from an {@link InputStream}.
+ * If the library has flag {@link SourceLibrary.Flag#RELEASE_CONCRETE}, released concrete definitions are restored
+ * by parsing the stream again; the content of the stream must be the same.
  */
 public abstract class StreamRawSource implements Source {
   private final ModulePath myModulePath;
   private FileGroup myGroup;
+  private byte[] myContentHash;
+  private long myContentHashTimeStamp;
+  private ListErrorReporter myParseErrors;
+  private IOException myParseException;
   private byte myPass = 0;
 
   protected StreamRawSource(ModulePath modulePath) {
@@ -45,36 +65,109 @@ public abstract class StreamRawSource implements Source {
   @Nonnull
   protected abstract InputStream getInputStream() throws IOException;
 
-  @Override
-  public boolean preload(SourceLoader sourceLoader) {
-    SourceLibrary library = sourceLoader.getLibrary();
+  /**
+   * Parses the source.
+   *
+   * @param errorReporter a reporter for syntax errors.
+   * @return the group of the module or null if there are syntax errors.
+   */
+  @Nullable
+  private FileGroup parse(ErrorReporter errorReporter) throws IOException {
+    ArendParser.StatementsContext tree = parseStatements(errorReporter, false);
+    return tree == null ? null : new BuildVisitor(getModulePath(), errorReporter).visitStatements(tree);
+  }
+
+  /**
+   * Parses the source into a syntax tree.
+   *
+   * @param checkContent  if true, the content of the source is compared with the content that was loaded.
+   * @return the syntax tree or null if there are syntax errors or the content of the source was changed.
+   */
+  @Nullable
+  private ArendParser.StatementsContext parseStatements(ErrorReporter errorReporter, boolean checkContent) throws IOException {
     ModulePath modulePath = getModulePath();
-    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
     CountingErrorReporter countingErrorReporter = new CountingErrorReporter();
     final CompositeErrorReporter compositeErrorReporter = new CompositeErrorReporter(errorReporter, countingErrorReporter);
+    BaseErrorListener errorListener = new BaseErrorListener() {
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
+        compositeErrorReporter.report(new ParserError(new Position(modulePath, line, pos), msg));
+      }
+    };
+
+    long timeStamp = getTimeStamp();
+    MessageDigest digest = HashUtils.newDigest();
+    ArendLexer lexer = new ArendLexer(new ANTLRInputStream(new DigestInputStream(getInputStream(), digest)));
+    byte[] contentHash = digest.digest();
+    if (!checkContent) {
+      myContentHash = contentHash;
+      myContentHashTimeStamp = timeStamp;
+    } else if (!Arrays.equals(contentHash, myContentHash)) {
+      return null;
+    }
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(errorListener);
+
+    ArendParser parser = new ArendParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.addErrorListener(errorListener);
 
+    ArendParser.StatementsContext tree = parser.statements();
+    return tree == null || countingErrorReporter.getErrorsNumber() > 0 ? null : tree;
+  }
+
+  /**
+   * Parses the source in advance.
+   * This method does not modify the library, so different sources can be parsed concurrently.
+   * Errors are reported when the source is preloaded.
+   */
+  void parse() {
+    myParseErrors = new ListErrorReporter();
     try {
-      BaseErrorListener errorListener = new BaseErrorListener() {
-        @Override
-        public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
-          compositeErrorReporter.report(new ParserError(new Position(modulePath, line, pos), msg));
-        }
-      };
+      myGroup = parse(myParseErrors);
+    } catch (IOException e) {
+      myParseException = e;
+    }
+  }
+
+  /**
+   * @return modules imported by the source that was parsed in advance.
+   */
+  List<ModulePath> getImports() {
+    if (myGroup == null) {
+      return Collections.emptyList();
+    }
 
-      ArendLexer lexer = new ArendLexer(new ANTLRInputStream(getInputStream()));
-      lexer.removeErrorListeners();
-      lexer.addErrorListener(errorListener);
+    List<ModulePath> result = new ArrayList<>();
+    for (NamespaceCommand command : myGroup.getNamespaceCommands()) {
+      if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
+        result.add(new ModulePath(command.getPath()));
+      }
+    }
+    return result;
+  }
 
-      ArendParser parser = new ArendParser(new CommonTokenStream(lexer));
-      parser.removeErrorListeners();
-      parser.addErrorListener(errorListener);
+  @Override
+  public boolean preload(SourceLoader sourceLoader) {
+    SourceLibrary library = sourceLoader.getLibrary();
+    ModulePath modulePath = getModulePath();
+    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
+    library.setInterfaceHash(modulePath, null);
 
-      ArendParser.StatementsContext tree = parser.statements();
-      if (tree == null || countingErrorReporter.getErrorsNumber() > 0) {
+    try {
+      if (myParseErrors != null) {
+        myParseErrors.reportTo(errorReporter);
+        myParseErrors = null;
+        if (myParseException != null) {
+          throw myParseException;
+        }
+      } else {
+        myGroup = parse(errorReporter);
+      }
+      if (myGroup == null) {
         return false;
       }
 
-      myGroup = new BuildVisitor(modulePath, errorReporter).visitStatements(tree);
       library.onGroupLoaded(modulePath, myGroup, true);
 
       for (NamespaceCommand command : myGroup.getNamespaceCommands()) {
@@ -96,6 +189,36 @@ public abstract class StreamRawSource implements Source {
     }
   }
 
+  /**
+   * Gets the hash of the content of this source.
+   * If the source was not loaded, the hash of its current content is computed; it is recomputed when the timestamp of the source changes.
+   *
+   * @return the hash of the content or null if the source cannot be read.
+   */
+  @Nullable
+  @Override
+  public byte[] getContentHash() {
+    if (myGroup != null) {
+      return myContentHash;
+    }
+
+    long timeStamp = getTimeStamp();
+    if ((myContentHash == null || myContentHashTimeStamp != timeStamp) && isAvailable()) {
+      MessageDigest digest = HashUtils.newDigest();
+      byte[] buffer = new byte[8192];
+      try (InputStream inputStream = getInputStream()) {
+        for (int n; (n = inputStream.read(buffer)) != -1; ) {
+          digest.update(buffer, 0, n);
+        }
+        myContentHash = digest.digest();
+        myContentHashTimeStamp = timeStamp;
+      } catch (IOException e) {
+        return null;
+      }
+    }
+    return myContentHash;
+  }
+
   @Override
   public LoadResult load(SourceLoader sourceLoader) {
     if (myGroup == null) {
@@ -114,6 +237,102 @@ public abstract class StreamRawSource implements Source {
       return LoadResult.CONTINUE;
     }
     sourceLoader.getInstanceProviderSet().collectInstances(myGroup, CachingScope.make(ScopeFactory.parentScopeForGroup(myGroup, sourceLoader.getModuleScopeProvider(), true)), ConcreteReferableProvider.INSTANCE, null);
+    if (sourceLoader.getLibrary().hasFlag(SourceLibrary.Flag.RELEASE_CONCRETE)) {
+      Reloader reloader = new Reloader(myGroup, sourceLoader.getModuleScopeProvider());
+      List<ConcreteLocatedReferable> referables = new ArrayList<>();
+      collectReferables(myGroup, referables);
+      for (ConcreteLocatedReferable referable : referables) {
+        if (referable.isDefinitionLoaded()) {
+          referable.setReloader(reloader);
+        }
+      }
+    }
     return LoadResult.SUCCESS;
   }
+
+  private static void collectReferables(Group group, List<ConcreteLocatedReferable> result) {
+    LocatedReferable referable = group.getReferable();
+    if (referable instanceof ConcreteLocatedReferable) {
+      result.add((ConcreteLocatedReferable) referable);
+    }
+    for (Group.InternalReferable internalReferable : group.getConstructors()) {
+      if (internalReferable.getReferable() instanceof ConcreteLocatedReferable) {
+        result.add((ConcreteLocatedReferable) internalReferable.getReferable());
+      }
+    }
+    for (Group.InternalReferable internalReferable : group.getFields()) {
+      if (internalReferable.getReferable() instanceof ConcreteLocatedReferable) {
+        result.add((ConcreteLocatedReferable) internalReferable.getReferable());
+      }
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      collectReferables(subgroup, result);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      collectReferables(subgroup, result);
+    }
+  }
+
+  /**
+   * Restores released definitions of a module.
+   * The source is parsed again and all referables of the module are reused, so references to them remain valid.
+   * Then the new group is resolved, and its concrete definitions are attached to released referables.
+   *
+   * The lock of the reloader is held only while definitions are attached since resolving may reload other modules.
+   * If several threads reload the module concurrently, definitions built by the first of them are used.
+   */
+  private class Reloader implements ConcreteLocatedReferable.Reloader {
+    private final FileGroup myLoadedGroup;
+    private final ModuleScopeProvider myModuleScopeProvider;
+    private final ThreadLocal<Boolean> myReloading = ThreadLocal.withInitial(() -> false);
+    private volatile boolean myFailed;
+
+    Reloader(FileGroup group, ModuleScopeProvider moduleScopeProvider) {
+      myLoadedGroup = group;
+      myModuleScopeProvider = moduleScopeProvider;
+    }
+
+    @Override
+    public void reload(ConcreteLocatedReferable referable) {
+      if (myReloading.get() || myFailed || referable.isDefinitionLoaded()) {
+        return;
+      }
+
+      List<ConcreteLocatedReferable> referables = new ArrayList<>();
+      collectReferables(myLoadedGroup, referables);
+
+      myReloading.set(true);
+      try {
+        ArendParser.StatementsContext tree = parseStatements(DummyErrorReporter.INSTANCE, true);
+        if (tree == null) {
+          myFailed = true;
+          return;
+        }
+        BuildVisitor buildVisitor = new BuildVisitor(getModulePath(), DummyErrorReporter.INSTANCE, referables);
+        FileGroup group = buildVisitor.visitStatements(tree);
+        group.setModuleScopeProvider(myModuleScopeProvider);
+        Map<ConcreteLocatedReferable, Concrete.ReferableDefinition> definitions = buildVisitor.getDefinitions();
+        ConcreteProvider concreteProvider = new ConcreteReferableProvider() {
+          @Override
+          public Concrete.ReferableDefinition getConcrete(GlobalReferable ref) {
+            Concrete.ReferableDefinition definition = definitions.get(ref);
+            return definition != null ? definition : super.getConcrete(ref);
+          }
+        };
+        new DefinitionResolveNameVisitor(concreteProvider, DummyErrorReporter.INSTANCE).resolveGroupWithTypes(group, null, group.getGroupScope());
+
+        synchronized (this) {
+          for (Map.Entry<ConcreteLocatedReferable, Concrete.ReferableDefinition> entry : definitions.entrySet()) {
+            if (!entry.getKey().isDefinitionLoaded()) {
+              entry.getKey().setDefinition(entry.getValue());
+            }
+          }
+        }
+      } catch (IOException e) {
+        myFailed = true;
+      } finally {
+        myReloading.remove();
+      }
+    }
+  }
 }
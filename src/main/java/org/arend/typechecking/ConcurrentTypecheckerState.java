@@ -0,0 +1,53 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.naming.reference.GlobalReferable;
+import org.arend.naming.reference.TCReferable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A typechecker state that can be shared between threads.
+ * Every operation is atomic and a definition recorded by one thread is visible to all threads that look it up afterwards.
+ */
+public class ConcurrentTypecheckerState implements TypecheckerState {
+  private final ConcurrentMap<GlobalReferable, Definition> myTypechecked = new ConcurrentHashMap<>();
+
+  /**
+   * Records {@code res} unless some definition is already recorded for {@code def}.
+   * If several threads record the same definition simultaneously, exactly one of them succeeds and the others get its result.
+   *
+   * @return the previously recorded definition or null if {@code res} was recorded.
+   */
+  @Override
+  public Definition record(TCReferable def, Definition res) {
+    return myTypechecked.putIfAbsent(def, res);
+  }
+
+  @Override
+  public void rewrite(TCReferable def, Definition res) {
+    myTypechecked.put(def, res);
+  }
+
+  @Override
+  public Definition getTypechecked(TCReferable def) {
+    assert def != null;
+    return myTypechecked.get(def);
+  }
+
+  @Override
+  public Definition reset(TCReferable def) {
+    return myTypechecked.remove(def);
+  }
+
+  /**
+   * Removes all definitions.
+   * Definitions recorded concurrently with this method may or may not be removed,
+   * so it should be invoked when no typechecking is running.
+   */
+  @Override
+  public void reset() {
+    myTypechecked.clear();
+  }
+}
@@ -1,9 +1,6 @@
 package org.arend.typechecking.implicitargs.equations;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class LevelEquations<Var> {
   private final List<Var> myVariables = new ArrayList<>();
@@ -39,47 +36,302 @@ public class LevelEquations<Var> {
     return myVariables.isEmpty() && myEquations.isEmpty();
   }
 
+  /**
+   * Finds the greatest solution of the equations.
+   * A solution maps each variable to a non-positive number or to null, which represents negative infinity.
+   * An equation between ?x and ?y with constant c requires ?y <= ?x + c; if it has a max constant m, then it is taken into account only if ?x + m < 0.
+   * The null variable is the constant 0.
+   *
+   * Variables that are forced to be infinite are found first; the equations are not solvable if the constant 0 is one of them.
+   * Then strongly connected components of the remaining equations are processed in topological order, so acyclic parts are solved in one pass.
+   *
+   * @param solution  the map to which the solution is added.
+   * @return null if the equations are solvable, a list of equations that cannot be satisfied otherwise.
+   */
   public List<LevelEquation<Var>> solve(Map<Var, Integer> solution) {
-    Map<Var, List<LevelEquation<Var>>> paths = new HashMap<>();
+    // Node 0 is the constant 0; variables that are not listed in myVariables are infinite.
+    Map<Var, Integer> indices = new HashMap<>();
+    indices.put(null, 0);
+    for (Var var : myVariables) {
+      indices.putIfAbsent(var, indices.size());
+    }
+    int numberOfKnown = indices.size();
+
+    int numberOfEdges = 0;
+    for (LevelEquation<Var> equation : myEquations) {
+      if (equation.isInfinity()) {
+        indices.putIfAbsent(equation.getVariable(), indices.size());
+      } else {
+        indices.putIfAbsent(equation.getVariable1(), indices.size());
+        indices.putIfAbsent(equation.getVariable2(), indices.size());
+        numberOfEdges++;
+      }
+    }
+
+    int n = indices.size();
+    boolean[] infinite = new boolean[n];
+    int[] stack = new int[n];
+    int stackSize = 0;
+    for (int i = numberOfKnown; i < n; i++) {
+      infinite[i] = true;
+      stack[stackSize++] = i;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) LevelEquation<Var>[] sources = new LevelEquation[n];
+    @SuppressWarnings({"unchecked", "rawtypes"}) LevelEquation<Var>[] edges = new LevelEquation[numberOfEdges];
+    int[] from = new int[numberOfEdges];
+    int[] to = new int[numberOfEdges];
+    int[] outStart = new int[n + 1];
+    int e = 0;
+    for (LevelEquation<Var> equation : myEquations) {
+      if (equation.isInfinity()) {
+        int var = indices.get(equation.getVariable());
+        if (!infinite[var]) {
+          infinite[var] = true;
+          sources[var] = equation;
+          stack[stackSize++] = var;
+        }
+      } else {
+        edges[e] = equation;
+        from[e] = indices.get(equation.getVariable1());
+        to[e] = indices.get(equation.getVariable2());
+        outStart[from[e] + 1]++;
+        e++;
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      outStart[i + 1] += outStart[i];
+    }
+    int[] out = new int[numberOfEdges];
+    int[] next = Arrays.copyOf(outStart, n);
+    for (int i = 0; i < numberOfEdges; i++) {
+      out[next[from[i]]++] = i;
+    }
+
+    // Infinity propagates along every equation, but the constant 0 cannot be infinite
+    int[] values = new int[n];
+    int[] pred = new int[n];
+    Arrays.fill(pred, -1);
+    List<LevelEquation<Var>> failure = null;
+    loop:
+    while (stackSize > 0) {
+      int var = stack[--stackSize];
+      for (int i = outStart[var]; i < outStart[var + 1]; i++) {
+        int edge = out[i];
+        int target = to[edge];
+        if (target == 0) {
+          failure = makePath(var, edge, edges, from, pred);
+          int root = var;
+          while (pred[root] != -1) {
+            root = from[pred[root]];
+          }
+          if (sources[root] != null) {
+            failure.add(0, sources[root]);
+          }
+          break loop;
+        }
+        if (!infinite[target]) {
+          infinite[target] = true;
+          pred[target] = edge;
+          stack[stackSize++] = target;
+        }
+      }
+    }
+
+    if (failure == null) {
+      failure = solveFinite(n, edges, from, to, outStart, out, infinite, values, pred);
+    }
 
-    solution.put(null, 0);
-    paths.put(null, new ArrayList<>());
     for (Var var : myVariables) {
-      solution.put(var, 0);
-      paths.put(var, new ArrayList<>());
-    }
-
-    for (int i = myVariables.size(); i >= 0; i--) {
-      boolean updated = false;
-      for (LevelEquation<Var> equation : myEquations) {
-        if (equation.isInfinity()) {
-          solution.put(equation.getVariable(), null);
-        } else {
-          Integer a = solution.get(equation.getVariable1());
-          Integer b = solution.get(equation.getVariable2());
-          Integer m = equation.getMaxConstant();
-          if (b != null && (a == null || (m == null || a + m < 0) && b > a + equation.getConstant())) {
-            if (a != null) {
-              List<LevelEquation<Var>> newPath = new ArrayList<>(paths.get(equation.getVariable1()));
-              newPath.add(equation);
-              paths.put(equation.getVariable2(), newPath);
-            }
-            if (i == 0 || equation.getVariable2() == null && a != null) {
-              solution.remove(null);
-              return paths.get(equation.getVariable2());
+      int index = indices.get(var);
+      solution.put(var, infinite[index] ? null : values[index]);
+    }
+    return failure;
+  }
+
+  private static boolean isActive(LevelEquation<?> equation, int value) {
+    Integer maxConstant = equation.getMaxConstant();
+    return maxConstant == null || (long) value + maxConstant < 0;
+  }
+
+  private List<LevelEquation<Var>> solveFinite(int n, LevelEquation<Var>[] edges, int[] from, int[] to, int[] outStart, int[] out, boolean[] infinite, int[] values, int[] pred) {
+    int[] component = new int[n];
+    int[] order = new int[n];
+    int numberOfComponents = computeComponents(n, to, outStart, out, infinite, component, order);
+
+    int[] componentStart = new int[numberOfComponents + 1];
+    for (int i = 0; i < n; i++) {
+      if (!infinite[i]) {
+        componentStart[component[i] + 1]++;
+      }
+    }
+    for (int i = 0; i < numberOfComponents; i++) {
+      componentStart[i + 1] += componentStart[i];
+    }
+
+    int[] queue = new int[n];
+    boolean[] inQueue = new boolean[n];
+    int[] counts = new int[n];
+    // Components are numbered in reverse topological order
+    for (int c = numberOfComponents - 1; c >= 0; c--) {
+      int size = componentStart[c + 1] - componentStart[c];
+      int head = 0;
+      int queueSize = 0;
+      for (int i = componentStart[c]; i < componentStart[c + 1]; i++) {
+        queue[queueSize++] = order[i];
+        inQueue[order[i]] = true;
+      }
+
+      while (queueSize > 0) {
+        int var = queue[head];
+        head = head + 1 == n ? 0 : head + 1;
+        queueSize--;
+        inQueue[var] = false;
+
+        for (int i = outStart[var]; i < outStart[var + 1]; i++) {
+          int edge = out[i];
+          int target = to[edge];
+          if (infinite[target] || !isActive(edges[edge], values[var])) {
+            continue;
+          }
+          long newValue = (long) values[var] + edges[edge].getConstant();
+          if (newValue >= values[target]) {
+            continue;
+          }
+
+          // The constant 0 cannot be decreased
+          if (target == 0) {
+            return makePath(var, edge, edges, from, pred);
+          }
+          values[target] = (int) newValue;
+          pred[target] = edge;
+          if (component[target] == c && !inQueue[target]) {
+            if (++counts[target] > size) {
+              return makeCycle(target, edges, from, pred);
             }
+            int tail = head + queueSize;
+            queue[tail >= n ? tail - n : tail] = target;
+            queueSize++;
+            inQueue[target] = true;
+          }
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Computes strongly connected components of finite variables with Tarjan's algorithm.
+   *
+   * @param component  the number of the component of every variable; components are numbered in reverse topological order.
+   * @param order      variables sorted by their components.
+   * @return the number of components.
+   */
+  private static int computeComponents(int n, int[] to, int[] outStart, int[] out, boolean[] infinite, int[] component, int[] order) {
+    int[] index = new int[n];
+    int[] lowLink = new int[n];
+    Arrays.fill(index, -1);
+    boolean[] onStack = new boolean[n];
+    int[] stack = new int[n];
+    int stackSize = 0;
+    int[] callStack = new int[n];
+    int[] edgePosition = new int[n];
+    int counter = 0;
+    int numberOfComponents = 0;
+    int[] componentSizes = new int[n];
+
+    for (int root = 0; root < n; root++) {
+      if (infinite[root] || index[root] != -1) {
+        continue;
+      }
 
-            solution.put(equation.getVariable2(), a == null ? null : a + equation.getConstant());
-            updated = true;
+      int depth = 0;
+      callStack[0] = root;
+      edgePosition[root] = outStart[root];
+      index[root] = lowLink[root] = counter++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+
+      while (depth >= 0) {
+        int var = callStack[depth];
+        if (edgePosition[var] < outStart[var + 1]) {
+          int target = to[out[edgePosition[var]++]];
+          if (infinite[target]) {
+            continue;
+          }
+          if (index[target] == -1) {
+            index[target] = lowLink[target] = counter++;
+            stack[stackSize++] = target;
+            onStack[target] = true;
+            edgePosition[target] = outStart[target];
+            callStack[++depth] = target;
+          } else if (onStack[target]) {
+            lowLink[var] = Math.min(lowLink[var], index[target]);
           }
+          continue;
+        }
+
+        if (lowLink[var] == index[var]) {
+          int member;
+          do {
+            member = stack[--stackSize];
+            onStack[member] = false;
+            component[member] = numberOfComponents;
+            componentSizes[numberOfComponents]++;
+          } while (member != var);
+          numberOfComponents++;
+        }
+        depth--;
+        if (depth >= 0) {
+          int parent = callStack[depth];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[var]);
         }
       }
-      if (!updated) {
-        break;
+    }
+
+    int[] position = new int[numberOfComponents];
+    for (int i = 1; i < numberOfComponents; i++) {
+      position[i] = position[i - 1] + componentSizes[i - 1];
+    }
+    for (int i = 0; i < n; i++) {
+      if (!infinite[i]) {
+        order[position[component[i]]++] = i;
       }
     }
+    return numberOfComponents;
+  }
 
-    solution.remove(null);
-    return null;
+  private List<LevelEquation<Var>> makePath(int var, int lastEdge, LevelEquation<Var>[] edges, int[] from, int[] pred) {
+    List<LevelEquation<Var>> path = new ArrayList<>();
+    path.add(edges[lastEdge]);
+    Set<Integer> visited = new HashSet<>();
+    while (pred[var] != -1 && visited.add(var)) {
+      path.add(edges[pred[var]]);
+      var = from[pred[var]];
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  private List<LevelEquation<Var>> makeCycle(int target, LevelEquation<Var>[] edges, int[] from, int[] pred) {
+    // Find a variable on a cycle of predecessors
+    Set<Integer> visited = new HashSet<>();
+    int var = target;
+    while (pred[var] != -1 && visited.add(var)) {
+      var = from[pred[var]];
+    }
+    if (pred[var] == -1) {
+      return makePath(from[pred[target]], pred[target], edges, from, pred);
+    }
+
+    List<LevelEquation<Var>> cycle = new ArrayList<>();
+    int start = var;
+    do {
+      cycle.add(edges[pred[var]]);
+      var = from[pred[var]];
+    } while (var != start);
+    Collections.reverse(cycle);
+    return cycle;
   }
 }
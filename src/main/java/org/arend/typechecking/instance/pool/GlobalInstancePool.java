@@ -10,24 +10,40 @@ import org.arend.core.expr.visitor.NormalizeVisitor;
 import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.naming.reference.TCClassReferable;
+import org.arend.prelude.Prelude;
 import org.arend.term.concrete.Concrete;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.implicitargs.equations.Equations;
+import org.arend.typechecking.instance.provider.InstanceIndex;
 import org.arend.typechecking.instance.provider.InstanceProvider;
+import org.arend.typechecking.instance.provider.InstanceResolutionCache;
 import org.arend.typechecking.visitor.CheckTypeVisitor;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class GlobalInstancePool implements InstancePool {
+  private static final Object UNIVERSE_HEAD = new Object();
+  private static final Object SIGMA_HEAD = new Object();
+
   private final TypecheckerState myTypecheckerState;
   private final InstanceProvider myInstanceProvider;
   private final CheckTypeVisitor myCheckTypeVisitor;
+  private final InstanceResolutionCache myResolutionCache;
   private InstancePool myInstancePool;
 
-  public GlobalInstancePool(TypecheckerState typecheckerState, InstanceProvider instanceProvider, CheckTypeVisitor checkTypeVisitor) {
+  public GlobalInstancePool(TypecheckerState typecheckerState, InstanceProvider instanceProvider, CheckTypeVisitor checkTypeVisitor, InstanceResolutionCache resolutionCache) {
     myTypecheckerState = typecheckerState;
     myInstanceProvider = instanceProvider;
     myCheckTypeVisitor = checkTypeVisitor;
+    myResolutionCache = resolutionCache;
+  }
+
+  public GlobalInstancePool(TypecheckerState typecheckerState, InstanceProvider instanceProvider, CheckTypeVisitor checkTypeVisitor) {
+    this(typecheckerState, instanceProvider, checkTypeVisitor, null);
   }
 
   public InstancePool getInstancePool() {
@@ -78,39 +94,27 @@ public class GlobalInstancePool implements InstancePool {
       classifyingField = null;
     }
 
-    Expression normClassifyingExpression = classifyingExpression;
     class MyPredicate implements Predicate<Concrete.FunctionDefinition> {
       private FunctionDefinition instanceDef = null;
 
       @Override
       public boolean test(Concrete.FunctionDefinition instance) {
-        instanceDef = (FunctionDefinition) myTypecheckerState.getTypechecked(instance.getData());
-        if (instanceDef == null || !instanceDef.status().headerIsOK() || !(instanceDef.getResultType() instanceof ClassCallExpression)) {
-          return false;
-        }
-
-        if (normClassifyingExpression == null) {
-          return true;
-        }
-
-        Expression instanceClassifyingExpr = ((ClassCallExpression) instanceDef.getResultType()).getImplementationHere(classifyingField);
-        if (instanceClassifyingExpr != null) {
-          instanceClassifyingExpr = instanceClassifyingExpr.normalize(NormalizeVisitor.Mode.WHNF);
-        }
-        while (instanceClassifyingExpr instanceof LamExpression) {
-          instanceClassifyingExpr = ((LamExpression) instanceClassifyingExpr).getBody();
-        }
-        return
-          instanceClassifyingExpr instanceof UniverseExpression && normClassifyingExpression.isInstance(UniverseExpression.class) ||
-          instanceClassifyingExpr instanceof SigmaExpression && normClassifyingExpression.isInstance(SigmaExpression.class) ||
-          instanceClassifyingExpr instanceof IntegerExpression && (normClassifyingExpression.isInstance(IntegerExpression.class) && ((IntegerExpression) instanceClassifyingExpr).isEqual(normClassifyingExpression.cast(IntegerExpression.class)) ||
-            normClassifyingExpression.isInstance(ConCallExpression.class) && ((IntegerExpression) instanceClassifyingExpr).match(normClassifyingExpression.cast(ConCallExpression.class).getDefinition())) ||
-          instanceClassifyingExpr instanceof DefCallExpression && normClassifyingExpression.isInstance(DefCallExpression.class) && ((DefCallExpression) instanceClassifyingExpr).getDefinition() == normClassifyingExpression.cast(DefCallExpression.class).getDefinition();
+        instanceDef = getInstanceDefinition(instance);
+        return instanceDef != null;
       }
     }
 
     MyPredicate predicate = new MyPredicate();
-    Concrete.FunctionDefinition instance = myInstanceProvider.findInstance(classRef, predicate);
+    Concrete.FunctionDefinition instance;
+    if (classifyingExpression == null) {
+      instance = myInstanceProvider.findInstance(classRef, predicate);
+    } else {
+      Object head = classifyingExpression.isInstance(UniverseExpression.class) ? UNIVERSE_HEAD
+        : classifyingExpression.isInstance(SigmaExpression.class) ? SIGMA_HEAD
+        : classifyingExpression.isInstance(IntegerExpression.class) ? classifyingExpression.cast(IntegerExpression.class).getBigInteger()
+        : classifyingExpression.cast(DefCallExpression.class).getDefinition();
+      instance = findInstance(classRef, head, classifyingField, predicate);
+    }
     if (instance == null || predicate.instanceDef == null) {
       return null;
     }
@@ -128,10 +132,78 @@ public class GlobalInstancePool implements InstancePool {
     return result == null ? new ErrorExpression(null, null) : result.expression;
   }
 
+  private Concrete.FunctionDefinition findInstance(TCClassReferable classRef, Object head, ClassField classifyingField, Predicate<Concrete.FunctionDefinition> predicate) {
+    InstanceIndex index = myInstanceProvider.getInstanceIndex(classRef);
+    Function<Concrete.FunctionDefinition, Collection<?>> headFunction = instance -> getClassifyingHeads(instance, classifyingField);
+    if (myResolutionCache == null) {
+      return index.findInstance(head, headFunction, predicate);
+    }
+
+    int version = index.updateHeads(headFunction);
+    InstanceResolutionCache.Entry entry = myResolutionCache.get(myInstanceProvider, classRef, head, version);
+    if (entry != null) {
+      if (entry.getInstance() == null || predicate.test(entry.getInstance())) {
+        return entry.getInstance();
+      }
+      // The instance was reset
+      myResolutionCache.remove(myInstanceProvider, classRef, head);
+    }
+
+    Concrete.FunctionDefinition instance = index.findInstance(head, headFunction, predicate);
+    myResolutionCache.put(myInstanceProvider, classRef, head, version, instance);
+    return instance;
+  }
+
+  private FunctionDefinition getInstanceDefinition(Concrete.FunctionDefinition instance) {
+    Definition instanceDef = myTypecheckerState.getTypechecked(instance.getData());
+    return instanceDef instanceof FunctionDefinition && instanceDef.status().headerIsOK() && ((FunctionDefinition) instanceDef).getResultType() instanceof ClassCallExpression ? (FunctionDefinition) instanceDef : null;
+  }
+
+  /**
+   * Computes heads of the classifying implementation of an instance.
+   * An implementation with an integer head matches both the integer and the corresponding constructor of natural numbers.
+   *
+   * @return the list of heads or null if the instance is not typechecked yet.
+   */
+  private Collection<?> getClassifyingHeads(Concrete.FunctionDefinition instance, ClassField classifyingField) {
+    Definition typechecked = myTypecheckerState.getTypechecked(instance.getData());
+    if (typechecked == null || typechecked.status().needsTypeChecking()) {
+      return null;
+    }
+
+    FunctionDefinition instanceDef = getInstanceDefinition(instance);
+    if (instanceDef == null) {
+      return Collections.emptyList();
+    }
+
+    Expression instanceClassifyingExpr = ((ClassCallExpression) instanceDef.getResultType()).getImplementationHere(classifyingField);
+    if (instanceClassifyingExpr != null) {
+      instanceClassifyingExpr = instanceClassifyingExpr.normalize(NormalizeVisitor.Mode.WHNF);
+    }
+    while (instanceClassifyingExpr instanceof LamExpression) {
+      instanceClassifyingExpr = ((LamExpression) instanceClassifyingExpr).getBody();
+    }
+
+    if (instanceClassifyingExpr instanceof UniverseExpression) {
+      return Collections.singletonList(UNIVERSE_HEAD);
+    }
+    if (instanceClassifyingExpr instanceof SigmaExpression) {
+      return Collections.singletonList(SIGMA_HEAD);
+    }
+    if (instanceClassifyingExpr instanceof IntegerExpression) {
+      IntegerExpression intExpr = (IntegerExpression) instanceClassifyingExpr;
+      return Arrays.asList(intExpr.getBigInteger(), intExpr.isZero() ? Prelude.ZERO : Prelude.SUC);
+    }
+    if (instanceClassifyingExpr instanceof DefCallExpression) {
+      return Collections.singletonList(((DefCallExpression) instanceClassifyingExpr).getDefinition());
+    }
+    return Collections.emptyList();
+  }
+
   @Override
   public GlobalInstancePool subst(ExprSubstitution substitution) {
     if (myInstancePool != null) {
-      GlobalInstancePool result = new GlobalInstancePool(myTypecheckerState, myInstanceProvider, myCheckTypeVisitor);
+      GlobalInstancePool result = new GlobalInstancePool(myTypecheckerState, myInstanceProvider, myCheckTypeVisitor, myResolutionCache);
       result.setInstancePool(myInstancePool.subst(substitution));
       return result;
     } else {
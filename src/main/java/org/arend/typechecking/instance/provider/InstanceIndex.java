@@ -0,0 +1,100 @@
+package org.arend.typechecking.instance.provider;
+
+import org.arend.term.concrete.Concrete;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Instances of subclasses of some class indexed by heads of their classifying implementations.
+ * The heads of an instance are computed once by a function passed to {@link #findInstance(Object, Function, Predicate)}.
+ * If the heads of an instance are not available yet (for example, if the instance is not typechecked), they are computed again on the next lookup.
+ * Lookups preserve the order of instances, that is, they return the first matching instance in this order.
+ * The index is thread-safe.
+ */
+public class InstanceIndex {
+  private final List<Concrete.FunctionDefinition> myInstances;
+  private final Map<Object, List<Integer>> myInstancesByHead = new HashMap<>();
+  private final List<Integer> myPending;
+
+  public InstanceIndex(List<Concrete.FunctionDefinition> instances) {
+    myInstances = instances;
+    myPending = new ArrayList<>(instances.size());
+    for (int i = 0; i < instances.size(); i++) {
+      myPending.add(i);
+    }
+  }
+
+  public List<Concrete.FunctionDefinition> getInstances() {
+    return myInstances;
+  }
+
+  /**
+   * @return the first instance satisfying {@code pred}.
+   */
+  public Concrete.FunctionDefinition findInstance(Predicate<Concrete.FunctionDefinition> pred) {
+    for (Concrete.FunctionDefinition instance : myInstances) {
+      if (pred.test(instance)) {
+        return instance;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the first instance that has head {@code head} and satisfies {@code pred}.
+   *
+   * @param head          a head of the classifying implementation.
+   * @param headFunction  computes heads of an instance; returns null if they are not available yet.
+   * @param pred          checks the instance found by its head.
+   */
+  public Concrete.FunctionDefinition findInstance(Object head, Function<Concrete.FunctionDefinition, Collection<?>> headFunction, Predicate<Concrete.FunctionDefinition> pred) {
+    List<Integer> candidates;
+    synchronized (this) {
+      updateHeads(headFunction);
+      candidates = myInstancesByHead.get(head);
+      if (candidates == null) {
+        return null;
+      }
+      candidates = new ArrayList<>(candidates);
+    }
+
+    for (Integer index : candidates) {
+      Concrete.FunctionDefinition instance = myInstances.get(index);
+      if (pred.test(instance)) {
+        return instance;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Computes heads of instances that were not indexed yet.
+   *
+   * @return the number of indexed instances; results of lookups can change only if this number changes.
+   */
+  public synchronized int updateHeads(Function<Concrete.FunctionDefinition, Collection<?>> headFunction) {
+    if (myPending.isEmpty()) {
+      return myInstances.size();
+    }
+
+    for (Iterator<Integer> it = myPending.iterator(); it.hasNext(); ) {
+      Integer index = it.next();
+      Collection<?> heads = headFunction.apply(myInstances.get(index));
+      if (heads == null) {
+        continue;
+      }
+
+      it.remove();
+      for (Object head : heads) {
+        List<Integer> instances = myInstancesByHead.computeIfAbsent(head, k -> new ArrayList<>());
+        int pos = Collections.binarySearch(instances, index);
+        if (pos < 0) {
+          instances.add(-pos - 1, index);
+        }
+      }
+    }
+    return myInstances.size() - myPending.size();
+  }
+}
@@ -3,8 +3,27 @@ package org.arend.typechecking.instance.provider;
 import org.arend.naming.reference.ClassReferable;
 import org.arend.term.concrete.Concrete;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Predicate;
 
 public interface InstanceProvider {
   Concrete.FunctionDefinition findInstance(ClassReferable classRef, Predicate<Concrete.FunctionDefinition> pred);
+
+  /**
+   * @return an index of instances of subclasses of {@code classRef}.
+   */
+  default InstanceIndex getInstanceIndex(ClassReferable classRef) {
+    List<Concrete.FunctionDefinition> instances = new ArrayList<>();
+    findInstance(classRef, instance -> {
+      instances.add(instance);
+      return false;
+    });
+    return new InstanceIndex(instances);
+  }
+
+  /**
+   * Drops cached indices, so that heads of instances are computed again.
+   */
+  default void clearIndices() {}
 }
@@ -21,9 +21,11 @@ import java.util.function.Predicate;
 public class InstanceProviderSet {
   private final Map<TCReferable, InstanceProvider> myProviders = new HashMap<>();
   private final Set<Group> myCollected = new HashSet<>();
+  private final InstanceResolutionCache myResolutionCache = new InstanceResolutionCache();
 
   public void put(TCReferable referable, InstanceProvider provider) {
     myProviders.put(referable, provider);
+    myResolutionCache.clear();
   }
 
   public InstanceProvider get(TCReferable referable) {
@@ -31,7 +33,29 @@ public class InstanceProviderSet {
   }
 
   public InstanceProvider computeIfAbsent(TCReferable referable, Function<? super TCReferable, ? extends InstanceProvider> fun) {
-    return myProviders.computeIfAbsent(referable, fun);
+    return myProviders.computeIfAbsent(referable, ref -> {
+      myResolutionCache.clear();
+      return fun.apply(ref);
+    });
+  }
+
+  /**
+   * @return the cache of instance resolution shared by all providers of this set.
+   */
+  public InstanceResolutionCache getResolutionCache() {
+    return myResolutionCache;
+  }
+
+  /**
+   * Invalidates cached results of instance resolution and indices of providers, so that classifying heads of instances are computed again.
+   * It should be called when typechecked definitions are reset (see {@link org.arend.typechecking.order.dependency.DependencyCollector})
+   * or libraries are unloaded.
+   */
+  public void invalidateCaches() {
+    myResolutionCache.clear();
+    for (InstanceProvider provider : new HashSet<>(myProviders.values())) {
+      provider.clearIndices();
+    }
   }
 
   private class MyPredicate implements Predicate<Referable> {
@@ -84,6 +108,7 @@ public class InstanceProviderSet {
     parentScope.find(predicate);
     processGroup(group, parentScope, predicate);
     predicate.recordInstances(group.getReferable());
+    myResolutionCache.clear();
     return true;
   }
 
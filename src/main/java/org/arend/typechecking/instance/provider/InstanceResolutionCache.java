@@ -0,0 +1,107 @@
+package org.arend.typechecking.instance.provider;
+
+import org.arend.naming.reference.ClassReferable;
+import org.arend.term.concrete.Concrete;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Memoizes results of instance resolution, including failed ones, for a typechecking session.
+ * A result is stored for an instance provider, a class and a head of the classifying expression (see {@link InstanceIndex}).
+ * Each result is stored together with the version of the index it was computed from, so it is not used after new instances are indexed.
+ *
+ * The cache is thread-safe.
+ * It should be invalidated whenever the set of instance providers changes or typechecked definitions are reset.
+ */
+public class InstanceResolutionCache {
+  private final Map<Key, Entry> myCache = new HashMap<>();
+  private long myHits;
+  private long myMisses;
+
+  private static class Key {
+    private final InstanceProvider myProvider;
+    private final ClassReferable myClassRef;
+    private final Object myHead;
+
+    Key(InstanceProvider provider, ClassReferable classRef, Object head) {
+      myProvider = provider;
+      myClassRef = classRef;
+      myHead = head;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return myProvider == key.myProvider && myClassRef.equals(key.myClassRef) && Objects.equals(myHead, key.myHead);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(myProvider), myClassRef, myHead);
+    }
+  }
+
+  /**
+   * A cached result; {@link #getInstance} is null if there is no instance.
+   */
+  public static class Entry {
+    private final Concrete.FunctionDefinition myInstance;
+    private final int myVersion;
+
+    private Entry(Concrete.FunctionDefinition instance, int version) {
+      myInstance = instance;
+      myVersion = version;
+    }
+
+    public Concrete.FunctionDefinition getInstance() {
+      return myInstance;
+    }
+  }
+
+  /**
+   * @param version  the current version of the index of instances (see {@link InstanceIndex#updateHeads}).
+   * @return the cached result or null if there is no valid result.
+   */
+  public synchronized Entry get(InstanceProvider provider, ClassReferable classRef, Object head, int version) {
+    Entry entry = myCache.get(new Key(provider, classRef, head));
+    if (entry == null || entry.myVersion != version) {
+      myMisses++;
+      return null;
+    }
+    myHits++;
+    return entry;
+  }
+
+  public synchronized void put(InstanceProvider provider, ClassReferable classRef, Object head, int version, Concrete.FunctionDefinition instance) {
+    myCache.put(new Key(provider, classRef, head), new Entry(instance, version));
+  }
+
+  public synchronized void remove(InstanceProvider provider, ClassReferable classRef, Object head) {
+    myCache.remove(new Key(provider, classRef, head));
+  }
+
+  public synchronized void clear() {
+    myCache.clear();
+  }
+
+  public synchronized int size() {
+    return myCache.size();
+  }
+
+  public synchronized long getHits() {
+    return myHits;
+  }
+
+  public synchronized long getMisses() {
+    return myMisses;
+  }
+
+  public synchronized void resetStatistics() {
+    myHits = 0;
+    myMisses = 0;
+  }
+}
@@ -6,10 +6,13 @@ import org.arend.term.concrete.Concrete;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
 public class SimpleInstanceProvider implements InstanceProvider {
   private List<Concrete.FunctionDefinition> myInstances;
+  private final Map<ClassReferable, InstanceIndex> myIndices = new ConcurrentHashMap<>();
 
   public SimpleInstanceProvider() {
     myInstances = new ArrayList<>();
@@ -21,16 +24,30 @@ public class SimpleInstanceProvider implements InstanceProvider {
 
   public void put(Concrete.FunctionDefinition instance) {
     myInstances.add(instance);
+    myIndices.clear();
   }
 
   @Override
   public Concrete.FunctionDefinition findInstance(ClassReferable classRef, Predicate<Concrete.FunctionDefinition> pred) {
-    for (Concrete.FunctionDefinition instance : myInstances) {
-      Referable ref = instance.getReferenceInType();
-      if (ref instanceof ClassReferable && ((ClassReferable) ref).isSubClassOf(classRef) && pred.test(instance)) {
-        return instance;
+    return getInstanceIndex(classRef).findInstance(pred);
+  }
+
+  @Override
+  public InstanceIndex getInstanceIndex(ClassReferable classRef) {
+    return myIndices.computeIfAbsent(classRef, ref -> {
+      List<Concrete.FunctionDefinition> instances = new ArrayList<>();
+      for (Concrete.FunctionDefinition instance : myInstances) {
+        Referable instanceRef = instance.getReferenceInType();
+        if (instanceRef instanceof ClassReferable && ((ClassReferable) instanceRef).isSubClassOf(ref)) {
+          instances.add(instance);
+        }
       }
-    }
-    return null;
+      return new InstanceIndex(instances);
+    });
+  }
+
+  @Override
+  public void clearIndices() {
+    myIndices.clear();
   }
 }
@@ -169,7 +169,7 @@ public class Ordering {
 
     Set<TCReferable> dependencies = new LinkedHashSet<>();
     InstanceProvider instanceProvider = myInstanceProviderSet.get(definition.getData());
-    CollectDefCallsVisitor visitor = new CollectDefCallsVisitor(myConcreteProvider, instanceProvider, dependencies);
+    CollectDefCallsVisitor visitor = new CollectDefCallsVisitor(myConcreteProvider, instanceProvider, myState, dependencies);
     if (definition.enclosingClass != null) {
       visitor.addDependency(definition.enclosingClass);
     }
@@ -183,6 +183,8 @@ public class Ordering {
       return OrderResult.RECURSION_ERROR;
     }
 
+    // The signature of a definition can be inferred from its body, so dependencies of the body are reported as dependencies of the header
+    boolean isHeader = unit.isHeader() || definition instanceof Concrete.FunctionDefinition && ((Concrete.FunctionDefinition) definition).getResultType() == null || definition instanceof Concrete.DataDefinition && ((Concrete.DataDefinition) definition).getUniverse() == null;
     for (TCReferable referable : dependencies) {
       TCReferable tcReferable = referable.getTypecheckable();
       if (tcReferable == null) {
@@ -194,11 +196,12 @@ public class Ordering {
           recursion = TypecheckingOrderingListener.Recursion.IN_BODY;
         }
       } else {
-        myDependencyListener.dependsOn(definition.getData(), unit.isHeader(), tcReferable);
-        Concrete.ReferableDefinition dependency = myConcreteProvider.getConcrete(tcReferable);
-        if (dependency instanceof Concrete.Definition) {
-          Definition typechecked = myState.getTypechecked(tcReferable);
-          if (typechecked == null || typechecked.status() == Definition.TypeCheckingStatus.HEADER_HAS_ERRORS) {
+        myDependencyListener.dependsOn(definition.getData(), isHeader, tcReferable);
+        // The state is checked first, so concrete definitions of typechecked dependencies are not requested
+        Definition typechecked = myState.getTypechecked(tcReferable);
+        if (typechecked == null || typechecked.status() == Definition.TypeCheckingStatus.HEADER_HAS_ERRORS) {
+          Concrete.ReferableDefinition dependency = myConcreteProvider.getConcrete(tcReferable);
+          if (dependency instanceof Concrete.Definition) {
             updateState(currentState, new TypecheckingUnit((Concrete.Definition) dependency, myRefToHeaders));
           }
         }
@@ -259,16 +262,18 @@ public class Ordering {
 
   private void doOrderUsedDefinitions(DefState currentState, Concrete.Definition definition) {
     for (TCReferable usedDefinition : definition.getUsedDefinitions()) {
+      Definition typechecked = myState.getTypechecked(usedDefinition);
+      if (typechecked != null && typechecked.status() != Definition.TypeCheckingStatus.HEADER_HAS_ERRORS) {
+        continue;
+      }
+
       Concrete.FunctionDefinition def = myConcreteProvider.getConcreteFunction(usedDefinition);
       if (def != null) {
         Concrete.FunctionDefinition.Kind kind = def.getKind();
         if (kind.isUse()) {
-          Definition typechecked = myState.getTypechecked(def.getData());
-          if (typechecked == null || typechecked.status() == Definition.TypeCheckingStatus.HEADER_HAS_ERRORS) {
-            updateState(currentState, new TypecheckingUnit(def, kind == Concrete.FunctionDefinition.Kind.LEVEL));
-            if (kind == Concrete.FunctionDefinition.Kind.LEVEL) {
-              myDeferredDefinitions.add(def);
-            }
+          updateState(currentState, new TypecheckingUnit(def, kind == Concrete.FunctionDefinition.Kind.LEVEL));
+          if (kind == Concrete.FunctionDefinition.Kind.LEVEL) {
+            myDeferredDefinitions.add(def);
           }
         }
       }
@@ -1,60 +1,131 @@
 package org.arend.typechecking.order.dependency;
 
 import org.arend.core.definition.*;
+import org.arend.core.expr.visitor.WHNFCache;
 import org.arend.naming.reference.TCReferable;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.util.Pair;
 
 import java.util.*;
 
+/**
+ * Collects dependencies between definitions and resets definitions that may be affected by a change.
+ * References from headers are recorded separately, so a change of the body of a definition does not propagate through
+ * definitions that refer to it only in their bodies if their bodies cannot be unfolded (lemmas).
+ * Affected definitions are always reset completely, that is, their headers are typechecked again too.
+ */
 public class DependencyCollector implements DependencyListener {
   private final Map<TCReferable, Set<TCReferable>> myDependencies = new HashMap<>();
+  private final Map<TCReferable, Set<TCReferable>> myHeaderDependencies = new HashMap<>();
   private final Map<TCReferable, Set<TCReferable>> myReverseDependencies = new HashMap<>();
   private final TypecheckerState myState;
+  private final InstanceProviderSet myInstanceProviderSet;
+  private WHNFCache myWHNFCache;
 
-  public DependencyCollector(TypecheckerState state) {
+  /**
+   * @param instanceProviderSet  the set whose caches of instance resolution are invalidated when definitions are reset.
+   */
+  public DependencyCollector(TypecheckerState state, InstanceProviderSet instanceProviderSet) {
     myState = state;
+    myInstanceProviderSet = instanceProviderSet;
+  }
+
+  /**
+   * Creates a collector that does not invalidate caches of instance resolution.
+   * It should be used only if instances are not cached, that is, if instance providers are not shared between sessions.
+   */
+  public DependencyCollector(TypecheckerState state) {
+    this(state, null);
+  }
+
+  /**
+   * Sets the cache of weak head normal forms that is invalidated when definitions are reset.
+   */
+  public void setWHNFCache(WHNFCache cache) {
+    myWHNFCache = cache;
   }
 
   @Override
   public void dependsOn(TCReferable def1, boolean header, TCReferable def2) {
     myDependencies.computeIfAbsent(def1, k -> new HashSet<>()).add(def2);
+    if (header) {
+      myHeaderDependencies.computeIfAbsent(def1, k -> new HashSet<>()).add(def2);
+    }
     myReverseDependencies.computeIfAbsent(def2, k -> new HashSet<>()).add(def1);
   }
 
   @Override
   public Set<? extends TCReferable> update(TCReferable definition) {
+    return update(definition, true);
+  }
+
+  /**
+   * A change of the header of a definition affects every definition that refers to it.
+   * A change of the body affects only definitions that refer to it if the body can be unfolded.
+   * A definition is affected in its header if it refers to a changed definition in its header; otherwise, only its body is affected,
+   * and the change propagates further only if its body can be unfolded.
+   * Every affected definition is reset completely.
+   */
+  @Override
+  public Set<? extends TCReferable> update(TCReferable definition, boolean headerChanged) {
     if (myState.getTypechecked(definition) == null) {
       return Collections.emptySet();
     }
 
-    Set<TCReferable> updated = new HashSet<>();
-    Stack<TCReferable> stack = new Stack<>();
-    stack.push(definition);
+    // Definitions whose headers are affected are mapped to true
+    Map<TCReferable, Boolean> updated = new LinkedHashMap<>();
+    Deque<Pair<TCReferable, Boolean>> stack = new ArrayDeque<>();
+    stack.push(new Pair<>(definition, headerChanged));
 
     while (!stack.isEmpty()) {
-      TCReferable toUpdate = stack.pop();
-      if (!updated.add(toUpdate)) {
+      Pair<TCReferable, Boolean> pair = stack.pop();
+      TCReferable toUpdate = pair.proj1;
+      // Classes do not have bodies
+      boolean header = pair.proj2 || myState.getTypechecked(toUpdate) instanceof ClassDefinition;
+      Boolean prev = updated.get(toUpdate);
+      if (prev != null && (prev || !header)) {
         continue;
       }
+      updated.put(toUpdate, header);
 
-      Set<TCReferable> dependencies = myDependencies.remove(toUpdate);
+      if (!header && !isBodyTransparent(myState.getTypechecked(toUpdate))) {
+        continue;
+      }
+
+      Set<TCReferable> reverseDependencies = myReverseDependencies.get(toUpdate);
+      if (reverseDependencies != null) {
+        for (TCReferable dependent : reverseDependencies) {
+          Set<TCReferable> headerDependencies = myHeaderDependencies.get(dependent);
+          boolean dependentHeader = headerDependencies != null && headerDependencies.contains(toUpdate);
+          stack.push(new Pair<>(dependent, dependentHeader));
+        }
+      }
+    }
+
+    // Dependencies of reset definitions are reported again when they are typechecked
+    for (TCReferable updatedDef : updated.keySet()) {
+      myHeaderDependencies.remove(updatedDef);
+      Set<TCReferable> dependencies = myDependencies.remove(updatedDef);
       if (dependencies != null) {
         for (TCReferable dependency : dependencies) {
           Set<TCReferable> definitions = myReverseDependencies.get(dependency);
           if (definitions != null) {
-            definitions.remove(definition);
+            definitions.remove(updatedDef);
+            if (definitions.isEmpty()) {
+              myReverseDependencies.remove(dependency);
+            }
           }
         }
       }
-
-      Set<TCReferable> reverseDependencies = myReverseDependencies.remove(toUpdate);
-      if (reverseDependencies != null) {
-        stack.addAll(reverseDependencies);
-      }
     }
 
-    for (TCReferable updatedDef : updated) {
+    List<Definition> resetDefinitions = new ArrayList<>();
+    for (TCReferable updatedDef : updated.keySet()) {
       Definition def = myState.reset(updatedDef);
+      if (def != null) {
+        resetDefinitions.add(def);
+      }
       if (def instanceof ClassDefinition) {
         for (ClassField field : ((ClassDefinition) def).getPersonalFields()) {
           myState.reset(field.getReferable());
@@ -66,6 +137,21 @@ public class DependencyCollector implements DependencyListener {
       }
     }
 
-    return updated;
+    WHNFCache cache = myWHNFCache;
+    if (cache != null) {
+      cache.invalidate(resetDefinitions);
+    }
+    if (myInstanceProviderSet != null && !resetDefinitions.isEmpty()) {
+      myInstanceProviderSet.invalidateCaches();
+    }
+
+    return updated.keySet();
+  }
+
+  /**
+   * @return true if the body of a definition can be unfolded, so definitions that use it depend on the body.
+   */
+  private static boolean isBodyTransparent(Definition definition) {
+    return !(definition instanceof FunctionDefinition && ((FunctionDefinition) definition).isLemma());
   }
 }
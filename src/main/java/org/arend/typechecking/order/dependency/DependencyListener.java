@@ -5,6 +5,27 @@ import org.arend.naming.reference.TCReferable;
 import java.util.Set;
 
 public interface DependencyListener {
+  /**
+   * Records that {@code def1} refers to {@code def2}.
+   *
+   * @param header  true if {@code def2} is referred to in the header of {@code def1}.
+   */
   void dependsOn(TCReferable def1, boolean header, TCReferable def2);
+
+  /**
+   * Resets a definition and all definitions that depend on it.
+   *
+   * @return the set of definitions that were reset.
+   */
   Set<? extends TCReferable> update(TCReferable definition);
+
+  /**
+   * Resets a definition and the definitions that may be affected by its change.
+   *
+   * @param headerChanged  false if only the body of the definition changed, that is, its signature is the same.
+   * @return the set of definitions that were reset.
+   */
+  default Set<? extends TCReferable> update(TCReferable definition, boolean headerChanged) {
+    return update(definition);
+  }
 }
@@ -0,0 +1,244 @@
+package org.arend.typechecking.order.listener;
+
+import org.arend.error.ErrorReporter;
+import org.arend.error.ListErrorReporter;
+import org.arend.library.Library;
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.concrete.Concrete;
+import org.arend.term.group.Group;
+import org.arend.typechecking.order.Ordering;
+import org.arend.typechecking.order.SCC;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.typecheckable.TypecheckingUnit;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Typechecks independent units and SCCs on a pool of worker threads.
+ *
+ * First, definitions are ordered on the calling thread and every unit and SCC reported by {@link Ordering} becomes a task.
+ * A task depends on the tasks that contain the definitions it refers to, so it is started as soon as they are finished.
+ * Every task reports errors to its own buffer, and these buffers are flushed to the error reporter of the underlying listener in the order of {@link Ordering},
+ * so errors are the same as in the sequential mode.
+ *
+ * The typechecker state (see {@link org.arend.typechecking.ConcurrentTypecheckerState}) of the underlying listener must support concurrent access.
+ * Calls to its dependency listener, including the calls made by worker threads, are serialized by the scheduler.
+ */
+public class ParallelTypecheckingScheduler implements OrderingListener {
+  private final TypecheckingOrderingListener myTypechecking;
+  private final int myJobs;
+  private final List<Task> myTasks = new ArrayList<>();
+  private final Map<TCReferable, Task> myHeaderTasks = new HashMap<>();
+  private final Map<TCReferable, Task> myBodyTasks = new HashMap<>();
+  private final Map<TCReferable, Set<TCReferable>> myDependencies = new HashMap<>();
+  private volatile boolean myInterrupted;
+
+  private static class Task {
+    final CollectingOrderingListener collector = new CollectingOrderingListener();
+    final ListErrorReporter errorReporter = new ListErrorReporter();
+    final Set<Task> dependencies = new LinkedHashSet<>();
+    CompletableFuture<Boolean> future;
+  }
+
+  /**
+   * Records dependencies found while ordering on the calling thread and forwards all calls to the underlying listener one at a time.
+   */
+  private class DependencyRecorder implements DependencyListener {
+    private final DependencyListener myDependencyListener;
+    private boolean myRecording = true;
+
+    DependencyRecorder(DependencyListener dependencyListener) {
+      myDependencyListener = dependencyListener;
+    }
+
+    synchronized void stopRecording() {
+      myRecording = false;
+    }
+
+    @Override
+    public synchronized void dependsOn(TCReferable def1, boolean header, TCReferable def2) {
+      if (myRecording) {
+        myDependencies.computeIfAbsent(def1, k -> new LinkedHashSet<>()).add(def2);
+      }
+      myDependencyListener.dependsOn(def1, header, def2);
+    }
+
+    @Override
+    public synchronized Set<? extends TCReferable> update(TCReferable definition) {
+      return myDependencyListener.update(definition);
+    }
+
+    @Override
+    public synchronized Set<? extends TCReferable> update(TCReferable definition, boolean headerChanged) {
+      return myDependencyListener.update(definition, headerChanged);
+    }
+  }
+
+  public ParallelTypecheckingScheduler(TypecheckingOrderingListener typechecking, int jobs) {
+    if (jobs < 1) {
+      throw new IllegalArgumentException("The number of jobs must be positive");
+    }
+    myTypechecking = typechecking;
+    myJobs = jobs;
+  }
+
+  public boolean typecheckDefinitions(final Collection<? extends Concrete.Definition> definitions) {
+    return typecheck(ordering -> {
+      for (Concrete.Definition definition : definitions) {
+        ordering.orderDefinition(definition);
+      }
+      return true;
+    });
+  }
+
+  public boolean typecheckModules(final Collection<? extends Group> modules) {
+    return typecheck(ordering -> {
+      ordering.orderModules(modules);
+      return true;
+    });
+  }
+
+  public boolean typecheckLibrary(Library library) {
+    return typecheck(library::orderModules);
+  }
+
+  private boolean typecheck(Predicate<Ordering> order) {
+    myInterrupted = false;
+    ForkJoinPool pool = null;
+    try {
+      DependencyRecorder recorder = new DependencyRecorder(myTypechecking.getDependencyListener());
+      boolean ok = order.test(myTypechecking.createOrdering(this, recorder));
+      if (myTasks.isEmpty()) {
+        return ok;
+      }
+      recorder.stopRecording();
+
+      pool = new ForkJoinPool(myJobs);
+      for (Task task : myTasks) {
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[task.dependencies.size()];
+        int i = 0;
+        for (Task dependency : task.dependencies) {
+          dependencies[i++] = dependency.future;
+        }
+        task.future = CompletableFuture.allOf(dependencies).thenApplyAsync(ignored -> run(task, recorder), pool);
+      }
+
+      ErrorReporter errorReporter = myTypechecking.getErrorReporter();
+      for (Task task : myTasks) {
+        boolean taskOk;
+        try {
+          taskOk = task.future.join();
+        } catch (CompletionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw e;
+        }
+        task.errorReporter.reportTo(errorReporter);
+        if (!taskOk) {
+          ok = false;
+        }
+      }
+      return ok && !myInterrupted;
+    } finally {
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+      myTasks.clear();
+      myHeaderTasks.clear();
+      myBodyTasks.clear();
+      myDependencies.clear();
+    }
+  }
+
+  private boolean run(Task task, DependencyListener dependencyListener) {
+    if (myInterrupted) {
+      return false;
+    }
+    if (!myTypechecking.fork(task.errorReporter, dependencyListener).typecheckCollected(task.collector)) {
+      myInterrupted = true;
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public void unitFound(TypecheckingUnit unit, Recursion recursion) {
+    Task task = new Task();
+    task.collector.unitFound(unit, recursion);
+    addTask(task, Collections.singletonList(unit));
+  }
+
+  @Override
+  public void sccFound(SCC scc) {
+    Task task = new Task();
+    task.collector.sccFound(scc);
+    addTask(task, scc.getUnits());
+  }
+
+  private void addTask(Task task, Collection<? extends TypecheckingUnit> units) {
+    for (TypecheckingUnit unit : units) {
+      Concrete.Definition definition = unit.getDefinition();
+      TCReferable referable = definition.getData();
+      if (!unit.isHeader()) {
+        addDependency(task, myHeaderTasks.get(referable));
+      }
+
+      Set<TCReferable> dependencies = myDependencies.get(referable);
+      if (dependencies != null) {
+        for (TCReferable dependency : dependencies) {
+          addDependency(task, getTask(dependency));
+          addUsedDefinitions(task, dependency, referable);
+        }
+      }
+
+      // \\use definitions modify their parent, so they are typechecked one after another
+      if (definition instanceof Concrete.FunctionDefinition) {
+        TCReferable useParent = ((Concrete.FunctionDefinition) definition).getUseParent();
+        if (useParent != null) {
+          addDependency(task, getTask(useParent));
+          addUsedDefinitions(task, useParent, referable);
+        }
+      }
+    }
+
+    for (TypecheckingUnit unit : units) {
+      (unit.isHeader() ? myHeaderTasks : myBodyTasks).put(unit.getDefinition().getData(), task);
+    }
+    myTasks.add(task);
+  }
+
+  private Task getTask(TCReferable referable) {
+    Task task = myBodyTasks.get(referable);
+    return task != null ? task : myHeaderTasks.get(referable);
+  }
+
+  private void addDependency(Task task, Task dependency) {
+    if (dependency != null && dependency != task) {
+      task.dependencies.add(dependency);
+    }
+  }
+
+  /**
+   * In the sequential mode, \\use definitions are typechecked right after their parent,
+   * so definitions that refer to the parent should also wait for them.
+   */
+  private void addUsedDefinitions(Task task, TCReferable parent, TCReferable referable) {
+    Concrete.ReferableDefinition parentDef = myTypechecking.getConcreteProvider().getConcrete(parent);
+    if (parentDef instanceof Concrete.Definition) {
+      for (TCReferable usedDefinition : ((Concrete.Definition) parentDef).getUsedDefinitions()) {
+        if (!usedDefinition.equals(referable)) {
+          addDependency(task, getTask(usedDefinition));
+        }
+      }
+    }
+  }
+}
@@ -8,6 +8,8 @@ import org.arend.core.elimtree.Clause;
 import org.arend.core.expr.ClassCallExpression;
 import org.arend.core.expr.ErrorExpression;
 import org.arend.core.expr.PiExpression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.expr.visitor.WHNFCache;
 import org.arend.core.sort.Sort;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
@@ -46,15 +48,18 @@ import org.arend.util.ComputationInterruptedException;
 import org.arend.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 
 public class TypecheckingOrderingListener implements OrderingListener {
   private final TypecheckerState myState;
   private final DependencyListener myDependencyListener;
-  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions = new HashMap<>();
+  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions;
   private final ErrorReporter myErrorReporter;
   private final InstanceProviderSet myInstanceProviderSet;
   private final ConcreteProvider myConcreteProvider;
   private final PartialComparator<TCReferable> myComparator;
+  private WHNFCache myWHNFCache;
   private boolean myTypecheckingHeaders = false;
   private TCReferable myCurrentDefinition;
 
@@ -71,6 +76,7 @@ public class TypecheckingOrderingListener implements OrderingListener {
     myInstanceProviderSet = instanceProviderSet;
     myConcreteProvider = concreteProvider;
     myComparator = comparator;
+    mySuspensions = new ConcurrentHashMap<>();
   }
 
   public TypecheckingOrderingListener(InstanceProviderSet instanceProviderSet, TypecheckerState state, ConcreteProvider concreteProvider, ErrorReporter errorReporter, PartialComparator<TCReferable> comparator) {
@@ -84,55 +90,119 @@ public class TypecheckingOrderingListener implements OrderingListener {
     myInstanceProviderSet = ordering.getInstanceProviderSet();
     myConcreteProvider = ordering.getConcreteProvider();
     myComparator = ordering.getComparator();
+    mySuspensions = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Creates a listener which shares the state of {@code parent}, including suspended headers,
+   * but reports errors to {@code errorReporter}.
+   */
+  protected TypecheckingOrderingListener(TypecheckingOrderingListener parent, ErrorReporter errorReporter) {
+    this(parent, errorReporter, parent.myDependencyListener);
+  }
+
+  /**
+   * Creates a listener which shares the state of {@code parent}, including suspended headers,
+   * but reports errors to {@code errorReporter} and dependencies to {@code dependencyListener}.
+   */
+  protected TypecheckingOrderingListener(TypecheckingOrderingListener parent, ErrorReporter errorReporter, DependencyListener dependencyListener) {
+    myState = parent.myState;
+    myErrorReporter = errorReporter;
+    myDependencyListener = dependencyListener;
+    myInstanceProviderSet = parent.myInstanceProviderSet;
+    myConcreteProvider = parent.myConcreteProvider;
+    myComparator = parent.myComparator;
+    mySuspensions = parent.mySuspensions;
+    myWHNFCache = parent.myWHNFCache;
+  }
+
+  /**
+   * Creates a listener that is used by {@link ParallelTypecheckingScheduler} to typecheck a single unit or SCC on a worker thread.
+   * Subclasses may override this method to keep their callbacks, but these callbacks will be invoked from worker threads.
+   */
+  public TypecheckingOrderingListener fork(ErrorReporter errorReporter, DependencyListener dependencyListener) {
+    return new TypecheckingOrderingListener(this, errorReporter, dependencyListener);
+  }
+
+  public final TypecheckingOrderingListener fork(ErrorReporter errorReporter) {
+    return fork(errorReporter, myDependencyListener);
+  }
+
+  TypecheckerState getTypecheckerState() {
+    return myState;
+  }
+
+  ErrorReporter getErrorReporter() {
+    return myErrorReporter;
+  }
+
+  DependencyListener getDependencyListener() {
+    return myDependencyListener;
+  }
+
+  ConcreteProvider getConcreteProvider() {
+    return myConcreteProvider;
+  }
+
+  Ordering createOrdering(OrderingListener orderingListener, DependencyListener dependencyListener) {
+    return new Ordering(myInstanceProviderSet, myConcreteProvider, orderingListener, dependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, false);
+  }
+
+  public WHNFCache getWHNFCache() {
+    return myWHNFCache;
+  }
+
+  /**
+   * Sets the cache of weak head normal forms that is used while this listener and its forks typecheck definitions.
+   *
+   * @param cache the cache or null to disable caching.
+   */
+  public void setWHNFCache(WHNFCache cache) {
+    myWHNFCache = cache;
   }
 
   public boolean typecheckDefinitions(final Collection<? extends Concrete.Definition> definitions) {
-    try {
+    return typecheck(() -> {
       Ordering ordering = new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, false);
       for (Concrete.Definition definition : definitions) {
         ordering.orderDefinition(definition);
       }
       return true;
-    } catch (ComputationInterruptedException ignored) {
-      if (myCurrentDefinition != null) {
-        typecheckingInterrupted(myCurrentDefinition);
-      }
-      return false;
-    }
+    });
   }
 
   public boolean typecheckModules(final Collection<? extends Group> modules) {
-    try {
+    return typecheck(() -> {
       new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, false).orderModules(modules);
       return true;
-    } catch (ComputationInterruptedException ignored) {
-      if (myCurrentDefinition != null) {
-        typecheckingInterrupted(myCurrentDefinition);
-      }
-      return false;
-    }
+    });
   }
 
   public boolean typecheckLibrary(Library library) {
-    try {
-      return library.orderModules(new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, false));
-    } catch (ComputationInterruptedException ignored) {
-      if (myCurrentDefinition != null) {
-        typecheckingInterrupted(myCurrentDefinition);
-      }
-      return false;
-    }
+    return typecheck(() -> library.orderModules(new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, false)));
   }
 
   public boolean typecheckCollected(CollectingOrderingListener collector) {
-    try {
+    return typecheck(() -> {
       collector.feed(this);
       return true;
+    });
+  }
+
+  private boolean typecheck(BooleanSupplier action) {
+    WHNFCache cache = myWHNFCache;
+    WHNFCache prevCache = cache == null ? null : NormalizeVisitor.INSTANCE.setWHNFCache(cache);
+    try {
+      return action.getAsBoolean();
     } catch (ComputationInterruptedException ignored) {
       if (myCurrentDefinition != null) {
         typecheckingInterrupted(myCurrentDefinition);
       }
       return false;
+    } finally {
+      if (cache != null) {
+        NormalizeVisitor.INSTANCE.setWHNFCache(prevCache);
+      }
     }
   }
 
@@ -281,7 +351,7 @@ public class TypecheckingOrderingListener implements OrderingListener {
       }
       DesugarVisitor.desugar(unit.getDefinition(), myConcreteProvider, visitor.getErrorReporter());
       Definition oldTypechecked = visitor.getTypecheckingState().getTypechecked(unit.getDefinition().getData());
-      Definition typechecked = new DefinitionTypechecking(visitor).typecheckHeader(oldTypechecked, new GlobalInstancePool(myState, myInstanceProviderSet.get(unit.getDefinition().getData()), visitor), unit.getDefinition(), true);
+      Definition typechecked = new DefinitionTypechecking(visitor).typecheckHeader(oldTypechecked, new GlobalInstancePool(myState, myInstanceProviderSet.get(unit.getDefinition().getData()), visitor, myInstanceProviderSet.getResolutionCache()), unit.getDefinition(), true);
       if (typechecked.status() == Definition.TypeCheckingStatus.BODY_NEEDS_TYPE_CHECKING) {
         mySuspensions.put(unit.getDefinition().getData(), new Pair<>(visitor, oldTypechecked == null));
       }
@@ -355,6 +425,7 @@ public class TypecheckingOrderingListener implements OrderingListener {
       }
 
       typecheckingBodyFinished(definition.getData(), def);
+      myConcreteProvider.releaseConcrete(definition.getData());
       myCurrentDefinition = null;
     }
 
@@ -366,6 +437,7 @@ public class TypecheckingOrderingListener implements OrderingListener {
         visitor.findDefinition(entry.getKey().getBody());
         if (visitor.getFoundDefinition() != null) {
           entry.getKey().setBody(null);
+          invalidateWHNFCache(Collections.singleton(entry.getKey()));
           if (entry.getKey().status().headerIsOK()) {
             entry.getKey().setStatus(Definition.TypeCheckingStatus.BODY_HAS_ERRORS);
           }
@@ -396,7 +468,7 @@ public class TypecheckingOrderingListener implements OrderingListener {
       clauses = new DefinitionTypechecking(pair.proj1).typecheckBody(typechecked, unit.getDefinition(), Collections.emptySet(), pair.proj2);
     } else {
       CheckTypeVisitor checkTypeVisitor = new CheckTypeVisitor(myState, new LinkedHashMap<>(), new ProxyErrorReporter(unit.getDefinition().getData(), myErrorReporter), null);
-      checkTypeVisitor.setInstancePool(new GlobalInstancePool(myState, myInstanceProviderSet.get(unit.getDefinition().getData()), checkTypeVisitor));
+      checkTypeVisitor.setInstancePool(new GlobalInstancePool(myState, myInstanceProviderSet.get(unit.getDefinition().getData()), checkTypeVisitor, myInstanceProviderSet.getResolutionCache()));
       DesugarVisitor.desugar(unit.getDefinition(), myConcreteProvider, checkTypeVisitor.getErrorReporter());
       if (isLevel) {
         myCurrentDefinition = unit.getDefinition().getData();
@@ -424,6 +496,7 @@ public class TypecheckingOrderingListener implements OrderingListener {
     } else {
       typecheckingUnitFinished(unit.getDefinition().getData(), typechecked);
     }
+    myConcreteProvider.releaseConcrete(unit.getDefinition().getData());
     myCurrentDefinition = null;
   }
 
@@ -448,9 +521,17 @@ public class TypecheckingOrderingListener implements OrderingListener {
         definition.setStatus(Definition.TypeCheckingStatus.BODY_HAS_ERRORS);
         definition.setBody(null);
       }
+      invalidateWHNFCache(definitions.keySet());
       for (Map.Entry<Definition, Set<RecursiveBehavior<Definition>>> entry : callCategory.myErrorInfo.entrySet()) {
         myErrorReporter.report(new TerminationCheckError(entry.getKey(), Collections.singleton(entry.getKey()), entry.getValue()));
       }
     }
   }
+
+  private void invalidateWHNFCache(Collection<? extends Definition> definitions) {
+    WHNFCache cache = myWHNFCache;
+    if (cache != null) {
+      cache.invalidate(definitions);
+    }
+  }
 }
@@ -11,48 +11,81 @@ public abstract class BaseCallGraph<T> {
   BaseCallGraph() {
   }
 
+  /**
+   * Computes the composition closure of {@code g} with a worklist: every new matrix is composed only with the matrices already in the closure.
+   * A matrix is not added if the closure contains a matrix that is less than or equal to it, and it replaces the matrices that are greater than it.
+   * Since composition is monotone, this does not change the result of {@link #checkTermination}.
+   */
   BaseCallGraph(BaseCallGraph<T> g) {
-    HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> newGraph;
-    HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> oldGraph = g.myGraph;
-    int myNewEdges;
-
-    do {
-      myNewEdges = 0;
-      newGraph = new HashMap<>();
-
-      for (T vDom : oldGraph.keySet()) {
-        HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = oldGraph.get(vDom);
-        for (T vCodom : outboundEdges.keySet()) {
-          for (BaseCallMatrix<T> edge : outboundEdges.get(vCodom)) {
-            append(edge, newGraph);
+    HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> inboundGraph = new HashMap<>();
+    Deque<BaseCallMatrix<T>> worklist = new ArrayDeque<>();
+    for (HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges : g.myGraph.values()) {
+      for (HashSet<BaseCallMatrix<T>> edges : outboundEdges.values()) {
+        for (BaseCallMatrix<T> edge : edges) {
+          if (appendMinimal(edge, inboundGraph)) {
+            worklist.add(edge);
           }
         }
       }
+    }
+
+    List<BaseCallMatrix<T>> composites = new ArrayList<>();
+    while (!worklist.isEmpty()) {
+      BaseCallMatrix<T> edge = worklist.poll();
+      HashSet<BaseCallMatrix<T>> sheaf = myGraph.get(edge.getDomain()).get(edge.getCodomain());
+      if (!sheaf.contains(edge)) {
+        continue;
+      }
 
-      for (T vDom : oldGraph.keySet()) {
-        HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = oldGraph.get(vDom);
-        for (T vCodom : outboundEdges.keySet()) {
-          for (BaseCallMatrix<T> edge : outboundEdges.get(vCodom)) {
-            HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges2 = oldGraph.get(edge.getCodomain());
-            if (outboundEdges2 != null) {
-              for (HashSet<BaseCallMatrix<T>> edgesSheaf : outboundEdges2.values()) {
-                for (BaseCallMatrix<T> edge2 : edgesSheaf) {
-                  if (append(new CompositeCallMatrix<>(edge, edge2), newGraph)) {
-                    myNewEdges++;
-                  }
-                }
-              }
-            }
+      HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = myGraph.get(edge.getCodomain());
+      if (outboundEdges != null) {
+        for (HashSet<BaseCallMatrix<T>> edges : outboundEdges.values()) {
+          for (BaseCallMatrix<T> edge2 : edges) {
+            composites.add(new CompositeCallMatrix<>(edge, edge2));
           }
         }
       }
-      oldGraph = newGraph;
-    } while (myNewEdges > 0);
+      HashMap<T, HashSet<BaseCallMatrix<T>>> inboundEdges = inboundGraph.get(edge.getDomain());
+      if (inboundEdges != null) {
+        for (HashSet<BaseCallMatrix<T>> edges : inboundEdges.values()) {
+          for (BaseCallMatrix<T> edge0 : edges) {
+            composites.add(new CompositeCallMatrix<>(edge0, edge));
+          }
+        }
+      }
+
+      for (BaseCallMatrix<T> composite : composites) {
+        if (appendMinimal(composite, inboundGraph)) {
+          worklist.add(composite);
+        }
+      }
+      composites.clear();
+    }
 
-    myGraph = newGraph;
     isCompositionClosed = true;
   }
 
+  private boolean appendMinimal(BaseCallMatrix<T> cm, HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> inboundGraph) {
+    HashSet<BaseCallMatrix<T>> set = myGraph.computeIfAbsent(cm.getDomain(), k -> new HashMap<>()).get(cm.getCodomain());
+    if (set == null) {
+      set = new HashSet<>();
+      myGraph.get(cm.getDomain()).put(cm.getCodomain(), set);
+      inboundGraph.computeIfAbsent(cm.getCodomain(), k -> new HashMap<>()).put(cm.getDomain(), set);
+    } else {
+      if (set.contains(cm)) {
+        return false;
+      }
+      for (BaseCallMatrix<T> c : set) {
+        if (c.leq(cm)) {
+          return false;
+        }
+      }
+      set.removeIf(cm::leq);
+    }
+    set.add(cm);
+    return true;
+  }
+
   public void add(Set<BaseCallMatrix<T>> set) {
     for (BaseCallMatrix<T> cm : set) {
       append(cm, myGraph);
@@ -77,40 +110,8 @@ public abstract class BaseCallGraph<T> {
     return result.toString();
   }
 
-  private static <T> boolean append(BaseCallMatrix<T> cm, HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> graph) {
-    HashSet<BaseCallMatrix<T>> set;
-    HashMap<T, HashSet<BaseCallMatrix<T>>> map;
-    if (!(graph.containsKey(cm.getDomain()))) {
-      map = new HashMap<>();
-      set = new HashSet<>();
-      set.add(cm);
-      map.put(cm.getCodomain(), set);
-      graph.put(cm.getDomain(), map);
-      return true;
-    } else {
-      map = graph.get(cm.getDomain());
-      if (!(map.containsKey(cm.getCodomain()))) {
-        set = new HashSet<>();
-        set.add(cm);
-        map.put(cm.getCodomain(), set);
-        return true;
-      } else {
-        set = map.get(cm.getCodomain());
-        boolean alreadyContainsEqual = false;
-
-        for (BaseCallMatrix c : set) {
-          if (cm.equals(c)) {
-            alreadyContainsEqual = true;
-          }
-        }
-
-        if (!(alreadyContainsEqual)) {
-          set.add(cm);
-        }
-
-        return !alreadyContainsEqual;
-      }
-    }
+  private static <T> void append(BaseCallMatrix<T> cm, HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> graph) {
+    graph.computeIfAbsent(cm.getDomain(), k -> new HashMap<>()).computeIfAbsent(cm.getCodomain(), k -> new HashSet<>()).add(cm);
   }
 
   public boolean checkTermination() {
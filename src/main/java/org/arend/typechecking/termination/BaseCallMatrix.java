@@ -9,45 +9,15 @@ import org.arend.term.prettyprint.PrettyPrinterConfig;
 import org.arend.util.StringFormat;
 
 import java.util.Arrays;
-import java.util.HashMap;
 
 public abstract class BaseCallMatrix<T> {
+  // The packed representation relies on the order of the constants: Unknown < Equal < LessThan
   public enum R {
     Unknown(),
     Equal(),
     LessThan()
   }
 
-  private static BaseCallMatrix.R rmul(BaseCallMatrix.R a, BaseCallMatrix.R b) {
-    switch (a) {
-      case Equal:
-        switch (b) {
-          case Equal:
-            return BaseCallMatrix.R.Equal;
-          case LessThan:
-            return BaseCallMatrix.R.LessThan;
-          default:
-            return BaseCallMatrix.R.Unknown;
-        }
-      case LessThan:
-        switch (b) {
-          case Equal:
-          case LessThan:
-            return BaseCallMatrix.R.LessThan;
-          default:
-            return BaseCallMatrix.R.Unknown;
-        }
-      default:
-        return BaseCallMatrix.R.Unknown;
-    }
-  }
-
-  private static BaseCallMatrix.R radd(BaseCallMatrix.R a, BaseCallMatrix.R b) {
-    if (a == R.LessThan || b == R.LessThan) return R.LessThan;
-    if (a == R.Equal || b == R.Equal) return R.Equal;
-    return R.Unknown;
-  }
-
   static boolean rleq(BaseCallMatrix.R a, BaseCallMatrix.R b) {
     switch (a) {
       case LessThan:
@@ -59,60 +29,75 @@ public abstract class BaseCallMatrix<T> {
     }
   }
 
-  private HashMap<Integer, BaseCallMatrix.CallMatrixEntry> myMatrixMap = new HashMap<>();
-  private BaseCallMatrix.R[][] fallbackMatrix = null;
+  private static final BaseCallMatrix.R[] VALUES = BaseCallMatrix.R.values();
+  private static final long LOW_BITS = 0x5555555555555555L;
+  private static final long HIGH_BITS = 0xAAAAAAAAAAAAAAAAL;
+
+  /*
+   * Entries are stored in 2 bits each (the ordinal of R), 32 entries per word.
+   * Every row starts at a new word, so rows can be combined word by word.
+   */
+  private final long[] myWords;
+  private final int myWordsPerRow;
 
-  private int myWidth;
-  private int myHeight;
+  private final int myWidth;
+  private final int myHeight;
 
   BaseCallMatrix(int width, int height) {
     myWidth = width;
     myHeight = height;
+    myWordsPerRow = (width + 31) >>> 5;
+    myWords = new long[height * myWordsPerRow];
   }
 
   BaseCallMatrix(BaseCallMatrix<T> m) {
     // copy constructor 
     myWidth = m.myWidth;
     myHeight = m.myHeight;
-    if (myMatrixMap != null) {
-      for (Integer j : m.myMatrixMap.keySet()) {
-        BaseCallMatrix.CallMatrixEntry cme = m.myMatrixMap.get(j);
-        myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(cme.myIndex, cme.myRel));
-      }
-    } else {
-      fallbackMatrix = new BaseCallMatrix.R[myHeight][myWidth];
-      for (int i = 0; i < myHeight; i++) System.arraycopy(fallbackMatrix[i], 0, fallbackMatrix[i], 0, myWidth);
-    }
+    myWordsPerRow = m.myWordsPerRow;
+    myWords = m.myWords.clone();
   }
 
   BaseCallMatrix(BaseCallMatrix<T> m1, BaseCallMatrix<T> m2) {
     // multiplication constructor 
+    this(m2.myWidth, m1.myHeight);
     if (m1.myWidth != m2.myHeight) {
       throw new IllegalArgumentException();
     }
-    myHeight = m1.myHeight;
-    myWidth = m2.myWidth;
 
-    if (m1.myMatrixMap != null && m2.myMatrixMap != null) {
-      for (int j = 0; j < myWidth; j++) {
-        BaseCallMatrix.CallMatrixEntry cme2 = m2.myMatrixMap.get(j);
-        if (cme2 != null) {
-          BaseCallMatrix.CallMatrixEntry cme = m1.myMatrixMap.get(cme2.myIndex);
-          if (cme != null) {
-            myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(cme.myIndex, rmul(cme.myRel, cme2.myRel)));
+    for (int i = 0; i < myHeight; i++) {
+      int row = i * myWordsPerRow;
+      for (int k = 0; k < m1.myWidth; k++) {
+        long r = m1.get(i, k);
+        if (r == 0) {
+          continue;
+        }
+        int row2 = k * m2.myWordsPerRow;
+        for (int w = 0; w < myWordsPerRow; w++) {
+          long word = m2.myWords[row2 + w];
+          if (r == 2) {
+            // Equal and LessThan become LessThan
+            word = ((word | (word >>> 1)) & LOW_BITS) << 1;
           }
+          myWords[row + w] = max(myWords[row + w], word);
         }
       }
-    } else {
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++) {
-          BaseCallMatrix.R s = R.Unknown;
-          for (int k = 0; k < m1.myWidth; k++) s = radd(s, rmul(m1.getValue(i, k), m2.getValue(k, j)));
-          set(i, j, s);
-        }
     }
   }
 
+  /**
+   * Computes the entrywise maximum of two words, that is, the sum of relations.
+   */
+  private static long max(long word1, long word2) {
+    long or = word1 | word2;
+    long high = or & HIGH_BITS;
+    return high | (or & LOW_BITS & ~(high >>> 1));
+  }
+
+  private long get(int i, int j) {
+    return (myWords[i * myWordsPerRow + (j >>> 5)] >>> ((j & 31) << 1)) & 3;
+  }
+
   int getHeight() {
     return myHeight;
   }
@@ -128,61 +113,28 @@ public abstract class BaseCallMatrix<T> {
   public abstract int getCompositeLength();
 
   public void set(int i, int j, BaseCallMatrix.R v) {
-    if (myMatrixMap != null) {
-      BaseCallMatrix.CallMatrixEntry cm = myMatrixMap.get(j);
-      if (cm != null) {
-        if (cm.myIndex != i && v != R.Unknown) {
-          enterFallBackMode();
-          fallbackMatrix[i][j] = v;
-        } else if (cm.myIndex == i) {
-          if (v == R.Unknown) myMatrixMap.put(j, null);
-          else cm.myRel = v;
-        }
-      } else if (v != R.Unknown) {
-        myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(i, v));
-      }
-    } else {
-      fallbackMatrix[i][j] = v;
+    if (i < 0 || i >= myHeight || j < 0 || j >= myWidth) {
+      throw new IndexOutOfBoundsException();
     }
+    int index = i * myWordsPerRow + (j >>> 5);
+    int shift = (j & 31) << 1;
+    myWords[index] = (myWords[index] & ~(3L << shift)) | ((long) v.ordinal() << shift);
   }
 
   public BaseCallMatrix.R getValue(int i, int j) {
-    if (myMatrixMap != null) {
-      BaseCallMatrix.CallMatrixEntry cme = myMatrixMap.get(j);
-      BaseCallMatrix.R result2 = BaseCallMatrix.R.Unknown;
-      if (cme != null && cme.myIndex == i) {
-        result2 = cme.myRel;
-      }
-      return result2;
-    } else {
-      return fallbackMatrix[i][j];
-    }
-  }
-
-  private void enterFallBackMode() {
-    fallbackMatrix = new BaseCallMatrix.R[myHeight][myWidth];
-    for (int i = 0; i < myHeight; i++) for (int j = 0; j < myWidth; j++) fallbackMatrix[i][j] = getValue(i, j);
-    myMatrixMap = null;
+    return VALUES[(int) get(i, j)];
   }
 
   public final boolean leq(BaseCallMatrix<T> cm) {
-    if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain()) {
+    if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain() || myWidth != cm.myWidth || myHeight != cm.myHeight) {
       return false;
     }
-    if (myMatrixMap != null && cm.myMatrixMap != null) {
-      for (int k : myMatrixMap.keySet()) {
-        BaseCallMatrix.CallMatrixEntry cme = cm.myMatrixMap.get(k);
-        BaseCallMatrix.CallMatrixEntry mme = myMatrixMap.get(k);
-        if (cme == null || cme.myIndex != mme.myIndex || !(BaseCallMatrix.rleq(mme.myRel, cme.myRel))) {
-          return false;
-        }
+    // rleq coincides with the order of the ordinals
+    for (int i = 0; i < myWords.length; i++) {
+      if (max(myWords[i], cm.myWords[i]) != cm.myWords[i]) {
+        return false;
       }
-    } else {
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++)
-          if (!rleq(getValue(i, j), cm.getValue(i, j))) return false;
     }
-
     return true;
   }
 
@@ -190,12 +142,7 @@ public abstract class BaseCallMatrix<T> {
   public final boolean equals(Object object) {
     if (object instanceof BaseCallMatrix) {
       BaseCallMatrix cm = (BaseCallMatrix) object;
-      if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain()) return false;
-      if (myMatrixMap != null && cm.myMatrixMap != null) return myMatrixMap.equals(cm.myMatrixMap);
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++)
-          if (getValue(i, j) != cm.getValue(i, j)) return false;
-      return true;
+      return getCodomain() == cm.getCodomain() && getDomain() == cm.getDomain() && myWidth == cm.myWidth && myHeight == cm.myHeight && Arrays.equals(myWords, cm.myWords);
     } else {
       return false;
     }
@@ -204,7 +151,7 @@ public abstract class BaseCallMatrix<T> {
   @Override
   public final int hashCode() {
     int result = getCodomain().hashCode() * 31 + getDomain().hashCode();
-    return result * 31 + (myMatrixMap != null ? myMatrixMap.hashCode() : Arrays.deepHashCode(fallbackMatrix));
+    return result * 31 + Arrays.hashCode(myWords);
   }
 
   protected String[] getColumnLabels() {
@@ -266,28 +213,4 @@ public abstract class BaseCallMatrix<T> {
 
     return result.toString();
   }
-
-  private static class CallMatrixEntry {
-    int myIndex;
-    BaseCallMatrix.R myRel;
-
-    CallMatrixEntry(int index, BaseCallMatrix.R rel) {
-      myIndex = index;
-      myRel = rel;
-    }
-
-    @Override
-    public int hashCode() {
-      return myIndex * 31 + myRel.hashCode();
-    }
-
-    @Override
-    public boolean equals(Object object) {
-      if (object instanceof BaseCallMatrix.CallMatrixEntry) {
-        BaseCallMatrix.CallMatrixEntry cm = (BaseCallMatrix.CallMatrixEntry) object;
-        return cm.myIndex == myIndex && cm.myRel == myRel;
-      }
-      return false;
-    }
-  }
 }
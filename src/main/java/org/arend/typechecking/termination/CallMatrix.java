@@ -1,6 +1,5 @@
 package org.arend.typechecking.termination;
 
-import org.arend.core.context.param.DependentLink;
 import org.arend.core.definition.Definition;
 import org.arend.core.expr.DefCallExpression;
 import org.arend.error.doc.Doc;
@@ -13,7 +12,7 @@ class CallMatrix extends LabeledCallMatrix {
   private final Definition myEnclosingDefinition;
 
   CallMatrix(Definition enclosingDefinition, DefCallExpression call) {
-    super(DependentLink.Helper.size(call.getDefinition().getParameters()), DependentLink.Helper.size(enclosingDefinition.getParameters()));
+    super(call.getDefinition().getTelescope().size(), enclosingDefinition.getTelescope().size());
     myCallExpression = call;
     myEnclosingDefinition = enclosingDefinition;
   }
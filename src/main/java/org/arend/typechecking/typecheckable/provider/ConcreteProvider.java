@@ -13,6 +13,11 @@ public interface ConcreteProvider extends PartialConcreteProvider {
   @Nullable Concrete.ClassDefinition getConcreteClass(ClassReferable referable);
   @Nullable Concrete.DataDefinition getConcreteData(GlobalReferable referable);
 
+  /**
+   * Called when {@code referable} is typechecked, so its concrete definition may be dropped if it can be restored later.
+   */
+  default void releaseConcrete(GlobalReferable referable) {}
+
   @Override
   @Nullable
   default Concrete.ReferenceExpression getInstanceTypeReference(GlobalReferable instance) {
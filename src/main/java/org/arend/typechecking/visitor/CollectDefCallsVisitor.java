@@ -1,9 +1,16 @@
 package org.arend.typechecking.visitor;
 
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.ClassDefinition;
+import org.arend.core.definition.Constructor;
+import org.arend.core.definition.Definition;
+import org.arend.core.expr.ClassCallExpression;
+import org.arend.core.expr.Expression;
 import org.arend.naming.reference.*;
 import org.arend.naming.scope.ClassFieldImplScope;
 import org.arend.term.concrete.Concrete;
 import org.arend.term.concrete.ConcreteDefinitionVisitor;
+import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.instance.provider.InstanceProvider;
 import org.arend.typechecking.typecheckable.provider.ConcreteProvider;
 
@@ -12,13 +19,15 @@ import java.util.*;
 public class CollectDefCallsVisitor extends VoidConcreteExpressionVisitor<Void> implements ConcreteDefinitionVisitor<Boolean, Void> {
   private final ConcreteProvider myConcreteProvider;
   private final InstanceProvider myInstanceProvider;
+  private final TypecheckerState myState;
   private final Collection<TCReferable> myDependencies;
   private final Deque<TCReferable> myDeque = new ArrayDeque<>();
   private Set<TCReferable> myExcluded;
 
-  public CollectDefCallsVisitor(ConcreteProvider concreteProvider, InstanceProvider instanceProvider, Collection<TCReferable> dependencies) {
+  public CollectDefCallsVisitor(ConcreteProvider concreteProvider, InstanceProvider instanceProvider, TypecheckerState state, Collection<TCReferable> dependencies) {
     myConcreteProvider = concreteProvider;
     myInstanceProvider = instanceProvider;
+    myState = state;
     myDependencies = dependencies;
   }
 
@@ -50,6 +59,16 @@ public class CollectDefCallsVisitor extends VoidConcreteExpressionVisitor<Void>
           }
         }
       } else {
+        // Parameters of typechecked definitions are taken from the core, so their concrete definitions are not needed
+        Definition typechecked = myState == null ? null : myState.getTypechecked(referable);
+        if (typechecked != null && !(typechecked instanceof ClassDefinition) && typechecked.status().headerIsOK()) {
+          if (typechecked instanceof Constructor) {
+            ignoreFirstParameter = addClassInstances(((Constructor) typechecked).getDataTypeParameters(), ignoreFirstParameter);
+          }
+          ignoreFirstParameter = addClassInstances(typechecked.getParameters(), ignoreFirstParameter);
+          continue;
+        }
+
         Concrete.ReferableDefinition definition = myConcreteProvider.getConcrete(referable);
         if (definition != null && !definition.isDesugarized()) {
           TCClassReferable enclosingClass = definition.getRelatedDefinition().enclosingClass;
@@ -79,6 +98,20 @@ public class CollectDefCallsVisitor extends VoidConcreteExpressionVisitor<Void>
     }
   }
 
+  private boolean addClassInstances(DependentLink parameters, boolean ignoreFirstParameter) {
+    for (DependentLink link = parameters; link.hasNext(); link = link.getNext()) {
+      if (ignoreFirstParameter) {
+        ignoreFirstParameter = false;
+      } else if (!link.isExplicit()) {
+        Expression type = link.getTypeExpr();
+        if (type.isInstance(ClassCallExpression.class)) {
+          addClassInstances(type.cast(ClassCallExpression.class).getDefinition().getReferable());
+        }
+      }
+    }
+    return ignoreFirstParameter;
+  }
+
   private void addClassInstances(ClassReferable classRef) {
     myInstanceProvider.findInstance(classRef, instance -> {
       myDeque.push(instance.getData());
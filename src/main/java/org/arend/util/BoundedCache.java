@@ -0,0 +1,104 @@
+package org.arend.util;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * A map whose size is limited according to a {@link CachePolicy}.
+ * Null values cannot be stored; {@link #get} returns null if there is no entry or if it was evicted.
+ *
+ * The cache is thread-safe.
+ */
+public class BoundedCache<K, V> {
+  private final CachePolicy myPolicy;
+  private final Map<K, Object> myMap; // values are wrapped in soft references if the policy is SOFT
+  private long myHits;
+  private long myMisses;
+
+  public BoundedCache(CachePolicy policy) {
+    myPolicy = policy;
+    if (policy.getKind() == CachePolicy.Kind.LRU) {
+      int capacity = policy.getCapacity();
+      myMap = new LinkedHashMap<K, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Object> eldest) {
+          return size() > capacity;
+        }
+      };
+    } else {
+      myMap = new HashMap<>();
+    }
+  }
+
+  public CachePolicy getPolicy() {
+    return myPolicy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V unwrap(Object value) {
+    return myPolicy.getKind() == CachePolicy.Kind.SOFT ? ((SoftReference<V>) value).get() : (V) value;
+  }
+
+  public synchronized V get(K key) {
+    Object value = myMap.get(key);
+    V result = value == null ? null : unwrap(value);
+    if (result == null) {
+      if (value != null) {
+        myMap.remove(key);
+      }
+      myMisses++;
+    } else {
+      myHits++;
+    }
+    return result;
+  }
+
+  public synchronized void put(K key, V value) {
+    myMap.put(key, myPolicy.getKind() == CachePolicy.Kind.SOFT ? new SoftReference<>(value) : value);
+  }
+
+  public synchronized void remove(K key) {
+    myMap.remove(key);
+  }
+
+  public synchronized void clear() {
+    myMap.clear();
+  }
+
+  /**
+   * @return the number of entries that were not evicted.
+   */
+  public synchronized int size() {
+    if (myPolicy.getKind() == CachePolicy.Kind.SOFT) {
+      myMap.values().removeIf(value -> unwrap(value) == null);
+    }
+    return myMap.size();
+  }
+
+  /**
+   * @return a snapshot of values that were not evicted.
+   */
+  public synchronized List<V> values() {
+    List<V> result = new ArrayList<>(myMap.size());
+    for (Object value : myMap.values()) {
+      V v = unwrap(value);
+      if (v != null) {
+        result.add(v);
+      }
+    }
+    return result;
+  }
+
+  public synchronized long getHits() {
+    return myHits;
+  }
+
+  public synchronized long getMisses() {
+    return myMisses;
+  }
+
+  public synchronized void resetStatistics() {
+    myHits = 0;
+    myMisses = 0;
+  }
+}
@@ -0,0 +1,59 @@
+package org.arend.util;
+
+/**
+ * Determines how many entries a {@link BoundedCache} keeps.
+ */
+public class CachePolicy {
+  public enum Kind {
+    /**
+     * Entries are never evicted.
+     */
+    UNBOUNDED,
+    /**
+     * When the cache is full, the least recently used entry is evicted.
+     */
+    LRU,
+    /**
+     * Entries are kept by soft references, so they are evicted by the garbage collector when memory is low.
+     */
+    SOFT
+  }
+
+  public static final CachePolicy UNBOUNDED = new CachePolicy(Kind.UNBOUNDED, 0);
+  public static final CachePolicy SOFT = new CachePolicy(Kind.SOFT, 0);
+
+  private final Kind myKind;
+  private final int myCapacity;
+
+  private CachePolicy(Kind kind, int capacity) {
+    myKind = kind;
+    myCapacity = capacity;
+  }
+
+  public static CachePolicy lru(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive");
+    }
+    return new CachePolicy(Kind.LRU, capacity);
+  }
+
+  public Kind getKind() {
+    return myKind;
+  }
+
+  /**
+   * @return the maximal number of entries if the kind of the policy is {@link Kind#LRU}, 0 otherwise.
+   */
+  public int getCapacity() {
+    return myCapacity;
+  }
+
+  public <K, V> BoundedCache<K, V> makeCache() {
+    return new BoundedCache<>(this);
+  }
+
+  @Override
+  public String toString() {
+    return myKind == Kind.LRU ? "LRU(" + myCapacity + ")" : myKind.toString();
+  }
+}
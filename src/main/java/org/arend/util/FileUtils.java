@@ -3,6 +3,7 @@ package org.arend.util;
 import org.arend.module.ModulePath;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
@@ -78,10 +79,18 @@ public class FileUtils {
   }
 
   public static void printIllegalModuleName(String module) {
-    System.err.println("[ERROR] " + module + " is an illegal module path");
+    printIllegalModuleName(module, System.err);
+  }
+
+  public static void printIllegalModuleName(String module, PrintStream err) {
+    err.println("[ERROR] " + module + " is an illegal module path");
   }
 
   public static void getModules(Path path, String ext, Collection<ModulePath> modules) {
+    getModules(path, ext, modules, System.err);
+  }
+
+  public static void getModules(Path path, String ext, Collection<ModulePath> modules, PrintStream err) {
     try {
       Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
         @Override
@@ -90,7 +99,7 @@ public class FileUtils {
             file = path.relativize(file);
             ModulePath modulePath = FileUtils.modulePath(file, ext);
             if (modulePath == null) {
-              printIllegalModuleName(file.toString());
+              printIllegalModuleName(file.toString(), err);
             } else {
               modules.add(modulePath);
             }
@@ -99,10 +108,10 @@ public class FileUtils {
         }
       });
     } catch (NoSuchFileException e) {
-      System.err.println("[ERROR] No such file: " + e.getFile());
+      err.println("[ERROR] No such file: " + e.getFile());
     } catch (IOException e) {
-      System.err.println("[ERROR] An exception happened while processing directory " + path);
-      e.printStackTrace();
+      err.println("[ERROR] An exception happened while processing directory " + path);
+      e.printStackTrace(err);
     }
   }
 }
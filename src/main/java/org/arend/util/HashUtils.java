@@ -0,0 +1,21 @@
+package org.arend.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashUtils {
+  public static final String ALGORITHM = "SHA-256";
+
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // Every implementation of the Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static byte[] hash(byte[] data) {
+    return newDigest().digest(data);
+  }
+}
@@ -0,0 +1,135 @@
+package org.arend.frontend;
+
+import org.arend.prelude.Prelude;
+import org.arend.prelude.PreludeFileLibrary;
+import org.arend.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DaemonServerTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String token;
+  private ServerSocket serverSocket;
+  private Thread serverThread;
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+  @Before
+  public void startServer() throws Exception {
+    ConsoleMain frontend = new ConsoleMain();
+    // Prelude is loaded from its source since the binary resource is not available in tests
+    PreludeFileLibrary preludeLibrary = new PreludeFileLibrary(null, frontend.getTypecheckerState());
+    assertTrue(frontend.getLibraryManager().loadLibrary(preludeLibrary));
+    new Prelude.PreludeTypechecking(frontend.getLibraryManager().getInstanceProviderSet(), frontend.getTypecheckerState(), ConcreteReferableProvider.INSTANCE).typecheckLibrary(preludeLibrary);
+
+    token = DaemonServer.createTokenFile(folder.getRoot().toPath().resolve("token"));
+    serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+    DaemonServer server = new DaemonServer(frontend, token);
+    serverThread = new Thread(() -> {
+      try {
+        server.serve(serverSocket);
+      } catch (IOException ignored) {
+      }
+    });
+    serverThread.start();
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    try {
+      assertEquals(0, request(token, DaemonServer.STOP_COMMAND));
+      serverThread.join(10000);
+    } finally {
+      serverSocket.close();
+    }
+  }
+
+  private int request(String token, String... args) throws IOException {
+    output.reset();
+    return DaemonMain.sendRequest(serverSocket.getLocalPort(), token, folder.getRoot().toPath(), Arrays.asList(args), new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+  }
+
+  private String getOutput() {
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private void writeModule(String name, String text) throws IOException {
+    Files.write(folder.getRoot().toPath().resolve(name + ".ard"), Collections.singletonList(text), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void typecheck() throws IOException {
+    writeModule("A", "\\func f (n : Nat) : Nat => suc n");
+    assertEquals(0, request(token, "A.ard"));
+    assertThat(getOutput(), containsString("--- Done ---"));
+    assertThat(getOutput(), not(containsString("[ERROR]")));
+    Path binary = folder.getRoot().toPath().resolve(".bin").resolve("A.arc");
+    assertTrue(Files.exists(binary));
+  }
+
+  @Test
+  public void errorCountIsStatus() throws IOException {
+    writeModule("A", "\\func f : Nat => g");
+    writeModule("B", "\\func h : Nat => \\Sigma");
+    assertEquals(2, request(token, "A.ard", "B.ard"));
+    assertThat(getOutput(), containsString("Number of modules with errors: 2"));
+  }
+
+  private void writeLibraryModule(String text, long age) throws IOException {
+    Path library = folder.getRoot().toPath().resolve("lib");
+    Files.createDirectories(library.resolve("src"));
+    Files.write(library.resolve(FileUtils.LIBRARY_CONFIG_FILE), Arrays.asList("sourcesDir: src", "binariesDir: bin"), StandardCharsets.UTF_8);
+    Path module = library.resolve("src").resolve("A.ard");
+    Files.write(module, Collections.singletonList(text), StandardCharsets.UTF_8);
+    // Files modified during loading are always considered modified, so the timestamp can be moved to the past
+    Files.setLastModifiedTime(module, FileTime.fromMillis(System.currentTimeMillis() - age));
+    Files.setLastModifiedTime(library.resolve(FileUtils.LIBRARY_CONFIG_FILE), FileTime.fromMillis(System.currentTimeMillis() - age));
+  }
+
+  @Test
+  public void onlyModifiedLibrariesAreReloaded() throws IOException {
+    writeLibraryModule("\\func f : Nat => 0", 20000);
+    assertEquals(0, request(token, "lib/" + FileUtils.LIBRARY_CONFIG_FILE));
+    assertThat(getOutput(), containsString("--- Typechecking lib ---"));
+
+    // The file is rewritten with the same content, so the library stays loaded even though its timestamp changed
+    writeLibraryModule("\\func f : Nat => 0", 0);
+    assertEquals(0, request(token, "lib/" + FileUtils.LIBRARY_CONFIG_FILE));
+    assertThat(getOutput(), not(containsString("Loading library lib")));
+
+    writeLibraryModule("\\func f : Nat => g", 0);
+    assertEquals(1, request(token, "lib/" + FileUtils.LIBRARY_CONFIG_FILE));
+    assertThat(getOutput(), containsString("Loading library lib"));
+  }
+
+  @Test
+  public void badToken() throws IOException {
+    writeModule("A", "\\func f : Nat => 0");
+    assertEquals(1, request(token + "0", "A.ard"));
+    assertThat(getOutput(), containsString("[ERROR] Authentication failed"));
+    assertThat(getOutput(), not(containsString("--- Typechecking")));
+    assertTrue(Files.notExists(folder.getRoot().toPath().resolve(".bin").resolve("A.arc")));
+  }
+}
@@ -0,0 +1,78 @@
+package org.arend.frontend.parser;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DefinitionHeadersTest {
+  private static Map<String, byte[]> compute(String text) {
+    return DefinitionHeaders.compute(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void assertSameHeader(Map<String, byte[]> headers1, Map<String, byte[]> headers2, String name) {
+    assertNotNull(headers1.get(name));
+    assertArrayEquals(headers1.get(name), headers2.get(name));
+  }
+
+  private static void assertDifferentHeader(Map<String, byte[]> headers1, Map<String, byte[]> headers2, String name) {
+    assertFalse(Arrays.equals(headers1.get(name), headers2.get(name)));
+  }
+
+  @Test
+  public void bodyChange() {
+    Map<String, byte[]> headers1 = compute("\\func f (n : Nat) : Nat => n \\where \\func g => 0");
+    Map<String, byte[]> headers2 = compute("\\func f (n : Nat) : Nat => suc n \\where \\func g => 0");
+    assertSameHeader(headers1, headers2, "");
+    assertSameHeader(headers1, headers2, "f");
+    assertSameHeader(headers1, headers2, "f.g");
+  }
+
+  @Test
+  public void headerChange() {
+    Map<String, byte[]> headers1 = compute("\\func f (n : Nat) : Nat => n \\where \\func g => 0");
+    Map<String, byte[]> headers2 = compute("\\func f (n : Nat) : Int => n \\where \\func g => 1");
+    assertDifferentHeader(headers1, headers2, "f");
+    assertSameHeader(headers1, headers2, "f.g");
+  }
+
+  @Test
+  public void whitespacesAndComments() {
+    Map<String, byte[]> headers1 = compute("\\data D | con Nat\n\\lemma l : 0 = 0 => path (\\lam _ => 0)");
+    Map<String, byte[]> headers2 = compute("-- comment\n\\data D\n  | con Nat {- comment -}\n\n\\lemma l\n  : 0 = 0\n  => path (\\lam _ => 0)");
+    assertSameHeader(headers1, headers2, "D");
+    assertSameHeader(headers1, headers2, "l");
+  }
+
+  @Test
+  public void constructorsAreHeaders() {
+    Map<String, byte[]> headers1 = compute("\\data D | con1 | con2");
+    Map<String, byte[]> headers2 = compute("\\data D | con1");
+    assertDifferentHeader(headers1, headers2, "D");
+  }
+
+  @Test
+  public void classDefinitions() {
+    Map<String, byte[]> headers1 = compute("\\class C { | x : Nat \\func f => x }");
+    Map<String, byte[]> headers2 = compute("\\class C { | x : Nat \\func f => 0 }");
+    assertSameHeader(headers1, headers2, "C");
+    assertSameHeader(headers1, headers2, "C.f");
+  }
+
+  @Test
+  public void namespaceCommands() {
+    Map<String, byte[]> headers1 = compute("\\import M\n\\func f => 0 \\where { \\open M \\func g => 0 }");
+    Map<String, byte[]> headers2 = compute("\\import N\n\\func f => 0 \\where { \\func g => 0 }");
+    assertDifferentHeader(headers1, headers2, "");
+    assertDifferentHeader(headers1, headers2, "f");
+    assertSameHeader(headers1, headers2, "f.g");
+  }
+
+  @Test
+  public void syntaxErrors() {
+    assertNull(compute("\\func f => ("));
+  }
+}
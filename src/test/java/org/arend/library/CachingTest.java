@@ -1,12 +1,24 @@
 package org.arend.library;
 
+import org.arend.core.context.param.DependentLink;
 import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.LeafElimTree;
+import org.arend.core.expr.ExpressionInterner;
+import org.arend.module.ModulePath;
+import org.arend.module.serialization.ModuleSerialization;
 import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.source.Source;
+import org.arend.source.StreamRawSource;
 import org.arend.term.group.ChildGroup;
+import org.arend.term.group.FileGroup;
 import org.arend.term.group.Group;
 import org.junit.Test;
 
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -120,12 +132,186 @@ public class CachingTest extends LibraryTestCase {
     library.persistUpdateModules(errorReporter);
     libraryManager.unloadLibrary(library);
 
+    library.updateModule(moduleName("A"), "\\data D\n", true);
+    libraryManager.loadLibrary(library);
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(moduleName("A")), "D")), is(notNullValue()));
+  }
+
+  @Test
+  public void sourceChangedWithoutTimestamp() {
+    library.addModule(moduleName("A"), "\\data D\n");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
     library.updateModule(moduleName("A"), "\\func f => 0", false);
     libraryManager.loadLibrary(library);
     typechecking.typecheckLibrary(library);
     library.persistUpdateModules(errorReporter);
-    assertThat(get(library.getModuleScopeProvider().forModule(moduleName("a")), "f"), is(nullValue()));
     assertThat(get(library.getModuleScopeProvider().forModule(moduleName("A")), "D"), is(nullValue()));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(moduleName("A")), "f")), is(notNullValue()));
+  }
+
+  @Test
+  public void upToDateModulesAreNotParsed() {
+    library.addModule(moduleName("A"), "\\func f : Nat => 0\n");
+    library.addModule(moduleName("B"), "\\import A() \\func g : Nat => A.f\n");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(moduleName("B"), "\\import A() \\func g : Nat => suc A.f\n", true);
+    assertTrue(libraryManager.loadLibrary(library));
+    assertThat(library.getModuleGroup(moduleName("A")), is(not(instanceOf(FileGroup.class))));
+    assertThat(library.getModuleGroup(moduleName("B")), is(instanceOf(FileGroup.class)));
+    assertThat(library.getUpdatedModules(), contains(moduleName("B")));
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleGroup(moduleName("B")).getGroupScope(), "g")), is(notNullValue()));
+  }
+
+  @Test
+  public void sourceHashOfNewSource() {
+    library.addModule(moduleName("A"), "\\data D\n");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    // The library returns a source which was not loaded, so its content hash must be computed
+    library.updateModule(moduleName("A"), "\\data D\n", true);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.loadLibrary(library);
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(moduleName("A")), "D")), is(notNullValue()));
+  }
+
+  @Test
+  public void dependencyInterfaceHash() {
+    library.addModule(moduleName("A"), "\\data D\n");
+    library.addModule(moduleName("B"), "\\import A() \\func f : \\Type0 => A.D\n");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    byte[] hash = library.getInterfaceHash(moduleName("A"));
+    assertThat(hash, is(notNullValue()));
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(moduleName("A"), "\\data D\n", true);
+    library.updateModule(moduleName("B"), "\\import A() \\func f : \\Type0 => A.D\n", true);
+    libraryManager.loadLibrary(library);
+    assertThat(library.getInterfaceHash(moduleName("A")), is(equalTo(hash)));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(moduleName("B")), "f")), is(notNullValue()));
+    assertThat(library.getUpdatedModules(), is(empty()));
+  }
+
+  @Test
+  public void interfaceHashIgnoresLemmaBodies() {
+    library.addModule(moduleName("A"), "\\lemma l (n : Nat) : n = n => path (\\lam _ => n)\n\\func g : Nat => 0\n");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    byte[] hash = library.getInterfaceHash(moduleName("A"));
+    assertThat(hash, is(notNullValue()));
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(moduleName("A"), "\\lemma l (n : Nat) : n = n \\elim n | zero => path (\\lam _ => 0) | suc n => path (\\lam _ => suc n)\n\\func g : Nat => 0\n", true);
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(library.getInterfaceHash(moduleName("A")), is(equalTo(hash)));
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(moduleName("A"), "\\lemma l (n : Nat) : n = n \\elim n | zero => path (\\lam _ => 0) | suc n => path (\\lam _ => suc n)\n\\func g : Nat => 1\n", true);
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(library.getInterfaceHash(moduleName("A")), is(not(equalTo(hash))));
+  }
+
+  @Test
+  public void persistedInterfaceHash() {
+    library.addModule(moduleName("A"),
+      "\\func f (g : \\Pi (n : Nat) -> n = n) : Nat => 0\n" +
+      "\\lemma l (g : \\Pi (n : Nat) -> n = n) (n : Nat) : n = n => g n\n" +
+      "\\func h (g : \\Pi (n : Nat) -> n = n) : Nat => 1");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    ChildGroup group = library.getModuleGroup(moduleName("A"));
+    assertThat(library.getInterfaceHash(moduleName("A")), is(equalTo(ModuleSerialization.getInterfaceHash(typecheckerState, group, moduleName("A"), IdReferableConverter.INSTANCE))));
+    libraryManager.unloadLibrary(library);
+
+    assertTrue(libraryManager.loadLibrary(library));
+    group = library.getModuleGroup(moduleName("A"));
+    FunctionDefinition l = (FunctionDefinition) typecheckerState.getTypechecked(get(group.getGroupScope(), "l"));
+    assertThat(l.getActualBody(), is(notNullValue()));
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void dependentReusedAfterLemmaBodyChange() {
+    library.addModule(moduleName("A"), "\\lemma l (n : Nat) : n = n => path (\\lam _ => n)\n\\func g : Nat => 0\n");
+    library.addModule(moduleName("B"), "\\import A() \\func f : 0 = 0 => A.l 0\n\\func h : Nat => A.g\n");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    // Only the body of a lemma is changed, so B is loaded from its binary source after A is typechecked
+    library.updateModule(moduleName("A"), "\\lemma l (n : Nat) : n = n \\elim n | zero => path (\\lam _ => 0) | suc n => path (\\lam _ => suc n)\n\\func g : Nat => 0\n", true);
+    libraryManager.loadLibrary(library);
+    assertThat(library.getDeferredModules(), contains(moduleName("B")));
+    List<ModulePath> loaded = new ArrayList<>();
+    assertTrue(library.typecheckUpdatedModules(libraryManager, typechecking::typecheckModules, loaded::add));
+    assertThat(loaded, contains(moduleName("B")));
+    assertThat(library.getUpdatedModules(), contains(moduleName("A")));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(moduleName("B")), "f")), is(notNullValue()));
+    assertThat(errorList, is(empty()));
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    // The body of g can be evaluated in B, so B is typechecked again
+    library.updateModule(moduleName("A"), "\\lemma l (n : Nat) : n = n \\elim n | zero => path (\\lam _ => 0) | suc n => path (\\lam _ => suc n)\n\\func g : Nat => 1\n", true);
+    libraryManager.loadLibrary(library);
+    assertThat(library.getDeferredModules(), contains(moduleName("B")));
+    loaded.clear();
+    assertTrue(library.typecheckUpdatedModules(libraryManager, typechecking::typecheckModules, loaded::add));
+    assertThat(loaded, is(empty()));
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(moduleName("A"), moduleName("B")));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(moduleName("B")), "h")), is(notNullValue()));
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void contentHashOfChangedSource() {
+    StringBuilder text = new StringBuilder("\\data D\n");
+    long[] timeStamp = { 0 };
+    StreamRawSource source = new StreamRawSource(moduleName("A")) {
+      @Nonnull
+      @Override
+      protected InputStream getInputStream() {
+        return new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8));
+      }
+
+      @Override
+      public long getTimeStamp() {
+        return timeStamp[0];
+      }
+
+      @Override
+      public boolean isAvailable() {
+        return true;
+      }
+    };
+
+    byte[] hash = source.getContentHash();
+    assertThat(hash, is(notNullValue()));
+    text.append("\\func f => 0\n");
+    timeStamp[0]++;
+    assertThat(source.getContentHash(), is(not(equalTo(hash))));
   }
 
   @Test
@@ -271,4 +457,98 @@ public class CachingTest extends LibraryTestCase {
     assertThat(sourceB, is(notNullValue()));
     assertTrue(sourceB.isAvailable());
   }
+
+  @Test
+  public void internedDeserialization() {
+    library.addModule(moduleName("A"),
+      "\\func a : Nat => suc (suc 7)\n" +
+      "\\func b : Nat => 9");
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    ExpressionInterner interner = new ExpressionInterner();
+    ExpressionInterner.setInstance(interner);
+    try {
+      assertTrue(libraryManager.loadLibrary(library));
+    } finally {
+      ExpressionInterner.setInstance(null);
+    }
+    ChildGroup aGroup = library.getModuleGroup(moduleName("A"));
+    FunctionDefinition a = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "a"));
+    FunctionDefinition b = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "b"));
+    assertSame(a.getResultType(), b.getResultType());
+    assertSame(((LeafElimTree) a.getBody()).getExpression(), ((LeafElimTree) b.getBody()).getExpression());
+    assertTrue(interner.getHits() > 0);
+  }
+
+  @Test
+  public void sharedSubterms() {
+    library.addModule(moduleName("A"),
+      "\\func a (f : \\Pi (n : Nat) -> n = n) : Nat => 0\n" +
+      "\\func b (f : \\Pi (n : Nat) -> n = n) : Nat => 1\n" +
+      "\\func c {A : \\Type} (x y : A) (p : \\Pi (z : A) -> x = z) (q : \\Pi (z : A) -> x = z) : Nat => 2");
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    library.addModule(moduleName("B"), "\\import A \\func d => c 0 1 (\\lam z => {?}) (\\lam z => {?})");
+    assertTrue(libraryManager.loadLibrary(library));
+    ChildGroup aGroup = library.getModuleGroup(moduleName("A"));
+    FunctionDefinition a = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "a"));
+    FunctionDefinition b = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "b"));
+    assertSame(a.getParameters().getTypeExpr(), b.getParameters().getTypeExpr());
+
+    FunctionDefinition c = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "c"));
+    DependentLink p = DependentLink.Helper.get(c.getParameters(), 3);
+    assertNotSame(p.getTypeExpr(), p.getNext().getTypeExpr());
+    assertEquals(p.getTypeExpr(), p.getNext().getTypeExpr());
+
+    typechecking.typecheckLibrary(library);
+    assertThatErrorsAre(goal(1), goal(1));
+  }
+
+  @Test
+  public void onlyRepeatedSubtermsAreShared() {
+    library.addModule(moduleName("A"),
+      "\\func a : \\Pi (n : Nat) -> n = n => \\lam n => path (\\lam _ => n)");
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+    ChildGroup group = library.getModuleGroup(moduleName("A"));
+    assertEquals(0, new ModuleSerialization(typecheckerState, errorReporter).writeModule(group, moduleName("A"), IdReferableConverter.INSTANCE).getSharedExpressionCount());
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(moduleName("A"),
+      "\\func a (f : \\Pi (n : Nat) -> n = n) : Nat => 0\n" +
+      "\\func b (f : \\Pi (n : Nat) -> n = n) : Nat => 1", true);
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    group = library.getModuleGroup(moduleName("A"));
+    assertEquals(1, new ModuleSerialization(typecheckerState, errorReporter).writeModule(group, moduleName("A"), IdReferableConverter.INSTANCE).getSharedExpressionCount());
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void sharedClassCalls() {
+    library.addModule(moduleName("A"),
+      "\\class C (x y : Nat)\n" +
+      "\\func a (f : \\Pi (n : Nat) -> C { | x => n }) : Nat => 0\n" +
+      "\\func b (f : \\Pi (n : Nat) -> C { | x => n }) : Nat => 1");
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    assertTrue(libraryManager.loadLibrary(library));
+    ChildGroup group = library.getModuleGroup(moduleName("A"));
+    FunctionDefinition a = (FunctionDefinition) typecheckerState.getTypechecked(get(group.getGroupScope(), "a"));
+    FunctionDefinition b = (FunctionDefinition) typecheckerState.getTypechecked(get(group.getGroupScope(), "b"));
+    assertSame(a.getParameters().getTypeExpr(), b.getParameters().getTypeExpr());
+  }
 }
@@ -70,4 +70,23 @@ public class LibraryLoadingTest extends LibraryTestCase {
     assertThat(library.getModuleGroup(modulePath), is(nullValue()));
     assertThat(errorList, is(not(empty())));
   }
+
+  @Test
+  public void parallelParsing() {
+    libraryManager.setParsingJobs(4);
+    for (int i = 0; i < 20; i++) {
+      library.addModule(moduleName("M" + i), (i > 0 ? "\\import M" + (i - 1) + "\n" : "") + "\\func f" + i + " => " + (i > 0 ? "f" + (i - 1) : "0"));
+    }
+    library.addModule(moduleName("E"), "hello world");
+    assertTrue(libraryManager.loadLibrary(library));
+    for (int i = 0; i < 20; i++) {
+      assertThat(library.getModuleGroup(moduleName("M" + i)), is(notNullValue()));
+    }
+    assertThat(library.getModuleGroup(moduleName("E")), is(nullValue()));
+    assertThat(errorList, is(not(empty())));
+    errorList.clear();
+
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, containsErrors(0));
+  }
 }
@@ -0,0 +1,237 @@
+package org.arend.library;
+
+import com.google.protobuf.ByteString;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.ElimTree;
+import org.arend.core.expr.DataCallExpression;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.FunCallExpression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.module.ModulePath;
+import org.arend.module.serialization.DefinitionProtos;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.naming.reference.TCReferable;
+import org.arend.source.FileBinarySource;
+import org.arend.source.GZIPStreamBinarySource;
+import org.arend.source.MappedFileBinarySource;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.arend.module.ModulePath.moduleName;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class MappedBinarySourceTest extends LibraryTestCase {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final String TEXT =
+    "\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (suc (f n))\n" +
+    "\\func g : Nat => f 3";
+
+  private FunctionDefinition getFunction(ModulePath module, String name) {
+    ChildGroup group = library.getModuleGroup(module);
+    assertNotNull(group);
+    return (FunctionDefinition) typecheckerState.getTypechecked(get(group.getGroupScope(), name));
+  }
+
+  private void persistAndReload() {
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    assertTrue(library.persistUpdateModules(errorReporter));
+    assertTrue(errorList.isEmpty());
+    libraryManager.unloadLibrary(library);
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(library.getUpdatedModules().isEmpty());
+  }
+
+  @Test
+  public void lazyBodies() throws IOException {
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    library.setBinarySource(module, new MappedFileBinarySource(folder.getRoot().toPath(), module));
+    persistAndReload();
+
+    FunctionDefinition f = getFunction(module, "f");
+    assertThat(f.getBody(), instanceOf(ElimTree.class));
+    Expression result = new FunCallExpression(getFunction(module, "g"), Sort.SET0, Collections.emptyList()).normalize(NormalizeVisitor.Mode.NF);
+    assertThat(result, instanceOf(SmallIntegerExpression.class));
+    assertEquals(6, ((SmallIntegerExpression) result).getInteger());
+  }
+
+  @Test
+  public void persistLoaded() {
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    library.setBinarySource(module, new MappedFileBinarySource(folder.getRoot().toPath(), module));
+    persistAndReload();
+
+    // The mapped file is replaced, so bodies that were not loaded yet are still available
+    library.updateModule(module);
+    assertTrue(library.persistUpdateModules(errorReporter));
+    assertThat(getFunction(module, "f").getBody(), instanceOf(ElimTree.class));
+  }
+
+  @Test
+  public void compressedFile() {
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    library.setBinarySource(module, new GZIPStreamBinarySource(new FileBinarySource(folder.getRoot().toPath(), module)));
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    assertTrue(library.persistUpdateModules(errorReporter));
+    libraryManager.unloadLibrary(library);
+
+    library.setBinarySource(module, new MappedFileBinarySource(folder.getRoot().toPath(), module));
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(errorList.isEmpty());
+    assertTrue(library.getUpdatedModules().isEmpty());
+    assertThat(getFunction(module, "f").getBody(), instanceOf(ElimTree.class));
+  }
+
+  private static ModuleProtos.Group corruptBodies(ModuleProtos.Group group) {
+    ModuleProtos.Group.Builder builder = group.toBuilder();
+    if (builder.hasDefinition() && builder.getDefinition().getDefinitionDataCase() == DefinitionProtos.Definition.DefinitionDataCase.FUNCTION && !builder.getDefinition().getFunction().getLazyBody().isEmpty()) {
+      DefinitionProtos.Definition.FunctionData function = builder.getDefinition().getFunction().toBuilder().setLazyBody(ByteString.copyFrom(new byte[] { (byte) 0xff })).build();
+      builder.setDefinition(builder.getDefinition().toBuilder().setFunction(function));
+    }
+    for (int i = 0; i < builder.getSubgroupCount(); i++) {
+      builder.setSubgroup(i, corruptBodies(builder.getSubgroup(i)));
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void corruptedBody() throws IOException {
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    library.setBinarySource(module, new MappedFileBinarySource(folder.getRoot().toPath(), module));
+    persistAndReload();
+    libraryManager.unloadLibrary(library);
+
+    Path file = FileUtils.binaryFile(folder.getRoot().toPath(), module);
+    ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(Files.readAllBytes(file));
+    Files.write(file, moduleProto.toBuilder().setGroup(corruptBodies(moduleProto.getGroup())).build().toByteArray());
+
+    // Bodies are parsed only when they are requested, so the error is not reported when the module is loaded
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(errorList.isEmpty());
+    assertTrue(library.getUpdatedModules().isEmpty());
+    try {
+      getFunction(module, "f").getBody();
+      fail();
+    } catch (IllegalStateException ignored) {
+    }
+  }
+
+  @Test
+  public void compressedLazyBodies() throws IOException {
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    library.setBinarySource(module, new GZIPStreamBinarySource(new FileBinarySource(folder.getRoot().toPath(), module)));
+    persistAndReload();
+    libraryManager.unloadLibrary(library);
+
+    Path file = FileUtils.binaryFile(folder.getRoot().toPath(), module);
+    ModuleProtos.Module moduleProto;
+    try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(file))) {
+      moduleProto = ModuleProtos.Module.parseFrom(inputStream);
+    }
+    try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file))) {
+      moduleProto.toBuilder().setGroup(corruptBodies(moduleProto.getGroup())).build().writeTo(outputStream);
+    }
+
+    // Compressed binary sources also store bodies of functions separately
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(errorList.isEmpty());
+    assertThat(getFunction(module, "g").getResultType(), instanceOf(DataCallExpression.class));
+    try {
+      getFunction(module, "g").getBody();
+      fail();
+    } catch (IllegalStateException ignored) {
+    }
+  }
+
+  @Test
+  public void lazyBodyDependencies() {
+    List<TCReferable> dependencies = new ArrayList<>();
+    MemoryLibrary library = new MemoryLibrary(typecheckerState) {
+      @Nonnull
+      @Override
+      public DependencyListener getDependencyListener() {
+        return new DependencyListener() {
+          @Override
+          public void dependsOn(TCReferable def1, boolean header, TCReferable def2) {
+            if (!header && def1.textRepresentation().equals("g")) {
+              dependencies.add(def2);
+            }
+          }
+
+          @Override
+          public Set<? extends TCReferable> update(TCReferable definition) {
+            return Collections.emptySet();
+          }
+        };
+      }
+    };
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    assertTrue(library.persistUpdateModules(errorReporter));
+    libraryManager.unloadLibrary(library);
+
+    // Dependencies of bodies are reported when the module is loaded even though the bodies are not deserialized yet
+    dependencies.clear();
+    assertTrue(libraryManager.loadLibrary(library));
+    ChildGroup group = library.getModuleGroup(module);
+    assertNotNull(group);
+    assertEquals(Collections.singletonList(get(group.getGroupScope(), "f")), dependencies);
+  }
+
+  @Test
+  public void permissions() throws IOException {
+    Path root = folder.getRoot().toPath();
+    assumeTrue(Files.getFileStore(root).supportsFileAttributeView("posix"));
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    library.setBinarySource(module, new MappedFileBinarySource(root, module));
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    assertTrue(library.persistUpdateModules(errorReporter));
+
+    // A new file gets the default permissions
+    Path file = FileUtils.binaryFile(root, module);
+    assertEquals(Files.getPosixFilePermissions(Files.createFile(root.resolve("default"))), Files.getPosixFilePermissions(file));
+
+    // A replaced file keeps its permissions
+    Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+    Files.setPosixFilePermissions(file, permissions);
+    library.updateModule(module);
+    assertTrue(library.persistUpdateModules(errorReporter));
+    assertEquals(permissions, Files.getPosixFilePermissions(file));
+  }
+}
@@ -49,6 +49,10 @@ public class MemoryLibrary extends UnmodifiableSourceLibrary {
     myRawSources.remove(module);
   }
 
+  public void setBinarySource(ModulePath module, BinarySource source) {
+    myBinarySources.put(module, source);
+  }
+
   public void removeBinarySource(ModulePath module) {
     myBinarySources.put(module, new MemoryBinarySource(module));
   }
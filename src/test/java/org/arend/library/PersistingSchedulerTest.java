@@ -0,0 +1,83 @@
+package org.arend.library;
+
+import org.arend.core.definition.Definition;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.arend.module.ModulePath.moduleName;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.*;
+
+public class PersistingSchedulerTest extends LibraryTestCase {
+  private PersistingScheduler createScheduler() {
+    assertTrue(libraryManager.loadLibrary(library));
+    return new PersistingScheduler(library, new ArrayList<>(library.getUpdatedModules()), IdReferableConverter.INSTANCE, errorReporter, 2);
+  }
+
+  private void reload() {
+    library.clearUpdateModules();
+    libraryManager.unloadLibrary(library);
+    assertTrue(libraryManager.loadLibrary(library));
+    assertThat(library.getUpdatedModules(), is(empty()));
+  }
+
+  @Test
+  public void persistTypechecked() {
+    library.addModule(moduleName("A"), "\\func a => 0");
+    library.addModule(moduleName("B"), "\\import A \\func b => a \\func c => b");
+    PersistingScheduler scheduler = createScheduler();
+
+    new TypecheckingOrderingListener(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, PositionComparator.INSTANCE) {
+      @Override
+      public void typecheckingUnitFinished(TCReferable referable, Definition definition) {
+        scheduler.typecheckingFinished(referable);
+      }
+
+      @Override
+      public void typecheckingBodyFinished(TCReferable referable, Definition definition) {
+        scheduler.typecheckingFinished(referable);
+      }
+    }.typecheckLibrary(library);
+
+    assertTrue(scheduler.waitAll());
+    assertThat(errorList, is(empty()));
+    reload();
+    ChildGroup group = library.getModuleGroup(moduleName("B"));
+    assertNotNull(group);
+    assertNotNull(typecheckerState.getTypechecked(get(group.getGroupScope(), "c")));
+  }
+
+  @Test
+  public void mutualImports() {
+    library.addModule(moduleName("A"), "\\import B() \\func a (n : Nat) : Nat | zero => zero | suc n => B.b n");
+    library.addModule(moduleName("B"), "\\import A() \\func b (n : Nat) : Nat | zero => zero | suc n => A.a n");
+    PersistingScheduler scheduler = createScheduler();
+    typechecking.typecheckLibrary(library);
+
+    assertTrue(scheduler.waitAll());
+    assertThat(errorList, is(empty()));
+    reload();
+  }
+
+  @Test
+  public void daemonThreads() {
+    assertTrue(libraryManager.loadLibrary(library));
+    List<Boolean> daemon = new ArrayList<>();
+    // The module does not exist, so an error is reported from the background thread
+    PersistingScheduler scheduler = new PersistingScheduler(library, Collections.singletonList(moduleName("A")), IdReferableConverter.INSTANCE, error -> daemon.add(Thread.currentThread().isDaemon()), 1);
+    assertFalse(scheduler.waitAll());
+    assertEquals(Collections.singletonList(true), daemon);
+  }
+}
@@ -0,0 +1,98 @@
+package org.arend.library;
+
+import org.arend.core.definition.Definition;
+import org.arend.frontend.reference.ConcreteLocatedReferable;
+import org.arend.module.ModulePath;
+import org.arend.naming.scope.Scope;
+import org.arend.term.concrete.Concrete;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.arend.module.ModulePath.moduleName;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class ReleaseConcreteTest extends LibraryTestCase {
+  private static final String TEXT =
+    "\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (f n)\n" +
+    "\\data D | con Nat\n" +
+    "\\func g => con (f 2)";
+
+  private Scope load(boolean release) {
+    ModulePath module = moduleName("A");
+    library.addModule(module, TEXT);
+    if (release) {
+      library.addFlag(SourceLibrary.Flag.RELEASE_CONCRETE);
+    }
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(typechecking.typecheckLibrary(library));
+    assertTrue(errorList.isEmpty());
+    return library.getModuleScopeProvider().forModule(module);
+  }
+
+  @Test
+  public void releaseAndReload() {
+    Scope scope = load(true);
+    ConcreteLocatedReferable f = (ConcreteLocatedReferable) get(scope, "f");
+    ConcreteLocatedReferable con = (ConcreteLocatedReferable) get(scope, "con");
+    ConcreteLocatedReferable g = (ConcreteLocatedReferable) get(scope, "g");
+    assertFalse(f.isDefinitionLoaded());
+    assertFalse(con.isDefinitionLoaded());
+    assertFalse(g.isDefinitionLoaded());
+    assertSame(get(scope, "D"), con.getTypecheckable());
+
+    Concrete.ReferableDefinition gDef = g.getDefinition();
+    assertThat(gDef, instanceOf(Concrete.FunctionDefinition.class));
+    assertSame(g, gDef.getData());
+    assertTrue(f.isDefinitionLoaded());
+    assertTrue(con.isDefinitionLoaded());
+
+    Concrete.Expression term = ((Concrete.TermFunctionBody) ((Concrete.FunctionDefinition) gDef).getBody()).getTerm();
+    assertThat(term, instanceOf(Concrete.AppExpression.class));
+    assertSame(con, ((Concrete.ReferenceExpression) ((Concrete.AppExpression) term).getFunction()).getReferent());
+  }
+
+  @Test
+  public void reloadWithLoadedDefinitions() {
+    Scope scope = load(true);
+    ConcreteLocatedReferable f = (ConcreteLocatedReferable) get(scope, "f");
+    ConcreteLocatedReferable g = (ConcreteLocatedReferable) get(scope, "g");
+    Concrete.ReferableDefinition fDef = f.getDefinition();
+    assertNotNull(fDef);
+    g.releaseDefinition();
+    assertTrue(f.isDefinitionLoaded());
+    assertFalse(g.isDefinitionLoaded());
+
+    // Loaded definitions are kept, and references in reloaded definitions refer to the same referables
+    Concrete.ReferableDefinition gDef = g.getDefinition();
+    assertNotNull(gDef);
+    assertSame(fDef, f.getDefinition());
+    Concrete.Expression term = ((Concrete.TermFunctionBody) ((Concrete.FunctionDefinition) gDef).getBody()).getTerm();
+    Concrete.Expression arg = ((Concrete.AppExpression) term).getArguments().get(0).getExpression();
+    assertSame(f, ((Concrete.ReferenceExpression) ((Concrete.AppExpression) arg).getFunction()).getReferent());
+  }
+
+  @Test
+  public void retypecheckReleased() {
+    Scope scope = load(true);
+    ConcreteLocatedReferable g = (ConcreteLocatedReferable) get(scope, "g");
+    Definition oldDef = typecheckerState.getTypechecked(g);
+    typecheckerState.reset(g);
+
+    assertTrue(typechecking.typecheckDefinitions(Collections.singletonList((Concrete.Definition) g.getDefinition())));
+    assertTrue(errorList.isEmpty());
+    Definition newDef = typecheckerState.getTypechecked(g);
+    assertNotNull(newDef);
+    assertNotSame(oldDef, newDef);
+    assertFalse(g.isDefinitionLoaded());
+  }
+
+  @Test
+  public void notReleasedByDefault() {
+    Scope scope = load(false);
+    assertTrue(((ConcreteLocatedReferable) get(scope, "f")).isDefinitionLoaded());
+    assertTrue(((ConcreteLocatedReferable) get(scope, "con")).isDefinitionLoaded());
+  }
+}
@@ -0,0 +1,113 @@
+package org.arend.naming;
+
+import org.arend.module.ModulePath;
+import org.arend.module.scopeprovider.CachingModuleScopeProvider;
+import org.arend.naming.reference.LocalReferable;
+import org.arend.naming.reference.Referable;
+import org.arend.naming.scope.CachingScope;
+import org.arend.naming.scope.ListScope;
+import org.arend.naming.scope.Scope;
+import org.arend.util.CachePolicy;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.util.function.Predicate;
+
+import static org.arend.module.ModulePath.moduleName;
+import static org.junit.Assert.*;
+
+public class CachingScopeTest {
+  private static class CountingScope implements Scope {
+    private final Scope myScope;
+    int finds;
+    int namespaces;
+
+    CountingScope(Referable... elements) {
+      myScope = new ListScope(elements);
+    }
+
+    @Override
+    public Referable find(Predicate<Referable> pred) {
+      finds++;
+      return myScope.find(pred);
+    }
+
+    @Nullable
+    @Override
+    public Scope resolveNamespace(String name, boolean onlyInternal) {
+      namespaces++;
+      return new CountingScope(new LocalReferable(name));
+    }
+  }
+
+  @After
+  public void resetPolicy() {
+    CachingScope.setNamespaceCachePolicy(CachePolicy.UNBOUNDED);
+  }
+
+  @Test
+  public void unboundedByDefault() {
+    assertEquals(CachePolicy.Kind.UNBOUNDED, CachingScope.getNamespaceCachePolicy().getKind());
+    assertEquals(CachePolicy.Kind.UNBOUNDED, CachingModuleScopeProvider.DEFAULT_POLICY.getKind());
+  }
+
+  @Test
+  public void lazyElements() {
+    Referable x = new LocalReferable("x");
+    CountingScope scope = new CountingScope(x);
+    CachingScope cachingScope = (CachingScope) CachingScope.make(scope);
+    assertEquals(0, scope.finds);
+    assertFalse(cachingScope.isMaterialized());
+
+    Scope namespace = cachingScope.resolveNamespace("A", false);
+    assertNotNull(namespace);
+    assertFalse(cachingScope.isMaterialized());
+    assertFalse(((CachingScope) namespace).isMaterialized());
+
+    assertSame(x, cachingScope.resolveName("x"));
+    assertSame(x, cachingScope.resolveName("x"));
+    assertNull(cachingScope.resolveName("y"));
+    assertEquals(1, scope.finds);
+    assertTrue(cachingScope.isMaterialized());
+    assertEquals(2, cachingScope.getFootprint());
+  }
+
+  @Test
+  public void boundedNamespaces() {
+    CachingScope.setNamespaceCachePolicy(CachePolicy.lru(2));
+    CountingScope scope = new CountingScope();
+    Scope cachingScope = CachingScope.make(scope);
+
+    Scope a = cachingScope.resolveNamespace("A", false);
+    cachingScope.resolveNamespace("B", false);
+    assertSame(a, cachingScope.resolveNamespace("A", false));
+    assertEquals(2, scope.namespaces);
+
+    cachingScope.resolveNamespace("C", false);
+    assertSame(a, cachingScope.resolveNamespace("A", false));
+    cachingScope.resolveNamespace("B", false);
+    assertEquals(4, scope.namespaces);
+    assertEquals(2, ((CachingScope) cachingScope).getFootprint());
+  }
+
+  @Test
+  public void boundedModuleScopes() {
+    ModulePath moduleA = moduleName("A");
+    ModulePath moduleB = moduleName("B");
+    int[] requests = new int[] { 0 };
+    CachingModuleScopeProvider provider = new CachingModuleScopeProvider(module -> {
+      requests[0]++;
+      return new CountingScope(new LocalReferable(module.toString()));
+    }, CachePolicy.lru(1));
+
+    Scope scopeA = provider.forModule(moduleA);
+    assertSame(scopeA, provider.forModule(moduleA));
+    provider.forModule(moduleB);
+    assertNotSame(scopeA, provider.forModule(moduleA));
+    assertEquals(3, requests[0]);
+    assertEquals(1, provider.size());
+    assertEquals(1, provider.getHits());
+    assertEquals(3, provider.getMisses());
+  }
+}
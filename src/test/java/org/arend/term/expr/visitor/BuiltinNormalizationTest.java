@@ -16,6 +16,7 @@ import java.util.List;
 
 import static org.arend.core.expr.ExpressionFactory.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class BuiltinNormalizationTest extends TypeCheckingTestCase {
   private static Expression funCall(FunctionDefinition definition, Expression arg1, Expression arg2) {
@@ -153,4 +154,32 @@ public class BuiltinNormalizationTest extends TypeCheckingTestCase {
     // mod 1000000000000 98765 = 29340
     assertEquals(new BigIntegerExpression(new BigInteger("29340")), funCall(Prelude.MOD, new BigIntegerExpression(new BigInteger("1000000000000")), val(98765)).normalize(NormalizeVisitor.Mode.WHNF));
   }
+
+  @Test
+  public void testLargeOffsets() {
+    ReferenceExpression x = new ReferenceExpression(new TypedBinding("x", Nat()));
+    ReferenceExpression y = new ReferenceExpression(new TypedBinding("y", Nat()));
+    // x + 1000000 = suc (x + 999999)
+    Expression sum = plus(x, val(1000000)).normalize(NormalizeVisitor.Mode.WHNF);
+    assertSame(Prelude.SUC, sum.cast(ConCallExpression.class).getDefinition());
+    assertSame(Prelude.PLUS, sum.cast(ConCallExpression.class).getDefCallArguments().get(0).cast(FunCallExpression.class).getDefinition());
+    // 1000005 - (x + 1000000) = 5 - x
+    assertEquals(minus(val(5), x), minus(val(1000005), plus(x, val(1000000))).normalize(NormalizeVisitor.Mode.WHNF));
+    // 1000000 - (x + 1000005) = -(x + 5)
+    assertEquals(Neg(plus(x, val(5))), minus(val(1000000), plus(x, val(1000005))).normalize(NormalizeVisitor.Mode.WHNF));
+    // (x + 2000000) - 1000000 = +(x + 1000000)
+    assertEquals(Pos(plus(x, val(1000000))), minus(plus(x, val(2000000)), val(1000000)).normalize(NormalizeVisitor.Mode.WHNF));
+    // (x + 3000000) - (y + 1000000) = (x + 2000000) - y
+    assertEquals(minus(plus(x, val(2000000)), y), minus(plus(x, val(3000000)), plus(y, val(1000000))).normalize(NormalizeVisitor.Mode.WHNF));
+    // 3000000 = suc (2000000 + 999999)
+    assertEquals(val(3000000), Suc(plus(val(2000000), val(999999))));
+  }
+
+  @Test
+  public void testLargeOffsetsInConstructors() {
+    typeCheckModule(
+      "\\open Nat\n" +
+      "\\func f (p : 999999 <= 1000000) : 1000000 <= 1000001 => suc<=suc p\n" +
+      "\\func g (x y : Nat) (p : x + 999999 <= y + 1000004) : x + 1000000 <= y + 1000005 => suc<=suc p");
+  }
 }
@@ -0,0 +1,50 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.arend.ExpressionFactory.*;
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.assertEquals;
+
+public class ClosureNormalizationTest extends NormalizationTest {
+  @Before
+  public void enableClosures() {
+    NormalizeVisitor.INSTANCE.setUsingClosures(true);
+  }
+
+  @After
+  public void disableClosures() {
+    NormalizeVisitor.INSTANCE.setUsingClosures(false);
+  }
+
+  @Test
+  public void nestedRedexes() {
+    // (\x0. (\x1. ... (\xn. xn) x(n-1) ...) x0) (suc zero) = suc zero
+    int depth = 1000;
+    SingleDependentLink[] params = new SingleDependentLink[depth];
+    for (int i = 0; i < depth; i++) {
+      params[i] = singleParam("x" + i, Nat());
+    }
+    Expression expr = Ref(params[depth - 1]);
+    for (int i = depth - 1; i > 0; i--) {
+      expr = Apps(Lam(params[i], expr), Ref(params[i - 1]));
+    }
+    expr = Apps(Lam(params[0], expr), Suc(Zero()));
+    assertEquals(Suc(Zero()), expr.normalize(NormalizeVisitor.Mode.WHNF));
+    assertEquals(Suc(Zero()), expr.normalize(NormalizeVisitor.Mode.NF));
+  }
+
+  @Test
+  public void sharedArgument() {
+    // (\f. f (f (f zero))) (\x. suc x) = 3
+    SingleDependentLink f = singleParam("f", Pi(Nat(), Nat()));
+    SingleDependentLink x = singleParam("x", Nat());
+    Expression expr = Apps(Lam(f, Apps(Ref(f), Apps(Ref(f), Apps(Ref(f), Zero())))), Lam(x, Suc(Ref(x))));
+    assertEquals(Suc(Suc(Suc(Zero()))), expr.normalize(NormalizeVisitor.Mode.NF));
+  }
+}
@@ -10,6 +10,7 @@ import org.arend.core.expr.DataCallExpression;
 import org.arend.core.expr.Expression;
 import org.arend.core.expr.PiExpression;
 import org.arend.core.expr.let.LetClause;
+import org.arend.core.expr.visitor.CompareVisitor;
 import org.arend.core.sort.Sort;
 import org.arend.prelude.Prelude;
 import org.arend.typechecking.TypeCheckingTestCase;
@@ -219,4 +220,41 @@ public class ComparisonTest extends TypeCheckingTestCase {
     assertEquals(result2.expression, result1.expression);
     assertEquals(result1.expression, result2.expression);
   }
+
+  @Test
+  public void syntacticallyEqual() {
+    SingleDependentLink x1 = singleParam("x", Nat());
+    SingleDependentLink y1 = singleParam("y", Pi(Nat(), Nat()));
+    SingleDependentLink x2 = singleParam("x'", Nat());
+    SingleDependentLink y2 = singleParam("y'", Pi(Nat(), Nat()));
+    Expression expr1 = Lam(x1, Lam(y1, Apps(Ref(y1), Suc(Ref(x1)))));
+    Expression expr2 = Lam(x2, Lam(y2, Apps(Ref(y2), Suc(Ref(x2)))));
+    assertEquals(expr1.getStructuralHash(), expr2.getStructuralHash());
+
+    CompareVisitor.resetSyntacticStatistics();
+    assertTrue(compare(expr1, expr2, Equations.CMP.EQ));
+    assertEquals(1, CompareVisitor.getSyntacticChecks());
+    assertEquals(1, CompareVisitor.getSyntacticMatches());
+  }
+
+  @Test
+  public void syntacticallyDifferent() {
+    SingleDependentLink x1 = singleParam("x", Nat());
+    SingleDependentLink y1 = singleParam("y", Nat());
+    SingleDependentLink x2 = singleParam("x'", Nat());
+    SingleDependentLink y2 = singleParam("y'", Nat());
+    Expression expr1 = Lam(x1, Lam(y1, Ref(x1)));
+    Expression expr2 = Lam(x2, Lam(y2, Ref(y2)));
+    assertNotEquals(expr1.getStructuralHash(), expr2.getStructuralHash());
+
+    CompareVisitor.resetSyntacticStatistics();
+    assertFalse(compare(expr1, expr2, Equations.CMP.EQ));
+    assertEquals(0, CompareVisitor.getSyntacticMatches());
+  }
+
+  @Test
+  public void structuralHashOfSorts() {
+    assertNotEquals(Universe(Sort.SET0).getStructuralHash(), Universe(Sort.SetOfLevel(1)).getStructuralHash());
+    assertNotEquals(FunCall(Prelude.PATH_INFIX, Sort.SET0, Nat(), Zero(), Zero()).getStructuralHash(), FunCall(Prelude.PATH_INFIX, Sort.PROP, Nat(), Zero(), Zero()).getStructuralHash());
+  }
 }
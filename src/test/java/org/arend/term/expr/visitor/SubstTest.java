@@ -4,13 +4,16 @@ import org.arend.core.context.binding.Binding;
 import org.arend.core.context.binding.TypedBinding;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.expr.AppExpression;
 import org.arend.core.expr.Expression;
+import org.arend.core.expr.let.LetClause;
+import org.arend.core.expr.visitor.VariableMaskVisitor;
 import org.arend.typechecking.TypeCheckingTestCase;
 import org.junit.Test;
 
 import static org.arend.ExpressionFactory.*;
 import static org.arend.core.expr.ExpressionFactory.*;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class SubstTest extends TypeCheckingTestCase {
   @Test
@@ -118,4 +121,34 @@ public class SubstTest extends TypeCheckingTestCase {
     Expression expr2 = let(lets(let("x", Lam(z, Ref(z))), let("y", Lam(w, Zero()))), Zero());
     assertEquals(expr2, expr1.subst(a, Zero()));
   }
+
+  @Test
+  public void substClosedSubterm() {
+    // f (suc zero) x [x := zero] = f (suc zero) zero, where suc zero is not copied
+    Binding f = new TypedBinding("f", Pi(Nat(), Pi(Nat(), Nat())));
+    Binding x = new TypedBinding("x", Nat());
+    Expression closed = Suc(Zero());
+    Expression result = Apps(Ref(f), closed, Ref(x)).subst(x, Zero());
+    assertEquals(Apps(Ref(f), Suc(Zero()), Zero()), result);
+    assertSame(closed, result.cast(AppExpression.class).getFunction().cast(AppExpression.class).getArgument());
+  }
+
+  @Test
+  public void substClosedLam() {
+    // \lam (z : N) => z [a := zero] = \lam (z : N) => z
+    SingleDependentLink z = singleParam("z", Nat());
+    Expression expr = Lam(z, Ref(z));
+    assertTrue(VariableMaskVisitor.isClosed(expr));
+    assertSame(expr, expr.subst(new TypedBinding("a", Nat()), Zero()));
+    assertFalse(VariableMaskVisitor.isClosed(Lam(z, Ref(new TypedBinding("a", Nat())))));
+  }
+
+  @Test
+  public void closedLet() {
+    // \let | x => zero | y => x \in y is closed
+    LetClause x = let("x", Zero());
+    Expression expr = let(lets(x, let("y", Ref(x))), Zero());
+    assertTrue(VariableMaskVisitor.isClosed(expr));
+    assertFalse(VariableMaskVisitor.isClosed(let(lets(let("y", Ref(x))), Zero())));
+  }
 }
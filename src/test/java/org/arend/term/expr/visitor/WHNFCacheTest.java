@@ -0,0 +1,133 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.context.binding.TypedBinding;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.Body;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.expr.visitor.WHNFCache;
+import org.arend.core.sort.Sort;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.arend.ExpressionFactory.*;
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.*;
+
+public class WHNFCacheTest extends TypeCheckingTestCase {
+  private WHNFCache cache;
+
+  private void enableCache() {
+    cache = new WHNFCache(2);
+    NormalizeVisitor.INSTANCE.setWHNFCache(cache);
+  }
+
+  @After
+  public void disableCache() {
+    NormalizeVisitor.INSTANCE.setWHNFCache(null);
+  }
+
+  @Test
+  public void closedCallTest() {
+    FunctionDefinition f = (FunctionDefinition) typeCheckDef("\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (suc (f n))");
+    enableCache();
+    Expression result1 = FunCall(f, Sort.SET0, Suc(Suc(Zero()))).normalize(NormalizeVisitor.Mode.WHNF);
+    long misses = cache.getMisses();
+    assertEquals(0, cache.getHits());
+    Expression result2 = FunCall(f, Sort.SET0, Suc(Suc(Zero()))).normalize(NormalizeVisitor.Mode.WHNF);
+    assertSame(result1, result2);
+    assertEquals(1, cache.getHits());
+    assertEquals(misses, cache.getMisses());
+    assertEquals(Suc(Suc(Suc(Suc(Zero())))), result1.normalize(NormalizeVisitor.Mode.NF));
+  }
+
+  @Test
+  public void openCallTest() {
+    FunctionDefinition f = (FunctionDefinition) typeCheckDef("\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (f n)");
+    enableCache();
+    TypedBinding x = new TypedBinding("x", Nat());
+    FunCall(f, Sort.SET0, Suc(Ref(x))).normalize(NormalizeVisitor.Mode.WHNF);
+    FunCall(f, Sort.SET0, Ref(x)).normalize(NormalizeVisitor.Mode.NF);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getMisses());
+  }
+
+  @Test
+  public void evictionTest() {
+    FunctionDefinition f = (FunctionDefinition) typeCheckDef("\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (f n)");
+    enableCache();
+    for (int i = 0; i < 5; i++) {
+      FunCall(f, Sort.SET0, Suc(Suc(Suc(Zero())))).normalize(NormalizeVisitor.Mode.WHNF);
+      FunCall(f, Sort.SET0, Suc(Suc(Zero()))).normalize(NormalizeVisitor.Mode.WHNF);
+      FunCall(f, Sort.SET0, Suc(Zero())).normalize(NormalizeVisitor.Mode.WHNF);
+    }
+    assertTrue(cache.size() <= cache.getCapacity());
+  }
+
+  @Test
+  public void invalidationTest() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (f n)\n" +
+      "\\func g (n : Nat) => n");
+    FunctionDefinition f = (FunctionDefinition) getDefinition("f");
+    FunctionDefinition g = (FunctionDefinition) getDefinition("g");
+    enableCache();
+    FunCall(f, Sort.SET0, Suc(Zero())).normalize(NormalizeVisitor.Mode.WHNF);
+    FunCall(g, Sort.SET0, Zero()).normalize(NormalizeVisitor.Mode.WHNF);
+    assertEquals(2, cache.size());
+    cache.invalidate(Collections.singleton(f));
+    assertEquals(1, cache.size());
+    FunCall(g, Sort.SET0, Zero()).normalize(NormalizeVisitor.Mode.WHNF);
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void incompleteFunctionTest() {
+    FunctionDefinition f = (FunctionDefinition) typeCheckDef("\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (f n)");
+    Body body = f.getBody();
+    enableCache();
+    f.setBody(null);
+    Expression call = FunCall(f, Sort.SET0, Suc(Zero()));
+    assertSame(call, call.normalize(NormalizeVisitor.Mode.WHNF));
+    assertEquals(0, cache.size());
+    f.setBody(body);
+    assertEquals(Suc(Zero()), call.normalize(NormalizeVisitor.Mode.NF));
+  }
+
+  @Test
+  public void stuckResultTest() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (f n)\n" +
+      "\\func g (n : Nat) : Nat => f n");
+    FunctionDefinition f = (FunctionDefinition) getDefinition("f");
+    FunctionDefinition g = (FunctionDefinition) getDefinition("g");
+    Body body = f.getBody();
+    enableCache();
+    f.setBody(null);
+    FunCall(g, Sort.SET0, Suc(Zero())).normalize(NormalizeVisitor.Mode.WHNF);
+    assertEquals(0, cache.size());
+    f.setBody(body);
+    assertEquals(Suc(Zero()), FunCall(g, Sort.SET0, Suc(Zero())).normalize(NormalizeVisitor.Mode.NF));
+  }
+
+  @Test
+  public void sessionTest() {
+    WHNFCache sessionCache = new WHNFCache(16);
+    ChildGroup group = resolveNamesModule(
+      "\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (f n)\n" +
+      "\\func g : f 2 = 2 => path (\\lam _ => 2)");
+    TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, PositionComparator.INSTANCE);
+    typechecking.setWHNFCache(sessionCache);
+    assertTrue(typechecking.typecheckModules(Collections.singletonList(group)));
+    assertTrue(errorList.isEmpty());
+    assertTrue(sessionCache.size() > 0);
+    assertNull(NormalizeVisitor.INSTANCE.getWHNFCache());
+  }
+}
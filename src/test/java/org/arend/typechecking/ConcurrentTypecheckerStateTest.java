@@ -0,0 +1,68 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.naming.reference.LocatedReferableImpl;
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.Precedence;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.arend.module.ModulePath.moduleName;
+import static org.junit.Assert.*;
+
+public class ConcurrentTypecheckerStateTest {
+  private final TypecheckerState state = new ConcurrentTypecheckerState();
+
+  @Test
+  public void recordRace() throws Exception {
+    List<TCReferable> referables = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      referables.add(new LocatedReferableImpl(Precedence.DEFAULT, "f" + i, moduleName("Test")));
+    }
+
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CyclicBarrier barrier = new CyclicBarrier(threads);
+    List<Future<List<Definition>>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(executor.submit(() -> {
+        barrier.await();
+        List<Definition> recorded = new ArrayList<>();
+        for (TCReferable referable : referables) {
+          Definition definition = new FunctionDefinition(referable);
+          if (state.record(referable, definition) == null) {
+            recorded.add(definition);
+          }
+        }
+        return recorded;
+      }));
+    }
+
+    int numberOfRecorded = 0;
+    for (Future<List<Definition>> future : futures) {
+      for (Definition definition : future.get()) {
+        assertSame(definition, state.getTypechecked(definition.getReferable()));
+        numberOfRecorded++;
+      }
+    }
+    executor.shutdown();
+    assertEquals(referables.size(), numberOfRecorded);
+  }
+
+  @Test
+  public void rewriteAndReset() {
+    TCReferable referable = new LocatedReferableImpl(Precedence.DEFAULT, "f", moduleName("Test"));
+    Definition definition1 = new FunctionDefinition(referable);
+    Definition definition2 = new FunctionDefinition(referable);
+    assertNull(state.record(referable, definition1));
+    assertSame(definition1, state.record(referable, definition2));
+    state.rewrite(referable, definition2);
+    assertSame(definition2, state.getTypechecked(referable));
+    assertSame(definition2, state.reset(referable));
+    assertNull(state.getTypechecked(referable));
+  }
+}
@@ -1,6 +1,9 @@
 package org.arend.typechecking;
 
 import org.arend.core.context.param.DependentLink;
+import org.arend.core.context.param.EmptyDependentLink;
+import org.arend.core.context.param.Telescope;
+import org.arend.core.definition.Constructor;
 import org.arend.core.definition.Definition;
 import org.arend.core.definition.FunctionDefinition;
 import org.arend.core.expr.Expression;
@@ -41,6 +44,20 @@ public class DefinitionTest extends TypeCheckingTestCase {
     assertEquals(Pi(Nat(), Pi(Pi(Nat(), Nat()), Pi(Nat(), Nat()))), fromPiParameters(type, params));
   }
 
+  @Test
+  public void cachedSignature() {
+    FunctionDefinition typedDef = (FunctionDefinition) typeCheckDef("\\func f (x : Nat) => x");
+    List<DependentLink> params1 = new ArrayList<>();
+    List<DependentLink> params2 = new ArrayList<>();
+    assertSame(typedDef.getTypeWithParams(params1, Sort.SET0), typedDef.getTypeWithParams(params2, Sort.SET0));
+    assertEquals(params1, params2);
+
+    typedDef.setStatus(Definition.TypeCheckingStatus.NO_ERRORS);
+    List<DependentLink> params3 = new ArrayList<>();
+    typedDef.getTypeWithParams(params3, Sort.SET0);
+    assertNotSame(params1.get(0), params3.get(0));
+  }
+
   @Test
   public void errorInParameters() {
     typeCheckModule(
@@ -185,4 +202,27 @@ public class DefinitionTest extends TypeCheckingTestCase {
         "\\data Test (A : \\Set0) \\with\n" +
         "  | suc n => foo (f n)", 1);
   }
+
+  @Test
+  public void telescope() {
+    FunctionDefinition typedDef = (FunctionDefinition) typeCheckDef("\\func f (x : Nat) (y : Nat) (z : Nat -> Nat) => z x");
+    Telescope telescope = typedDef.getTelescope();
+    assertSame(telescope, typedDef.getTelescope());
+    assertEquals(3, telescope.size());
+
+    // The chain is cut after the first parameter, but the first link is the same
+    DependentLink parameters = typedDef.getParameters();
+    parameters.setNext(EmptyDependentLink.getInstance());
+    typedDef.setParameters(parameters);
+    assertEquals(1, typedDef.getTelescope().size());
+  }
+
+  @Test
+  public void constructorDataTypeParameters() {
+    typeCheckModule(
+      "\\data D (A B : \\Type) | con A B\n" +
+      "\\data E (n : Nat) \\with | suc n => e");
+    assertEquals(2, ((Constructor) getDefinition("con")).getNumberOfDataTypeParameters());
+    assertEquals(1, ((Constructor) getDefinition("e")).getNumberOfDataTypeParameters());
+  }
 }
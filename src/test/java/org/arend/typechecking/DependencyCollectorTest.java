@@ -0,0 +1,92 @@
+package org.arend.typechecking;
+
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.naming.reference.ClassReferable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.typechecking.instance.provider.InstanceIndex;
+import org.arend.typechecking.instance.provider.InstanceProvider;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DependencyCollectorTest extends TypeCheckingTestCase {
+  private DependencyCollector typeCheckWithDependencies(String text) {
+    lastGroup = resolveNamesModule(text);
+    DependencyCollector collector = new DependencyCollector(typecheckerState, libraryManager.getInstanceProviderSet());
+    typeCheckWithDependencies(collector);
+    return collector;
+  }
+
+  private void typeCheckWithDependencies(DependencyCollector collector) {
+    assertTrue(new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, collector, PositionComparator.INSTANCE).typecheckModules(Collections.singletonList(lastGroup)));
+    assertTrue(errorList.isEmpty());
+  }
+
+  private Set<TCReferable> refs(String... names) {
+    Set<TCReferable> result = new HashSet<>();
+    for (String name : names) {
+      result.add(get(name));
+    }
+    return result;
+  }
+
+  private static final String LEMMA_MODULE =
+    "\\func f : Nat => 0\n" +
+    "\\lemma l : 0 = 0 => \\let x => f \\in path (\\lam _ => 0)\n" +
+    "\\func g : 0 = 0 => l\n" +
+    "\\func h : f = 0 => path (\\lam _ => 0)\n" +
+    "\\func k => h";
+
+  @Test
+  public void headerChanged() {
+    DependencyCollector collector = typeCheckWithDependencies(LEMMA_MODULE);
+    assertEquals(refs("l", "g"), new HashSet<>(collector.update(get("l"))));
+    assertNull(getDefinition("g"));
+    assertNotNull(getDefinition("f"));
+  }
+
+  @Test
+  public void dependentLemmaBody() {
+    DependencyCollector collector = typeCheckWithDependencies(LEMMA_MODULE);
+    assertEquals(refs("f", "l", "h", "k"), new HashSet<>(collector.update(get("f"), false)));
+    assertNotNull(getDefinition("g"));
+  }
+
+  @Test
+  public void lemmaBodyChanged() {
+    DependencyCollector collector = typeCheckWithDependencies(LEMMA_MODULE);
+    assertEquals(refs("l"), new HashSet<>(collector.update(get("l"), false)));
+    assertNotNull(getDefinition("g"));
+  }
+
+  @Test
+  public void dependenciesAreReportedAgain() {
+    DependencyCollector collector = typeCheckWithDependencies(LEMMA_MODULE);
+    collector.update(get("l"), false);
+    typeCheckWithDependencies(collector);
+    assertEquals(refs("l", "g"), new HashSet<>(collector.update(get("l"), true)));
+  }
+
+  @Test
+  public void classifyingHeadsAreRecomputed() {
+    DependencyCollector collector = typeCheckWithDependencies(
+      "\\data D | d\n" +
+      "\\class C (A : \\Type) | a : A\n" +
+      "\\instance cd : C D | a => d\n" +
+      "\\func f : D => a");
+    InstanceProvider provider = libraryManager.getInstanceProviderSet().get(get("f"));
+    InstanceIndex index = provider.getInstanceIndex((ClassReferable) get("C"));
+    assertEquals(1, index.updateHeads(instance -> Collections.singletonList(getDefinition("D"))));
+
+    // The head of the instance is the old definition of D, so it must be computed again
+    assertEquals(refs("D", "cd", "f"), new HashSet<>(collector.update(get("D"))));
+    assertNotSame(index, provider.getInstanceIndex((ClassReferable) get("C")));
+  }
+}
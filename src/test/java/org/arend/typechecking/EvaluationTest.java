@@ -1,6 +1,10 @@
 package org.arend.typechecking;
 
+import org.arend.core.definition.Constructor;
+import org.arend.core.definition.DataDefinition;
 import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.CompiledElimTree;
+import org.arend.core.elimtree.ElimTree;
 import org.arend.core.elimtree.LeafElimTree;
 import org.arend.core.expr.BigIntegerExpression;
 import org.arend.core.expr.SmallIntegerExpression;
@@ -11,7 +15,7 @@ import java.math.BigInteger;
 
 import static org.arend.core.expr.ExpressionFactory.Neg;
 import static org.arend.core.expr.ExpressionFactory.Pos;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class EvaluationTest extends TypeCheckingTestCase {
   @Test
@@ -63,4 +67,28 @@ public class EvaluationTest extends TypeCheckingTestCase {
     assertEquals(Neg(new SmallIntegerExpression(22)), ((LeafElimTree) ((FunctionDefinition) getDefinition("f6")).getBody()).getExpression().normalize(NormalizeVisitor.Mode.WHNF));
     assertEquals(Pos(new SmallIntegerExpression(0)),  ((LeafElimTree) ((FunctionDefinition) getDefinition("f7")).getBody()).getExpression().normalize(NormalizeVisitor.Mode.WHNF));
   }
+
+  @Test
+  public void evalCompiledElimTree() {
+    typeCheckModule(
+      "\\data D | c0 | c1 | c2 Nat | c3 | c4 D\n" +
+      "\\func f (d : D) (n : Nat) : Nat\n" +
+      "  | c0, _ => 0\n" +
+      "  | c2 m, suc k => m\n" +
+      "  | c4 (c4 d), n => f d n\n" +
+      "  | c4 c3, 0 => 7\n" +
+      "  | _, n => n\n" +
+      "\\func test1 : f (c4 (c4 (c2 5))) 1 = 5 => path (\\lam _ => 5)\n" +
+      "\\func test2 : f (c4 c3) 0 = 7 => path (\\lam _ => 7)\n" +
+      "\\func test3 : f c1 3 = 3 => path (\\lam _ => 3)\n" +
+      "\\func test4 (n : Nat) : f c0 n = 0 => path (\\lam _ => 0)");
+
+    DataDefinition dataDef = (DataDefinition) getDefinition("D");
+    CompiledElimTree tree = ((ElimTree) ((FunctionDefinition) getDefinition("f")).getBody()).getCompiled();
+    assertSame(tree, ((ElimTree) ((FunctionDefinition) getDefinition("f")).getBody()).getCompiled());
+    for (Constructor constructor : dataDef.getConstructors()) {
+      assertSame(constructor, dataDef.getConstructors().get(constructor.getIndex()));
+      assertNotNull(tree.getChild(constructor));
+    }
+  }
 }
@@ -0,0 +1,121 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.error.GeneralError;
+import org.arend.error.ListErrorReporter;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.naming.reference.TCReferable;
+import org.arend.prelude.Prelude;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.listener.ParallelTypecheckingScheduler;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ParallelTypecheckingTest extends TypeCheckingTestCase {
+  private void typeCheckInParallel(String text, String... names) {
+    ChildGroup sequentialGroup = resolveNamesModule(text);
+    typeCheckSequentially(sequentialGroup);
+    List<String> sequentialErrors = new ArrayList<>();
+    for (GeneralError error : errorList) {
+      sequentialErrors.add(error.toString());
+    }
+    errorList.clear();
+
+    TypecheckerState parallelState = new ConcurrentTypecheckerState();
+    Prelude.fillInTypecheckerState(parallelState);
+    List<GeneralError> parallelErrorList = new ArrayList<>();
+    ChildGroup parallelGroup = resolveNamesModule(text);
+    TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), parallelState, ConcreteReferableProvider.INSTANCE, new ListErrorReporter(parallelErrorList), PositionComparator.INSTANCE);
+    assertTrue(new ParallelTypecheckingScheduler(typechecking, 4).typecheckModules(Collections.singletonList(parallelGroup)));
+    List<String> parallelErrors = new ArrayList<>();
+    for (GeneralError error : parallelErrorList) {
+      parallelErrors.add(error.toString());
+    }
+    assertEquals(sequentialErrors, parallelErrors);
+
+    for (String name : names) {
+      Definition sequentialDef = typecheckerState.getTypechecked(get(sequentialGroup.getGroupScope(), name));
+      TCReferable parallelRef = get(parallelGroup.getGroupScope(), name);
+      Definition parallelDef = parallelState.getTypechecked(parallelRef);
+      assertEquals(name, sequentialDef.status(), parallelDef.status());
+      assertEquals(name, parallelRef, parallelDef.getReferable());
+    }
+  }
+
+  private void typeCheckSequentially(ChildGroup group) {
+    assertTrue(new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, PositionComparator.INSTANCE).typecheckModules(Collections.singletonList(group)));
+  }
+
+  @Test
+  public void independentDefinitions() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      builder.append("\\func f").append(i).append(" (n : Nat) : Nat | 0 => ").append(i).append(" | suc n => suc (f").append(i).append(" n)\n");
+    }
+    String[] names = new String[50];
+    for (int i = 0; i < 50; i++) {
+      names[i] = "f" + i;
+    }
+    typeCheckInParallel(builder.toString(), names);
+  }
+
+  @Test
+  public void dependencies() {
+    typeCheckInParallel(
+      "\\data D | con Nat\n" +
+      "  \\where \\use \\coerce fromNat (n : Nat) => con n\n" +
+      "\\func f (n : Nat) : D => n\n" +
+      "\\func g (n : Nat) : D => f (suc n)\n" +
+      "\\func h => g 0\n" +
+      "\\class C (x : Nat)\n" +
+      "\\instance c : C 7\n" +
+      "\\func k => C.x {c}\n" +
+      "\\func even (n : Nat) : Nat | 0 => 1 | suc n => odd n\n" +
+      "\\func odd (n : Nat) : Nat | 0 => 0 | suc n => even n",
+      "D", "f", "g", "h", "C", "c", "k", "even", "odd");
+  }
+
+  @Test
+  public void errors() {
+    typeCheckInParallel(
+      "\\func a : Nat => \\Prop\n" +
+      "\\func b => a\n" +
+      "\\func c : Nat => b 0\n" +
+      "\\func d (n : Nat) : Nat | 0 => 0 | suc n => d (suc n)\n" +
+      "\\func e => d 0\n" +
+      "\\func f : Nat => suc (c Nat.+ e)",
+      "a", "b", "c", "d", "e", "f");
+  }
+
+  @Test
+  public void dependencyCollector() {
+    StringBuilder builder = new StringBuilder("\\func f0 => 0\n");
+    for (int i = 1; i < 20; i++) {
+      builder.append("\\func f").append(i).append(" => f").append(i - 1).append('\n');
+      builder.append("\\func g").append(i).append(" (n : Nat) : Nat | 0 => f").append(i).append(" | suc n => h").append(i).append(" n\n");
+      builder.append("\\func h").append(i).append(" (n : Nat) : Nat | 0 => 0 | suc n => g").append(i).append(" n\n");
+    }
+
+    TypecheckerState parallelState = new ConcurrentTypecheckerState();
+    Prelude.fillInTypecheckerState(parallelState);
+    DependencyCollector collector = new DependencyCollector(parallelState);
+    ChildGroup group = resolveNamesModule(builder.toString());
+    TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), parallelState, ConcreteReferableProvider.INSTANCE, errorReporter, collector, PositionComparator.INSTANCE);
+    assertTrue(new ParallelTypecheckingScheduler(typechecking, 4).typecheckModules(Collections.singletonList(group)));
+
+    Set<TCReferable> updated = new HashSet<>(collector.update(get(group.getGroupScope(), "f10")));
+    assertEquals(30, updated.size());
+    assertTrue(updated.contains(get(group.getGroupScope(), "h19")));
+    assertFalse(updated.contains(get(group.getGroupScope(), "h9")));
+  }
+}
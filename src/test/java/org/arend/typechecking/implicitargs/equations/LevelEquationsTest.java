@@ -0,0 +1,103 @@
+package org.arend.typechecking.implicitargs.equations;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LevelEquationsTest {
+  private static LevelEquations<String> equations(List<String> variables, List<LevelEquation<String>> equations) {
+    LevelEquations<String> result = new LevelEquations<>();
+    for (String variable : variables) {
+      result.addVariable(variable);
+    }
+    for (LevelEquation<String> equation : equations) {
+      result.addEquation(equation);
+    }
+    return result;
+  }
+
+  @Test
+  public void chain() {
+    LevelEquations<String> equations = equations(Arrays.asList("z", "y", "x"), Arrays.asList(
+      new LevelEquation<>("y", "z", -2),
+      new LevelEquation<>("x", "y", -1),
+      new LevelEquation<>(null, "x", -3),
+      new LevelEquation<>("x", "z", 0, 0)));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(Integer.valueOf(-3), solution.get("x"));
+    assertEquals(Integer.valueOf(-4), solution.get("y"));
+    assertEquals(Integer.valueOf(-6), solution.get("z"));
+    assertFalse(solution.containsKey(null));
+  }
+
+  @Test
+  public void inactiveEquation() {
+    LevelEquations<String> equations = equations(Arrays.asList("x", "y"), Arrays.asList(
+      new LevelEquation<>(null, "x", -2),
+      new LevelEquation<>("x", "y", -5, 2)));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(Integer.valueOf(-2), solution.get("x"));
+    assertEquals(Integer.valueOf(0), solution.get("y"));
+  }
+
+  @Test
+  public void cycle() {
+    LevelEquation<String> xy = new LevelEquation<>("x", "y", -1);
+    LevelEquation<String> yx = new LevelEquation<>("y", "x", 0);
+    LevelEquations<String> equations = equations(Arrays.asList("x", "y", "z"), Arrays.asList(
+      new LevelEquation<>(null, "z", -1),
+      new LevelEquation<>("z", "x", 0),
+      xy, yx));
+    List<LevelEquation<String>> cycle = equations.solve(new HashMap<>());
+    assertNotNull(cycle);
+    assertEquals(2, cycle.size());
+    assertTrue(cycle.contains(xy) && cycle.contains(yx));
+  }
+
+  @Test
+  public void upperBound() {
+    LevelEquation<String> bound = new LevelEquation<>("y", null, 1);
+    LevelEquations<String> equations = equations(Arrays.asList("x", "y"), Arrays.asList(
+      new LevelEquation<>(null, "x", -3),
+      new LevelEquation<>("x", "y", 0),
+      bound));
+    List<LevelEquation<String>> path = equations.solve(new HashMap<>());
+    assertNotNull(path);
+    assertSame(bound, path.get(path.size() - 1));
+  }
+
+  @Test
+  public void infinity() {
+    LevelEquations<String> equations = equations(Arrays.asList("x", "y", "z"), Arrays.asList(
+      new LevelEquation<>("x", "y", -1, 0),
+      new LevelEquation<>("y", "x", -1),
+      new LevelEquation<>("x"),
+      new LevelEquation<>(null, "z", -1)));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertNull(solution.get("x"));
+    assertNull(solution.get("y"));
+    assertEquals(Integer.valueOf(-1), solution.get("z"));
+    assertEquals(3, solution.size());
+  }
+
+  @Test
+  public void boundedInfinity() {
+    LevelEquation<String> infinity = new LevelEquation<>("x");
+    LevelEquations<String> equations = equations(Arrays.asList("x", "y"), Arrays.asList(
+      new LevelEquation<>("y", null, 0),
+      new LevelEquation<>("x", "y", 0),
+      infinity));
+    List<LevelEquation<String>> path = equations.solve(new HashMap<>());
+    assertNotNull(path);
+    assertSame(infinity, path.get(0));
+    assertEquals(3, path.size());
+  }
+}
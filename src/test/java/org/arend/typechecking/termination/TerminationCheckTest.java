@@ -18,9 +18,12 @@ package org.arend.typechecking.termination;
 import org.arend.typechecking.TypeCheckingTestCase;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import static org.junit.Assert.*;
+
 public class TerminationCheckTest extends TypeCheckingTestCase {
 
   @Test
@@ -162,7 +165,7 @@ public class TerminationCheckTest extends TypeCheckingTestCase {
     Set<BaseCallMatrix<TestVertex>> cms = new HashSet<>();
     cms.add(new TestCallMatrix("1", ack, ack, '<', 0, '?'));
     cms.add(new TestCallMatrix("1", ack, ack, '=', 0, '<', 1));
-    BaseCallGraph callCategory = TestCallGraph.calculateClosure(cms);
+    BaseCallGraph<TestVertex> callCategory = TestCallGraph.calculateClosure(cms);
     assert callCategory.checkTermination();
   }
 
@@ -174,7 +177,7 @@ public class TerminationCheckTest extends TypeCheckingTestCase {
     cms.add(new TestCallMatrix("2", f, f, '=', 0, '<', 1, '?', '?'));
     cms.add(new TestCallMatrix("3", f, f, '=', 0, '=', 1, '<', 2, '?'));
     cms.add(new TestCallMatrix("4", f, f, '=', 0, '=', 1, '=', 2, '<', 3));
-    BaseCallGraph callCategory = TestCallGraph.calculateClosure(cms);
+    BaseCallGraph<TestVertex> callCategory = TestCallGraph.calculateClosure(cms);
     assert callCategory.checkTermination();
   }
 
@@ -186,7 +189,7 @@ public class TerminationCheckTest extends TypeCheckingTestCase {
     cms.add(new TestCallMatrix("2", f, f, '=', 0, '<', 1, '?', '?'));
     cms.add(new TestCallMatrix("3", f, f, '=', 0, '=', 1, '<', 2, '?'));
     cms.add(new TestCallMatrix("4", f, f, '=', 0, '=', 1, '=', 2, '=', 3));
-    BaseCallGraph callCategory = TestCallGraph.calculateClosure(cms);
+    BaseCallGraph<TestVertex> callCategory = TestCallGraph.calculateClosure(cms);
     assert !callCategory.checkTermination();
   }
 
@@ -198,7 +201,7 @@ public class TerminationCheckTest extends TypeCheckingTestCase {
     cms.add(new TestCallMatrix("3", f, f, '?', '=', 1, '<', 2, '=', 3));
     cms.add(new TestCallMatrix("1", f, f, '?', '?', '?', '<', 3));
     cms.add(new TestCallMatrix("4", f, f, '<', 0, '=', 1, '=', 2, '=', 3));
-    BaseCallGraph callCategory = TestCallGraph.calculateClosure(cms);
+    BaseCallGraph<TestVertex> callCategory = TestCallGraph.calculateClosure(cms);
     assert callCategory.checkTermination();
   }
 
@@ -216,8 +219,74 @@ public class TerminationCheckTest extends TypeCheckingTestCase {
     cms.add(new TestCallMatrix("g-f", g, f, '=', 0, '=', 1));
     cms.add(new TestCallMatrix("g-g", g, g, '<', 0, '?'));
     cms.add(new TestCallMatrix("g-h", g, h, '?', '?'));
-    BaseCallGraph callCategory = TestCallGraph.calculateClosure(cms);
+    BaseCallGraph<TestVertex> callCategory = TestCallGraph.calculateClosure(cms);
     assert !callCategory.checkTermination();
   }
 
+  private static TestCallGraph mutualRecursionBlock(int size, boolean decreasing) {
+    TestVertex[] vertices = new TestVertex[size];
+    for (int i = 0; i < size; i++) {
+      vertices[i] = new TestVertex("f" + i, "x", "y");
+    }
+    Set<BaseCallMatrix<TestVertex>> cms = new HashSet<>();
+    for (int i = 0; i < size; i++) {
+      cms.add(new TestCallMatrix(i + "-" + i, vertices[i], vertices[i], '=', 0, '<', 1));
+      cms.add(new TestCallMatrix(i + "-next", vertices[i], vertices[(i + 1) % size], decreasing && i == size - 1 ? '<' : '=', 0, '?'));
+    }
+    return TestCallGraph.calculateClosure(cms);
+  }
+
+  @Test
+  public void mutualRecursionBlock() {
+    assertTrue(mutualRecursionBlock(12, true).checkTermination());
+  }
+
+  @Test
+  public void mutualRecursionBlockError() {
+    TestCallGraph callCategory = mutualRecursionBlock(12, false);
+    assertFalse(callCategory.checkTermination());
+    assertEquals(12, callCategory.myErrorInfo.size());
+  }
+
+  private static TestCallMatrix rotation(TestVertex vertex, char last) {
+    int size = vertex.myArguments.length;
+    Object[] data = new Object[size * 2];
+    for (int i = 0; i < size; i++) {
+      data[2 * i] = i == size - 1 ? last : '=';
+      data[2 * i + 1] = (i + 1) % size;
+    }
+    return new TestCallMatrix("rotation", vertex, vertex, data);
+  }
+
+  @Test
+  public void wideMatrices() {
+    String[] arguments = new String[40];
+    for (int i = 0; i < arguments.length; i++) {
+      arguments[i] = "x" + i;
+    }
+    TestVertex f = new TestVertex("f", arguments);
+
+    TestCallMatrix m = rotation(f, '<');
+    BaseCallMatrix<TestVertex> m2 = new CompositeCallMatrix<>(m, m);
+    assertEquals(BaseCallMatrix.R.Equal, m2.getValue(30, 32));
+    assertEquals(BaseCallMatrix.R.LessThan, m2.getValue(38, 0));
+    assertEquals(BaseCallMatrix.R.LessThan, m2.getValue(39, 1));
+    assertEquals(BaseCallMatrix.R.Unknown, m2.getValue(39, 0));
+    assertTrue(m.leq(rotation(f, '<')) && m.equals(rotation(f, '<')));
+    assertTrue(rotation(f, '=').leq(m) && !m.leq(rotation(f, '=')));
+
+    assertFalse(TestCallGraph.calculateClosure(new HashSet<>(Collections.singletonList(m))).checkTermination());
+
+    Object[] data = new Object[arguments.length * 2];
+    for (int i = 0; i < arguments.length; i++) {
+      data[2 * i] = i == 35 ? '<' : '=';
+      data[2 * i + 1] = i;
+    }
+    Set<BaseCallMatrix<TestVertex>> cms = new HashSet<>();
+    cms.add(m);
+    cms.add(new TestCallMatrix("diagonal", f, f, data));
+    assertFalse(TestCallGraph.calculateClosure(cms).checkTermination());
+    cms.remove(m);
+    assertTrue(TestCallGraph.calculateClosure(cms).checkTermination());
+  }
 }
@@ -1,9 +1,11 @@
 package org.arend.typechecking.typeclass;
 
 import org.arend.typechecking.TypeCheckingTestCase;
+import org.arend.typechecking.instance.provider.InstanceResolutionCache;
 import org.junit.Test;
 
 import static org.arend.typechecking.Matchers.instanceInference;
+import static org.junit.Assert.assertTrue;
 
 public class TypeClassesClassifiers extends TypeCheckingTestCase {
   @Test
@@ -66,4 +68,61 @@ public class TypeClassesClassifiers extends TypeCheckingTestCase {
       "\\instance s : C (\\Sigma) | a => ()\n" +
       "\\func f : \\Sigma => a");
   }
+
+  @Test
+  public void integerTest() {
+    typeCheckModule(
+      "\\class C (n : Nat) | p : n = n\n" +
+      "\\instance c0 : C 0 | p => path (\\lam _ => 0)\n" +
+      "\\instance c2 : C 2 | p => path (\\lam _ => 2)\n" +
+      "\\func f : 2 = 2 => p\n" +
+      "\\func g : 0 = 0 => p");
+  }
+
+  @Test
+  public void integerTestError() {
+    typeCheckModule(
+      "\\class C (n : Nat) | p : n = n\n" +
+      "\\instance c0 : C 0 | p => path (\\lam _ => 0)\n" +
+      "\\instance c2 : C 2 | p => path (\\lam _ => 2)\n" +
+      "\\func f : 1 = 1 => p", 1);
+    assertThatErrorsAre(instanceInference(getDefinition("C")));
+  }
+
+  @Test
+  public void manyHeadsTest() {
+    typeCheckModule(
+      "\\class C (A : \\Type) | a : A\n" +
+      "\\data D | d\n" +
+      "\\instance cs : C (\\Sigma Nat Nat) | a => (1,2)\n" +
+      "\\instance cd : C D | a => d\n" +
+      "\\instance cn : C Nat | a => 3\n" +
+      "\\instance cn' : C Nat | a => 4\n" +
+      "\\func f : a = {Nat} 3 => path (\\lam _ => 3)\n" +
+      "\\func g : D => a\n" +
+      "\\func h : \\Sigma Nat Nat => a");
+  }
+
+  @Test
+  public void cachedResolutionTest() {
+    InstanceResolutionCache cache = libraryManager.getInstanceProviderSet().getResolutionCache();
+    typeCheckModule(
+      "\\class C (A : \\Type) | a : A\n" +
+      "\\instance cn : C Nat | a => 3\n" +
+      "\\func f : \\Sigma Nat Nat => (a, a)\n" +
+      "\\func g (n : Nat) : Nat => a Nat.+ n");
+    assertTrue(cache.getHits() > 0);
+  }
+
+  @Test
+  public void cachedNegativeResolutionTest() {
+    InstanceResolutionCache cache = libraryManager.getInstanceProviderSet().getResolutionCache();
+    typeCheckModule(
+      "\\class C (A : \\Type) | a : A\n" +
+      "\\data D | d\n" +
+      "\\instance cn : C Nat | a => 3\n" +
+      "\\func f : \\Sigma D D => (a, a)", 2);
+    assertTrue(cache.getHits() > 0);
+    assertThatErrorsAre(instanceInference(getDefinition("C")), instanceInference(getDefinition("C")));
+  }
 }